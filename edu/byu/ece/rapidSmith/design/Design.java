@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -34,6 +35,7 @@ import edu.byu.ece.rapidSmith.design.parser.DesignParser;
 import edu.byu.ece.rapidSmith.device.Device;
 import edu.byu.ece.rapidSmith.device.PrimitiveSite;
 import edu.byu.ece.rapidSmith.device.PrimitiveType;
+import edu.byu.ece.rapidSmith.device.Tile;
 import edu.byu.ece.rapidSmith.device.WireEnumerator;
 import edu.byu.ece.rapidSmith.util.FamilyType;
 import edu.byu.ece.rapidSmith.util.FileTools;
@@ -69,6 +71,8 @@ public class Design implements Serializable{
 	private HashMap<String,Instance> instances;
 	/** A map used to keep track of all used primitive sites used by the design */
 	private HashMap<PrimitiveSite,Instance> usedPrimitiveSites;
+	/** Created on demand, bits of the used primitive sites by primitive site index */
+	private transient BitSet usedPrimitiveSiteBits;
 	/** This is a list of all the nets in the design */
 	private HashMap<String,Net> nets;
 	/** A flag designating if this is a design or hard macro */
@@ -134,6 +138,7 @@ public class Design implements Serializable{
 	public void loadDeviceAndWireEnumerator(){
 		we = FileTools.loadWireEnumerator(partName);
 		dev = FileTools.loadDevice(partName);
+		usedPrimitiveSiteBits = null;
 	}
 	
 	/**
@@ -153,13 +158,53 @@ public class Design implements Serializable{
 	 */
 	protected Instance setPrimitiveSiteUsed(PrimitiveSite site, Instance inst){
 		if(site == null) return null;
+		if(usedPrimitiveSiteBits != null){
+			int index = dev.getPrimitiveSiteIndex(site);
+			if(index != -1) usedPrimitiveSiteBits.set(index);
+		}
 		return usedPrimitiveSites.put(site, inst);
 	}
 	
 	protected Instance releasePrimitiveSite(PrimitiveSite site){
+		if(site == null) return null;
+		if(usedPrimitiveSiteBits != null){
+			int index = dev.getPrimitiveSiteIndex(site);
+			if(index != -1) usedPrimitiveSiteBits.clear(index);
+		}
 		return usedPrimitiveSites.remove(site);
 	}
 	
+	/**
+	 * Gets the used primitive sites of this design as a bitmap indexed by
+	 * primitive site index (see Device.getPrimitiveSiteIndex(PrimitiveSite)).
+	 * The bitmap is created on the first call and kept up to date as 
+	 * instances are placed and unplaced, it should not be modified.  It can be
+	 * passed to the queries of Device.getPrimitiveSiteGrid().
+	 * @return The bits of the used primitive sites.
+	 */
+	public BitSet getPrimitiveSiteOccupancy(){
+		if(usedPrimitiveSiteBits == null){
+			BitSet bits = new BitSet(dev.getPrimitiveSiteCount());
+			for(PrimitiveSite site : usedPrimitiveSites.keySet()){
+				int index = dev.getPrimitiveSiteIndex(site);
+				if(index != -1) bits.set(index);
+			}
+			usedPrimitiveSiteBits = bits;
+		}
+		return usedPrimitiveSiteBits;
+	}
+	
+	/**
+	 * Finds the unused primitive site compatible with type which is closest
+	 * to a tile (Manhattan distance in tile rows and columns).
+	 * @param type The type of the primitive to place.
+	 * @param tile The tile to search around.
+	 * @return The closest unused compatible site, or null if there is none.
+	 */
+	public PrimitiveSite getNearestFreePrimitiveSite(PrimitiveType type, Tile tile){
+		return dev.getPrimitiveSiteGrid(type).getNearest(tile, getPrimitiveSiteOccupancy());
+	}
+	
 	/**
 	 * Gets and returns the instance which resides at site.
 	 * @param site The site of the desired instance.
@@ -594,6 +639,7 @@ public class Design implements Serializable{
 	 */
 	public void clearUsedPrimitiveSites(){
 		usedPrimitiveSites.clear();
+		if(usedPrimitiveSiteBits != null) usedPrimitiveSiteBits.clear();
 	}
 	
 	/**
@@ -664,6 +710,7 @@ public class Design implements Serializable{
 	 */
 	public void setDevice(Device dev){
 		this.dev = dev;
+		usedPrimitiveSiteBits = null;
 	}
 
 	/**
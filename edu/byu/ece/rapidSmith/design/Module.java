@@ -454,14 +454,12 @@ public class Module implements Serializable{
 		int tileYOffset = templateTile.getTileYCoordinate() - anchor.getTile().getTileYCoordinate();
 		int newTileX = newAnchorTile.getTileXCoordinate() + tileXOffset;
 		int newTileY = newAnchorTile.getTileYCoordinate() + tileYOffset;
-		String oldName = templateTile.getName();
-		String newName = oldName.substring(0, oldName.lastIndexOf('X')+1) + newTileX + "Y" + newTileY;
-		Tile correspondingTile = dev.getTile(newName); 
+		Tile correspondingTile = dev.getTileWithPrefix(templateTile, newTileX, newTileY); 
 		if(correspondingTile == null){
 			if(templateTile.getType().equals(TileType.CLBLL)){
-				correspondingTile = dev.getTile("CLBLM_X" + newTileX + "Y" + newTileY);
+				correspondingTile = dev.getTile("CLBLM", newTileX, newTileY);
 			}else if(templateTile.getType().equals(TileType.CLBLM)){
-				correspondingTile = dev.getTile("CLBLL_X" + newTileX + "Y" + newTileY);
+				correspondingTile = dev.getTile("CLBLL", newTileX, newTileY);
 			}
 		}
 		return correspondingTile;
@@ -26,17 +26,26 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Stack;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.caucho.hessian.io.Deflation;
 import com.caucho.hessian.io.Hessian2Input;
 import com.caucho.hessian.io.Hessian2Output;
 
+import edu.byu.ece.rapidSmith.constraints.AreaGroupRange;
 import edu.byu.ece.rapidSmith.design.Pin;
-import edu.byu.ece.rapidSmith.device.helper.HashPool;
+import edu.byu.ece.rapidSmith.device.helper.InternPool;
+import edu.byu.ece.rapidSmith.device.helper.MappedDeviceFile;
+import edu.byu.ece.rapidSmith.device.helper.PackedConnection;
+import edu.byu.ece.rapidSmith.device.helper.SinkPinHashMap;
 import edu.byu.ece.rapidSmith.device.helper.TileSinks;
 import edu.byu.ece.rapidSmith.device.helper.TileSources;
 import edu.byu.ece.rapidSmith.device.helper.TileWires;
@@ -91,10 +100,16 @@ public class Device implements Serializable{
 	//========================================================================//
 	// Objects that are Populated After Parsing
 	//========================================================================//
+	// The indexes below are created under the device lock and read without it,
+	// they are volatile so a reader sees them completely built
 	/** Created on demand when user calls getPrimitiveSiteIndex(), where the ArrayList index is the ordinal of the PrimitiveType */
-	private ArrayList<PrimitiveSite[]> primitiveSiteIndex;
+	private volatile ArrayList<PrimitiveSite[]> primitiveSiteIndex;
 	/** Created on demand when user calls getCompatibleSites(), where the ArrayList index is the ordinal of the PrimitiveType */
-	private ArrayList<PrimitiveSite[]> compatibleSiteIndex;
+	private volatile ArrayList<PrimitiveSite[]> compatibleSiteIndex;
+	/** Created on demand, all primitive sites ordered by their dense index (see getPrimitiveSiteIndex(PrimitiveSite)) */
+	private transient volatile PrimitiveSite[] sitesByIndex;
+	/** Created on demand, spatial index of the compatible sites by PrimitiveType.ordinal() */
+	private transient PrimitiveSiteGrid[] primitiveSiteGrids;
 	/** A set of all TileTypes that have switch matrices in them */
 	private HashSet<TileType> switchMatrixTypes;
 	
@@ -102,22 +117,51 @@ public class Device implements Serializable{
 	// Object Pools - To remove duplicate objects, null afterwards
 	//========================================================================//
 	/** Keeps track of each unique Wire object in the device */
-	protected HashPool<WireConnection> wirePool;
+	protected InternPool<WireConnection> wirePool;
 	/** Keeps track of each unique Wire[] object in the device */
-	protected HashPool<WireArray> wireArrayPool;
+	protected InternPool<WireArray> wireArrayPool;
 	/** Keeps track of each unique WireConnection object in the device */
-	protected HashPool<WireArrayConnection> wireConnectionPool;
+	protected InternPool<WireArrayConnection> wireConnectionPool;
 	/** Keeps track of all PIPRouteThrough objects */
-	protected HashPool<PIPRouteThrough> routeThroughPool;
+	protected InternPool<PIPRouteThrough> routeThroughPool;
 	/** Keeps Track of all unique Sinks that exist in Tiles */
-	protected HashPool<TileSinks> tileSinksPool;
+	protected InternPool<TileSinks> tileSinksPool;
 	/** Keeps Track of all unique Sources Lists that exist in Tiles */
-	protected HashPool<TileSources> tileSourcesPool;
+	protected InternPool<TileSources> tileSourcesPool;
 	/** Keeps Track of all unique Wire Lists that exist in Tiles */
-	protected HashPool<TileWires> tileWiresPool;
+	protected InternPool<TileWires> tileWiresPool;
 	/** Keeps track of all unique primitive pin HashMaps */
-	protected HashPool<PrimitivePinMap> primitivePinPool;
-	
+	protected InternPool<PrimitivePinMap> primitivePinPool;
+
+	/** The mapped device file backing this device (null if loaded from the compact file) */
+	protected transient MappedDeviceFile mappedFile;
+	/** When true, readDeviceFromMappedFile() loads tile sinks, sources and wires on first access */
+	private transient boolean lazyLoading;
+	/** Maximum number of lazily loaded tiles to keep loaded (0 for no limit) */
+	private transient int hydratedTileLimit;
+	/** Lazily loaded tiles that currently have their resources loaded, oldest first */
+	private transient ArrayDeque<Tile> hydratedTiles;
+	/** Heap copies of the tile wires pool entries, shared by the tiles that use them */
+	private transient SoftReference<WireHashMap>[] hydratedWireMaps;
+	/** The routing graph of this device, created on first use */
+	private transient RoutingGraph routingGraph;
+	/** The physical routing nodes of this device, created on first use */
+	private transient NodeIndex nodeIndex;
+	/** Finds tiles by name prefix and coordinates, created on first use */
+	private transient volatile TileCoordinateIndex tileCoordinateIndex;
+	/** The fan-in of each tile by unique tile address, created on first use */
+	private transient WireHashMap[] fanInMaps;
+	/** Sorted packed connections (see PackedConnection) of the route-throughs, created on first use */
+	private transient volatile long[] routeThroughKeys;
+	/** PIPRouteThrough of each entry of routeThroughKeys */
+	private transient PIPRouteThrough[] routeThroughValues;
+	/** First row, first column, rows and columns of the full device if this device is cropped (see crop()) */
+	private int[] cropRegion;
+	/** The connections leaving a cropped device by unique tile address (see getExitConnections()) */
+	private transient WireHashMap[] exitMaps;
+	/** Locks of the family template files being written, by absolute file name */
+	private static final ConcurrentHashMap<String,Object> templateLocks = new ConcurrentHashMap<String,Object>();
+
 	/**
 	 * Constructor, initializes all objects to new, except tile[][]
 	 */
@@ -130,14 +174,14 @@ public class Device implements Serializable{
 		primitiveSiteIndex = null;
 		
 		// Object Pools
-		wirePool = new HashPool<WireConnection>();
-		wireArrayPool = new HashPool<WireArray>();
-		wireConnectionPool = new HashPool<WireArrayConnection>();
-		routeThroughPool = new HashPool<PIPRouteThrough>();
-		tileSinksPool = new HashPool<TileSinks>();
-		tileSourcesPool = new HashPool<TileSources>();
-		tileWiresPool = new HashPool<TileWires>();
-		primitivePinPool = new HashPool<PrimitivePinMap>();
+		wirePool = new InternPool<WireConnection>();
+		wireArrayPool = new InternPool<WireArray>();
+		wireConnectionPool = new InternPool<WireArrayConnection>();
+		routeThroughPool = new InternPool<PIPRouteThrough>();
+		tileSinksPool = new InternPool<TileSinks>();
+		tileSourcesPool = new InternPool<TileSources>();
+		tileWiresPool = new InternPool<TileWires>();
+		primitivePinPool = new InternPool<PrimitivePinMap>();
 	}
 	
 	/**
@@ -147,7 +191,10 @@ public class Device implements Serializable{
 	 * @param partName The part name of the device to get.
 	 * @return If no device has been loaded or the part names do not match the singleton instance, it
 	 * returns a new Device, otherwise it will return an existing copy of the device in memory.
+	 * @deprecated Only one part can be held at a time and this is not thread safe, use
+	 * util.FileTools.loadDevice() or DeviceRegistry instead.
 	 */
+	@Deprecated
 	public static Device getInstance(String partName){
 		if(singleton == null || !partName.equals(singleton.getPartName())){
 			singleton = new Device();
@@ -160,7 +207,7 @@ public class Device implements Serializable{
 	 * @return The wire enumerator for this device.
 	 */
 	public WireEnumerator getWireEnumerator(){
-		return WireEnumerator.getInstance(getFamilyType());
+		return DeviceRegistry.getInstance().getWireEnumerator(getFamilyType());
 	}
 	
 	/**
@@ -179,12 +226,222 @@ public class Device implements Serializable{
 	}
 
 	/**
-	 * Checks if this wire is RouteThrough.
+	 * Gets the routing graph (dense ids and CSR connections) of this device.  The
+	 * graph is read from the routing graph file of the part if it is up to date,
+	 * otherwise it is built from the tiles.  The graph is never saved here, the
+	 * file is created by the installer (see
+	 * DeviceFilesCreator.createRoutingGraphFile()).
+	 * @return The routing graph of this device.
+	 */
+	public synchronized RoutingGraph getRoutingGraph(){
+		if(routingGraph != null){
+			return routingGraph;
+		}
+		if(cropRegion != null){
+			// The routing graph file of the part belongs to the full device
+			routingGraph = RoutingGraph.build(this);
+			return routingGraph;
+		}
+		if(RoutingGraph.isFileUpToDate(partName)){
+			routingGraph = RoutingGraph.readFromFile(FileTools.getRoutingGraphFileName(partName), this);
+		}
+		if(routingGraph == null){
+			routingGraph = RoutingGraph.build(this);
+		}
+		return routingGraph;
+	}
+
+	/**
+	 * Gets the index which maps each tile wire of the routing graph to the
+	 * physical routing node (the set of tile wires joined by non-PIP connections)
+	 * it belongs to.  The index is created on first use.
+	 * @return The node index of this device.
+	 */
+	public synchronized NodeIndex getNodeIndex(){
+		if(nodeIndex == null){
+			nodeIndex = new NodeIndex(getRoutingGraph());
+		}
+		return nodeIndex;
+	}
+
+	/**
+	 * Gets the fan-in of a tile: for each wire of the tile, the connections
+	 * which drive it, reversed so that they can be followed from the tile.  If
+	 * wire A in tile S connects to wire B with WireConnection(B, r, c, pip),
+	 * the fan-in of B in the destination tile holds WireConnection(A, -r, -c, pip),
+	 * so getTile() of the reversed connection is S.  The fan-in is read from
+	 * the mapped device file when it has one (see MappedDeviceFile.hasFanIn()),
+	 * otherwise it is created from the wire connections of all tiles on first
+	 * use.  It does not follow changes made to the wire connections afterwards.
+	 * The route-through flag of the reversed connections is not meaningful.
+	 * @param t The tile.
+	 * @return The fan-in map of the tile (shared by tiles with the same
+	 * fan-in, must not be modified), or null if no connection enters the tile.
+	 */
+	public WireHashMap getFanIn(Tile t){
+		int index = t.getRow()*columns + t.getColumn();
+		MappedDeviceFile file = mappedFile;
+		if(file != null && file.hasFanIn()){
+			return file.getFanInMap(index);
+		}
+		return getFanInMaps()[index];
+	}
+
+	/**
+	 * Gets the connections which drive a wire of a tile, see getFanIn(Tile).
+	 * @param t The tile.
+	 * @param wire The wire in the tile.
+	 * @return The reversed connections, or null if the wire has no fan-in.
+	 */
+	public WireConnection[] getFanIn(Tile t, int wire){
+		WireHashMap map = getFanIn(t);
+		return map == null ? null : map.get(wire);
+	}
+
+	private synchronized WireHashMap[] getFanInMaps(){
+		if(fanInMaps == null){
+			fanInMaps = createFanInMaps();
+		}
+		return fanInMaps;
+	}
+
+	/**
+	 * Creates the fan-in of every tile from the wire connections.  The reversed
+	 * connections of a wire are in the order of the source tiles (row major)
+	 * and source wires, and equal connections, arrays and maps are shared.
+	 * @return The fan-in map of each tile by unique tile address.
+	 */
+	private WireHashMap[] createFanInMaps(){
+		int tileCount = rows*columns;
+		int[][] tileWireKeys = new int[tileCount][];
+		int[] edgeStart = new int[tileCount + 1];
+		for(int i=0; i < tileCount; i++){
+			Tile s = tiles[i / columns][i % columns];
+			WireHashMap map = s.getWireHashMap();
+			if(map == null) continue;
+			int[] keys = new int[map.size()];
+			int n = 0;
+			for(Integer key : map.keySet()){
+				keys[n++] = key;
+			}
+			Arrays.sort(keys, 0, n);
+			tileWireKeys[i] = keys;
+			for(int key : keys){
+				for(WireConnection wc : map.get(key)){
+					Tile d = getTile(s.getRow() - wc.getRowOffset(), s.getColumn() - wc.getColumnOffset());
+					if(d != null && wc.getWire() >= 0){
+						edgeStart[d.getRow()*columns + d.getColumn() + 1]++;
+					}
+				}
+			}
+		}
+		for(int i=0; i < tileCount; i++){
+			edgeStart[i+1] += edgeStart[i];
+		}
+
+		// Reversed connections grouped by destination tile, in source order
+		long[] reversed = new long[edgeStart[tileCount]];
+		int[] edgeWire = new int[edgeStart[tileCount]];
+		int[] next = new int[tileCount];
+		for(int i=0; i < tileCount; i++){
+			if(tileWireKeys[i] == null) continue;
+			Tile s = tiles[i / columns][i % columns];
+			WireHashMap map = s.getWireHashMap();
+			for(int key : tileWireKeys[i]){
+				for(WireConnection wc : map.get(key)){
+					Tile d = getTile(s.getRow() - wc.getRowOffset(), s.getColumn() - wc.getColumnOffset());
+					if(d == null || wc.getWire() < 0) continue;
+					int dIndex = d.getRow()*columns + d.getColumn();
+					int e = edgeStart[dIndex] + next[dIndex]++;
+					reversed[e] = PackedConnection.pack(key, -wc.getRowOffset(), -wc.getColumnOffset(), wc.isPIP());
+					edgeWire[e] = wc.getWire();
+				}
+			}
+		}
+
+		InternPool<WireConnection> wires = new InternPool<WireConnection>();
+		InternPool<WireArray> wireArrays = new InternPool<WireArray>();
+		InternPool<TileWires> wireMaps = new InternPool<TileWires>();
+		WireHashMap[] result = new WireHashMap[tileCount];
+		long[] order = new long[0];
+		for(int i=0; i < tileCount; i++){
+			int start = edgeStart[i];
+			int count = edgeStart[i+1] - start;
+			if(count == 0) continue;
+			// Sort by destination wire, keeping the source order of each wire
+			if(order.length < count) order = new long[count];
+			for(int k=0; k < count; k++){
+				order[k] = ((long)edgeWire[start + k] << 32) | k;
+			}
+			Arrays.sort(order, 0, count);
+			WireHashMap map = new WireHashMap();
+			int k = 0;
+			while(k < count){
+				int wire = (int)(order[k] >>> 32);
+				int end = k;
+				while(end < count && (int)(order[end] >>> 32) == wire) end++;
+				WireConnection[] array = new WireConnection[end - k];
+				for(int j=k; j < end; j++){
+					array[j - k] = wires.add(PackedConnection.unpack(reversed[start + (int)order[j]]));
+				}
+				map.put(wire, wireArrays.add(new WireArray(array)).array);
+				k = end;
+			}
+			result[i] = wireMaps.add(new TileWires(map)).wires;
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if this wire is RouteThrough.  The wire is looked up by value, so
+	 * any connection equal to a route-through of this device matches.
 	 * @param w The wire to test.
 	 * @return True if the wire is a routeThrough, false otherwise.
 	 */
 	public boolean isRouteThrough(WireConnection w){
-		return routeThroughMap.get(w) != null;
+		return findRouteThrough(PackedConnection.pack(w)) != null;
+	}
+
+	/**
+	 * Checks if a packed connection (see Tile.getPackedConnections()) is a
+	 * RouteThrough.
+	 * @param c The packed connection to test.
+	 * @return True if the connection is a routeThrough, false otherwise.
+	 */
+	public boolean isRouteThrough(long c){
+		return PackedConnection.isRouteThrough(c);
+	}
+
+	/**
+	 * Records that a connection of this device is a route-through.
+	 * @param w The connection (the object used in the tiles of this device).
+	 * @param p The route-through details.
+	 */
+	public void addRouteThrough(WireConnection w, PIPRouteThrough p){
+		w.setRouteThrough(true);
+		routeThroughMap.put(w, p);
+		routeThroughKeys = null;
+	}
+
+	/**
+	 * Creates the side table of route-throughs keyed by packed connection.
+	 */
+	private synchronized long[] getRouteThroughKeys(){
+		long[] keys = routeThroughKeys;
+		if(keys != null) return keys;
+		keys = new long[routeThroughMap.size()];
+		int i = 0;
+		for(WireConnection w : routeThroughMap.keySet()){
+			keys[i++] = PackedConnection.pack(w) & ~PackedConnection.ROUTE_THROUGH;
+		}
+		Arrays.sort(keys);
+		PIPRouteThrough[] values = new PIPRouteThrough[keys.length];
+		for(WireConnection w : routeThroughMap.keySet()){
+			values[Arrays.binarySearch(keys, PackedConnection.pack(w) & ~PackedConnection.ROUTE_THROUGH)] = routeThroughMap.get(w);
+		}
+		routeThroughValues = values;
+		routeThroughKeys = keys;
+		return keys;
 	}
 	
 	//========================================================================//
@@ -199,7 +456,7 @@ public class Device implements Serializable{
 		// Check the Pin Mapping patch for proper external pin name mapping
 		String extName = PinMappingPatch.getPinMapping(pin.getInstance().getType(), pin.getName());
 		if(extName != null){
-			return WireEnumerator.getInstance(getFamilyType()).getWireEnum(extName);
+			return getWireEnumerator().getWireEnum(extName);
 		}
 		
 		Integer extPin = pin.getInstance().getPrimitiveSite().getExternalPinWireEnum(pin.getName());
@@ -240,7 +497,30 @@ public class Device implements Serializable{
 	 * @return The PIPRouteThrough or null if it does not exist.
 	 */
 	public PIPRouteThrough getRouteThrough(WireConnection w){
-		return routeThroughMap.get(w);
+		return findRouteThrough(PackedConnection.pack(w));
+	}
+
+	/**
+	 * Gets the PIPRouteThrough object for a packed connection.
+	 * @param c The packed connection (see Tile.getPackedConnections()).
+	 * @return The PIPRouteThrough or null if it does not exist.
+	 */
+	public PIPRouteThrough getRouteThrough(long c){
+		if(!PackedConnection.isRouteThrough(c)) return null;
+		return findRouteThrough(c);
+	}
+
+	/**
+	 * Looks up a connection in the side table of route-throughs, regardless of
+	 * its route-through bit.
+	 * @param c The packed connection.
+	 * @return The PIPRouteThrough or null if it does not exist.
+	 */
+	private PIPRouteThrough findRouteThrough(long c){
+		long[] keys = routeThroughKeys;
+		if(keys == null) keys = getRouteThroughKeys();
+		int i = Arrays.binarySearch(keys, c & ~PackedConnection.ROUTE_THROUGH);
+		return i < 0 ? null : routeThroughValues[i];
 	}
 	
 	/**
@@ -264,6 +544,152 @@ public class Device implements Serializable{
 	public Tile getTile(String tile){
 		return tileMap.get(tile);
 	}
+	
+	/**
+	 * Gets a tile by the prefix and coordinates of its name without building
+	 * the name.  For example, ("INT", 0, 5) gets the tile INT_X0Y5.
+	 * @param prefix The tile name before the coordinates (without the underscore).
+	 * @param tileX The X coordinate in the tile name.
+	 * @param tileY The Y coordinate in the tile name.
+	 * @return The tile, or null if it does not exist.
+	 */
+	public Tile getTile(String prefix, int tileX, int tileY){
+		TileCoordinateIndex tci = getTileCoordinateIndex();
+		Integer index = tci.prefixMap.get(prefix);
+		return index == null ? null : tci.grids[index].get(tileX, tileY);
+	}
+	
+	/**
+	 * Gets the tile whose name has the same prefix as the given tile and the
+	 * given coordinates.  For example, (INT_X0Y5, 1, 6) gets the tile INT_X1Y6.
+	 * No strings are created.
+	 * @param prefixTile A tile with the name prefix to look for.
+	 * @param tileX The X coordinate in the tile name.
+	 * @param tileY The Y coordinate in the tile name.
+	 * @return The tile, or null if it does not exist.
+	 */
+	public Tile getTileWithPrefix(Tile prefixTile, int tileX, int tileY){
+		TileCoordinateIndex tci = getTileCoordinateIndex();
+		int index = tci.prefixes[prefixTile.getRow()*columns + prefixTile.getColumn()];
+		return index == -1 ? null : tci.grids[index].get(tileX, tileY);
+	}
+	
+	/**
+	 * Gets the tile coordinate grids used by getTile(String,int,int) and
+	 * getTileWithPrefix(), creating them on first use.  Once created they are
+	 * read without locking.  They are built under the lock of the tile array
+	 * rather than the device lock, so tile lookups never wait for other
+	 * device work such as getRoutingGraph().
+	 * @return The tile coordinate index of this device.
+	 */
+	private TileCoordinateIndex getTileCoordinateIndex(){
+		TileCoordinateIndex tci = tileCoordinateIndex;
+		if(tci != null){
+			return tci;
+		}
+		synchronized(tiles){
+			tci = tileCoordinateIndex;
+			if(tci == null){
+				tci = createTileCoordinateIndex();
+				tileCoordinateIndex = tci;
+			}
+			return tci;
+		}
+	}
+	
+	/**
+	 * Creates the tile coordinate grids of the tiles of this device.
+	 * @return The new tile coordinate index.
+	 */
+	private TileCoordinateIndex createTileCoordinateIndex(){
+		HashMap<String,Integer> prefixMap = new HashMap<String,Integer>();
+		ArrayList<TileCoordinateGrid> grids = new ArrayList<TileCoordinateGrid>();
+		int[] prefixes = new int[rows*columns];
+		for(int i=0; i < rows; i++){
+			for(int j=0; j < columns; j++){
+				Tile t = tiles[i][j];
+				String name = t.getName();
+				if(!name.contains("_X")){
+					prefixes[i*columns+j] = -1;
+					continue;
+				}
+				String prefix = name.substring(0, name.lastIndexOf('_'));
+				Integer index = prefixMap.get(prefix);
+				if(index == null){
+					index = grids.size();
+					prefixMap.put(prefix, index);
+					grids.add(new TileCoordinateGrid());
+				}
+				grids.get(index).include(t);
+				prefixes[i*columns+j] = index;
+			}
+		}
+		for(TileCoordinateGrid grid : grids){
+			grid.allocate();
+		}
+		for(int i=0; i < rows; i++){
+			for(int j=0; j < columns; j++){
+				if(prefixes[i*columns+j] != -1){
+					grids.get(prefixes[i*columns+j]).put(tiles[i][j]);
+				}
+			}
+		}
+		return new TileCoordinateIndex(prefixes, prefixMap, grids.toArray(new TileCoordinateGrid[grids.size()]));
+	}
+	
+	/**
+	 * The tile coordinate grids of a device, published as a whole so a reader
+	 * never sees some of them without the others.
+	 */
+	private static class TileCoordinateIndex {
+		/** Index of the name prefix of each tile by unique tile address (-1 if the name has no coordinates) */
+		private final int[] prefixes;
+		/** Maps tile name prefixes (ex: "INT" in INT_X0Y5) to their index */
+		private final HashMap<String,Integer> prefixMap;
+		/** A coordinate grid of tiles for each tile name prefix */
+		private final TileCoordinateGrid[] grids;
+		
+		public TileCoordinateIndex(int[] prefixes, HashMap<String,Integer> prefixMap, TileCoordinateGrid[] grids){
+			this.prefixes = prefixes;
+			this.prefixMap = prefixMap;
+			this.grids = grids;
+		}
+	}
+	
+	/**
+	 * The tiles sharing a name prefix, arranged by the coordinates in their names.
+	 */
+	private static class TileCoordinateGrid {
+		private int minX = Integer.MAX_VALUE;
+		private int minY = Integer.MAX_VALUE;
+		private int maxX = Integer.MIN_VALUE;
+		private int maxY = Integer.MIN_VALUE;
+		private int width;
+		private Tile[] grid;
+		
+		private void include(Tile t){
+			minX = Math.min(minX, t.getTileXCoordinate());
+			minY = Math.min(minY, t.getTileYCoordinate());
+			maxX = Math.max(maxX, t.getTileXCoordinate());
+			maxY = Math.max(maxY, t.getTileYCoordinate());
+		}
+		
+		private void allocate(){
+			width = maxX - minX + 1;
+			grid = new Tile[width * (maxY - minY + 1)];
+		}
+		
+		private void put(Tile t){
+			grid[(t.getTileYCoordinate() - minY)*width + t.getTileXCoordinate() - minX] = t;
+		}
+		
+		private Tile get(int x, int y){
+			if(x < minX || x > maxX || y < minY || y > maxY){
+				return null;
+			}
+			return grid[(y - minY)*width + x - minX];
+		}
+	}
 
 	/**
 	 * Each tile in a device can be referenced by a unique integer which is a combination
@@ -334,7 +760,7 @@ public class Device implements Serializable{
 	public Node getSwitchMatrixSink(Pin pin){
 		int extPin = getPrimitiveExternalPin(pin);
 		Tile tile = pin.getInstance().getTile();
-		SinkPin sp = tile.getSinks().get(extPin);
+		SinkPin sp = tile.getSinkPin(extPin);
 		if(sp == null) return null;
 		int y = sp.switchMatrixTileOffset;
 		int x = y >> 16;
@@ -476,10 +902,11 @@ public class Device implements Serializable{
 	 * separated by type. 
 	 */
 	public ArrayList<PrimitiveSite[]> getPrimitiveSiteIndex(){
-		if(primitiveSiteIndex == null){
-			createPrimitiveSiteIndex();
+		ArrayList<PrimitiveSite[]> index = primitiveSiteIndex;
+		if(index == null){
+			index = createPrimitiveSiteIndex();
 		}
-		return primitiveSiteIndex;
+		return index;
 	}
 	
 	/**
@@ -493,10 +920,11 @@ public class Device implements Serializable{
 	 * for each primitive type. 
 	 */
 	public ArrayList<PrimitiveSite[]> getCompatibleSiteIndex(){
-		if(compatibleSiteIndex == null){
-			createCompatibleSiteIndex();
+		ArrayList<PrimitiveSite[]> index = compatibleSiteIndex;
+		if(index == null){
+			index = createCompatibleSiteIndex();
 		}
-		return compatibleSiteIndex;
+		return index;
 	}
 	
 	/**
@@ -517,47 +945,79 @@ public class Device implements Serializable{
 	 * primitive type in this device.  For example, a SLICEL can be placed at 
 	 * all SLICEL sites AND all SLICEM sites.  If the type given were SLICEL, 
 	 * this method would return an array of all SLICEL and SLICEM sites.
+	 * The array is computed once per type and shared between all callers,
+	 * it must not be modified.
 	 * @param type The type for which to find compatible primitive sites.
 	 * @return An array of compatible sites suitable for placement of a 
 	 * primitive of type type.
 	 */
 	public PrimitiveSite[] getAllCompatibleSites(PrimitiveType type){
-		int size = 0;
-		// Check if there are sites of the given type
-		ArrayList<PrimitiveSite[]> compatibleList = new ArrayList<PrimitiveSite[]>();
-		PrimitiveSite[] match = getAllPrimitiveSitesOfType(type);
-		if(match != null){
-			size += match.length;
-			compatibleList.add(match);
-		}
-		
-		// Check for other compatible site types
-		PrimitiveType[] compatibleTypes = PrimitiveSite.compatibleTypesArray[getFamilyType().ordinal()].get(type);
-		if(compatibleTypes != null){
-			for(PrimitiveType compatibleType : compatibleTypes){
-				match = getAllPrimitiveSitesOfType(compatibleType);
-				if(match != null){
-					size += match.length;
-					compatibleList.add(match);
-				}
-			}
+		return getCompatibleSiteIndex().get(type.ordinal());
+	}
+	
+	/**
+	 * Gets the dense index of a primitive site in this device.  Sites are 
+	 * numbered from 0 to getPrimitiveSiteCount()-1 in tile order (row by 
+	 * row, then by position in the tile) so the index can be used to address 
+	 * arrays and bitsets instead of maps keyed by PrimitiveSite.
+	 * @param site A primitive site of this device.
+	 * @return The index of the site or -1 if the site is not in this device.
+	 */
+	public int getPrimitiveSiteIndex(PrimitiveSite site){
+		PrimitiveSite[] index = getSitesByIndex();
+		int i = site.getIndex();
+		if(i < 0 || i >= index.length || index[i] != site){
+			return -1;
 		}
-		
-		// If there are no compatible sites, return null
-		if(compatibleList.size() == 0){
-			return null;
+		return i;
+	}
+	
+	/**
+	 * Gets the primitive site with the given dense index (see 
+	 * getPrimitiveSiteIndex(PrimitiveSite)).
+	 * @param index The index of the site.
+	 * @return The primitive site with the index.
+	 */
+	public PrimitiveSite getPrimitiveSite(int index){
+		return getSitesByIndex()[index];
+	}
+	
+	/**
+	 * Gets the number of primitive sites in this device, which is also the 
+	 * size needed for arrays or bitsets addressed by primitive site index.
+	 * @return The number of primitive sites in this device.
+	 */
+	public int getPrimitiveSiteCount(){
+		return getSitesByIndex().length;
+	}
+	
+	/**
+	 * Gets (creates if needed) a spatial index of all compatible primitive 
+	 * sites for a primitive type (see getAllCompatibleSites()).  It answers 
+	 * nearest, radius and rectangle queries and skips the sites marked in an 
+	 * occupancy bitmap such as Design.getPrimitiveSiteOccupancy().
+	 * @param type The type for which to index the compatible primitive sites.
+	 * @return The spatial index of the compatible sites of type.
+	 */
+	public synchronized PrimitiveSiteGrid getPrimitiveSiteGrid(PrimitiveType type){
+		if(primitiveSiteGrids == null){
+			primitiveSiteGrids = new PrimitiveSiteGrid[PrimitiveType.values().length];
 		}
-		int i = 0;
-		PrimitiveSite[] newArray = new PrimitiveSite[size];
-		for(PrimitiveSite[] sites : compatibleList){
-			for(PrimitiveSite site : sites){
-				newArray[i] = site;
-				i++;
-			}
+		PrimitiveSiteGrid grid = primitiveSiteGrids[type.ordinal()];
+		if(grid == null){
+			grid = new PrimitiveSiteGrid(this, getAllCompatibleSites(type));
+			primitiveSiteGrids[type.ordinal()] = grid;
 		}
-		return newArray;
+		return grid;
 	}
 	
+	private PrimitiveSite[] getSitesByIndex(){
+		PrimitiveSite[] index = sitesByIndex;
+		if(index == null){
+			index = createSitesByIndex();
+		}
+		return index;
+	}
 	
 	/**
 	 * Gets and returns an array of all primitive sites of the given primitive type.
@@ -576,8 +1036,10 @@ public class Device implements Serializable{
 	 * This will create a data structure which organizes all primitive sites by types.
 	 * The outer ArrayList uses the PrimitiveType.ordinal() value as the index for
 	 * each type of primitive site.
+	 * @return The index of the primitive sites by type.
 	 */
-	private void createPrimitiveSiteIndex(){
+	private synchronized ArrayList<PrimitiveSite[]> createPrimitiveSiteIndex(){
+		if(primitiveSiteIndex != null) return primitiveSiteIndex;
 		ArrayList<ArrayList<PrimitiveSite>> tmp = new ArrayList<ArrayList<PrimitiveSite>>(PrimitiveType.values().length);
 		for(int i = 0; i < PrimitiveType.values().length; i++){
 			tmp.add(new ArrayList<PrimitiveSite>());
@@ -604,6 +1066,7 @@ public class Device implements Serializable{
 			}
 		}
 		this.primitiveSiteIndex = index;
+		return index;
 	}
 	
 	/**
@@ -611,14 +1074,17 @@ public class Device implements Serializable{
 	 * sites for a given primitive type.  It populates the compatibleSiteIndex
 	 * where the outer ArrayList uses the PrimitiveType.ordinal() value as 
 	 * the index of the type to get the compatible sites.
+	 * @return The index of the compatible sites by type.
 	 */
-	private void createCompatibleSiteIndex(){
-		int size = 0;
-		compatibleSiteIndex = new ArrayList<PrimitiveSite[]>(PrimitiveType.values().length);
+	private synchronized ArrayList<PrimitiveSite[]> createCompatibleSiteIndex(){
+		if(compatibleSiteIndex != null) return compatibleSiteIndex;
+		ArrayList<PrimitiveSite[]> index = new ArrayList<PrimitiveSite[]>(PrimitiveType.values().length);
+		HashMap<PrimitiveType, PrimitiveType[]> compatibleTypesMap = PrimitiveSite.compatibleTypesArray[getFamilyType().ordinal()];
 		
 		// For each primitive type
 		for(PrimitiveType type: PrimitiveType.values()){
 			// Check if there are sites of the given type
+			int size = 0;
 			ArrayList<PrimitiveSite[]> compatibleList = new ArrayList<PrimitiveSite[]>();
 			PrimitiveSite[] match = getAllPrimitiveSitesOfType(type);
 			if(match != null){
@@ -627,7 +1093,7 @@ public class Device implements Serializable{
 			}
 			
 			// Check for other compatible site types
-			PrimitiveType[] compatibleTypes = PrimitiveSite.compatibleTypesArray[getFamilyType().ordinal()].get(type);
+			PrimitiveType[] compatibleTypes = compatibleTypesMap == null ? null : compatibleTypesMap.get(type);
 			if(compatibleTypes != null){
 				for(PrimitiveType compatibleType : compatibleTypes){
 					match = getAllPrimitiveSitesOfType(compatibleType);
@@ -638,21 +1104,49 @@ public class Device implements Serializable{
 				}
 			}
 			
-			// If there are no compatible sites, return null
+			// If there are no compatible sites, store null
 			if(compatibleList.size() == 0){
-				compatibleSiteIndex.set(type.ordinal(), null);
+				index.add(null);
+				continue;
+			}
+			// Share the array of the type when no other type is compatible
+			if(compatibleList.size() == 1){
+				index.add(compatibleList.get(0));
 				continue;
 			}
 			int j = 0;
 			PrimitiveSite[] newArray = new PrimitiveSite[size];
 			for(PrimitiveSite[] sites : compatibleList){
+				System.arraycopy(sites, 0, newArray, j, sites.length);
+				j += sites.length;
+			}
+			index.add(newArray);
+		}
+		compatibleSiteIndex = index;
+		return index;
+	}
+	
+	/**
+	 * Numbers all primitive sites of the device in tile order and stores the 
+	 * number in each site (see getPrimitiveSiteIndex(PrimitiveSite)).
+	 * @return The sites ordered by their index.
+	 */
+	private synchronized PrimitiveSite[] createSitesByIndex(){
+		if(sitesByIndex != null) return sitesByIndex;
+		ArrayList<PrimitiveSite> list = new ArrayList<PrimitiveSite>(primitiveSites.size());
+		for(int i=0; i < this.rows; i++){
+			for(int j=0; j < this.columns; j++){
+				PrimitiveSite[] sites = tiles[i][j].getPrimitiveSites();
+				if(sites == null) continue;
 				for(PrimitiveSite site : sites){
-					newArray[j] = site;
-					j++;
+					site.setIndex(list.size());
+					list.add(site);
 				}
 			}
-			compatibleSiteIndex.set(type.ordinal(), newArray);
-		}		
+		}
+		PrimitiveSite[] index = list.toArray(new PrimitiveSite[list.size()]);
+		sitesByIndex = index;
+		return index;
 	}
 	
 	
@@ -688,102 +1182,269 @@ public class Device implements Serializable{
 	/**
 	 * This method will iterate through all of the sink pins of the device and determine
 	 * which switch matrix and wire node a routed path must pass through in order to 
-	 * arrive at the sink.
+	 * arrive at the sink.  The searches of the switch matrix tiles are run in
+	 * parallel and only record the sink pins they find, the sink pins are then
+	 * updated in tile order so the result is the same as a sequential search.
+	 * One thread is used per available processor.
 	 * @param we The corresponding wire enumerator for this device.
 	 */
 	public void populateSinkPins(WireEnumerator we){
-		HashSet<Integer> setOfExternalPrimitivePins = new HashSet<Integer>();
-		HashSet<TileType> switchMatrixTileTypes = getSwitchMatrixTypes();
-		int watchDog = 0;
-		
+		populateSinkPins(we, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Same as populateSinkPins(WireEnumerator) with a bound on the number of
+	 * threads, so callers which already run work in parallel (such as the
+	 * XDLRC parser and the part workers of DeviceFilesCreator) can share the
+	 * processors.  With one thread the search is run by the calling thread.
+	 * The result is the same for any number of threads.
+	 * @param we The corresponding wire enumerator for this device.
+	 * @param threadCount The number of threads to search with.
+	 */
+	public void populateSinkPins(WireEnumerator we, int threadCount){
+		int wireCount = we.getWires().length;
+		boolean[] externalPrimitivePins = new boolean[wireCount];
+		boolean[] intSinks = new boolean[wireCount];
 		for(String wire : we.getWires()) {
 			int w = we.getWireEnum(wire);
-			if(we.getWireType(w).equals(WireType.SITE_SINK)){
-				setOfExternalPrimitivePins.add(w);
+			externalPrimitivePins[w] = we.getWireType(w).equals(WireType.SITE_SINK);
+			intSinks[w] = we.getWireType(w).equals(WireType.INT_SINK);
+		}
+		boolean[] switchMatrixTileTypes = new boolean[TileType.values().length];
+		for(TileType type : getSwitchMatrixTypes()){
+			switchMatrixTileTypes[type.ordinal()] = true;
+		}
+
+		SinkPinSearchResult[] results = new SinkPinSearchResult[rows*columns];
+		SinkPinSearchTask task = new SinkPinSearchTask(0, rows*columns, 
+				results, externalPrimitivePins, intSinks, switchMatrixTileTypes);
+		if(threadCount <= 1){
+			task.searchRange();
+		}
+		else{
+			ForkJoinPool pool = new ForkJoinPool(threadCount);
+			try{
+				pool.invoke(task);
+			}
+			finally{
+				pool.shutdown();
 			}
 		}
-		
-		for(Tile[] tileArray : tiles){
-			for (Tile tile : tileArray) {
-				// Only get the switch box tiles
-				if (switchMatrixTileTypes.contains(tile.getType())) {
-					if(tile.getWireHashMap() == null) continue;
-					for(Integer wire : tile.getWireHashMap().keySet()){
-						if(we.getWireType(wire).equals(WireType.INT_SINK)){
-							int currINTSinkWire = wire; 
-							boolean debug = false;
-							if(tile.getName().equals("INT_X12Y1") && currINTSinkWire == we.getWireEnum("IMUX_B18")){
-								debug = false;
-							}
-							// There should only be one wire that leaves the tile
-							for (WireConnection w : tile.getWireHashMap().get(wire)) {
-								if(w.getColumnOffset() != 0 || w.getRowOffset() != 0){
-									
-									Stack<Tile> tileStack = new Stack<Tile>();
-									Stack<WireConnection> wireStack = new Stack<WireConnection>();
-									HashSet<Node> visited = new HashSet<Node>();
-									tileStack.push(tile);
-									wireStack.push(new WireConnection(wire,0,0,true));
-									if(debug) System.out.println("PUSH: " + tile + " " + we.getWireName(wire));
-									watchDog = 0;
-									while (!tileStack.isEmpty() && watchDog < 100) {
-										watchDog++;
-										Tile t1 = tileStack.pop();
-										WireConnection w1 = wireStack.pop();
-										if(debug) System.out.println("  POP: " + t1 + " " + we.getWireName(w1.getWire()));
-										WireConnection[] connections = t1.getWireHashMap().get(w1.getWire());
-										if(connections == null || visited.contains(new Node(t1,w1.getWire(),null,0))){
-											continue;
-										}
-										for (WireConnection wire2 : connections) {
-											if(setOfExternalPrimitivePins.contains(wire2.getWire())){
-												SinkPin found = wire2.getTile(t1).getSinks().get(wire2.getWire());
-												int xOffset = (tile.getColumn() - wire2.getTile(t1).getColumn());
-												int yOffset = (tile.getRow() - wire2.getTile(t1).getRow());
-												
-												if(found == null){
-													/*System.out.println("Null Sink: " + wire2.getTile(this, t1) + " " + we.getWireName(wire2.getWire()));
-													for(Integer sink : wire2.getTile(this, t1).getSinks().keySet()){
-														System.out.println("  " + we.getWireName(sink));
-													}
-													System.out.println("SOURCES: ");
-													for(Integer source : wire2.getTile(this, t1).getSources()){
-														System.out.println("  " + we.getWireName(source));
-													}*/
-													continue;
-												}
-												
-												found.switchMatrixSinkWire = currINTSinkWire;
-												found.switchMatrixTileOffset = (xOffset << 16) | (yOffset & 0xFFFF);
-
-												if(debug) System.out.println("  FOUND: " + wire2.getTile(t1) + " " + we.getWireName(wire2.getWire()) +" xOffset="+ xOffset + " yOffset=" + yOffset);
-												
-												if(debug) System.out.println("  SECOND: " + wire2.getTile(t1) + " " + we.getWireName(wire2.getWire()));
-												if(!visited.contains(new Node(t1,w1.getWire(),null,0))) {
-													tileStack.push(wire2.getTile(t1));
-													wireStack.push(wire2);													
-												}
-											}
-											else if(wire2.getTile(t1) != null && !switchMatrixTileTypes.contains(wire2.getTile(t1).getType())){
-												if(debug) System.out.println("  POTENTIAL: " + wire2.getTile(t1) + " " + we.getWireName(wire2.getWire()));
-												if(!visited.contains(new Node(t1,w1.getWire(),null,0))) {
-													tileStack.push(wire2.getTile(t1));
-													wireStack.push(wire2);													
-												}											
-											}
-										}
-										visited.add(new Node(t1,w1.getWire(),null,0));
-									}
-									tileStack.clear();
-									wireStack.clear();
-								}
-							}
-						}
+
+		// Apply the results in the order of the sequential search
+		for(int i=0; i < rows; i++){
+			for(int j=0; j < columns; j++){
+				SinkPinSearchResult result = results[i*columns + j];
+				if(result == null) continue;
+				for(Integer wire : tiles[i][j].getWireHashMap().keySet()){
+					int g = Arrays.binarySearch(result.sinkWires, wire);
+					if(g < 0) continue;
+					for(int k=result.groupStart[g]; k < result.groupStart[g+1]; k++){
+						result.pins[k].switchMatrixSinkWire = wire;
+						result.pins[k].switchMatrixTileOffset = result.offsets[k];
 					}
 				}
 			}
 		}
 	}
+
+	/**
+	 * The sink pins found from the INT_SINK wires of a switch matrix tile.
+	 * The pins found from sinkWires[g] are stored in
+	 * pins[groupStart[g]..groupStart[g+1]) in the order they were found.
+	 */
+	private static class SinkPinSearchResult {
+		int[] sinkWires;
+		int[] groupStart;
+		SinkPin[] pins;
+		int[] offsets;
+	}
+
+	/**
+	 * Searches a range of tiles (by row*columns + column) for the sink pins
+	 * reached from their INT_SINK wires.  Each leaf task has its own stacks
+	 * and visited table so the search does not create objects per node.
+	 */
+	private class SinkPinSearchTask extends RecursiveAction {
+		private static final long serialVersionUID = 4120592346218826117L;
+		/** Minimum number of tiles searched by a single task */
+		private static final int GRAIN = 256;
+		/** Maximum number of nodes popped in one search */
+		private static final int WATCH_DOG = 100;
+		/** Size of the visited table, must be a power of two larger than WATCH_DOG */
+		private static final int VISITED_SIZE = 256;
+		private int from;
+		private int to;
+		private SinkPinSearchResult[] results;
+		private boolean[] externalPrimitivePins;
+		private boolean[] intSinks;
+		private boolean[] switchMatrixTileTypes;
+
+		/** Search stacks of tile indices and wires */
+		private int[] tileStack;
+		private int[] wireStack;
+		private int stackSize;
+		/** Visited nodes as (tile index << 32 | wire), valid when stamp matches generation */
+		private long[] visitedNodes;
+		private int[] visitedStamps;
+		private int generation;
+		/** Pins found in the current tile */
+		private int[] sinkWires;
+		private int[] groupStart;
+		private int groupCount;
+		private SinkPin[] pins;
+		private int[] offsets;
+		private int pinCount;
+
+		public SinkPinSearchTask(int from, int to, SinkPinSearchResult[] results, 
+				boolean[] externalPrimitivePins, boolean[] intSinks, boolean[] switchMatrixTileTypes){
+			this.from = from;
+			this.to = to;
+			this.results = results;
+			this.externalPrimitivePins = externalPrimitivePins;
+			this.intSinks = intSinks;
+			this.switchMatrixTileTypes = switchMatrixTileTypes;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from > GRAIN){
+				int mid = (from + to) >>> 1;
+				invokeAll(new SinkPinSearchTask(from, mid, results, externalPrimitivePins, intSinks, switchMatrixTileTypes),
+						new SinkPinSearchTask(mid, to, results, externalPrimitivePins, intSinks, switchMatrixTileTypes));
+				return;
+			}
+			searchRange();
+		}
+
+		/**
+		 * Searches all tiles of the range of this task on the calling thread.
+		 */
+		void searchRange(){
+			tileStack = new int[64];
+			wireStack = new int[64];
+			visitedNodes = new long[VISITED_SIZE];
+			visitedStamps = new int[VISITED_SIZE];
+			sinkWires = new int[16];
+			groupStart = new int[17];
+			pins = new SinkPin[64];
+			offsets = new int[64];
+			for(int i=from; i < to; i++){
+				Tile tile = tiles[i / columns][i % columns];
+				if(tile.getType() == null || !switchMatrixTileTypes[tile.getType().ordinal()]) continue;
+				results[i] = searchTile(tile, i);
+			}
+		}
+
+		private SinkPinSearchResult searchTile(Tile tile, int tileIndex){
+			WireHashMap map = tile.getWireHashMap();
+			if(map == null) return null;
+			groupCount = 0;
+			pinCount = 0;
+			for(int key : map.keyArray()){
+				if(key < 0 || key >= intSinks.length || !intSinks[key]) continue;
+				if(groupCount == sinkWires.length){
+					sinkWires = Arrays.copyOf(sinkWires, groupCount*2);
+					groupStart = Arrays.copyOf(groupStart, groupCount*2 + 1);
+				}
+				sinkWires[groupCount++] = key;
+			}
+			if(groupCount == 0) return null;
+			Arrays.sort(sinkWires, 0, groupCount);
+			for(int g=0; g < groupCount; g++){
+				groupStart[g] = pinCount;
+				// There should only be one wire that leaves the tile, a search is
+				// repeated for each such wire as the sequential search did
+				for(WireConnection w : map.get(sinkWires[g])){
+					if(w.getColumnOffset() != 0 || w.getRowOffset() != 0){
+						search(tile, tileIndex, sinkWires[g]);
+					}
+				}
+			}
+			groupStart[groupCount] = pinCount;
+
+			SinkPinSearchResult result = new SinkPinSearchResult();
+			result.sinkWires = Arrays.copyOf(sinkWires, groupCount);
+			result.groupStart = Arrays.copyOf(groupStart, groupCount + 1);
+			result.pins = Arrays.copyOf(pins, pinCount);
+			result.offsets = Arrays.copyOf(offsets, pinCount);
+			return result;
+		}
+
+		private void search(Tile tile, int tileIndex, int sinkWire){
+			if(++generation == 0){
+				Arrays.fill(visitedStamps, 0);
+				generation = 1;
+			}
+			stackSize = 0;
+			push(tileIndex, sinkWire);
+			int watchDog = 0;
+			while(stackSize > 0 && watchDog < WATCH_DOG){
+				watchDog++;
+				stackSize--;
+				int t1Index = tileStack[stackSize];
+				int w1 = wireStack[stackSize];
+				Tile t1 = tiles[t1Index / columns][t1Index % columns];
+				WireHashMap map = t1.getWireHashMap();
+				WireConnection[] connections = map == null ? null : map.get(w1);
+				if(connections == null || !visit(t1Index, w1)){
+					continue;
+				}
+				for(WireConnection wire2 : connections){
+					Tile t2 = getTile(t1.getRow() - wire2.getRowOffset(), t1.getColumn() - wire2.getColumnOffset());
+					int w2 = wire2.getWire();
+					if(t2 == null) continue;
+					if(w2 >= 0 && w2 < externalPrimitivePins.length && externalPrimitivePins[w2]){
+						SinkPin found = t2.getSinkPin(w2);
+						if(found == null) continue;
+						int xOffset = (tile.getColumn() - t2.getColumn());
+						int yOffset = (tile.getRow() - t2.getRow());
+						addPin(found, (xOffset << 16) | (yOffset & 0xFFFF));
+						push(t2.getRow()*columns + t2.getColumn(), w2);
+					}
+					else if(t2.getType() == null || !switchMatrixTileTypes[t2.getType().ordinal()]){
+						push(t2.getRow()*columns + t2.getColumn(), w2);
+					}
+				}
+			}
+		}
+
+		private void push(int tileIndex, int wire){
+			if(stackSize == tileStack.length){
+				tileStack = Arrays.copyOf(tileStack, stackSize*2);
+				wireStack = Arrays.copyOf(wireStack, stackSize*2);
+			}
+			tileStack[stackSize] = tileIndex;
+			wireStack[stackSize] = wire;
+			stackSize++;
+		}
+
+		private void addPin(SinkPin pin, int offset){
+			if(pinCount == pins.length){
+				pins = Arrays.copyOf(pins, pinCount*2);
+				offsets = Arrays.copyOf(offsets, pinCount*2);
+			}
+			pins[pinCount] = pin;
+			offsets[pinCount] = offset;
+			pinCount++;
+		}
+
+		/**
+		 * Marks a node as visited in the current search.
+		 * @return False if the node was already visited.
+		 */
+		private boolean visit(int tileIndex, int wire){
+			long node = ((long)tileIndex << 32) | (wire & 0xFFFFFFFFL);
+			int slot = (int)(node ^ (node >>> 29)) * 0x9E3779B9 >>> 24;
+			while(visitedStamps[slot] == generation){
+				if(visitedNodes[slot] == node) return false;
+				slot = (slot + 1) & (VISITED_SIZE - 1);
+			}
+			visitedStamps[slot] = generation;
+			visitedNodes[slot] = node;
+			return true;
+		}
+	}
 	
 	//========================================================================//
 	// Object Compact Methods
@@ -854,10 +1515,249 @@ public class Device implements Serializable{
 		debugPrintUniquePoolCount(primitivePinPool, "PrimitivePinMap");
 	}
 	
-	private void debugPrintUniquePoolCount(@SuppressWarnings("rawtypes") HashPool p, String name){
-		System.out.printf("%10d : Unique %s\n",p.getEnumerations().size(),name);
+	private void debugPrintUniquePoolCount(@SuppressWarnings("rawtypes") InternPool p, String name){
+		System.out.printf("%10d : Unique %s\n",p.size(),name);
 	}
 	
+	//========================================================================//
+	// Cropping
+	//========================================================================//
+	/**
+	 * Creates a cropped copy of this device which only holds the tiles of a
+	 * rectangle and a ring of tiles around it, for tools which only work inside
+	 * one region (such as routing a reconfigurable region).  The tiles keep
+	 * their names, types, primitive sites, sinks and sources, and their wire
+	 * maps keep the connections which stay inside the cropped device.
+	 * Connections which leave it are removed from the wire maps and kept in the
+	 * exit maps of the tiles instead (see getExitConnections()).  Rows and
+	 * columns of the cropped device start at the first row and column of the
+	 * ring (see getCropFirstRow() and getCropFirstColumn()).  Wire maps,
+	 * connections and pin maps are shared with this device.  A cropped device
+	 * is saved with writeDeviceToMappedFile() and read back with
+	 * readDeviceFromMappedFile(), the compact device file does not keep the
+	 * crop region.
+	 * @param firstRow The first row of the region.
+	 * @param firstColumn The first column of the region.
+	 * @param lastRow The last row of the region (inclusive).
+	 * @param lastColumn The last column of the region (inclusive).
+	 * @param ring The number of tiles to keep on each side of the region.
+	 * @return The new cropped device.
+	 */
+	public Device crop(int firstRow, int firstColumn, int lastRow, int lastColumn, int ring){
+		if(firstRow < 0 || firstColumn < 0 || lastRow >= rows || lastColumn >= columns ||
+				firstRow > lastRow || firstColumn > lastColumn || ring < 0){
+			throw new IllegalArgumentException("Bad crop region: rows " + firstRow + "-" + lastRow +
+					", columns " + firstColumn + "-" + lastColumn + ", ring " + ring);
+		}
+		int r0 = Math.max(0, firstRow - ring);
+		int c0 = Math.max(0, firstColumn - ring);
+		int r1 = Math.min(rows - 1, lastRow + ring);
+		int c1 = Math.min(columns - 1, lastColumn + ring);
+
+		Device d = new Device();
+		d.partName = partName;
+		d.rows = r1 - r0 + 1;
+		d.columns = c1 - c0 + 1;
+		d.cropRegion = new int[]{getCropFirstRow() + r0, getCropFirstColumn() + c0, getUncroppedRows(), getUncroppedColumns()};
+		d.createTileArray();
+		d.tileMap = new HashMap<String,Tile>();
+		d.exitMaps = new WireHashMap[d.rows*d.columns];
+
+		InternPool<WireArray> arrays = new InternPool<WireArray>();
+		InternPool<TileWires> wireMaps = new InternPool<TileWires>();
+		InternPool<TileWires> exitPool = new InternPool<TileWires>();
+		for(int i=0; i < d.rows; i++){
+			for(int j=0; j < d.columns; j++){
+				Tile t = tiles[r0 + i][c0 + j];
+				Tile n = d.tiles[i][j];
+				n.setName(t.getName());
+				n.setType(t.getType());
+				n.setDevice(d);
+				n.setSinks(t.getSinks());
+				n.setSources(t.getSources());
+
+				// Split the connections into those that stay and those that leave
+				WireHashMap wires = t.getWireHashMap();
+				WireHashMap exits = new WireHashMap();
+				WireHashMap oldExits = getExitConnections(t);
+				if(oldExits != null){
+					for(Integer wire : oldExits.keySet()){
+						exits.put(wire, oldExits.get(wire));
+					}
+				}
+				if(wires != null && leavesRegion(t, wires, r0, c0, r1, c1)){
+					WireHashMap kept = new WireHashMap();
+					for(Integer wire : wires.keySet()){
+						WireConnection[] connections = wires.get(wire);
+						ArrayList<WireConnection> in = new ArrayList<WireConnection>(connections.length);
+						ArrayList<WireConnection> out = new ArrayList<WireConnection>();
+						WireConnection[] old = exits.get(wire);
+						if(old != null){
+							out.addAll(Arrays.asList(old));
+						}
+						for(WireConnection wc : connections){
+							int row = t.getRow() - wc.getRowOffset();
+							int column = t.getColumn() - wc.getColumnOffset();
+							if(row < r0 || row > r1 || column < c0 || column > c1){
+								out.add(wc);
+							}
+							else{
+								in.add(wc);
+							}
+						}
+						if(in.size() > 0){
+							kept.put(wire, in.size() == connections.length ? connections :
+								arrays.add(new WireArray(in.toArray(new WireConnection[in.size()]))).array);
+						}
+						if(out.size() > 0){
+							exits.put(wire, arrays.add(new WireArray(out.toArray(new WireConnection[out.size()]))).array);
+						}
+					}
+					wires = kept.size() == 0 ? null : wireMaps.add(new TileWires(kept)).wires;
+				}
+				n.setWireHashMap(wires);
+				if(exits.size() > 0){
+					d.exitMaps[i*d.columns + j] = exitPool.add(new TileWires(exits)).wires;
+				}
+
+				PrimitiveSite[] sites = t.getPrimitiveSites();
+				if(sites != null){
+					PrimitiveSite[] p = new PrimitiveSite[sites.length];
+					for(int k=0; k < sites.length; k++){
+						p[k] = new PrimitiveSite();
+						p[k].setName(sites[k].getName());
+						p[k].setType(sites[k].getType());
+						p[k].setTile(n);
+						p[k].setPins(sites[k].getPins());
+						d.primitiveSites.put(p[k].getName(), p[k]);
+					}
+					n.setPrimitiveSites(p);
+				}
+				d.tileMap.put(n.getName(), n);
+			}
+		}
+		for(WireConnection w : routeThroughMap.keySet()){
+			d.addRouteThrough(w, routeThroughMap.get(w));
+		}
+		return d;
+	}
+
+	/**
+	 * Checks if any connection of a wire map leads outside of a rectangle of tiles.
+	 */
+	private static boolean leavesRegion(Tile t, WireHashMap wires, int r0, int c0, int r1, int c1){
+		for(Integer wire : wires.keySet()){
+			for(WireConnection wc : wires.get(wire)){
+				int row = t.getRow() - wc.getRowOffset();
+				int column = t.getColumn() - wc.getColumnOffset();
+				if(row < r0 || row > r1 || column < c0 || column > c1){
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates a cropped copy of this device (see crop(int, int, int, int, int))
+	 * which holds the tiles of the primitive sites in an area group range.
+	 * @param range The range, the sites of its primitive type whose instance
+	 * coordinates are in the range give the region.
+	 * @param ring The number of tiles to keep on each side of the region.
+	 * @return The new cropped device.
+	 */
+	public Device crop(AreaGroupRange range, int ring){
+		int firstRow = rows;
+		int firstColumn = columns;
+		int lastRow = -1;
+		int lastColumn = -1;
+		// Site names use the range type (SLICE_X0Y0 for both SLICEL and SLICEM)
+		String prefix = range.getPrimitiveType().toString() + "_X";
+		for(PrimitiveSite p : primitiveSites.values()){
+			if(p.getType() != range.getPrimitiveType() && !p.getName().startsWith(prefix)) continue;
+			if(!range.containsPoint(p.getInstanceX(), p.getInstanceY())) continue;
+			Tile t = p.getTile();
+			firstRow = Math.min(firstRow, t.getRow());
+			firstColumn = Math.min(firstColumn, t.getColumn());
+			lastRow = Math.max(lastRow, t.getRow());
+			lastColumn = Math.max(lastColumn, t.getColumn());
+		}
+		if(lastRow == -1){
+			throw new IllegalArgumentException("No primitive sites in the range " + range);
+		}
+		return crop(firstRow, firstColumn, lastRow, lastColumn, ring);
+	}
+
+	/**
+	 * Checks if this device was created by crop().
+	 * @return True if this device only holds a region of the part.
+	 */
+	public boolean isCropped(){
+		return cropRegion != null;
+	}
+
+	/**
+	 * Gets the row of the full device that is row 0 of this device.
+	 * @return The first row of a cropped device, 0 otherwise.
+	 */
+	public int getCropFirstRow(){
+		return cropRegion == null ? 0 : cropRegion[0];
+	}
+
+	/**
+	 * Gets the column of the full device that is column 0 of this device.
+	 * @return The first column of a cropped device, 0 otherwise.
+	 */
+	public int getCropFirstColumn(){
+		return cropRegion == null ? 0 : cropRegion[1];
+	}
+
+	/**
+	 * Gets the number of rows of tiles in the full device.
+	 * @return The rows of the device this device was cropped from.
+	 */
+	public int getUncroppedRows(){
+		return cropRegion == null ? rows : cropRegion[2];
+	}
+
+	/**
+	 * Gets the number of columns of tiles in the full device.
+	 * @return The columns of the device this device was cropped from.
+	 */
+	public int getUncroppedColumns(){
+		return cropRegion == null ? columns : cropRegion[3];
+	}
+
+	/**
+	 * Gets the connections of a tile of a cropped device which leave the
+	 * device.  They are not in the wire map of the tile, their getTile()
+	 * returns null.
+	 * @param t The tile.
+	 * @return The leaving connections by source wire (shared, must not be
+	 * modified), or null if none leave the tile or the device is not cropped.
+	 */
+	public WireHashMap getExitConnections(Tile t){
+		if(cropRegion == null) return null;
+		int index = t.getRow()*columns + t.getColumn();
+		MappedDeviceFile file = mappedFile;
+		if(file != null && file.isCropped()){
+			return file.getExitMap(index);
+		}
+		return exitMaps[index];
+	}
+
+	/**
+	 * Gets the connections of a wire of a cropped device which leave the
+	 * device, see getExitConnections(Tile).
+	 * @param t The tile.
+	 * @param wire The wire in the tile.
+	 * @return The leaving connections, or null if there are none.
+	 */
+	public WireConnection[] getExitConnections(Tile t, int wire){
+		WireHashMap map = getExitConnections(t);
+		return map == null ? null : map.get(wire);
+	}
+
 	//========================================================================//
 	// Reading Writing Methods from/to Compact File
 	//========================================================================//
@@ -919,7 +1819,7 @@ public class Device implements Serializable{
 			//=======================================================//
 			/* - wirePool -                                          */
 			//=======================================================//
-			hos.writeInt(wirePool.getEnumerations().size());
+			hos.writeInt(wirePool.size());
 			for(WireConnection w : wirePool.getEnumerations()){
 				int mask = w.isPIP() ? 0x80000000 : 0x0;
 				hos.writeInt(mask | (w.getWire()));				
@@ -930,7 +1830,7 @@ public class Device implements Serializable{
 			//=======================================================//
 			/* - wireArrayPool -                                     */
 			//=======================================================//
-			hos.writeInt(wireArrayPool.getEnumerations().size());
+			hos.writeInt(wireArrayPool.size());
 			for(WireArray wireArray : wireArrayPool.getEnumerations()){
 				hos.writeInt(wireArray.array.length);
 				/*if(wireArray.array.length > 128){
@@ -946,7 +1846,7 @@ public class Device implements Serializable{
 			//=======================================================//
 			/* - wireConnectionPool -                                */
 			//=======================================================//
-			hos.writeInt(wireConnectionPool.getEnumerations().size());
+			hos.writeInt(wireConnectionPool.size());
 			for(WireArrayConnection wc : wireConnectionPool.getEnumerations()){
 				hos.writeInt(wc.wire);
 				hos.writeInt(wc.wireArrayEnum);
@@ -956,10 +1856,10 @@ public class Device implements Serializable{
 			//=======================================================//
 			/* - tileSinksPool -                                     */
 			//=======================================================//
-			hos.writeInt(tileSinksPool.getEnumerations().size());
+			hos.writeInt(tileSinksPool.size());
 			for(TileSinks s : tileSinksPool.getEnumerations()){
 				hos.writeInt(s.sinks.size());
-				for(Integer key: s.sinks.keySet()) {
+				for(int key : s.sinks.keyArray()) {
 					SinkPin sp = s.sinks.get(key);
 					hos.writeInt(key);
 					hos.writeInt(sp.switchMatrixSinkWire);
@@ -971,7 +1871,7 @@ public class Device implements Serializable{
 			//=======================================================//
 			/* - tileSourcesPool -                                   */
 			//=======================================================//
-			hos.writeInt(tileSourcesPool.getEnumerations().size());
+			hos.writeInt(tileSourcesPool.size());
 			for(TileSources s : tileSourcesPool.getEnumerations()){
 				FileTools.writeIntArray(hos, s.sources);
 			}
@@ -980,7 +1880,7 @@ public class Device implements Serializable{
 			//=======================================================//
 			/* - tileWiresPool -                                     */
 			//=======================================================//
-			hos.writeInt(tileWiresPool.getEnumerations().size());
+			hos.writeInt(tileWiresPool.size());
 			for(TileWires tw : tileWiresPool.getEnumerations()){
 				FileTools.writeWireHashMap(hos, tw.wires, wireArrayPool, wireConnectionPool);
 			}
@@ -1031,7 +1931,7 @@ public class Device implements Serializable{
 			//=======================================================//
 			/* - primitivePinPool -                                  */
 			//=======================================================//
-			hos.writeInt(primitivePinPool.getEnumerations().size());
+			hos.writeInt(primitivePinPool.size());
 			for(PrimitivePinMap map : primitivePinPool.getEnumerations()){
 				FileTools.writeHashMap(hos, map.pins);
 			}
@@ -1154,12 +2054,12 @@ public class Device implements Serializable{
 			/* - tileSinksPool -                                     */
 			//=======================================================//
 			size = his.readInt();
-			ArrayList<HashMap<Integer,SinkPin>> sinks = new ArrayList<HashMap<Integer,SinkPin>>();
+			ArrayList<SinkPinHashMap> sinks = new ArrayList<SinkPinHashMap>();
 			for(int i=0; i < size; i++){
 				int length = his.readInt();
-				HashMap<Integer,SinkPin> tmp = new HashMap<Integer,SinkPin>();
+				SinkPinHashMap tmp = new SinkPinHashMap((int)(length / 0.75f) + 1);
 				for(int j = 0; j < length; j++){
-					tmp.put(allInts[his.readInt()], new SinkPin(his.readInt(),his.readInt()));
+					tmp.put(his.readInt(), new SinkPin(his.readInt(),his.readInt()));
 				}
 				sinks.add(tmp);
 			}
@@ -1263,7 +2163,7 @@ public class Device implements Serializable{
 			size = his.readInt();
 			for(int i=0; i < size; i++){
 				PIPRouteThrough prt = new PIPRouteThrough(typeValues2[his.readInt()],his.readInt(),his.readInt());
-				routeThroughMap.put(wires[his.readInt()], prt);
+				addRouteThrough(wires[his.readInt()], prt);
 			}
 
 			//=======================================================//
@@ -1282,7 +2182,676 @@ public class Device implements Serializable{
 		
 		return true;
 	}
-	
+
+	//========================================================================//
+	// Reading Writing Methods from/to Mapped File
+	//========================================================================//
+	/**
+	 * Gets the enumeration of obj in pool, adding it to the pool if necessary.
+	 */
+	private static <E> int enumerate(InternPool<E> pool, E obj){
+		return pool.intern(obj);
+	}
+
+	/**
+	 * Creates a table of (wire, wire array index) pairs sorted by wire for each
+	 * wire map in a pool, adding the wire arrays to their pool.
+	 */
+	private static int[] createWireMapSection(InternPool<TileWires> wireMaps, InternPool<WireArray> wireArrays){
+		int[][] entries = new int[wireMaps.size()][];
+		for(int j=0; j < entries.length; j++){
+			WireHashMap map = wireMaps.get(j).wires;
+			Integer[] keys = map.keySet().toArray(new Integer[map.size()]);
+			Arrays.sort(keys);
+			entries[j] = new int[keys.length*2];
+			for(int k=0; k < keys.length; k++){
+				entries[j][2*k] = keys[k];
+				entries[j][2*k+1] = enumerate(wireArrays, new WireArray(map.get(keys[k])));
+			}
+		}
+		return MappedDeviceFile.createTableSection(entries);
+	}
+
+	/**
+	 * Gets the index of s in the string table, adding it if necessary.
+	 */
+	private static int enumerateString(String s, ArrayList<String> strings, HashMap<String,Integer> stringIndex){
+		Integer i = stringIndex.get(s);
+		if(i == null){
+			i = strings.size();
+			strings.add(s);
+			stringIndex.put(s, i);
+		}
+		return i;
+	}
+
+	/**
+	 * This function writes the device to a file which can be opened with a memory
+	 * mapping (see MappedDeviceFile).  It builds its own object pools, so it can be
+	 * called on a device loaded from either file format.  The file can only be read
+	 * by using the corresponding function readDeviceFromMappedFile().  The fan-in
+	 * of the tiles (see getFanIn()) is included, as well as the crop region and
+	 * exit connections of a cropped device (see crop()).
+	 * @param fileName Name of the mapped device file to create.
+	 * @return True if operation is successful, false otherwise.
+	 */
+	public boolean writeDeviceToMappedFile(String fileName){
+		return writeDeviceToMappedFile(fileName, true);
+	}
+
+	/**
+	 * This function writes the device to a file which can be opened with a memory
+	 * mapping, see writeDeviceToMappedFile(String).
+	 * @param fileName Name of the mapped device file to create.
+	 * @param includeFanIn True to store the fan-in of the tiles in the file
+	 * (always stored for a cropped device).
+	 * @return True if operation is successful, false otherwise.
+	 */
+	public boolean writeDeviceToMappedFile(String fileName, boolean includeFanIn){
+		return writeDeviceToMappedFile(fileName, includeFanIn, null);
+	}
+
+	/**
+	 * This function writes the device to a file which can be opened with a memory
+	 * mapping, keeping the pools (wires, wire arrays, tile wire maps, sinks,
+	 * sources and primitive pin maps) in a family template file shared by all
+	 * parts of the family (see MappedDeviceFile).  The template is created if it
+	 * does not exist and the entries this device needs are appended to it, so
+	 * the files of other parts which use it stay valid.  Reading the file
+	 * requires the template (see DeviceRegistry.getFamilyTemplate()).
+	 * @param fileName Name of the mapped device file to create.
+	 * @param includeFanIn True to store the fan-in of the tiles in the file
+	 * (always stored for a cropped device).
+	 * @param templateFileName Name of the family template file, or null to
+	 * keep the pools in the device file.
+	 * @return True if operation is successful, false otherwise.
+	 */
+	public boolean writeDeviceToMappedFile(String fileName, boolean includeFanIn, String templateFileName){
+		if(templateFileName == null){
+			return writeMappedFile(fileName, includeFanIn, null, null);
+		}
+		String key = new File(templateFileName).getAbsolutePath();
+		templateLocks.putIfAbsent(key, new Object());
+		synchronized(templateLocks.get(key)){
+			MappedDeviceFile template = null;
+			if(new File(templateFileName).exists()){
+				try{
+					template = new MappedDeviceFile(templateFileName);
+				}
+				catch(IOException e){
+					template = null;
+				}
+				if(template == null || !template.isTemplate() ||
+						!template.getString(MappedDeviceFile.VERSION_STRING).equals(deviceFileVersion)){
+					MessageGenerator.briefError("Warning: replacing the incompatible family template " + templateFileName);
+					template = null;
+				}
+			}
+			return writeMappedFile(fileName, includeFanIn, templateFileName, template);
+		}
+	}
+
+	/**
+	 * Writes the mapped device file, see writeDeviceToMappedFile().
+	 * @param template The existing family template (null if there is none or
+	 * templateFileName is null).
+	 */
+	private boolean writeMappedFile(String fileName, boolean includeFanIn, String templateFileName, MappedDeviceFile template){
+		// The crop sections follow the fan-in sections
+		includeFanIn |= cropRegion != null;
+		ArrayList<String> strings = new ArrayList<String>();
+		HashMap<String,Integer> stringIndex = new HashMap<String,Integer>();
+		enumerateString(deviceFileVersion, strings, stringIndex);
+		enumerateString(partName, strings, stringIndex);
+
+		InternPool<WireConnection> wires = new InternPool<WireConnection>();
+		InternPool<WireArray> wireArrays = new InternPool<WireArray>();
+		InternPool<TileSinks> sinks = new InternPool<TileSinks>();
+		InternPool<TileSources> sources = new InternPool<TileSources>();
+		InternPool<TileWires> wireMaps = new InternPool<TileWires>();
+		InternPool<PrimitivePinMap> pinMaps = new InternPool<PrimitivePinMap>();
+
+		// The pools and the pin names of a template have their own string table,
+		// an existing template keeps all of its entries at the same index
+		ArrayList<String> poolStrings = strings;
+		HashMap<String,Integer> poolStringIndex = stringIndex;
+		ArrayList<int[]> templateRouteThroughs = new ArrayList<int[]>();
+		int[] templateSizes = new int[MappedDeviceFile.TEMPLATE_POOLS.length + 2];
+		if(templateFileName != null){
+			poolStrings = new ArrayList<String>();
+			poolStringIndex = new HashMap<String,Integer>();
+			enumerateString(deviceFileVersion, poolStrings, poolStringIndex);
+			enumerateString(getFamilyType().toString(), poolStrings, poolStringIndex);
+		}
+		if(template != null){
+			for(int j=0; j < template.getCount(MappedDeviceFile.STRINGS); j++){
+				enumerateString(template.getString(j), poolStrings, poolStringIndex);
+			}
+			for(int j=0; j < template.getCount(MappedDeviceFile.WIRES); j++){
+				enumerate(wires, template.getWire(j));
+			}
+			for(int j=0; j < template.getCount(MappedDeviceFile.WIRE_ARRAYS); j++){
+				enumerate(wireArrays, new WireArray(template.getWireArray(j)));
+			}
+			for(int j=0; j < template.getCount(MappedDeviceFile.TILE_SINKS); j++){
+				enumerate(sinks, new TileSinks(template.getSinks(j)));
+			}
+			for(int j=0; j < template.getCount(MappedDeviceFile.TILE_SOURCES); j++){
+				enumerate(sources, new TileSources(template.getSources(j)));
+			}
+			for(int j=0; j < template.getCount(MappedDeviceFile.TILE_WIRES); j++){
+				enumerate(wireMaps, new TileWires(template.createWireHashMap(j)));
+			}
+			for(int j=0; j < template.getCount(MappedDeviceFile.PRIMITIVE_PINS); j++){
+				enumerate(pinMaps, new PrimitivePinMap(template.getPrimitivePinMap(j)));
+			}
+			for(int j=0; j < template.getCount(MappedDeviceFile.ROUTE_THROUGHS); j++){
+				int r = template.getRecordStart(MappedDeviceFile.ROUTE_THROUGHS, j, MappedDeviceFile.ROUTE_THROUGH_RECORD_SIZE);
+				int[] record = new int[MappedDeviceFile.ROUTE_THROUGH_RECORD_SIZE];
+				for(int k=0; k < record.length; k++){
+					record[k] = template.getInt(r + k);
+				}
+				templateRouteThroughs.add(record);
+			}
+			templateSizes[0] = poolStrings.size();
+			templateSizes[1] = templateRouteThroughs.size();
+			for(int j=0; j < MappedDeviceFile.TEMPLATE_POOLS.length; j++){
+				templateSizes[j+2] = template.getCount(MappedDeviceFile.TEMPLATE_POOLS[j]);
+			}
+		}
+
+		//=======================================================//
+		/* public Tile[][] tiles;                                */
+		/* public HashMap<String,Primitive> primitives;          */
+		//=======================================================//
+		int[] tileSection = new int[1 + rows*columns*MappedDeviceFile.TILE_RECORD_SIZE];
+		tileSection[0] = rows*columns;
+		ArrayList<Integer> siteRecords = new ArrayList<Integer>();
+		int i = 1;
+		int index = 0;
+		int siteCount = 0;
+		for(Tile[] tileArray : tiles){
+			for(Tile t : tileArray){
+				tileSection[i++] = enumerateString(t.getName(), strings, stringIndex);
+				tileSection[i++] = t.getType().ordinal();
+				tileSection[i++] = t.getSinks() == null ? -1 : enumerate(sinks, new TileSinks(t.getSinks()));
+				tileSection[i++] = t.getSources() == null || t.getSources().length == 0 ? -1 : enumerate(sources, new TileSources(t.getSources()));
+				tileSection[i++] = t.getWireHashMap() == null ? -1 : enumerate(wireMaps, new TileWires(t.getWireHashMap()));
+				tileSection[i++] = siteCount;
+				PrimitiveSite[] tileSites = t.getPrimitiveSites();
+				tileSection[i++] = tileSites == null ? 0 : tileSites.length;
+				if(tileSites != null){
+					for(PrimitiveSite p : tileSites){
+						siteRecords.add(enumerateString(p.getName(), strings, stringIndex));
+						siteRecords.add(p.getType().ordinal());
+						siteRecords.add(index);
+						siteRecords.add(enumerate(pinMaps, new PrimitivePinMap(p.getPins())));
+						siteCount++;
+					}
+				}
+				index++;
+			}
+		}
+		int[] siteSection = new int[1 + siteRecords.size()];
+		siteSection[0] = siteCount;
+		for(int j=0; j < siteRecords.size(); j++){
+			siteSection[j+1] = siteRecords.get(j);
+		}
+
+		//=======================================================//
+		/* - tileWiresPool -                                     */
+		//=======================================================//
+		int[] tileWiresSection = createWireMapSection(wireMaps, wireArrays);
+
+		//=======================================================//
+		/* - fan-in (optional, see getFanIn())                   */
+		//=======================================================//
+		int[] fanInWiresSection = null;
+		int[] fanInTilesSection = null;
+		if(includeFanIn){
+			InternPool<TileWires> fanInMaps = new InternPool<TileWires>();
+			fanInTilesSection = new int[1 + rows*columns];
+			fanInTilesSection[0] = rows*columns;
+			for(int j=0; j < rows*columns; j++){
+				WireHashMap map = getFanIn(getTile(j));
+				fanInTilesSection[j+1] = map == null ? -1 : enumerate(fanInMaps, new TileWires(map));
+			}
+			fanInWiresSection = createWireMapSection(fanInMaps, wireArrays);
+		}
+
+		//=======================================================//
+		/* - crop region and exits (cropped devices only)        */
+		//=======================================================//
+		int[] cropRegionSection = null;
+		int[] exitWiresSection = null;
+		int[] exitTilesSection = null;
+		if(cropRegion != null){
+			cropRegionSection = new int[1 + MappedDeviceFile.CROP_RECORD_SIZE];
+			cropRegionSection[0] = 1;
+			System.arraycopy(cropRegion, 0, cropRegionSection, 1, MappedDeviceFile.CROP_RECORD_SIZE);
+			InternPool<TileWires> exitPool = new InternPool<TileWires>();
+			exitTilesSection = new int[1 + rows*columns];
+			exitTilesSection[0] = rows*columns;
+			for(int j=0; j < rows*columns; j++){
+				WireHashMap map = getExitConnections(getTile(j));
+				exitTilesSection[j+1] = map == null ? -1 : enumerate(exitPool, new TileWires(map));
+			}
+			exitWiresSection = createWireMapSection(exitPool, wireArrays);
+		}
+
+		//=======================================================//
+		/* - tileSinksPool -                                     */
+		//=======================================================//
+		int[][] entries = new int[sinks.size()][];
+		for(int j=0; j < entries.length; j++){
+			SinkPinHashMap map = sinks.get(j).sinks;
+			int[] keys = map.keyArray();
+			Arrays.sort(keys);
+			entries[j] = new int[keys.length*3];
+			for(int k=0; k < keys.length; k++){
+				SinkPin sp = map.get(keys[k]);
+				entries[j][3*k] = keys[k];
+				entries[j][3*k+1] = sp.switchMatrixSinkWire;
+				entries[j][3*k+2] = sp.switchMatrixTileOffset;
+			}
+		}
+		int[] tileSinksSection = MappedDeviceFile.createTableSection(entries);
+
+		//=======================================================//
+		/* - tileSourcesPool -                                   */
+		//=======================================================//
+		entries = new int[sources.size()][];
+		for(int j=0; j < entries.length; j++){
+			entries[j] = sources.get(j).sources;
+		}
+		int[] tileSourcesSection = MappedDeviceFile.createTableSection(entries);
+
+		//=======================================================//
+		/* - primitivePinPool -                                  */
+		//=======================================================//
+		entries = new int[pinMaps.size()][];
+		for(int j=0; j < entries.length; j++){
+			HashMap<String,Integer> map = pinMaps.get(j).pins;
+			String[] keys = map.keySet().toArray(new String[map.size()]);
+			Arrays.sort(keys);
+			entries[j] = new int[keys.length*2];
+			for(int k=0; k < keys.length; k++){
+				entries[j][2*k] = enumerateString(keys[k], poolStrings, poolStringIndex);
+				entries[j][2*k+1] = map.get(keys[k]);
+			}
+		}
+		int[] primitivePinSection = MappedDeviceFile.createTableSection(entries);
+
+		//=======================================================//
+		/* - wireArrayPool -                                     */
+		//=======================================================//
+		entries = new int[wireArrays.size()][];
+		for(int j=0; j < entries.length; j++){
+			WireConnection[] array = wireArrays.get(j).array;
+			entries[j] = new int[array.length];
+			for(int k=0; k < array.length; k++){
+				entries[j][k] = enumerate(wires, array[k]);
+			}
+		}
+		int[] wireArraySection = MappedDeviceFile.createTableSection(entries);
+
+		//=======================================================//
+		/* public HashMap<Wire,PIPRouteThrough> routeThroughMap; */
+		//=======================================================//
+		int[] routeThroughSection = new int[1 + routeThroughMap.size()*MappedDeviceFile.ROUTE_THROUGH_RECORD_SIZE];
+		routeThroughSection[0] = routeThroughMap.size();
+		i = 1;
+		for(WireConnection w : routeThroughMap.keySet()){
+			PIPRouteThrough p = routeThroughMap.get(w);
+			routeThroughSection[i++] = p.getType().ordinal();
+			routeThroughSection[i++] = p.getInWire();
+			routeThroughSection[i++] = p.getOutWire();
+			routeThroughSection[i++] = enumerate(wires, w);
+		}
+
+		//=======================================================//
+		/* - wirePool -                                          */
+		//=======================================================//
+		int[] wireSection = new int[1 + wires.size()*2];
+		wireSection[0] = wires.size();
+		i = 1;
+		for(WireConnection w : wires.getEnumerations()){
+			int mask = w.isPIP() ? 0x80000000 : 0x0;
+			wireSection[i++] = mask | (w.getWire());
+			wireSection[i++] = (w.getRowOffset() << 16) | (w.getColumnOffset() & 0xFFFF);
+		}
+
+		int sectionCount = MappedDeviceFile.FAN_IN_WIRES;
+		if(templateFileName != null){
+			sectionCount = MappedDeviceFile.SECTION_COUNT;
+		}
+		else if(cropRegion != null){
+			sectionCount = MappedDeviceFile.TEMPLATE;
+		}
+		else if(includeFanIn){
+			sectionCount = MappedDeviceFile.CROP_REGION;
+		}
+		int[][] sections = new int[sectionCount][];
+		sections[MappedDeviceFile.STRINGS] = MappedDeviceFile.createStringSection(strings.toArray(new String[strings.size()]));
+		sections[MappedDeviceFile.WIRES] = wireSection;
+		sections[MappedDeviceFile.WIRE_ARRAYS] = wireArraySection;
+		sections[MappedDeviceFile.TILE_SINKS] = tileSinksSection;
+		sections[MappedDeviceFile.TILE_SOURCES] = tileSourcesSection;
+		sections[MappedDeviceFile.TILE_WIRES] = tileWiresSection;
+		sections[MappedDeviceFile.TILES] = tileSection;
+		sections[MappedDeviceFile.PRIMITIVE_PINS] = primitivePinSection;
+		sections[MappedDeviceFile.PRIMITIVE_SITES] = siteSection;
+		sections[MappedDeviceFile.ROUTE_THROUGHS] = routeThroughSection;
+		if(includeFanIn){
+			sections[MappedDeviceFile.FAN_IN_WIRES] = fanInWiresSection;
+			sections[MappedDeviceFile.FAN_IN_TILES] = fanInTilesSection;
+		}
+		if(cropRegion != null){
+			sections[MappedDeviceFile.CROP_REGION] = cropRegionSection;
+			sections[MappedDeviceFile.CROP_EXIT_WIRES] = exitWiresSection;
+			sections[MappedDeviceFile.CROP_EXIT_TILES] = exitTilesSection;
+		}
+		try{
+			if(templateFileName != null){
+				// Move the pools to the template, an existing template is only
+				// rewritten when this device added entries to it
+				boolean[] isRouteThrough = new boolean[wires.size()];
+				for(int[] record : templateRouteThroughs){
+					isRouteThrough[record[3]] = true;
+				}
+				for(WireConnection w : routeThroughMap.keySet()){
+					int wire = wires.indexOf(w);
+					if(!isRouteThrough[wire]){
+						isRouteThrough[wire] = true;
+						PIPRouteThrough p = routeThroughMap.get(w);
+						templateRouteThroughs.add(new int[]{p.getType().ordinal(), p.getInWire(), p.getOutWire(), wire});
+					}
+				}
+				long id = template == null ? new Random().nextLong() : template.getTemplateId();
+				int[] templateSection = new int[1 + MappedDeviceFile.TEMPLATE_RECORD_SIZE];
+				templateSection[0] = 1;
+				templateSection[1] = (int)(id >>> 32);
+				templateSection[2] = (int)id;
+				boolean grown = template == null || poolStrings.size() > templateSizes[0] ||
+						templateRouteThroughs.size() > templateSizes[1];
+				int[][] templateSections = new int[MappedDeviceFile.SECTION_COUNT][];
+				for(int j=0; j < MappedDeviceFile.TEMPLATE_POOLS.length; j++){
+					int pool = MappedDeviceFile.TEMPLATE_POOLS[j];
+					templateSection[3+j] = sections[pool][0];
+					grown |= sections[pool][0] > templateSizes[j+2];
+					templateSections[pool] = sections[pool];
+					sections[pool] = pool == MappedDeviceFile.WIRES ? new int[]{0} : MappedDeviceFile.createTableSection(new int[0][]);
+				}
+				if(grown){
+					int[] templateRouteThroughSection = new int[1 + templateRouteThroughs.size()*MappedDeviceFile.ROUTE_THROUGH_RECORD_SIZE];
+					templateRouteThroughSection[0] = templateRouteThroughs.size();
+					for(int j=0; j < templateRouteThroughs.size(); j++){
+						System.arraycopy(templateRouteThroughs.get(j), 0, templateRouteThroughSection,
+								1 + j*MappedDeviceFile.ROUTE_THROUGH_RECORD_SIZE, MappedDeviceFile.ROUTE_THROUGH_RECORD_SIZE);
+					}
+					templateSections[MappedDeviceFile.STRINGS] = MappedDeviceFile.createStringSection(poolStrings.toArray(new String[poolStrings.size()]));
+					templateSections[MappedDeviceFile.ROUTE_THROUGHS] = templateRouteThroughSection;
+					templateSections[MappedDeviceFile.TEMPLATE] = templateSection;
+					for(int j=0; j < templateSections.length; j++){
+						if(templateSections[j] == null){
+							templateSections[j] = new int[]{0};
+						}
+					}
+					MappedDeviceFile.write(templateFileName, 0, 0, templateSections);
+				}
+				sections[MappedDeviceFile.TEMPLATE] = templateSection;
+				for(int j=0; j < sections.length; j++){
+					if(sections[j] == null){
+						sections[j] = new int[]{0};
+					}
+				}
+			}
+			MappedDeviceFile.write(fileName, rows, columns, sections);
+		}
+		catch(IOException e){
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * This maps a device file created with writeDeviceToMappedFile() into memory and
+	 * populates this device from it.  The tiles, primitive sites and route throughs
+	 * are created, but wire maps are read directly from the mapping and the pooled
+	 * wire arrays, sinks and sources are only decoded when first used.  If lazy
+	 * loading is enabled (see setLazyLoading()), the tile sinks, sources and wires
+	 * are not set until the tile is first accessed.
+	 * @param fileName The name of the mapped device file.
+	 * @return True if operation was successful, false otherwise (including when the
+	 * file was created by an incompatible version of the tools).
+	 */
+	public boolean readDeviceFromMappedFile(String fileName){
+		return readDeviceFromMappedFile(fileName, null);
+	}
+
+	/**
+	 * This maps a device file created with writeDeviceToMappedFile() into memory and
+	 * populates this device from it.  If a pool of threads is given, every section
+	 * of the file is decoded in parallel (see MappedDeviceFile.decodeAll()) and
+	 * joined before the tiles are assembled, otherwise pool entries are decoded on
+	 * first use.  The pool is not used when lazy loading is enabled.
+	 * @param fileName The name of the mapped device file.
+	 * @param pool The threads to decode the file with, or null to decode on demand.
+	 * @return True if operation was successful, false otherwise (including when the
+	 * file was created by an incompatible version of the tools).
+	 */
+	public boolean readDeviceFromMappedFile(String fileName, ForkJoinPool pool){
+		MappedDeviceFile file;
+		try{
+			file = new MappedDeviceFile(fileName);
+		}
+		catch(IOException e){
+			return false;
+		}
+
+		String check = file.getString(MappedDeviceFile.VERSION_STRING);
+		if(!check.equals(deviceFileVersion)){
+			MessageGenerator.briefError("Warning, the mapped device file " + fileName +
+				" has version " + check + ", current RAPIDSMITH device file version: " +
+				deviceFileVersion + ".  It will be ignored.");
+			return false;
+		}
+		partName = file.getString(MappedDeviceFile.PART_NAME_STRING);
+		if(file.usesTemplate()){
+			MappedDeviceFile template = DeviceRegistry.getInstance().getFamilyTemplate(getFamilyType());
+			if(template == null || !file.setTemplate(template)){
+				MessageGenerator.briefError("Warning, the mapped device file " + fileName +
+					" needs a family template which is missing or out of date.  It will be ignored.");
+				return false;
+			}
+		}
+		mappedFile = file;
+		cropRegion = file.isCropped() ? file.getCropRegion() : null;
+		if(lazyLoading){
+			hydratedTiles = new ArrayDeque<Tile>();
+			hydratedWireMaps = createWireMapReferences(file.getPoolCount(MappedDeviceFile.TILE_WIRES));
+		}
+		else if(pool != null){
+			file.decodeAll(pool);
+		}
+		rows = file.getRows();
+		columns = file.getColumns();
+
+		createTileArray();
+		tileMap = new HashMap<String, Tile>();
+		TileType[] typeValues = TileType.values();
+		PrimitiveType[] typeValues2 = PrimitiveType.values();
+		int index = 0;
+		for(Tile[] tileArray : tiles){
+			for(Tile t : tileArray){
+				int r = file.getRecordStart(MappedDeviceFile.TILES, index, MappedDeviceFile.TILE_RECORD_SIZE);
+				t.setName(file.getString(file.getInt(r)));
+				t.setType(typeValues[file.getInt(r+1)]);
+				t.setDevice(this);
+				if(lazyLoading){
+					t.dehydrate();
+				}
+				else{
+					t.setSinks(file.getSinks(file.getInt(r+2)));
+					t.setSources(file.getSources(file.getInt(r+3)));
+					t.setWireHashMap(file.getWireHashMap(file.getInt(r+4)));
+				}
+
+				int firstSite = file.getInt(r+5);
+				int siteCount = file.getInt(r+6);
+				if(siteCount == 0){
+					t.setPrimitiveSites(null);
+				}
+				else{
+					PrimitiveSite[] p = new PrimitiveSite[siteCount];
+					for(int i = 0; i < siteCount; i++){
+						int s = file.getRecordStart(MappedDeviceFile.PRIMITIVE_SITES, firstSite+i, MappedDeviceFile.SITE_RECORD_SIZE);
+						p[i] = new PrimitiveSite();
+						p[i].setName(file.getString(file.getInt(s)));
+						p[i].setType(typeValues2[file.getInt(s+1)]);
+						p[i].setTile(t);
+						p[i].setPins(file.getPrimitivePinMap(file.getInt(s+3)));
+						primitiveSites.put(p[i].getName(), p[i]);
+					}
+					t.setPrimitiveSites(p);
+				}
+
+				tileMap.put(t.getName(), t);
+				index++;
+			}
+		}
+
+		int size = file.getCount(MappedDeviceFile.ROUTE_THROUGHS);
+		for(int i=0; i < size; i++){
+			int r = file.getRecordStart(MappedDeviceFile.ROUTE_THROUGHS, i, MappedDeviceFile.ROUTE_THROUGH_RECORD_SIZE);
+			PIPRouteThrough prt = new PIPRouteThrough(typeValues2[file.getInt(r)],file.getInt(r+1),file.getInt(r+2));
+			addRouteThrough(file.getWire(file.getInt(r+3)), prt);
+		}
+		return true;
+	}
+
+	/**
+	 * Creates the array of soft references to the wire maps of lazily loaded tiles.
+	 * @param size The number of entries of the tile wires pool.
+	 * @return A new array of empty references.
+	 */
+	@SuppressWarnings("unchecked")
+	private static SoftReference<WireHashMap>[] createWireMapReferences(int size){
+		return (SoftReference<WireHashMap>[]) new SoftReference<?>[size];
+	}
+
+	/**
+	 * Enables or disables lazy loading of tile resources.  When enabled,
+	 * readDeviceFromMappedFile() leaves the sinks, sources and wires of each tile
+	 * unloaded and they are loaded the first time the tile is queried, so the time
+	 * and memory needed by tools that only use part of the device scales with the
+	 * area used.  Must be set before the device is read and has no effect on
+	 * devices read from the compact file.
+	 * @param lazyLoading True to load tile resources on first access.
+	 */
+	public void setLazyLoading(boolean lazyLoading){
+		this.lazyLoading = lazyLoading;
+	}
+
+	/**
+	 * Checks if tile resources are loaded on first access.
+	 * @return True if lazy loading is enabled, false otherwise.
+	 */
+	public boolean isLazyLoading(){
+		return lazyLoading;
+	}
+
+	/**
+	 * Sets the maximum number of lazily loaded tiles which keep their resources
+	 * loaded.  When the limit is exceeded, tiles which have not been accessed
+	 * recently are released and will be loaded again on their next access.
+	 * Tiles whose resources were changed are never released.
+	 * @param limit The maximum number of loaded tiles, 0 for no limit.
+	 */
+	public synchronized void setHydratedTileLimit(int limit){
+		this.hydratedTileLimit = limit;
+		evictHydratedTiles(null);
+	}
+
+	/**
+	 * Gets the maximum number of lazily loaded tiles which keep their resources
+	 * loaded.
+	 * @return The limit, 0 for no limit.
+	 */
+	public int getHydratedTileLimit(){
+		return hydratedTileLimit;
+	}
+
+	/**
+	 * Gets the number of lazily loaded tiles which currently have their resources
+	 * loaded.
+	 * @return The number of loaded tiles (0 if lazy loading was not used).
+	 */
+	public synchronized int getHydratedTileCount(){
+		return hydratedTiles == null ? 0 : hydratedTiles.size();
+	}
+
+	/**
+	 * Loads the sinks, sources and wires of a lazily loaded tile from the mapped
+	 * device file.  This is called by the tile on first access and should not
+	 * need to be called directly.
+	 * @param t The tile to load.
+	 */
+	synchronized void hydrateTile(Tile t){
+		if(t.isHydrated()){
+			return;
+		}
+		MappedDeviceFile file = mappedFile;
+		int r = file.getRecordStart(MappedDeviceFile.TILES, t.getRow()*columns + t.getColumn(), MappedDeviceFile.TILE_RECORD_SIZE);
+		int wiresIndex = file.getInt(r+4);
+		WireHashMap wires = null;
+		if(wiresIndex != -1){
+			SoftReference<WireHashMap> ref = hydratedWireMaps[wiresIndex];
+			wires = ref == null ? null : ref.get();
+			if(wires == null){
+				wires = file.createWireHashMap(wiresIndex);
+				hydratedWireMaps[wiresIndex] = new SoftReference<WireHashMap>(wires);
+			}
+		}
+		t.hydrate(file.getSinks(file.getInt(r+2)), file.getSources(file.getInt(r+3)), wires);
+		hydratedTiles.add(t);
+		evictHydratedTiles(t);
+	}
+
+	/**
+	 * Releases lazily loaded tiles until the limit set by setHydratedTileLimit()
+	 * is met.  Tiles are visited oldest first and a tile accessed since its last
+	 * visit is given a second chance.
+	 * @param keep A tile which must not be released (may be null).
+	 */
+	private void evictHydratedTiles(Tile keep){
+		if(hydratedTiles == null || hydratedTileLimit <= 0){
+			return;
+		}
+		int visits = 2*hydratedTiles.size();
+		while(hydratedTiles.size() > hydratedTileLimit && visits-- > 0){
+			Tile t = hydratedTiles.poll();
+			if(t.isModified()){
+				continue;
+			}
+			if(t == keep || t.clearReferenced()){
+				hydratedTiles.add(t);
+			}
+			else{
+				t.dehydrate();
+			}
+		}
+	}
+
+	/**
+	 * Gets the mapped device file this device was loaded from.
+	 * @return The mapped device file, or null if the device was not loaded
+	 * with readDeviceFromMappedFile().
+	 */
+	public MappedDeviceFile getMappedFile(){
+		return mappedFile;
+	}
+
 	/**
 	 * This method is used only for debugging purposes.
 	 * @param fileName Name of the debugging file.
@@ -1319,11 +2888,10 @@ public class Device implements Serializable{
 					}
 					
 					// Sinks
-					HashMap<Integer, SinkPin> tmp = t.getSinks();
-					Integer[] keys = new Integer[tmp.size()];
-					keys = tmp.keySet().toArray(keys);
+					SinkPinHashMap tmp = t.getSinks();
+					int[] keys = tmp.keyArray();
 					Arrays.sort(keys);
-					for(Integer key : keys){
+					for(int key : keys){
 						if(key == -1){
 							bw.write("  Sink: -1" + nl);
 						}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import edu.byu.ece.rapidSmith.util.FileTools;
+
+/**
+ * Records the inputs a device file was created from: the device file
+ * version, a hash of the family wire enumerator file and a hash of the XDLRC
+ * file.  The manifest is kept next to the device file (see
+ * FileTools.getDeviceManifestFileName()) so DeviceFilesCreator can skip the
+ * parts whose inputs have not changed.
+ * Created on: Oct 18, 2026
+ */
+public class DeviceFileManifest {
+
+	private static final String VERSION_KEY = "deviceFileVersion";
+	private static final String WIRE_ENUMERATOR_KEY = "wireEnumeratorHash";
+	private static final String XDLRC_KEY = "xdlrcHash";
+
+	/** The recorded values */
+	private Properties properties = new Properties();
+
+	/**
+	 * Creates a manifest of the given inputs.
+	 * @param version The device file version.
+	 * @param wireEnumeratorHash The hash of the wire enumerator file (may be null).
+	 * @param xdlrcHash The hash of the XDLRC file (null if unknown).
+	 */
+	public DeviceFileManifest(String version, String wireEnumeratorHash, String xdlrcHash){
+		set(VERSION_KEY, version);
+		set(WIRE_ENUMERATOR_KEY, wireEnumeratorHash);
+		set(XDLRC_KEY, xdlrcHash);
+	}
+
+	private DeviceFileManifest(){
+	}
+
+	private void set(String key, String value){
+		if(value != null) properties.setProperty(key, value);
+	}
+
+	public String getVersion(){
+		return properties.getProperty(VERSION_KEY);
+	}
+
+	public String getWireEnumeratorHash(){
+		return properties.getProperty(WIRE_ENUMERATOR_KEY);
+	}
+
+	/**
+	 * Gets the hash of the XDLRC file the device file was created from.
+	 * @return The hash, or null if the device file was created before
+	 * manifests were recorded.
+	 */
+	public String getXDLRCHash(){
+		return properties.getProperty(XDLRC_KEY);
+	}
+
+	/**
+	 * Reads the manifest of a part.
+	 * @param partName The name of the part.
+	 * @return The manifest or null if the part has no (readable) manifest.
+	 */
+	public static DeviceFileManifest read(String partName){
+		File file = new File(FileTools.getDeviceManifestFileName(partName));
+		if(!file.exists()) return null;
+		DeviceFileManifest manifest = new DeviceFileManifest();
+		try{
+			InputStream in = new FileInputStream(file);
+			manifest.properties.load(in);
+			in.close();
+		}
+		catch(IOException e){
+			return null;
+		}
+		return manifest;
+	}
+
+	/**
+	 * Writes this manifest for a part.
+	 * @param partName The name of the part.
+	 * @return True if the manifest was written.
+	 */
+	public boolean write(String partName){
+		try{
+			OutputStream out = new FileOutputStream(FileTools.getDeviceManifestFileName(partName));
+			properties.store(out, "Inputs of " + FileTools.getDeviceFileName(partName));
+			out.close();
+		}
+		catch(IOException e){
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the SHA-256 hash of the contents of a file.
+	 * @param fileName The name of the file.
+	 * @return The hash as a hexadecimal string or null if the file cannot be read.
+	 */
+	public static String hashFile(String fileName){
+		MessageDigest digest;
+		try{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch(NoSuchAlgorithmException e){
+			return null;
+		}
+		byte[] buffer = new byte[1 << 20];
+		try{
+			InputStream in = new FileInputStream(fileName);
+			int n;
+			while((n = in.read(buffer)) > 0){
+				digest.update(buffer, 0, n);
+			}
+			in.close();
+		}
+		catch(IOException e){
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		for(byte b : digest.digest()){
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+}
@@ -19,7 +19,7 @@
 package edu.byu.ece.rapidSmith.device;
 
 import edu.byu.ece.rapidSmith.device.helper.Connection;
-import edu.byu.ece.rapidSmith.device.helper.HashPool;
+import edu.byu.ece.rapidSmith.device.helper.InternPool;
 import edu.byu.ece.rapidSmith.device.helper.WireHashMap;
 import edu.byu.ece.rapidSmith.util.*;
 
@@ -28,6 +28,13 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * This class has a number of static methods to create Device and WireEnumerator objects from
@@ -37,6 +44,18 @@ import java.util.*;
  */
 public class DeviceFilesCreator{
 
+	/** 
+	 * Estimated heap needed to parse a part, as a fraction of the size of its
+	 * full XDLRC file (see createPartFiles(List, int, long)).
+	 */
+	private static double xdlrcMemoryRatio = 0.5;
+	/** When true, createDevice() also saves the routing graph of each part (see createRoutingGraphFile()) */
+	private static boolean createRoutingGraphs = false;
+	/** Rebuild reason (see getRebuildReason()) of a part which has no device file yet */
+	private static final String MISSING_DEVICE_FILE = "there is no device file";
+	/** Families whose primitive defs file is being (or has been) created by a worker */
+	private static ConcurrentHashMap<FamilyType, Boolean> primitiveDefsClaims = new ConcurrentHashMap<>();
+
 	/**
 	 * Makes sure an XDLRC file exists, will create if necessary.
 	 * @param partName Name of the part to create the XDLRC file for.
@@ -44,8 +63,7 @@ public class DeviceFilesCreator{
 	 */
 	public static String createXDLRC(String partName){
 		FileTools.makeDirs(FileTools.getPartFolderPath(partName));
-		String xdlrcFileName = FileTools.getPartFolderPath(partName) +
-				partName + "_full.xdlrc";
+		String xdlrcFileName = getXDLRCFileName(partName);
 		
 		if(new File(xdlrcFileName).exists() && FileTools.getFileSize(xdlrcFileName) > 100000000){
 			return xdlrcFileName;
@@ -56,6 +74,57 @@ public class DeviceFilesCreator{
 		return xdlrcFileName;
 	}
 	
+	/**
+	 * Gets the name of the full XDLRC file of a part in its device folder.
+	 * @param partName Name of the part.
+	 * @return The name of the XDLRC file (which may not exist).
+	 */
+	private static String getXDLRCFileName(String partName){
+		return FileTools.getPartFolderPath(partName) + partName + "_full.xdlrc";
+	}
+	
+	/**
+	 * Checks whether the device file of a part must be (re)created.
+	 * The device file is created if it does not exist and recreated if its 
+	 * version is not current, if the wire enumerator of the family changed 
+	 * since it was created, or if a full XDLRC of the part is present in the 
+	 * device folder and differs from the one it was created from (see 
+	 * DeviceFileManifest).  This may hash the whole XDLRC file, so it should
+	 * only be called once per part.
+	 * @param partName Name of the part.
+	 * @param wireEnumeratorHash Hash of the current wire enumerator file.
+	 * @return The reason to create the device file (MISSING_DEVICE_FILE if there
+	 * is none), or null if it is up to date.
+	 */
+	private static String getRebuildReason(String partName, String wireEnumeratorHash){
+		String deviceFileName = FileTools.getDeviceFileName(partName);
+		if(!new File(deviceFileName).exists() || FileTools.getFileSize(deviceFileName) <= 1000){
+			return MISSING_DEVICE_FILE;
+		}
+		if(!FileTools.getDeviceVersion(partName).equals(Device.deviceFileVersion)){
+			return "the existing file is not compatible with the current version of the tools";
+		}
+		DeviceFileManifest manifest = DeviceFileManifest.read(partName);
+		if(manifest == null){
+			return null;
+		}
+		if(!Device.deviceFileVersion.equals(manifest.getVersion())){
+			return "it was created for another device file version";
+		}
+		if(wireEnumeratorHash != null && manifest.getWireEnumeratorHash() != null &&
+				!wireEnumeratorHash.equals(manifest.getWireEnumeratorHash())){
+			return "the wire enumerator changed";
+		}
+		String xdlrcFileName = getXDLRCFileName(partName);
+		if(new File(xdlrcFileName).exists()){
+			String xdlrcHash = DeviceFileManifest.hashFile(xdlrcFileName);
+			if(xdlrcHash != null && !xdlrcHash.equals(manifest.getXDLRCHash())){
+				return "the XDLRC file changed";
+			}
+		}
+		return null;
+	}
+	
 	/**
 	 * Either loads or creates the WireEnumerator for the family  of partName.
 	 * @param partName Name of the part to create WireEnumerator for.
@@ -211,38 +280,103 @@ public class DeviceFilesCreator{
 	 * @param we Wire Enumerator corresponding to partName's family.
 	 */
 	public static void createDevice(String partName, WireEnumerator we){
+		createDevice(partName, we, 0);
+	}
+	
+	/**
+	 * Creates the device and primitive defs specified by partName.
+	 * @param partName Name of the part to create
+	 * @param we Wire Enumerator corresponding to partName's family.
+	 * @param parserThreads The number of threads of the XDLRC parser, 0 for the default.
+	 */
+	private static void createDevice(String partName, WireEnumerator we, int parserThreads){
+		String wireEnumeratorHash = DeviceFileManifest.hashFile(FileTools.getWireEnumeratorFileName(partName));
+		createDevice(partName, we, parserThreads, wireEnumeratorHash, 
+				getRebuildReason(partName, wireEnumeratorHash), null);
+	}
+	
+	/**
+	 * Creates the device and primitive defs specified by partName once the
+	 * state of its files is known.
+	 * @param partName Name of the part to create
+	 * @param we Wire Enumerator corresponding to partName's family.
+	 * @param parserThreads The number of threads of the XDLRC parser, 0 for the default.
+	 * @param wireEnumeratorHash Hash of the current wire enumerator file.
+	 * @param rebuildReason The result of getRebuildReason() for the part.
+	 * @param xdlrcFileName The XDLRC file of the part if it was already created 
+	 * with createXDLRC(), null to create it when needed.
+	 */
+	private static void createDevice(String partName, WireEnumerator we, int parserThreads,
+			String wireEnumeratorHash, String rebuildReason, String xdlrcFileName){
 		String deviceFileName = FileTools.getDeviceFileName(partName);
+		String mappedDeviceFileName = FileTools.getMappedDeviceFileName(partName);
 		String primitiveDefsFileName = FileTools.getPrimitiveDefsFileName(partName);
-		boolean createPrimitiveDefs = !new File(primitiveDefsFileName).exists();
-		if(new File(deviceFileName).exists() && FileTools.getFileSize(deviceFileName) > 1000){
-			if(FileTools.getDeviceVersion(partName).equals(Device.deviceFileVersion)){
-				return;
+		if(!MISSING_DEVICE_FILE.equals(rebuildReason)){
+			if(rebuildReason != null){
+				MessageGenerator.briefMessage("Recreating the device file for " + partName + ", " + rebuildReason + ".");
 			}
 			else{
-				MessageGenerator.briefMessage("Warning: existing device file for " + partName +
-					" is not compatible with current version of tools.  Overwritting the existing" +
-					" file with new version.");
+				// Record the inputs of device files created before manifests existed
+				if(DeviceFileManifest.read(partName) == null){
+					new DeviceFileManifest(Device.deviceFileVersion, wireEnumeratorHash, null).write(partName);
+				}
+				// Create the mapped device file for installations that predate it
+				if(!new File(mappedDeviceFileName).exists()){
+					Device dev = FileTools.loadDevice(partName);
+					if(dev == null || !dev.writeDeviceToMappedFile(mappedDeviceFileName, true, FileTools.getFamilyTemplateFileName(partName))){
+						MessageGenerator.briefError("Warning: failed to create the mapped device file for " + partName);
+					}
+					DeviceRegistry.getInstance().removeDevice(partName);
+				}
+				if(createRoutingGraphs && !createRoutingGraphFile(partName)){
+					MessageGenerator.briefError("Warning: failed to create the routing graph file for " + partName);
+				}
+				return;
 			}
 		}
 		
+		// A stale mapped file would be preferred over the new device file when reloading
+		if(new File(mappedDeviceFileName).exists()){
+			FileTools.deleteFile(mappedDeviceFileName);
+		}
+		// The manifest is written again once the device file is complete
+		if(new File(FileTools.getDeviceManifestFileName(partName)).exists()){
+			FileTools.deleteFile(FileTools.getDeviceManifestFileName(partName));
+		}
+		
 		// Create XDLRC File if it already hasn't been created
-		String xdlrcFileName = createXDLRC(partName);
+		if(xdlrcFileName == null){
+			xdlrcFileName = createXDLRC(partName);
+		}
+		String xdlrcHash = DeviceFileManifest.hashFile(xdlrcFileName);
+		// Only one part per family creates the primitive defs when parts are created in parallel
+		boolean createPrimitiveDefs = !new File(primitiveDefsFileName).exists() &&
+				primitiveDefsClaims.putIfAbsent(PartNameTools.getFamilyTypeFromPart(partName), Boolean.TRUE) == null;
 		try{
 			// Initialize Parser
 			XDLRCParser parser = new XDLRCParser();
+			if(parserThreads > 0){
+				parser.setThreadCount(parserThreads);
+			}
 			
 			// Parse XDLRC File
 			parser.parseXDLRC(xdlrcFileName, createPrimitiveDefs);
 			
 			// Write out primitiveDefs
+			// (written under a temporary name so other parts never see a partial file)
 			if(createPrimitiveDefs){
-				FileTools.saveToCompressedFile(parser.getPrimitiveDefs(), primitiveDefsFileName);
+				String tmpFileName = primitiveDefsFileName + ".tmp";
+				if(!FileTools.saveToCompressedFile(parser.getPrimitiveDefs(), tmpFileName) ||
+						!new File(tmpFileName).renameTo(new File(primitiveDefsFileName))){
+					MessageGenerator.briefError("Warning: failed to write the primitive defs file " + primitiveDefsFileName);
+				}
 			}
 			
 			// Write the Device to File
 			parser.getDevice().writeDeviceToCompactFile(deviceFileName);
 
-			// reload the device
+			// reload the device (not a copy from a previous load)
+			DeviceRegistry.getInstance().removeDevice(partName);
 			Device dev = FileTools.loadDevice(partName);
 
 			// Remove backwards edges
@@ -270,17 +404,34 @@ public class DeviceFilesCreator{
 			}
 			for(WireConnection w : dev.routeThroughMap.keySet()){
 				PIPRouteThrough p = dev.routeThroughPool.add(dev.getRouteThrough(w));
-				dev.routeThroughMap.put(w, p);
+				dev.addRouteThrough(w, p);
 			}
 			dev.createWireConnectionEnumeration();
 			dev.removeDuplicatePrimitivePinMaps();
-			dev.populateSinkPins(we);
+			dev.populateSinkPins(we, parserThreads > 0 ? parserThreads : Runtime.getRuntime().availableProcessors());
 			dev.removeDuplicateTileSinks(we);
 			dev.debugPoolCounts();
 
 			// Overwrite old file
 			dev.writeDeviceToCompactFile(FileTools.getDeviceFileName(partName));
+			
+			// Write the memory mapped version of the device
+			if(!dev.writeDeviceToMappedFile(mappedDeviceFileName, true, FileTools.getFamilyTemplateFileName(partName))){
+				MessageGenerator.briefError("Warning: failed to create the mapped device file for " + partName);
+			}
+
+			// The registry would hold on to the device once it is created
+			DeviceRegistry.getInstance().removeDevice(partName);
 
+			// Record the inputs so the part is only recreated when they change
+			if(!new DeviceFileManifest(Device.deviceFileVersion, wireEnumeratorHash, xdlrcHash).write(partName)){
+				MessageGenerator.briefError("Warning: failed to write the device manifest for " + partName);
+			}
+			
+			if(createRoutingGraphs && !createRoutingGraphFile(partName)){
+				MessageGenerator.briefError("Warning: failed to create the routing graph file for " + partName);
+			}
+			
 			// Delete XDLRC file
 			FileTools.deleteFile(xdlrcFileName);
 			
@@ -334,7 +485,7 @@ public class DeviceFilesCreator{
 	 * exist in the FPGA.
 	 */
 	public static void removeBackwardsEdgesFromDevice(Device dev, WireEnumerator we){
-		HashPool<WireHashMap> tileWiresPool = new HashPool<>();
+		InternPool<WireHashMap> tileWiresPool = new InternPool<>();
 
 		// Traverse the entire device and find which wires to remove first
 		for(Tile tile : dev.getTileMap().values()) {
@@ -392,7 +543,7 @@ public class DeviceFilesCreator{
 	}
 
 	private static void addMissingWireConnections(Device dev, WireEnumerator we) {
-		HashPool<WireHashMap> tileWiresPool = new HashPool<>();
+		InternPool<WireHashMap> tileWiresPool = new InternPool<>();
 
 		for (Tile tile : dev.getTileMap().values()) {
 			if (tile.getWireHashMap() == null)
@@ -493,6 +644,192 @@ public class DeviceFilesCreator{
 		DeviceFilesCreator.createDevice(partName, we);		
 	}
 	
+	/**
+	 * Builds the routing graph of a part (see Device.getRoutingGraph()) and saves
+	 * it next to the device file, so tools which use the graph read it instead
+	 * of building it.  Nothing is done if the saved graph is newer than the
+	 * device files.  The graph of a large part is big (hundreds of MB) and takes
+	 * a while to build, so this is only done when requested.
+	 * @param partName Name of the part.
+	 * @return True if the routing graph file is up to date, false if it could
+	 * not be created.
+	 */
+	public static boolean createRoutingGraphFile(String partName){
+		if(RoutingGraph.isFileUpToDate(partName)){
+			return true;
+		}
+		boolean loaded = DeviceRegistry.getInstance().isLoaded(partName);
+		Device dev = FileTools.loadDevice(partName);
+		if(dev == null){
+			return false;
+		}
+		boolean written = RoutingGraph.build(dev).writeToFile(FileTools.getRoutingGraphFileName(partName));
+		if(!loaded){
+			// The registry would hold on to the device once it is created
+			DeviceRegistry.getInstance().removeDevice(partName);
+		}
+		return written;
+	}
+	
+	/**
+	 * Sets whether createDevice() and createPartFiles() also save the routing
+	 * graph of each part (see createRoutingGraphFile()).  Off by default.
+	 * @param create True to create the routing graph files.
+	 */
+	public static void setCreateRoutingGraphs(boolean create){
+		createRoutingGraphs = create;
+	}
+	
+	/**
+	 * Checks if the routing graph of each part is saved when its files are created.
+	 * @return True if the routing graph files are created.
+	 */
+	public static boolean isCreateRoutingGraphs(){
+		return createRoutingGraphs;
+	}
+	
+	/**
+	 * Sets the estimated heap needed to parse a part as a fraction of the size
+	 * of its full XDLRC file, used by createPartFiles(List, int, long) to 
+	 * decide how many parts can be parsed at the same time.
+	 * @param ratio The heap needed per byte of XDLRC.
+	 */
+	public static void setXDLRCMemoryRatio(double ratio){
+		xdlrcMemoryRatio = ratio;
+	}
+	
+	/**
+	 * Gets the estimated heap needed to parse a part as a fraction of the size
+	 * of its full XDLRC file.
+	 * @return The heap needed per byte of XDLRC.
+	 */
+	public static double getXDLRCMemoryRatio(){
+		return xdlrcMemoryRatio;
+	}
+	
+	/**
+	 * Ensures all part files are created for a list of parts, creating several
+	 * parts at the same time.  The wire enumerator of each family is created 
+	 * (or loaded) once and shared by all parts of the family, and only one 
+	 * part of each family creates the primitive defs.  Each part is parsed 
+	 * into its own Device.  Before parsing, a worker reserves the heap it is 
+	 * expected to need (see setXDLRCMemoryRatio()) from the budget and waits 
+	 * if the budget is used up by other workers, so the parts parsed at the 
+	 * same time fit in the budget.
+	 * @param partNames The names of the parts to create.
+	 * @param workers The maximum number of parts created at the same time.
+	 * @param heapBudget The heap (in bytes) the workers may use together, 0 
+	 * for 80% of the maximum heap size.
+	 */
+	public static void createPartFiles(List<String> partNames, int workers, long heapBudget){
+		if(workers < 1) workers = 1;
+		if(heapBudget <= 0) heapBudget = (long)(Runtime.getRuntime().maxMemory() * 0.8);
+		int budgetMB = (int)Math.max(1, Math.min(Integer.MAX_VALUE, heapBudget >> 20));
+		Semaphore memory = new Semaphore(budgetMB, true);
+		int parserThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / workers);
+		
+		// The same part must not be created by two workers
+		partNames = new ArrayList<>(new LinkedHashSet<>(partNames));
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try{
+			// Create the family wire enumerators first, the part tasks wait for them
+			HashMap<FamilyType, Future<WireEnumerator>> enumerators = new HashMap<>();
+			for(String partName : partNames){
+				FamilyType family = PartNameTools.getFamilyTypeFromPart(partName);
+				if(!enumerators.containsKey(family)){
+					enumerators.put(family, executor.submit(new WireEnumeratorTask(partName)));
+				}
+			}
+			ArrayList<Future<?>> parts = new ArrayList<>();
+			for(String partName : partNames){
+				Future<WireEnumerator> we = enumerators.get(PartNameTools.getFamilyTypeFromPart(partName));
+				parts.add(executor.submit(new PartTask(partName, we, memory, budgetMB, parserThreads)));
+			}
+			for(Future<?> part : parts){
+				part.get();
+			}
+		}
+		catch(InterruptedException e){
+			MessageGenerator.briefErrorAndExit("Interrupted while creating part files.");
+		}
+		catch(ExecutionException e){
+			e.getCause().printStackTrace();
+			MessageGenerator.briefErrorAndExit("Error while creating part files: " + e.getCause().getMessage());
+		}
+		finally{
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Creates or loads the wire enumerator of a family.
+	 */
+	private static class WireEnumeratorTask implements Callable<WireEnumerator>{
+		private String partName;
+		
+		public WireEnumeratorTask(String partName){
+			this.partName = partName;
+		}
+		
+		@Override
+		public WireEnumerator call(){
+			return createWireEnumerator(partName);
+		}
+	}
+	
+	/**
+	 * Creates the files of one part within the heap budget.
+	 */
+	private static class PartTask implements Callable<Void>{
+		private String partName;
+		private Future<WireEnumerator> we;
+		private Semaphore memory;
+		private int budgetMB;
+		private int parserThreads;
+		
+		public PartTask(String partName, Future<WireEnumerator> we, Semaphore memory, int budgetMB, int parserThreads){
+			this.partName = partName;
+			this.we = we;
+			this.memory = memory;
+			this.budgetMB = budgetMB;
+			this.parserThreads = parserThreads;
+		}
+		
+		@Override
+		public Void call() throws Exception{
+			WireEnumerator enumerator = we.get();
+			// The part files are only checked (and the XDLRC hashed) once
+			String wireEnumeratorHash = DeviceFileManifest.hashFile(FileTools.getWireEnumeratorFileName(partName));
+			String rebuildReason = getRebuildReason(partName, wireEnumeratorHash);
+			String xdlrcFileName = null;
+			long estimate;
+			if(rebuildReason == null){
+				// Nothing to parse, only a missing mapped file or manifest may be created
+				if(new File(FileTools.getMappedDeviceFileName(partName)).exists()){
+					createDevice(partName, enumerator, parserThreads, wireEnumeratorHash, null, null);
+					return null;
+				}
+				estimate = (FileTools.getFileSize(FileTools.getDeviceFileName(partName)) * 8) >> 20;
+			}
+			else{
+				// The XDLRC is generated by an external tool and does not use the heap,
+				// it is passed on so it is not generated again
+				xdlrcFileName = createXDLRC(partName);
+				estimate = (long)(FileTools.getFileSize(xdlrcFileName) * xdlrcMemoryRatio) >> 20;
+			}
+			int permits = (int)Math.max(1, Math.min(budgetMB, estimate));
+			System.out.println("Creating/Verifying files for " + partName + " (reserving " + permits + " MB)");
+			memory.acquire(permits);
+			try{
+				createDevice(partName, enumerator, parserThreads, wireEnumeratorHash, rebuildReason, xdlrcFileName);
+			}
+			finally{
+				memory.release(permits);
+			}
+			return null;
+		}
+	}
+	
 	/**
 	 * Creates the appropriate primitive defs
 	 * @param args The first argument should be the Xilinx part name with package and speed grade
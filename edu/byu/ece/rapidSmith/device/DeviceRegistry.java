@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+
+import edu.byu.ece.rapidSmith.device.helper.MappedDeviceFile;
+import edu.byu.ece.rapidSmith.util.FamilyType;
+import edu.byu.ece.rapidSmith.util.FileTools;
+import edu.byu.ece.rapidSmith.util.MessageGenerator;
+import edu.byu.ece.rapidSmith.util.PartNameTools;
+
+/**
+ * This class keeps track of the devices and wire enumerators loaded in the JVM.
+ * Several parts (and families) can be loaded at the same time and each one is
+ * loaded only once, even when requested by several threads at the same time:
+ * the first thread loads the file and the others wait for its result.
+ *
+ * Devices are expensive, so the registry keeps them under a memory budget.  A
+ * device which has been acquired (see acquireDevice()) is always kept in memory
+ * until it is released.  Other devices are kept in memory while the budget
+ * allows it, after that the least recently used ones are only held with soft
+ * references, so the garbage collector may reclaim them and they will be loaded
+ * again the next time they are requested.  The size of a device is estimated
+ * from the size of its device file.  Wire enumerators are small and shared by
+ * all parts of a family, so they are never evicted.
+ *
+ * util.FileTools.loadDevice() and loadWireEnumerator() delegate to the shared
+ * registry returned by getInstance().
+ * Created on: Oct 18, 2026
+ */
+public class DeviceRegistry {
+
+	/** Compact device files are compressed, this approximates how much they expand in memory */
+	private static final int COMPACT_FILE_EXPANSION = 8;
+	/** The registry used by util.FileTools */
+	private static final DeviceRegistry instance = new DeviceRegistry();
+
+	/** Devices by part name (without speed grade) */
+	private HashMap<String,DeviceEntry> devices;
+	/** Wire enumerators by base family type */
+	private ConcurrentHashMap<FamilyType,FutureTask<WireEnumerator>> wireEnumerators;
+	/** Family templates of the mapped device files by base family type */
+	private HashMap<FamilyType,TemplateEntry> familyTemplates;
+	/** Estimated bytes of devices which may be kept in memory (0 or less for no limit) */
+	private long memoryBudget;
+	/** Incremented on each request, used to find the least recently used device */
+	private long clock;
+	/** Threads which decode mapped device files as they are loaded, null to decode on demand */
+	private ForkJoinPool decodePool;
+
+	/**
+	 * Creates a new empty registry with a memory budget of half the maximum heap size.
+	 */
+	public DeviceRegistry(){
+		devices = new HashMap<String,DeviceEntry>();
+		wireEnumerators = new ConcurrentHashMap<FamilyType,FutureTask<WireEnumerator>>();
+		familyTemplates = new HashMap<FamilyType,TemplateEntry>();
+		memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+	}
+
+	/**
+	 * Gets the registry shared by the whole JVM (used by util.FileTools).
+	 * @return The shared device registry.
+	 */
+	public static DeviceRegistry getInstance(){
+		return instance;
+	}
+
+	//========================================================================//
+	// Devices
+	//========================================================================//
+	/**
+	 * Gets the device for the given part, loading it if it is not already in
+	 * memory.  The device may be evicted once it is no longer used, see
+	 * acquireDevice() to keep it in memory.
+	 * @param partName Name of the part (the speed grade is ignored).
+	 * @param lazy True to load tile resources on first access if the device has
+	 * to be loaded (see Device.setLazyLoading()).
+	 * @return The device or null if there was an error loading it.
+	 */
+	public Device getDevice(String partName, boolean lazy){
+		return obtain(partName, lazy, false);
+	}
+
+	/**
+	 * Gets the device for the given part and keeps it in memory (regardless of
+	 * the memory budget) until releaseDevice() is called for each call of this
+	 * method.
+	 * @param partName Name of the part (the speed grade is ignored).
+	 * @param lazy True to load tile resources on first access if the device has
+	 * to be loaded (see Device.setLazyLoading()).
+	 * @return The device or null if there was an error loading it.
+	 */
+	public Device acquireDevice(String partName, boolean lazy){
+		return obtain(partName, lazy, true);
+	}
+
+	/**
+	 * Releases a device obtained with acquireDevice(), allowing it to be evicted.
+	 * @param device The device to release.
+	 */
+	public synchronized void releaseDevice(Device device){
+		DeviceEntry entry = devices.get(device.getPartName());
+		if(entry != null && entry.refCount > 0){
+			entry.refCount--;
+			enforceBudget(null);
+		}
+	}
+
+	/**
+	 * Removes a device from the registry so the next request loads it from its
+	 * file again.  Objects which still reference the device are not affected.
+	 * @param partName Name of the part (the speed grade is ignored).
+	 */
+	public synchronized void removeDevice(String partName){
+		devices.remove(PartNameTools.removeSpeedGrade(partName));
+	}
+
+	/**
+	 * Checks if the device of the given part is currently in memory.
+	 * @param partName Name of the part (the speed grade is ignored).
+	 * @return True if the device is loaded and has not been reclaimed.
+	 */
+	public synchronized boolean isLoaded(String partName){
+		DeviceEntry entry = devices.get(PartNameTools.removeSpeedGrade(partName));
+		return entry != null && entry.get() != null;
+	}
+
+	/**
+	 * Sets the estimated number of bytes of devices which are kept in memory
+	 * when they are not acquired.
+	 * @param memoryBudget The budget in bytes, 0 or less for no limit.
+	 */
+	public synchronized void setMemoryBudget(long memoryBudget){
+		this.memoryBudget = memoryBudget;
+		enforceBudget(null);
+	}
+
+	/**
+	 * Gets the estimated number of bytes of devices which are kept in memory
+	 * when they are not acquired.
+	 * @return The budget in bytes, 0 or less for no limit.
+	 */
+	public synchronized long getMemoryBudget(){
+		return memoryBudget;
+	}
+
+	/**
+	 * Sets the threads used to decode every pool of a mapped device file when a
+	 * device which is not lazily loaded is loaded (see
+	 * Device.readDeviceFromMappedFile(String, ForkJoinPool)).  By default no
+	 * pool is set and entries are decoded from the mapping on first use, which
+	 * loads faster and keeps unused entries out of the heap.  Devices already
+	 * loaded are not affected.
+	 * @param decodePool The threads to decode with (ex: ForkJoinPool.commonPool()),
+	 * or null to decode on demand.
+	 */
+	public synchronized void setDecodePool(ForkJoinPool decodePool){
+		this.decodePool = decodePool;
+	}
+
+	/**
+	 * Gets the threads used to decode mapped device files as they are loaded.
+	 * @return The pool of threads, or null if entries are decoded on demand.
+	 */
+	public synchronized ForkJoinPool getDecodePool(){
+		return decodePool;
+	}
+
+	/**
+	 * Gets (and loads if necessary) a device, waiting for another thread if it
+	 * is already loading the same part.
+	 */
+	private Device obtain(String partName, boolean lazy, boolean acquire){
+		String name = PartNameTools.removeSpeedGrade(partName);
+		DeviceEntry entry;
+		FutureTask<Device> task;
+		boolean load = false;
+		synchronized(this){
+			entry = devices.get(name);
+			if(entry != null){
+				Device device = entry.get();
+				if(device != null){
+					entry.device = device;
+					entry.soft = null;
+					entry.lastUsed = ++clock;
+					if(acquire) entry.refCount++;
+					enforceBudget(entry);
+					return device;
+				}
+			}
+			if(entry == null || entry.task == null){
+				entry = new DeviceEntry(name, lazy, decodePool);
+				devices.put(name, entry);
+				load = true;
+			}
+			task = entry.task;
+		}
+
+		if(load){
+			task.run();
+		}
+		Device device = null;
+		try{
+			device = task.get();
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e){
+			MessageGenerator.briefError("Error loading the device " + name + ": " + e.getCause());
+		}
+
+		synchronized(this){
+			if(entry.task == task){
+				entry.task = null;
+				if(device == null){
+					if(devices.get(name) == entry) devices.remove(name);
+				}
+				else{
+					entry.device = device;
+					entry.size = estimateSize(name);
+				}
+			}
+			if(device != null){
+				entry.lastUsed = ++clock;
+				if(acquire) entry.refCount++;
+				enforceBudget(entry);
+			}
+		}
+		return device;
+	}
+
+	/**
+	 * Moves the least recently used devices which are not acquired to soft
+	 * references until the devices kept in memory fit in the budget.
+	 * @param keep A device entry which must stay in memory (may be null).
+	 */
+	private void enforceBudget(DeviceEntry keep){
+		if(memoryBudget <= 0){
+			return;
+		}
+		long total = 0;
+		for(DeviceEntry entry : devices.values()){
+			if(entry.device != null) total += entry.size;
+		}
+		while(total > memoryBudget){
+			DeviceEntry oldest = null;
+			for(DeviceEntry entry : devices.values()){
+				if(entry.device == null || entry.refCount > 0 || entry == keep) continue;
+				if(oldest == null || entry.lastUsed < oldest.lastUsed){
+					oldest = entry;
+				}
+			}
+			if(oldest == null){
+				return;
+			}
+			oldest.soft = new SoftReference<Device>(oldest.device);
+			oldest.device = null;
+			total -= oldest.size;
+		}
+	}
+
+	/**
+	 * Estimates the number of bytes used by a device from its device file.
+	 * @param partName Name of the part (without speed grade).
+	 * @return The estimated size of the device in memory.
+	 */
+	private static long estimateSize(String partName){
+		String mapped = FileTools.getMappedDeviceFileName(partName);
+		if(new File(mapped).exists()){
+			return FileTools.getFileSize(mapped);
+		}
+		return FileTools.getFileSize(FileTools.getDeviceFileName(partName)) * COMPACT_FILE_EXPANSION;
+	}
+
+	/**
+	 * Loads a device, preferring a compatible mapped device file over the
+	 * compact device file.
+	 * @param partName Name of the part (without speed grade).
+	 * @param lazy True to load tile resources on first access.
+	 * @param pool The threads to decode the mapped file with, or null to decode on demand.
+	 * @return The device or null if it could not be loaded.
+	 */
+	private static Device loadDevice(String partName, boolean lazy, ForkJoinPool pool){
+		Device device = new Device();
+		String mappedPath = FileTools.getMappedDeviceFileName(partName);
+		device.setLazyLoading(lazy);
+		if(new File(mappedPath).exists() && device.readDeviceFromMappedFile(mappedPath, pool)){
+			return device;
+		}
+
+		device = new Device();
+		if(!device.readDeviceFromCompactFile(FileTools.getDeviceFileName(partName))){
+			return null;
+		}
+		return device;
+	}
+
+	/**
+	 * Keeps track of a device which is loading, loaded or evicted.
+	 */
+	private static class DeviceEntry {
+		/** Loads the device, null once the load is complete */
+		private FutureTask<Device> task;
+		/** The device while it is kept in memory */
+		private Device device;
+		/** The device once it has been evicted */
+		private SoftReference<Device> soft;
+		/** Number of acquisitions which have not been released */
+		private int refCount;
+		/** Estimated size of the device in bytes */
+		private long size;
+		/** Value of the registry clock when the device was last requested */
+		private long lastUsed;
+
+		public DeviceEntry(final String partName, final boolean lazy, final ForkJoinPool pool){
+			task = new FutureTask<Device>(new Callable<Device>(){
+				@Override
+				public Device call(){
+					return loadDevice(partName, lazy, pool);
+				}
+			});
+		}
+
+		/**
+		 * Gets the device if it is still in memory.
+		 * @return The device or null if it is not loaded or was reclaimed.
+		 */
+		public Device get(){
+			if(device != null) return device;
+			return soft == null ? null : soft.get();
+		}
+	}
+
+	//========================================================================//
+	// Wire Enumerators
+	//========================================================================//
+	/**
+	 * Gets the wire enumerator for the given family, loading it if it is not
+	 * already in memory.
+	 * @param familyType The family (derived families share the base family's
+	 * wire enumerator).
+	 * @return The wire enumerator or null if there was an error loading it.
+	 */
+	public WireEnumerator getWireEnumerator(FamilyType familyType){
+		final FamilyType baseFamilyType = PartNameTools.getBaseTypeFromFamilyType(familyType);
+		FutureTask<WireEnumerator> task = wireEnumerators.get(baseFamilyType);
+		if(task == null){
+			FutureTask<WireEnumerator> newTask = new FutureTask<WireEnumerator>(new Callable<WireEnumerator>(){
+				@Override
+				public WireEnumerator call(){
+					WireEnumerator we = new WireEnumerator();
+					if(!we.readCompactEnumFile(FileTools.getWireEnumeratorFileName(baseFamilyType), baseFamilyType)){
+						return null;
+					}
+					return we;
+				}
+			});
+			task = wireEnumerators.putIfAbsent(baseFamilyType, newTask);
+			if(task == null){
+				task = newTask;
+				task.run();
+			}
+		}
+
+		WireEnumerator we = null;
+		try{
+			we = task.get();
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e){
+			MessageGenerator.briefError("Error loading the wire enumerator for " + baseFamilyType + ": " + e.getCause());
+		}
+		if(we == null){
+			// Allow another attempt later
+			wireEnumerators.remove(baseFamilyType, task);
+		}
+		return we;
+	}
+
+	/**
+	 * Removes a wire enumerator from the registry so the next request loads it
+	 * from its file again.
+	 * @param familyType The family of the wire enumerator.
+	 */
+	public void removeWireEnumerator(FamilyType familyType){
+		wireEnumerators.remove(PartNameTools.getBaseTypeFromFamilyType(familyType));
+	}
+
+	//========================================================================//
+	// Family Templates
+	//========================================================================//
+	/**
+	 * Gets the family template holding the pools of the mapped device files of
+	 * a family (see Device.writeDeviceToMappedFile()).  The template is mapped
+	 * once and shared by all devices of the family; it is mapped again if the
+	 * file has changed since (templates are only ever appended to, so devices
+	 * which use the older mapping stay valid).
+	 * @param familyType The family (derived families share the base family's
+	 * template).
+	 * @return The template or null if there is no valid template file.
+	 */
+	public MappedDeviceFile getFamilyTemplate(FamilyType familyType){
+		FamilyType baseFamilyType = PartNameTools.getBaseTypeFromFamilyType(familyType);
+		File file = new File(FileTools.getFamilyTemplateFileName(baseFamilyType));
+		synchronized(familyTemplates){
+			TemplateEntry entry = familyTemplates.get(baseFamilyType);
+			if(entry != null && entry.lastModified == file.lastModified() && entry.length == file.length()){
+				return entry.template;
+			}
+			familyTemplates.remove(baseFamilyType);
+			if(!file.exists()){
+				return null;
+			}
+			entry = new TemplateEntry();
+			entry.lastModified = file.lastModified();
+			entry.length = file.length();
+			try{
+				entry.template = new MappedDeviceFile(file.getAbsolutePath());
+			}
+			catch(IOException e){
+				MessageGenerator.briefError("Error loading the family template for " + baseFamilyType + ": " + e.getMessage());
+				return null;
+			}
+			if(!entry.template.isTemplate()){
+				MessageGenerator.briefError("Error loading the family template for " + baseFamilyType + ": not a family template");
+				return null;
+			}
+			familyTemplates.put(baseFamilyType, entry);
+			return entry.template;
+		}
+	}
+
+	/**
+	 * A mapped family template and the state of its file when it was mapped.
+	 */
+	private static class TemplateEntry {
+		private MappedDeviceFile template;
+		private long lastModified;
+		private long length;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device;
+
+/**
+ * A physical wire in the FPGA usually has a different name (tile and wire) in
+ * each tile it passes through, and the names are joined by non-PIP wire
+ * connections.  This class groups the ids of a RoutingGraph into physical
+ * routing nodes: every id is mapped to a node number and the ids (segments) of
+ * each node are listed in ascending order.  Two tile wires are the same
+ * electrical node if and only if getNode() returns the same number for both.
+ *
+ * The index is built with a union-find over the non-PIP connections of the
+ * routing graph (see Device.getNodeIndex()).
+ * Created on: Oct 18, 2026
+ */
+public class NodeIndex {
+
+	/** The routing graph the ids belong to */
+	private RoutingGraph graph;
+	/** Node of each id */
+	private int[] nodeOf;
+	/** Position of the first segment of each node in segments (length is node count + 1) */
+	private int[] segmentStart;
+	/** Ids grouped by node, in ascending order within each node */
+	private int[] segments;
+
+	/**
+	 * Builds the node index of a routing graph.
+	 * @param graph The routing graph.
+	 */
+	public NodeIndex(RoutingGraph graph){
+		this.graph = graph;
+		int idCount = graph.getNodeCount();
+
+		// Join the ids connected by non-PIP connections, the root of each set
+		// is always its smallest id
+		int[] parent = new int[idCount];
+		for(int i=0; i < idCount; i++){
+			parent[i] = i;
+		}
+		for(int id=0; id < idCount; id++){
+			for(int e=graph.getEdgeStart(id); e < graph.getEdgeEnd(id); e++){
+				if(graph.isPIP(e)) continue;
+				int a = find(parent, id);
+				int b = find(parent, graph.getEdgeTarget(e));
+				if(a < b) parent[b] = a;
+				else if(b < a) parent[a] = b;
+			}
+		}
+
+		// Number the nodes in order of their smallest id
+		nodeOf = new int[idCount];
+		int nodeCount = 0;
+		for(int id=0; id < idCount; id++){
+			int root = find(parent, id);
+			nodeOf[id] = root == id ? nodeCount++ : nodeOf[root];
+		}
+		parent = null;
+
+		// List the segments of each node
+		segmentStart = new int[nodeCount+1];
+		for(int id=0; id < idCount; id++){
+			segmentStart[nodeOf[id]+1]++;
+		}
+		for(int n=0; n < nodeCount; n++){
+			segmentStart[n+1] += segmentStart[n];
+		}
+		segments = new int[idCount];
+		int[] next = new int[nodeCount];
+		for(int id=0; id < idCount; id++){
+			int n = nodeOf[id];
+			segments[segmentStart[n] + next[n]++] = id;
+		}
+	}
+
+	/**
+	 * Finds the root of the set containing id, halving the path on the way.
+	 */
+	private static int find(int[] parent, int id){
+		while(parent[id] != id){
+			parent[id] = parent[parent[id]];
+			id = parent[id];
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the node of a routing graph id.
+	 * @param id The routing graph id.
+	 * @return The node number.
+	 */
+	public int getNode(int id){
+		return nodeOf[id];
+	}
+
+	/**
+	 * Gets the node of a wire in a tile.
+	 * @param tile The tile.
+	 * @param wire The wire in the tile.
+	 * @return The node number or -1 if the wire has no connections in the tile.
+	 */
+	public int getNode(Tile tile, int wire){
+		int id = graph.getId(tile, wire);
+		return id == -1 ? -1 : nodeOf[id];
+	}
+
+	/**
+	 * Gets the first position of the segments of a node, see getSegment().
+	 * @param node The node number.
+	 * @return The position of the first segment.
+	 */
+	public int getSegmentStart(int node){
+		return segmentStart[node];
+	}
+
+	/**
+	 * Gets the position after the last segment of a node, see getSegment().
+	 * @param node The node number.
+	 * @return The position after the last segment.
+	 */
+	public int getSegmentEnd(int node){
+		return segmentStart[node+1];
+	}
+
+	/**
+	 * Gets a segment of a node.
+	 * @param position A position between getSegmentStart() and getSegmentEnd() of the node.
+	 * @return The routing graph id of the segment.
+	 */
+	public int getSegment(int position){
+		return segments[position];
+	}
+
+	/**
+	 * Gets the number of segments (tile wires) of a node.
+	 * @param node The node number.
+	 * @return The number of segments.
+	 */
+	public int getSegmentCount(int node){
+		return segmentStart[node+1] - segmentStart[node];
+	}
+
+	/**
+	 * Gets the number of physical nodes in the device.
+	 * @return The number of nodes.
+	 */
+	public int getNodeCount(){
+		return segmentStart.length - 1;
+	}
+
+	/**
+	 * Gets the routing graph the ids of this index belong to.
+	 * @return The routing graph.
+	 */
+	public RoutingGraph getGraph(){
+		return graph;
+	}
+}
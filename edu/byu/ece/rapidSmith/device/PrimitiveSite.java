@@ -45,6 +45,8 @@ public class PrimitiveSite implements Serializable{
 	protected int instanceX;
 	/** The Y coordinate of the instance (ex: SLICE_X5Y#) */
 	protected int instanceY;
+	/** Dense index of the site in its device, assigned by Device.getPrimitiveSiteIndex() */
+	private transient int index = -1;
 	/** Keeps track of extra site types on which primitive types can be placed */
 	@SuppressWarnings("unchecked")
 	public static HashMap<PrimitiveType, PrimitiveType[]>[] compatibleTypesArray = new HashMap[FamilyType.values().length];
@@ -193,6 +195,24 @@ public class PrimitiveSite implements Serializable{
 		return instanceY;
 	}
 	
+	/**
+	 * Gets the dense index of this site in its device.  The index is assigned
+	 * by the device the first time any site index is requested, use 
+	 * Device.getPrimitiveSiteIndex() to make sure it is available.
+	 * @return The index of this site or -1 if it has not been assigned.
+	 */
+	public int getIndex(){
+		return index;
+	}
+	
+	/**
+	 * Sets the dense index of this site, only used by Device.
+	 * @param index The index of this site in its device.
+	 */
+	void setIndex(int index){
+		this.index = index;
+	}
+	
 	/**
 	 * This method will check if the PrimitiveType otherType can be placed
 	 * at this primitive site.  Most often only if they are
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A spatial index of a set of primitive sites (usually all sites compatible
+ * with a primitive type, see Device.getPrimitiveSiteGrid()).  The sites are
+ * bucketed in square cells of the tile array, using the column and row of
+ * the tile of each site as coordinates.  Distances are Manhattan distances in
+ * tiles.  All queries accept an optional occupancy bitmap indexed by primitive
+ * site index (see Device.getPrimitiveSiteIndex(PrimitiveSite) and
+ * Design.getPrimitiveSiteOccupancy()), sites with their bit set are skipped.
+ * Results are ordered by distance and then by site index so they do not
+ * depend on the order of the queries.
+ * Created on: Oct 18, 2026
+ */
+public class PrimitiveSiteGrid {
+
+	/** Width and height of a cell in tiles */
+	public static final int CELL_SIZE = 8;
+
+	/** The device of the sites */
+	private Device dev;
+	/** Number of cell columns and rows */
+	private int cellColumns;
+	private int cellRows;
+	/** Position of the first site of each cell in the arrays below (length is cell count + 1) */
+	private int[] cellStart;
+	/** Site index of each entry, grouped by cell */
+	private int[] siteIndex;
+	/** Tile column of each entry */
+	private int[] siteColumn;
+	/** Tile row of each entry */
+	private int[] siteRow;
+
+	/**
+	 * Builds the index of a set of sites.
+	 * @param dev The device of the sites.
+	 * @param sites The sites to index (may be null for an empty index).
+	 */
+	public PrimitiveSiteGrid(Device dev, PrimitiveSite[] sites){
+		this.dev = dev;
+		cellColumns = (dev.getColumns() + CELL_SIZE - 1) / CELL_SIZE;
+		cellRows = (dev.getRows() + CELL_SIZE - 1) / CELL_SIZE;
+		if(cellColumns == 0) cellColumns = 1;
+		if(cellRows == 0) cellRows = 1;
+		if(sites == null) sites = new PrimitiveSite[0];
+
+		cellStart = new int[cellColumns * cellRows + 1];
+		for(PrimitiveSite site : sites){
+			cellStart[getCell(site.getTile().getColumn(), site.getTile().getRow()) + 1]++;
+		}
+		for(int c=0; c < cellColumns * cellRows; c++){
+			cellStart[c+1] += cellStart[c];
+		}
+
+		siteIndex = new int[sites.length];
+		siteColumn = new int[sites.length];
+		siteRow = new int[sites.length];
+		int[] next = new int[cellColumns * cellRows];
+		for(PrimitiveSite site : sites){
+			Tile t = site.getTile();
+			int cell = getCell(t.getColumn(), t.getRow());
+			int i = cellStart[cell] + next[cell]++;
+			siteIndex[i] = dev.getPrimitiveSiteIndex(site);
+			siteColumn[i] = t.getColumn();
+			siteRow[i] = t.getRow();
+		}
+	}
+
+	private int getCell(int column, int row){
+		return (row / CELL_SIZE) * cellColumns + (column / CELL_SIZE);
+	}
+
+	private static int clamp(int value, int max){
+		return value < 0 ? 0 : (value > max ? max : value);
+	}
+
+	/**
+	 * Gets the number of sites in this index.
+	 * @return The number of sites.
+	 */
+	public int getSiteCount(){
+		return siteIndex.length;
+	}
+
+	/**
+	 * Finds the nearest site which is not used.
+	 * @param column The tile column of the query point.
+	 * @param row The tile row of the query point.
+	 * @param used Bits of the used sites by primitive site index (may be null).
+	 * @return The nearest free site or null if all sites are used.
+	 */
+	public PrimitiveSite getNearest(int column, int row, BitSet used){
+		ArrayList<PrimitiveSite> nearest = getNearest(column, row, 1, used);
+		return nearest.isEmpty() ? null : nearest.get(0);
+	}
+
+	/**
+	 * Finds the nearest site to a tile which is not used.
+	 * @param tile The tile of the query point.
+	 * @param used Bits of the used sites by primitive site index (may be null).
+	 * @return The nearest free site or null if all sites are used.
+	 */
+	public PrimitiveSite getNearest(Tile tile, BitSet used){
+		return getNearest(tile.getColumn(), tile.getRow(), used);
+	}
+
+	/**
+	 * Finds the k nearest sites which are not used.  The cells are visited in
+	 * rings around the query point until no unvisited cell can contain a
+	 * site closer than the k-th best site found.
+	 * @param column The tile column of the query point.
+	 * @param row The tile row of the query point.
+	 * @param k The number of sites to find.
+	 * @param used Bits of the used sites by primitive site index (may be null).
+	 * @return Up to k free sites ordered by distance.
+	 */
+	public ArrayList<PrimitiveSite> getNearest(int column, int row, int k, BitSet used){
+		ArrayList<PrimitiveSite> result = new ArrayList<PrimitiveSite>();
+		if(k <= 0) return result;
+		int[] bestSite = new int[k];
+		int[] bestDistance = new int[k];
+		int found = 0;
+
+		int cellX = clamp(column / CELL_SIZE, cellColumns-1);
+		int cellY = clamp(row / CELL_SIZE, cellRows-1);
+		int maxRing = Math.max(Math.max(cellX, cellColumns-1-cellX), Math.max(cellY, cellRows-1-cellY));
+		for(int ring=0; ring <= maxRing; ring++){
+			// Every site in this ring is at least this far away
+			if(found == k && ring > 0 && bestDistance[k-1] <= (ring-1) * CELL_SIZE) break;
+			for(int cy=cellY-ring; cy <= cellY+ring; cy++){
+				if(cy < 0 || cy >= cellRows) continue;
+				boolean edgeRow = cy == cellY-ring || cy == cellY+ring;
+				// Only the first and last cell of the inner rows are on the ring
+				int step = edgeRow ? 1 : 2*ring;
+				for(int cx=cellX-ring; cx <= cellX+ring; cx += step){
+					if(cx < 0 || cx >= cellColumns) continue;
+					int cell = cy * cellColumns + cx;
+					for(int i=cellStart[cell]; i < cellStart[cell+1]; i++){
+						int s = siteIndex[i];
+						if(used != null && used.get(s)) continue;
+						int d = Math.abs(siteColumn[i] - column) + Math.abs(siteRow[i] - row);
+						// Insert into the sorted list of best sites
+						int j = found < k ? found++ : k;
+						if(j == k && (d > bestDistance[k-1] || (d == bestDistance[k-1] && s > bestSite[k-1]))) continue;
+						if(j == k) j = k-1;
+						while(j > 0 && (bestDistance[j-1] > d || (bestDistance[j-1] == d && bestSite[j-1] > s))){
+							bestDistance[j] = bestDistance[j-1];
+							bestSite[j] = bestSite[j-1];
+							j--;
+						}
+						bestDistance[j] = d;
+						bestSite[j] = s;
+					}
+				}
+			}
+		}
+		for(int i=0; i < found; i++){
+			result.add(dev.getPrimitiveSite(bestSite[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Finds all free sites within a Manhattan distance of a point.
+	 * @param column The tile column of the query point.
+	 * @param row The tile row of the query point.
+	 * @param radius The maximum distance in tiles.
+	 * @param used Bits of the used sites by primitive site index (may be null).
+	 * @return The free sites within the radius, ordered by distance.
+	 */
+	public ArrayList<PrimitiveSite> getSitesInRadius(int column, int row, int radius, BitSet used){
+		int[] entries = getEntriesInRectangle(column-radius, row-radius, column+radius, row+radius, used);
+		long[] keys = new long[entries.length];
+		int count = 0;
+		for(int i : entries){
+			int d = Math.abs(siteColumn[i] - column) + Math.abs(siteRow[i] - row);
+			if(d <= radius){
+				keys[count++] = ((long)d << 32) | siteIndex[i];
+			}
+		}
+		Arrays.sort(keys, 0, count);
+		ArrayList<PrimitiveSite> result = new ArrayList<PrimitiveSite>(count);
+		for(int i=0; i < count; i++){
+			result.add(dev.getPrimitiveSite((int)keys[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Finds all free sites whose tile lies in a rectangle of the tile array.
+	 * @param minColumn The smallest tile column (inclusive).
+	 * @param minRow The smallest tile row (inclusive).
+	 * @param maxColumn The largest tile column (inclusive).
+	 * @param maxRow The largest tile row (inclusive).
+	 * @param used Bits of the used sites by primitive site index (may be null).
+	 * @return The free sites in the rectangle, ordered by site index.
+	 */
+	public ArrayList<PrimitiveSite> getSitesInRectangle(int minColumn, int minRow, int maxColumn, int maxRow, BitSet used){
+		int[] entries = getEntriesInRectangle(minColumn, minRow, maxColumn, maxRow, used);
+		int[] sites = new int[entries.length];
+		for(int i=0; i < entries.length; i++){
+			sites[i] = siteIndex[entries[i]];
+		}
+		Arrays.sort(sites);
+		ArrayList<PrimitiveSite> result = new ArrayList<PrimitiveSite>(sites.length);
+		for(int s : sites){
+			result.add(dev.getPrimitiveSite(s));
+		}
+		return result;
+	}
+
+	/**
+	 * Collects the positions of the free entries in a rectangle.
+	 */
+	private int[] getEntriesInRectangle(int minColumn, int minRow, int maxColumn, int maxRow, BitSet used){
+		if(minColumn > maxColumn || minRow > maxRow) return new int[0];
+		int minCellX = clamp(minColumn / CELL_SIZE, cellColumns-1);
+		int maxCellX = clamp(maxColumn / CELL_SIZE, cellColumns-1);
+		int minCellY = clamp(minRow / CELL_SIZE, cellRows-1);
+		int maxCellY = clamp(maxRow / CELL_SIZE, cellRows-1);
+		int count = 0;
+		int[] entries = new int[16];
+		for(int cy=minCellY; cy <= maxCellY; cy++){
+			for(int cx=minCellX; cx <= maxCellX; cx++){
+				int cell = cy * cellColumns + cx;
+				for(int i=cellStart[cell]; i < cellStart[cell+1]; i++){
+					if(siteColumn[i] < minColumn || siteColumn[i] > maxColumn) continue;
+					if(siteRow[i] < minRow || siteRow[i] > maxRow) continue;
+					if(used != null && used.get(siteIndex[i])) continue;
+					if(count == entries.length){
+						int[] tmp = new int[count*2];
+						System.arraycopy(entries, 0, tmp, 0, count);
+						entries = tmp;
+					}
+					entries[count++] = i;
+				}
+			}
+		}
+		int[] result = new int[count];
+		System.arraycopy(entries, 0, result, 0, count);
+		return result;
+	}
+}
@@ -0,0 +1,607 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import edu.byu.ece.rapidSmith.device.helper.WireHashMap;
+import edu.byu.ece.rapidSmith.util.FileTools;
+
+/**
+ * This class is a flat, array based view of the routing resources of a device.
+ * Every (tile, wire) pair which appears in the device wire connections is given a
+ * dense integer id.  Ids are ordered by tile (row major, as in Device.getTile(int))
+ * and then by wire, so the ids of a tile are contiguous.  The forward connections
+ * of each id are stored in compressed sparse row (CSR) form: the connections of
+ * id n are the edges getEdgeStart(n) (inclusive) to getEdgeEnd(n) (exclusive),
+ * getEdgeTarget(e) is the id an edge leads to, isPIP(e) tells if the edge is
+ * a programmable connection and isRouteThrough(e) if it is a route-through.
+ * Graph searches can then work with primitive arrays rather than tiles, wire
+ * maps and WireConnection objects.
+ *
+ * A routing graph is built on demand (see Device.getRoutingGraph()).  The
+ * installer can also save it next to the device file (see
+ * DeviceFilesCreator.createRoutingGraphFile()) so it is read rather than built.
+ * Created on: Oct 18, 2026
+ */
+public class RoutingGraph {
+
+	/** Identifies a routing graph file ("RSRG") */
+	public static final int MAGIC = 0x52535247;
+	/** Version of the routing graph file layout */
+	public static final int FORMAT_VERSION = 2;
+	/** Number of ints in the file header */
+	private static final int HEADER_SIZE = 7;
+
+	/** Number of rows of tiles in the device */
+	private int rows;
+	/** Number of columns of tiles in the device */
+	private int columns;
+	/** First id of each tile, indexed by unique tile address (length is tile count + 1) */
+	private int[] tileStart;
+	/** Wire of each id */
+	private int[] nodeWire;
+	/** First edge of each id (length is node count + 1) */
+	private int[] edgeStart;
+	/** Target id of each edge */
+	private int[] edgeTarget;
+	/** PIP flag of each edge, one bit per edge */
+	private int[] pipBits;
+	/** Route-through flag of each edge, one bit per edge */
+	private int[] routeThroughBits;
+	/** The device the graph was created for (may be null) */
+	private transient Device dev;
+	/** First incoming edge of each id (length is node count + 1), created on first use */
+	private transient volatile int[] inEdgeStart;
+	/** Forward edge index of each incoming edge */
+	private transient int[] inEdges;
+	/** Source id of each incoming edge */
+	private transient int[] inEdgeSources;
+
+	/**
+	 * Creates an empty routing graph, see build() and readFromFile().
+	 */
+	private RoutingGraph(){
+	}
+
+	//========================================================================//
+	// Creation
+	//========================================================================//
+	/**
+	 * Builds the routing graph of a device by visiting the wire connections of
+	 * every tile.  Connections which leave the device are ignored.
+	 * @param dev The device to build the graph for.
+	 * @return The new routing graph.
+	 */
+	public static RoutingGraph build(Device dev){
+		RoutingGraph g = new RoutingGraph();
+		g.dev = dev;
+		g.rows = dev.getRows();
+		g.columns = dev.getColumns();
+		int tileCount = g.rows * g.columns;
+
+		// Collect the wires of each tile, including the targets of connections
+		// from other tiles and the sink/source wires
+		int[][] tileWires = new int[tileCount][];
+		int[] tileWireCount = new int[tileCount];
+		for(int i=0; i < tileCount; i++){
+			Tile t = dev.getTile(i);
+			WireHashMap wires = t.getWireHashMap();
+			if(wires != null){
+				for(Integer wire : wires.keySet()){
+					addWire(tileWires, tileWireCount, i, wire);
+					for(WireConnection wc : wires.get(wire)){
+						int target = g.getTargetTileIndex(t, wc);
+						if(target != -1){
+							addWire(tileWires, tileWireCount, target, wc.getWire());
+						}
+					}
+				}
+			}
+			if(t.getSinks() != null){
+				for(int sink : t.getSinks().keyArray()){
+					addWire(tileWires, tileWireCount, i, sink);
+				}
+			}
+			if(t.getSources() != null){
+				for(int source : t.getSources()){
+					addWire(tileWires, tileWireCount, i, source);
+				}
+			}
+		}
+
+		// Number the wires of each tile in order
+		g.tileStart = new int[tileCount+1];
+		int nodeCount = 0;
+		for(int i=0; i < tileCount; i++){
+			g.tileStart[i] = nodeCount;
+			if(tileWires[i] == null) continue;
+			Arrays.sort(tileWires[i], 0, tileWireCount[i]);
+			int unique = 0;
+			for(int j=0; j < tileWireCount[i]; j++){
+				if(j == 0 || tileWires[i][j] != tileWires[i][j-1]){
+					tileWires[i][unique++] = tileWires[i][j];
+				}
+			}
+			tileWireCount[i] = unique;
+			nodeCount += unique;
+		}
+		g.tileStart[tileCount] = nodeCount;
+		g.nodeWire = new int[nodeCount];
+		for(int i=0; i < tileCount; i++){
+			if(tileWires[i] == null) continue;
+			System.arraycopy(tileWires[i], 0, g.nodeWire, g.tileStart[i], tileWireCount[i]);
+			tileWires[i] = null;
+		}
+
+		// Count the edges, then fill them in
+		g.edgeStart = new int[nodeCount+1];
+		int edgeCount = 0;
+		for(int i=0; i < tileCount; i++){
+			Tile t = dev.getTile(i);
+			WireHashMap wires = t.getWireHashMap();
+			for(int n=g.tileStart[i]; n < g.tileStart[i+1]; n++){
+				g.edgeStart[n] = edgeCount;
+				WireConnection[] connections = wires == null ? null : wires.get(g.nodeWire[n]);
+				if(connections == null) continue;
+				for(WireConnection wc : connections){
+					if(g.getTargetTileIndex(t, wc) != -1) edgeCount++;
+				}
+			}
+		}
+		g.edgeStart[nodeCount] = edgeCount;
+		g.edgeTarget = new int[edgeCount];
+		g.pipBits = new int[(edgeCount + 31) >>> 5];
+		g.routeThroughBits = new int[(edgeCount + 31) >>> 5];
+		int e = 0;
+		for(int i=0; i < tileCount; i++){
+			Tile t = dev.getTile(i);
+			WireHashMap wires = t.getWireHashMap();
+			for(int n=g.tileStart[i]; n < g.tileStart[i+1]; n++){
+				WireConnection[] connections = wires == null ? null : wires.get(g.nodeWire[n]);
+				if(connections == null) continue;
+				for(WireConnection wc : connections){
+					int target = g.getTargetTileIndex(t, wc);
+					if(target == -1) continue;
+					g.edgeTarget[e] = g.getId(target, wc.getWire());
+					if(wc.isPIP()){
+						g.pipBits[e >>> 5] |= 1 << (e & 31);
+					}
+					if(wc.isRouteThrough()){
+						g.routeThroughBits[e >>> 5] |= 1 << (e & 31);
+					}
+					e++;
+				}
+			}
+		}
+		return g;
+	}
+
+	/**
+	 * Adds a wire to the list of wires of a tile, growing the list as needed.
+	 */
+	private static void addWire(int[][] tileWires, int[] tileWireCount, int tileIndex, int wire){
+		int[] list = tileWires[tileIndex];
+		if(list == null){
+			list = new int[8];
+			tileWires[tileIndex] = list;
+		}
+		else if(tileWireCount[tileIndex] == list.length){
+			list = Arrays.copyOf(list, list.length*2);
+			tileWires[tileIndex] = list;
+		}
+		list[tileWireCount[tileIndex]++] = wire;
+	}
+
+	/**
+	 * Gets the unique address of the tile a connection leads to.
+	 * @param t The tile the connection starts in.
+	 * @param wc The connection.
+	 * @return The unique tile address, or -1 if the connection leaves the device.
+	 */
+	private int getTargetTileIndex(Tile t, WireConnection wc){
+		int row = t.getRow() - wc.getRowOffset();
+		int column = t.getColumn() - wc.getColumnOffset();
+		if(row < 0 || column < 0 || row >= rows || column >= columns){
+			return -1;
+		}
+		return row*columns + column;
+	}
+
+	//========================================================================//
+	// Ids
+	//========================================================================//
+	/**
+	 * Gets the id of a wire in a tile.
+	 * @param tile The tile.
+	 * @param wire The wire in the tile.
+	 * @return The id or -1 if the wire has no connections in the tile.
+	 */
+	public int getId(Tile tile, int wire){
+		return getId(tile.getRow()*columns + tile.getColumn(), wire);
+	}
+
+	/**
+	 * Gets the id of a wire in a tile.
+	 * @param tileIndex The unique address of the tile (see Tile.getUniqueAddress()).
+	 * @param wire The wire in the tile.
+	 * @return The id or -1 if the wire has no connections in the tile.
+	 */
+	public int getId(int tileIndex, int wire){
+		int i = Arrays.binarySearch(nodeWire, tileStart[tileIndex], tileStart[tileIndex+1], wire);
+		return i < 0 ? -1 : i;
+	}
+
+	/**
+	 * Gets the wire of an id.
+	 * @param id The id.
+	 * @return The wire enumeration of the id.
+	 */
+	public int getWire(int id){
+		return nodeWire[id];
+	}
+
+	/**
+	 * Gets the unique address of the tile of an id.
+	 * @param id The id.
+	 * @return The unique tile address (see Device.getTile(int)).
+	 */
+	public int getTileIndex(int id){
+		int i = Arrays.binarySearch(tileStart, id);
+		if(i < 0){
+			return -i - 2;
+		}
+		// Skip tiles without wires, they share their start with the next tile
+		while(tileStart[i+1] == id) i++;
+		return i;
+	}
+
+	/**
+	 * Gets the tile of an id.
+	 * @param id The id.
+	 * @return The tile of the id (null if the graph was not created with a device).
+	 */
+	public Tile getTile(int id){
+		return dev == null ? null : dev.getTile(getTileIndex(id));
+	}
+
+	/**
+	 * Gets the first id of a tile, the ids of a tile are contiguous.
+	 * @param tileIndex The unique address of the tile.
+	 * @return The first id of the tile.
+	 */
+	public int getTileStart(int tileIndex){
+		return tileStart[tileIndex];
+	}
+
+	/**
+	 * Gets the id after the last id of a tile.
+	 * @param tileIndex The unique address of the tile.
+	 * @return The id after the last id of the tile.
+	 */
+	public int getTileEnd(int tileIndex){
+		return tileStart[tileIndex+1];
+	}
+
+	//========================================================================//
+	// Edges
+	//========================================================================//
+	/**
+	 * Gets the first edge of an id.
+	 * @param id The id.
+	 * @return The index of the first forward connection of id.
+	 */
+	public int getEdgeStart(int id){
+		return edgeStart[id];
+	}
+
+	/**
+	 * Gets the edge after the last edge of an id.
+	 * @param id The id.
+	 * @return The index after the last forward connection of id.
+	 */
+	public int getEdgeEnd(int id){
+		return edgeStart[id+1];
+	}
+
+	/**
+	 * Gets the id an edge leads to.
+	 * @param edge The index of the edge.
+	 * @return The target id.
+	 */
+	public int getEdgeTarget(int edge){
+		return edgeTarget[edge];
+	}
+
+	/**
+	 * Checks if an edge is a PIP.
+	 * @param edge The index of the edge.
+	 * @return True if the edge is a programmable connection.
+	 */
+	public boolean isPIP(int edge){
+		return (pipBits[edge >>> 5] & (1 << (edge & 31))) != 0;
+	}
+
+	/**
+	 * Checks if an edge is a route-through (see Device.getRouteThrough()).
+	 * @param edge The index of the edge.
+	 * @return True if the edge is a PIP through a primitive site.
+	 */
+	public boolean isRouteThrough(int edge){
+		return (routeThroughBits[edge >>> 5] & (1 << (edge & 31))) != 0;
+	}
+
+	/**
+	 * Gets the edge offsets (length is node count + 1).  The array is shared and
+	 * must not be modified.
+	 * @return The CSR offsets array.
+	 */
+	public int[] getEdgeOffsets(){
+		return edgeStart;
+	}
+
+	/**
+	 * Gets the edge targets.  The array is shared and must not be modified.
+	 * @return The CSR targets array.
+	 */
+	public int[] getEdgeTargets(){
+		return edgeTarget;
+	}
+
+	/**
+	 * Gets the PIP flags of the edges, one bit per edge (bit edge&31 of word
+	 * edge>>>5).  The array is shared and must not be modified.
+	 * @return The PIP flag bits.
+	 */
+	public int[] getPIPBits(){
+		return pipBits;
+	}
+
+	/**
+	 * Gets the route-through flags of the edges, laid out like getPIPBits().
+	 * The array is shared and must not be modified.
+	 * @return The route-through flag bits.
+	 */
+	public int[] getRouteThroughBits(){
+		return routeThroughBits;
+	}
+
+	/**
+	 * Gets the number of ids in the graph.
+	 * @return The number of (tile, wire) pairs.
+	 */
+	public int getNodeCount(){
+		return nodeWire.length;
+	}
+
+	/**
+	 * Gets the number of edges in the graph.
+	 * @return The number of connections.
+	 */
+	public int getEdgeCount(){
+		return edgeTarget.length;
+	}
+
+	/**
+	 * Gets the device of this graph.
+	 * @return The device (may be null).
+	 */
+	public Device getDevice(){
+		return dev;
+	}
+
+	//========================================================================//
+	// Incoming Edges
+	//========================================================================//
+	/**
+	 * Creates the incoming edges (the fan-in of each id) from the forward
+	 * edges.  The incoming edges of an id are ordered by source id.
+	 */
+	private synchronized void createInEdges(){
+		if(inEdgeStart != null){
+			return;
+		}
+		int nodeCount = getNodeCount();
+		int[] start = new int[nodeCount + 1];
+		for(int e=0; e < edgeTarget.length; e++){
+			start[edgeTarget[e] + 1]++;
+		}
+		for(int n=0; n < nodeCount; n++){
+			start[n+1] += start[n];
+		}
+		int[] edges = new int[edgeTarget.length];
+		int[] sources = new int[edgeTarget.length];
+		int[] next = new int[nodeCount];
+		for(int n=0; n < nodeCount; n++){
+			for(int e=edgeStart[n]; e < edgeStart[n+1]; e++){
+				int t = edgeTarget[e];
+				int i = start[t] + next[t]++;
+				edges[i] = e;
+				sources[i] = n;
+			}
+		}
+		inEdges = edges;
+		inEdgeSources = sources;
+		inEdgeStart = start;
+	}
+
+	/**
+	 * Gets the first incoming edge of an id.  The incoming edges are created
+	 * on first use.
+	 * @param id The id.
+	 * @return The index of the first incoming edge of id.
+	 */
+	public int getInEdgeStart(int id){
+		if(inEdgeStart == null) createInEdges();
+		return inEdgeStart[id];
+	}
+
+	/**
+	 * Gets the incoming edge after the last incoming edge of an id.
+	 * @param id The id.
+	 * @return The index after the last incoming edge of id.
+	 */
+	public int getInEdgeEnd(int id){
+		if(inEdgeStart == null) createInEdges();
+		return inEdgeStart[id+1];
+	}
+
+	/**
+	 * Gets the id an incoming edge comes from.
+	 * @param inEdge The index of the incoming edge.
+	 * @return The source id.
+	 */
+	public int getInEdgeSource(int inEdge){
+		if(inEdgeStart == null) createInEdges();
+		return inEdgeSources[inEdge];
+	}
+
+	/**
+	 * Gets the forward edge of an incoming edge, which can be used with
+	 * isPIP().
+	 * @param inEdge The index of the incoming edge.
+	 * @return The index of the same connection in the forward edges.
+	 */
+	public int getInEdgeForward(int inEdge){
+		if(inEdgeStart == null) createInEdges();
+		return inEdges[inEdge];
+	}
+
+	//========================================================================//
+	// File Methods
+	//========================================================================//
+	/**
+	 * Checks if the routing graph file of a part exists and is newer than its
+	 * device files.
+	 * @param partName Name of the part.
+	 * @return True if readFromFile() may be used for the part.
+	 */
+	public static boolean isFileUpToDate(String partName){
+		File graphFile = new File(FileTools.getRoutingGraphFileName(partName));
+		long deviceModified = Math.max(new File(FileTools.getDeviceFileName(partName)).lastModified(),
+				new File(FileTools.getMappedDeviceFileName(partName)).lastModified());
+		return graphFile.exists() && graphFile.lastModified() >= deviceModified;
+	}
+
+	/**
+	 * Writes the graph to a file which can be read with readFromFile().  The
+	 * file is written under a temporary name and renamed, so a graph file which
+	 * is being read stays valid and a failed write leaves no partial file.
+	 * @param fileName Name of the file to create.
+	 * @return True if operation is successful, false otherwise.
+	 */
+	public boolean writeToFile(String fileName){
+		File tmp = new File(fileName + ".tmp");
+		try{
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+			try{
+				dos.writeInt(MAGIC);
+				dos.writeInt(FORMAT_VERSION);
+				dos.writeInt(rows);
+				dos.writeInt(columns);
+				dos.writeInt(tileStart.length - 1);
+				dos.writeInt(nodeWire.length);
+				dos.writeInt(edgeTarget.length);
+				for(int[] array : new int[][]{tileStart, nodeWire, edgeStart, edgeTarget, pipBits, routeThroughBits}){
+					for(int i : array){
+						dos.writeInt(i);
+					}
+				}
+			}
+			finally{
+				dos.close();
+			}
+		}
+		catch(IOException e){
+			tmp.delete();
+			return false;
+		}
+		File file = new File(fileName);
+		if(!tmp.renameTo(file)){
+			// Some platforms do not replace an existing file on rename
+			file.delete();
+			if(!tmp.renameTo(file)){
+				tmp.delete();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads a graph written with writeToFile().
+	 * @param fileName Name of the file to read.
+	 * @param dev The device the graph belongs to (checked against the dimensions in the file).
+	 * @return The graph, or null if the file could not be read or does not match the device.
+	 */
+	public static RoutingGraph readFromFile(String fileName, Device dev){
+		try{
+			RandomAccessFile raf = new RandomAccessFile(fileName, "r");
+			try{
+				FileChannel channel = raf.getChannel();
+				IntBuffer ints = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+				if(ints.limit() < HEADER_SIZE || ints.get(0) != MAGIC || ints.get(1) != FORMAT_VERSION){
+					return null;
+				}
+				RoutingGraph g = new RoutingGraph();
+				g.dev = dev;
+				g.rows = ints.get(2);
+				g.columns = ints.get(3);
+				if(dev != null && (g.rows != dev.getRows() || g.columns != dev.getColumns())){
+					return null;
+				}
+				int tileCount = ints.get(4);
+				int nodeCount = ints.get(5);
+				int edgeCount = ints.get(6);
+				g.tileStart = new int[tileCount+1];
+				g.nodeWire = new int[nodeCount];
+				g.edgeStart = new int[nodeCount+1];
+				g.edgeTarget = new int[edgeCount];
+				g.pipBits = new int[(edgeCount + 31) >>> 5];
+				g.routeThroughBits = new int[(edgeCount + 31) >>> 5];
+				ints.position(HEADER_SIZE);
+				ints.get(g.tileStart);
+				ints.get(g.nodeWire);
+				ints.get(g.edgeStart);
+				ints.get(g.edgeTarget);
+				ints.get(g.pipBits);
+				ints.get(g.routeThroughBits);
+				return g;
+			}
+			finally{
+				raf.close();
+			}
+		}
+		catch(IOException e){
+			return null;
+		}
+		catch(RuntimeException e){
+			// Truncated or corrupt file
+			return null;
+		}
+	}
+}
@@ -22,10 +22,11 @@ package edu.byu.ece.rapidSmith.device;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import edu.byu.ece.rapidSmith.design.PIP;
+import edu.byu.ece.rapidSmith.device.helper.SinkPinHashMap;
 import edu.byu.ece.rapidSmith.device.helper.WireHashMap;
 
 
@@ -44,12 +45,8 @@ public class Tile implements Serializable{
 	private String name;
 	/** XDL Tile Type (INT,CLB,...)*/
 	private TileType type;
-	/** This is a list of the sinks within the tile (generally in the primitives) */
-	private HashMap<Integer,SinkPin> sinks;
-	/** This is a list of the sources within the tile (generally in the primitives) */
-	private int[] sources;
-	/** This variable holds all the wires and their connections within the tile */
-	private WireHashMap wireConnections;
+	/** The sinks, sources and wires of the tile, null while they are not loaded (see Device.hydrateTile()) */
+	private volatile Resources resources;
 	/** An array of primitiveSites located within the tile (null if none) */
 	private PrimitiveSite[] primitiveSites;
 	/** Absolute tile row number - the index into the device Tiles[][] array */
@@ -62,16 +59,44 @@ public class Tile implements Serializable{
 	private int tileXCoordinate;
 	/** Reference to this tile's device object */
 	private Device dev;
+	/** Set each time the tile resources are accessed, used to pick tiles to evict (only a hint) */
+	private transient boolean referenced;
+	/** Set once the tile resources are set or changed, such tiles are never evicted */
+	private transient volatile boolean modified;
+
+	/** Swaps the resources of a tile, so eviction can not undo a change */
+	private static final AtomicReferenceFieldUpdater<Tile,Resources> RESOURCES =
+		AtomicReferenceFieldUpdater.newUpdater(Tile.class, Resources.class, "resources");
+	/** The resources of a tile with no sinks, sources or wires */
+	private static final Resources EMPTY = new Resources(null, null, null);
+
+	/**
+	 * The sinks, sources and wires of a tile.  They are always replaced together
+	 * so a thread which read the resources of a tile once keeps a consistent
+	 * set, even if the device releases them (see Device.setHydratedTileLimit()).
+	 */
+	private static final class Resources implements Serializable{
+		private static final long serialVersionUID = -5185146587532415712L;
+		/** This is a list of the sinks within the tile (generally in the primitives) */
+		final SinkPinHashMap sinks;
+		/** This is a list of the sources within the tile (generally in the primitives) */
+		final int[] sources;
+		/** This variable holds all the wires and their connections within the tile */
+		final WireHashMap wireConnections;
+
+		Resources(SinkPinHashMap sinks, int[] sources, WireHashMap wireConnections){
+			this.sinks = sinks;
+			this.sources = sources;
+			this.wireConnections = wireConnections;
+		}
+	}
 
 	/**
 	 * Constructor for the tile class, initializes all the private variables to empty 
 	 * data structures.
 	 */
 	public Tile(){
-		sinks = null;
-		sources = null;
-		wireConnections = null;
-		sinks = null;
+		resources = EMPTY;
 		dev = null;
 	}
 	
@@ -92,12 +117,99 @@ public class Tile implements Serializable{
 	}
 
 	/**
-	 * Gets and returns the HashMap containing the sinks for this tile.  The keys are
+	 * Gets the sinks, sources and wires of this tile, loading them from the
+	 * device if they have not been loaded yet.  Callers must read the returned
+	 * resources rather than reading the field again.
+	 * @return The resources of this tile.
+	 */
+	private Resources ensureHydrated(){
+		Resources r = resources;
+		while(r == null){
+			dev.hydrateTile(this);
+			r = resources;
+		}
+		// Only lazily loaded devices evict tiles, others never read the flag
+		if(!referenced && dev != null && dev.isLazyLoading()){
+			referenced = true;
+		}
+		return r;
+	}
+
+	/**
+	 * Loads the tile resources (see ensureHydrated()) before they are changed
+	 * and records the change so the device will not evict them.  Changes which
+	 * replace the resources must swap them with RESOURCES.compareAndSet() and
+	 * retry if the tile was evicted in between.
+	 * @return The resources of this tile.
+	 */
+	private Resources ensureModifiable(){
+		modified = true;
+		return ensureHydrated();
+	}
+
+	/**
+	 * Checks if the sinks, sources or wires of this tile have been set or changed
+	 * through the public methods of this class (lazy loading does not count).
+	 * @return True if the tile resources were changed, false otherwise.
+	 */
+	boolean isModified(){
+		return modified;
+	}
+
+	/**
+	 * Populates the sinks, sources and wires of a tile which was lazily loaded,
+	 * should only be called by the device.
+	 * @param sinks The sinks of the tile.
+	 * @param sources The sources of the tile.
+	 * @param wires The wires of the tile.
+	 */
+	void hydrate(SinkPinHashMap sinks, int[] sources, WireHashMap wires){
+		this.referenced = true;
+		RESOURCES.compareAndSet(this, null, new Resources(sinks, sources, wires));
+	}
+
+	/**
+	 * Releases the sinks, sources and wires of a lazily loaded tile, they will
+	 * be loaded again from the device on the next access.  Threads which already
+	 * read the resources keep using them.  Tiles which were changed are not
+	 * released.  Should only be called by the device.
+	 */
+	void dehydrate(){
+		Resources r = resources;
+		if(r == null || modified){
+			return;
+		}
+		this.referenced = false;
+		RESOURCES.compareAndSet(this, r, null);
+	}
+
+	/**
+	 * Checks if the sinks, sources and wires of this tile are currently loaded.
+	 * @return True if the tile resources are loaded, false if they will be
+	 * loaded on the next access.
+	 */
+	public boolean isHydrated(){
+		return resources != null;
+	}
+
+	/**
+	 * Gets and clears the flag which records if this tile was accessed since
+	 * the last call, should only be called by the device.
+	 * @return True if the tile resources were accessed since the last call.
+	 */
+	boolean clearReferenced(){
+		boolean r = referenced;
+		referenced = false;
+		return r;
+	}
+
+	/**
+	 * Gets and returns the map containing the sinks for this tile.  The keys are
 	 * the actual sink wires and the values are the SinkPin objects.
-	 * @return The HashMap of sink wire mappings in this tile.
+	 * @return The map of sink wire mappings in this tile.
 	 */
-	public HashMap<Integer,SinkPin> getSinks(){
-		return sinks;
+	public SinkPinHashMap getSinks(){
+		return ensureHydrated().sinks;
 	}
 
 	/**
@@ -105,7 +217,8 @@ public class Tile implements Serializable{
 	 * @param sink The sink wire.
 	 * @return The sink pin object based on the given sink wire.
 	 */
-	public SinkPin getSinkPin(Integer sink){
+	public SinkPin getSinkPin(int sink){
+		SinkPinHashMap sinks = ensureHydrated().sinks;
 		return sinks==null? null : sinks.get(sink);
 	}
 	
@@ -114,8 +227,11 @@ public class Tile implements Serializable{
 	 * during normal usage.
 	 * @param sinks The new sinks to set for this tile.
 	 */
-	public void setSinks(HashMap<Integer,SinkPin> sinks){
-		this.sinks = sinks;
+	public void setSinks(SinkPinHashMap sinks){
+		Resources r;
+		do{
+			r = ensureModifiable();
+		}while(!RESOURCES.compareAndSet(this, r, new Resources(sinks, r.sources, r.wireConnections)));
 	}
 	
 	/**
@@ -123,7 +239,7 @@ public class Tile implements Serializable{
 	 * @return The source wires found in this tile.
 	 */
 	public int[] getSources(){
-		return sources;
+		return ensureHydrated().sources;
 	}
 
 	/**
@@ -132,7 +248,10 @@ public class Tile implements Serializable{
 	 * @param sources The new sources to set for this tile.
 	 */
 	public void setSources(int[] sources){
-		this.sources = sources;
+		Resources r;
+		do{
+			r = ensureModifiable();
+		}while(!RESOURCES.compareAndSet(this, r, new Resources(r.sinks, sources, r.wireConnections)));
 	}
 
 	/**
@@ -140,11 +259,11 @@ public class Tile implements Serializable{
 	 * @return The wires HashMap for this tile.
 	 */
 	public WireHashMap getWireHashMap(){
-		return wireConnections;
+		return ensureHydrated().wireConnections;
 	}
 
 	public Set<Integer> getWires(){
-		return wireConnections.keySet();
+		return ensureHydrated().wireConnections.keySet();
 	}
 	
 	/**
@@ -154,7 +273,30 @@ public class Tile implements Serializable{
 	 * @return An array of wires which connect to the given wire.
 	 */
 	public WireConnection[] getWireConnections(int wire){
-		return wireConnections.get(wire);
+		return ensureHydrated().wireConnections.get(wire);
+	}
+
+	/**
+	 * Gets the connections which can drive the given wire in this tile,
+	 * reversed so getTile() of each connection is the tile of the driving
+	 * wire (see Device.getFanIn()).
+	 * @param wire A wire in this tile.
+	 * @return The reversed connections driving the wire, or null if there are none.
+	 */
+	public WireConnection[] getFanInConnections(int wire){
+		return dev.getFanIn(this, wire);
+	}
+	
+	/**
+	 * Gets the connections of a wire packed into longs (see PackedConnection), in
+	 * the same order as getWireConnections().  Use this in loops which only need
+	 * the fields of the connections.
+	 * @param wire A wire in this tile to query its potential connections.
+	 * @return The packed connections (shared, must not be modified), or null.
+	 */
+	public long[] getPackedConnections(int wire){
+		WireHashMap wireConnections = ensureHydrated().wireConnections;
+		return wireConnections == null ? null : wireConnections.getPacked(wire);
 	}
 	
 	/**
@@ -163,7 +305,10 @@ public class Tile implements Serializable{
 	 * @param wires The new wires to set for this tile.
 	 */
 	public void setWireHashMap(WireHashMap wires){
-		this.wireConnections = wires;
+		Resources r;
+		do{
+			r = ensureModifiable();
+		}while(!RESOURCES.compareAndSet(this, r, new Resources(r.sinks, r.sources, wires)));
 	}
 
 	/**
@@ -189,7 +334,7 @@ public class Tile implements Serializable{
 	 * @param sink The new sink to add. The SinkPin created is initialized to -1,0.
 	 */
 	public void addSink(int sink){
-		sinks.put(sink, new SinkPin(-1,0));
+		ensureModifiable().sinks.put(sink, new SinkPin(-1,0));
 	}
 
 	/**
@@ -198,20 +343,23 @@ public class Tile implements Serializable{
 	 * @param source The new source to add.
 	 */
 	public void addSource(int source){
-		if(this.sources == null){
-			int[] tmp = new int[1];
-			tmp[0] = source;
-			this.sources = tmp;
-		}
-		else{
-			int i;
-			int[] tmp = new int[this.sources.length+1];
-			for(i=0; i < this.sources.length; i++){
-				tmp[i] = sources[i];
+		Resources r;
+		int[] tmp;
+		do{
+			r = ensureModifiable();
+			if(r.sources == null){
+				tmp = new int[1];
+				tmp[0] = source;
 			}
-			tmp[i] = source;
-			this.sources = tmp;
-		}
+			else{
+				int i;
+				tmp = new int[r.sources.length+1];
+				for(i=0; i < r.sources.length; i++){
+					tmp[i] = r.sources[i];
+				}
+				tmp[i] = source;
+			}
+		}while(!RESOURCES.compareAndSet(this, r, new Resources(r.sinks, tmp, r.wireConnections)));
 	}
 	
 	/**
@@ -220,13 +368,14 @@ public class Tile implements Serializable{
 	 * @param dest The actual wire to add to the value or Wire[] in the HashMap.
 	 */
 	public void addConnection(int src, WireConnection dest){
+		WireHashMap wireConnections = ensureModifiable().wireConnections;
 		// Add the wire if it doesn't already exist
-		if(this.wireConnections.get(src) == null){
+		if(wireConnections.get(src) == null){
 			WireConnection[] tmp = {dest};
-			this.wireConnections.put(src, tmp);
+			wireConnections.put(src, tmp);
 		}
 		else{
-			WireConnection[] currentConnections = this.wireConnections.get(src);
+			WireConnection[] currentConnections = wireConnections.get(src);
 			WireConnection[] tmp = new WireConnection[currentConnections.length+1];
 			int i;
 			for(i=0; i < currentConnections.length; i++){
@@ -234,7 +383,7 @@ public class Tile implements Serializable{
 			}
 			tmp[i] = dest;
 			Arrays.sort(tmp);
-			this.wireConnections.put(src, tmp);
+			wireConnections.put(src, tmp);
 		}
 	}
 	
@@ -249,7 +398,7 @@ public class Tile implements Serializable{
 	}
 	
 	private boolean hasConnection(int startWire, int endWire){
-		WireConnection[] wireConns = wireConnections.get(startWire);
+		WireConnection[] wireConns = ensureHydrated().wireConnections.get(startWire);
 		if(wireConns == null || wireConns.length == 0){
 			return false;
 		}
@@ -382,6 +531,7 @@ public class Tile implements Serializable{
 	 * @return A list of all PIPs in this tile.
 	 */
 	public ArrayList<PIP> getPIPs(){
+		WireHashMap wireConnections = ensureHydrated().wireConnections;
 		ArrayList<PIP> pips = new ArrayList<PIP>();
 		for(Integer startWire : wireConnections.keySet()){
 			for(WireConnection endWire : wireConnections.get(startWire)){
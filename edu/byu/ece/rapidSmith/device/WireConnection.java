@@ -45,6 +45,8 @@ public class WireConnection implements Serializable, Comparable<WireConnection>{
 	private int columnOffset;
 	/** Does the source wire connected to this wire make a PIP? */
 	private boolean isPIP;
+	/** Is this PIP a route-through (see Device.getRouteThrough()), not part of equals() */
+	private boolean isRouteThrough;
 	
 	public WireConnection(){
 		this.wire = -1;
@@ -94,10 +96,8 @@ public class WireConnection implements Serializable, Comparable<WireConnection>{
 		
 	
 	public Tile getWireCacheTile(Device dev, Tile currTile){
-		String name = currTile.getName().substring(0, currTile.getName().lastIndexOf("_")+1) +
-				"X" + (currTile.getTileXCoordinate()+this.columnOffset) +
-				"Y" + (currTile.getTileYCoordinate()+this.rowOffset); 
-		return dev.getTile(name);
+		return dev.getTileWithPrefix(currTile, currTile.getTileXCoordinate()+this.columnOffset,
+				currTile.getTileYCoordinate()+this.rowOffset);
 	}
 	
 	public int getRowOffset() {
@@ -129,6 +129,22 @@ public class WireConnection implements Serializable, Comparable<WireConnection>{
 	public boolean isPIP() {
 		return isPIP;
 	}
+
+	/**
+	 * @param isRouteThrough the isRouteThrough to set
+	 */
+	public void setRouteThrough(boolean isRouteThrough) {
+		this.isRouteThrough = isRouteThrough;
+	}
+
+	/**
+	 * Is this PIP a route-through a primitive site?  The flag is set by the
+	 * device on its own connection objects, the details of the route-through
+	 * are found with Device.getRouteThrough().
+	 */
+	public boolean isRouteThrough() {
+		return isRouteThrough;
+	}
 	
 	@Override
 	public int hashCode(){
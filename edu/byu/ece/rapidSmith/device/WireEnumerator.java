@@ -25,6 +25,7 @@ import com.caucho.hessian.io.Hessian2Input;
 import com.caucho.hessian.io.Hessian2Output;
 
 import edu.byu.ece.rapidSmith.device.helper.WireExpressions;
+import edu.byu.ece.rapidSmith.device.helper.WireNameHash;
 import edu.byu.ece.rapidSmith.util.FamilyType;
 import edu.byu.ece.rapidSmith.util.FileTools;
 import edu.byu.ece.rapidSmith.util.MessageGenerator;
@@ -43,8 +44,8 @@ public class WireEnumerator implements Serializable {
 
 	/** A list of all wire names where the index value is the enumeration value */
 	private String[] wireArray;
-	/** An array used for conversion of wire name to wire enumeration */
-	private HashMap<String,Integer> wireMap;
+	/** A perfect hash used for conversion of wire name to wire enumeration */
+	private WireNameHash wireHash;
 	/** An array used for conversion of wire enumeration to wire name */
 	private WireType[] wireTypeArray;
 	/** An array that returns the direction of a wire based on wire enumeration value */
@@ -60,7 +61,7 @@ public class WireEnumerator implements Serializable {
 
 	private List<String> tokens;
 	
-	public static final String wireEnumeratorVersion = "0.2";
+	public static final String wireEnumeratorVersion = "0.3";
 	
 	/**
 	 * Constructor, does not initialize anything
@@ -74,7 +75,10 @@ public class WireEnumerator implements Serializable {
 	 * wire enumerator.
 	 * @param familyType The base family type to be loaded.
 	 * @return A new wire enumerator or the currently matching loaded wire enumerator.
+	 * @deprecated Only one family can be held at a time and this is not thread safe, use
+	 * util.FileTools.loadWireEnumerator() or DeviceRegistry instead.
 	 */
+	@Deprecated
 	public static WireEnumerator getInstance(FamilyType familyType){
 		if(singleton == null){
 			return singleton = new WireEnumerator();
@@ -140,7 +144,6 @@ public class WireEnumerator implements Serializable {
 	public void parseXDLRCFiles(ArrayList<String> fileNames, String outputFileName){
 		SortedSet<String> wireSet = new TreeSet<>();
 		WireExpressions wireExp = new WireExpressions();
-		wireMap = new HashMap<>();
 		pipSinks = new HashSet<>();
 		pipSources = new HashSet<>();
 		BufferedReader in;
@@ -237,7 +240,6 @@ public class WireEnumerator implements Serializable {
 		wireTypeArray = new WireType[wireSet.size()];
 		
 		for(String str : wireSet){
-			wireMap.put(str, i);
 			wireArray[i] = str;
 			
 			if(externalInpin.contains(str) || externalOutpin.contains(str)){
@@ -259,6 +261,7 @@ public class WireEnumerator implements Serializable {
 			}
 			i++;
 		}
+		wireHash = new WireNameHash(wireArray);
 
 		writeCompactEnumFile(outputFileName);
 	}
@@ -310,11 +313,6 @@ public class WireEnumerator implements Serializable {
 			//=======================================================//
 			hos.writeString(wireEnumeratorVersion);
 			
-			//=======================================================//
-			/* private HashMap<String,Integer> wireMap;              */
-			//=======================================================//
-		     	// We'll rebuild this from wireArray
-
 			//=======================================================//
 			/* private String[] wireArray;                           */
 			//=======================================================//
@@ -361,6 +359,16 @@ public class WireEnumerator implements Serializable {
 				return false;
 			}
 
+			//=======================================================//
+			/* private WireNameHash wireHash;                        */
+			//=======================================================//
+			hos.writeInt(wireHash.getSeed());
+			if(!FileTools.writeIntArray(hos, wireHash.getDisplacements()) ||
+			   !FileTools.writeIntArray(hos, wireHash.getSlots())){
+				System.out.println("Failed to write out wireHash.");
+				return false;
+			}
+
 			hos.close();
 		} catch (IOException e){
 			MessageGenerator.briefErrorAndExit("Error writing to file: " + fileName);
@@ -395,14 +403,6 @@ public class WireEnumerator implements Serializable {
 			//=======================================================//
 			wireArray = FileTools.readStringArray(his);
 
-			//=======================================================//
-			/* private HashMap<String,Integer> wireMap;              */
-			//=======================================================//
-			wireMap = new HashMap<>();
-			for(int i=0; i < wireArray.length; i++){
-				wireMap.put(wireArray[i], i);
-			}
-			
 			//=======================================================//
 			/* private WireType[] wireTypeArray;                     */
 			/* private WireDirection[] wireDirectionArray;           */
@@ -425,7 +425,7 @@ public class WireEnumerator implements Serializable {
 				pipSources.add(wireArray[i]);
 			}
 
-			if (check.equals("0.2")) {
+			if (check.compareTo("0.2") >= 0) {
 				//=======================================================//
 			/* private HashSet<String> pipSinks;                 */
 				//=======================================================//
@@ -434,6 +434,23 @@ public class WireEnumerator implements Serializable {
 					pipSinks.add(wireArray[i]);
 				}
 			}
+
+			//=======================================================//
+			/* private WireNameHash wireHash;                        */
+			//=======================================================//
+			if(check.compareTo("0.3") >= 0){
+				int seed = his.readInt();
+				int[] displacements = FileTools.readIntArray(his);
+				int[] slots = FileTools.readIntArray(his);
+				// Empty arrays are read back as null
+				if(displacements == null) displacements = new int[0];
+				if(slots == null) slots = new int[0];
+				wireHash = new WireNameHash(wireArray, seed, displacements, slots);
+			}
+			else{
+				// Older files do not store the hash
+				wireHash = new WireNameHash(wireArray);
+			}
 			his.close();
 		} catch (FileNotFoundException e){
 			MessageGenerator.briefErrorAndExit("Error: could not find file: " + fileName);
@@ -451,11 +468,20 @@ public class WireEnumerator implements Serializable {
 	 * @param name Name of the wire to get enumeration for
 	 * @return The enumeration value or -1 for a bad wire name.
 	 */
-	public int getWireEnum(String name){
-		if(this.wireMap.containsKey(name)){
-			return this.wireMap.get(name);			
-		}
-		return -1;
+	public int getWireEnum(CharSequence name){
+		return wireHash.get(name);
+	}
+
+	/**
+	 * Gets the unique wire's integer enumeration from a name held as ASCII
+	 * bytes in a buffer, without creating a String.
+	 * @param buf The buffer holding the name.
+	 * @param start The position of the first character of the name.
+	 * @param end The position after the last character of the name.
+	 * @return The enumeration value or -1 for a bad wire name.
+	 */
+	public int getWireEnum(byte[] buf, int start, int end){
+		return wireHash.get(buf, start, end);
 	}
 	
 	/**
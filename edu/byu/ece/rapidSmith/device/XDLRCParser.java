@@ -18,14 +18,27 @@
  */
 package edu.byu.ece.rapidSmith.device;
 
-import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import edu.byu.ece.rapidSmith.device.helper.ByteLineTokenizer;
+import edu.byu.ece.rapidSmith.device.helper.ByteNameMap;
+import edu.byu.ece.rapidSmith.device.helper.SinkPinHashMap;
 import edu.byu.ece.rapidSmith.device.helper.WireHashMap;
 import edu.byu.ece.rapidSmith.primitiveDefs.Connection;
 import edu.byu.ece.rapidSmith.primitiveDefs.Element;
@@ -42,6 +55,12 @@ import edu.byu.ece.rapidSmith.util.StringPool;
  * files used by XDL Tools.  It also extracts the primitive definitions from the 
  * XDLRC.  This parser is an improved version of the JavaCC parser which is no
  * longer in use.
+ * 
+ * The file is read as bytes and each tile (from its "(tile" line to its 
+ * "(tile_summary" line) is handed as a block of bytes to a pool of worker 
+ * threads.  Workers build the wire, sink and source maps of their tile and 
+ * the tiles are then merged into the device pools in file order, so the
+ * resulting device is the same no matter how many threads are used.
  * @author Chris Lavin
  * Created on: Jul 7, 2010
  */
@@ -54,18 +73,35 @@ public class XDLRCParser{
 	private WireEnumerator we;
 	/** The list of extracted primitive definitions */
 	private PrimitiveDefList defs;
-	/** The current tile that is being parsed */
-	private Tile currTile;
-	/** A list to keep track of primitive sites in the current tile */
-	private ArrayList<PrimitiveSite> tilePrimitiveSites = new ArrayList<PrimitiveSite>(4);
-	/** This is the file input stream for reading the XDLRC */
-	private BufferedReader br;
-	/** The current line buffer */
+	/** This reads the XDLRC file */
+	private ByteLineTokenizer reader;
+	/** The current line buffer (only used outside of tiles) */
 	private String line;
-	/** The current line split into parts by whitespace */
+	/** The current line split into parts by whitespace (only used outside of tiles) */
 	private List<String> parts;
 	/** A collection of all unique Strings (to help save memory) */
 	private StringPool pool;
+	/** The number of threads parsing tile blocks */
+	private int threadCount;
+	/** Tile names to (row << 16 | column) */
+	private ByteNameMap tileNames;
+	/** Wires which are site sources or PIP sinks, by wire enumeration */
+	private boolean[] sourceWires;
+	/** Wires which are site sinks or PIP sources, by wire enumeration */
+	private boolean[] sinkWires;
+	/** The lines of the tile currently being read, null between tiles */
+	private byte[] block;
+	/** The used length of block */
+	private int blockLength;
+	
+	private static final byte[] TILE_PREFIX = "\t(tile ".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] TILE_SUMMARY_PREFIX = "\t\t(tile_summary ".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] PIP_PREFIX = "\t\t(pip ".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] WIRE_PREFIX = "\t\t(wire ".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] PRIMITIVE_SITE_PREFIX = "\t\t(primitive_site ".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] TILES_PREFIX = "(tiles ".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] REPORT_PREFIX = "(xdl_resource_report ".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] PRIMITIVE_DEFS_PREFIX = "(primitive_defs ".getBytes(StandardCharsets.ISO_8859_1);
 	
 	/** 
 	 * General Constructor
@@ -73,6 +109,25 @@ public class XDLRCParser{
 	public XDLRCParser(){
 		dev = new Device();
 		pool = new StringPool();
+		threadCount = Runtime.getRuntime().availableProcessors();
+	}
+	
+	/**
+	 * Sets the number of threads used to parse the tiles.  With one thread the
+	 * tiles are parsed by the calling thread.  The parsed device is the same 
+	 * for any number of threads.
+	 * @param threadCount The number of threads (at least 1).
+	 */
+	public void setThreadCount(int threadCount){
+		this.threadCount = Math.max(1, threadCount);
+	}
+	
+	/**
+	 * Gets the number of threads used to parse the tiles.
+	 * @return The number of threads.
+	 */
+	public int getThreadCount(){
+		return threadCount;
 	}
 	
 	/** 
@@ -80,8 +135,11 @@ public class XDLRCParser{
 	 * @return The next line from the file, null if EOF.
 	 */
 	private String readLine(){
+		line = null;
 		try{
-			line = br.readLine();
+			if(reader.next()){
+				line = reader.getLine();
+			}
 		}
 		catch(IOException e){
 			MessageGenerator.briefErrorAndExit("Error parsing XDLRC file.");
@@ -118,55 +176,306 @@ public class XDLRCParser{
 	}
 
 	/**
-	 * Parses the XDLRC Wire construct and populates connections and
-	 * wires accordingly.
+	 * The result of parsing the lines of one tile.  The connections are kept
+	 * in file order so the merge adds them to the device pools in the same 
+	 * order as a sequential parse would.
 	 */
-	private void parseWire(){
-		int currTileWire = we.getWireEnum(parts.get(2));
-		boolean tileWireIsSource =
-				we.getWireType(currTileWire) == WireType.SITE_SOURCE ||
-				we.isPIPSinkWire(currTileWire);
-		int wireConnCount = Integer.parseInt(parts.get(3).replace(")", ""));
-		for(int i = 0; i < wireConnCount; i++){
-			readLine();
-			int currWire = we.getWireEnum(parts.get(3).substring(0, parts.get(3).length() - 1));
-			boolean currWireIsSiteSink = we.getWireType(currWire) == WireType.SITE_SINK;
-			boolean currWireIsPIPSource = we.isPIPSourceWire(currWire);
-			boolean currWireIsSink = currWireIsSiteSink || currWireIsPIPSource;
-			if(tileWireIsSource || currWireIsSink) {
-				Tile t = dev.getTile(parts.get(2));
-				WireConnection wire = dev.wirePool.add(new WireConnection(currWire,
-									currTile.getRow() - t.getRow(),
-									currTile.getColumn() - t.getColumn(),
-									false));
-				currTile.addConnection(currTileWire,wire);
+	private static class TileBlock{
+		int row;
+		int column;
+		String name;
+		TileType type;
+		/** Wire connections of the tile, each array is sorted */
+		WireHashMap wires = new WireHashMap();
+		SinkPinHashMap sinks = new SinkPinHashMap();
+		int[] sources;
+		/** All wire connections in file order */
+		ArrayList<WireConnection> connections = new ArrayList<WireConnection>();
+		/** The route-through of each connection in connections (or null) */
+		ArrayList<PIPRouteThrough> routeThroughs = new ArrayList<PIPRouteThrough>();
+		ArrayList<SiteRecord> sites = new ArrayList<SiteRecord>(4);
+	}
+	
+	/**
+	 * A primitive site of a tile block, the PrimitiveSite is created when the
+	 * block is merged because its pin names are shared through the StringPool.
+	 */
+	private static class SiteRecord{
+		String name;
+		PrimitiveType type;
+		String[] pinNames;
+		int[] pinWires;
+	}
+	
+	/**
+	 * Parses a tile block in a worker thread.
+	 */
+	private class TileBlockTask implements Callable<TileBlock>{
+		private byte[] data;
+		private int length;
+		
+		public TileBlockTask(byte[] data, int length){
+			this.data = data;
+			this.length = length;
+		}
+		
+		@Override
+		public TileBlock call() throws Exception{
+			return parseTileBlock(data, length);
+		}
+	}
+	
+	private int getWire(ByteLineTokenizer t, int token, int end){
+		return we.getWireEnum(t.getBuffer(), t.getTokenStart(token), end);
+	}
+	
+	/**
+	 * Gets the wire enumeration of a token of a wire construct, which must 
+	 * be a known wire.
+	 */
+	private int getKnownWire(ByteLineTokenizer t, int token, int end){
+		int wire = getWire(t, token, end);
+		if(wire == -1){
+			throw new IllegalStateException("Unknown wire: " + 
+					new String(t.getBuffer(), t.getTokenStart(token), end - t.getTokenStart(token), StandardCharsets.ISO_8859_1));
+		}
+		return wire;
+	}
+	
+	/**
+	 * Parses the lines of one tile.  This only reads the parser's lookup
+	 * tables and does not change the device, so several blocks can be parsed
+	 * at the same time.
+	 * @param data The lines of the tile.
+	 * @param length The used length of data.
+	 * @return The parsed tile.
+	 */
+	private TileBlock parseTileBlock(byte[] data, int length) throws IOException{
+		ByteLineTokenizer t = new ByteLineTokenizer(data, length);
+		TileBlock b = new TileBlock();
+		LinkedHashMap<Integer, ArrayList<WireConnection>> wires = new LinkedHashMap<Integer, ArrayList<WireConnection>>();
+		int[] sources = new int[16];
+		int sourceCount = 0;
+		
+		while(t.next()){
+			/////////////////////////////////////////////////////////////////////
+			//		(pip CLB_X1Y63 CIN0 -> XMUX_PINWIRE0 (_ROUTETHROUGH-CIN-XMUX SLICEM))
+			/////////////////////////////////////////////////////////////////////
+			if(t.startsWith(PIP_PREFIX)){
+				WireConnection currWire;
+				PIPRouteThrough currRouteThrough = null;
+				if(t.tokenEndsWithParenthesis(4)){
+					currWire = new WireConnection(getWire(t, 4, t.getTokenEnd(4)-1), 0, 0, true);
+				}
+				else{ // This is a route-through PIP
+					currWire = new WireConnection(getWire(t, 4, t.getTokenEnd(4)), 0, 0, true);
+					String typeName = t.getToken(6);
+					PrimitiveType type = Utils.createPrimitiveType(typeName.substring(0, typeName.length() - 2));
+					String[] tokens = t.getToken(5).split("-");
+					currRouteThrough = new PIPRouteThrough(type, we.getWireEnum(tokens[1]), we.getWireEnum(tokens[2]));
+				}
+				addConnection(wires, getWire(t, 2, t.getTokenEnd(2)), currWire);
+				b.connections.add(currWire);
+				b.routeThroughs.add(currRouteThrough);
 			}
+			/////////////////////////////////////////////////////////////////////
+			// 		(wire SECONDARY_LOGIC_OUTS7_INT 1
+			/////////////////////////////////////////////////////////////////////
+			else if(t.startsWith(WIRE_PREFIX)){
+				int currTileWire = getKnownWire(t, 1, t.getTokenEnd(1));
+				boolean tileWireIsSource = sourceWires[currTileWire];
+				int wireConnCount = t.parseInt(2);
+				for(int i = 0; i < wireConnCount; i++){
+					t.next();
+					int currWire = getKnownWire(t, 2, t.getTokenEnd(2)-1);
+					if(tileWireIsSource || sinkWires[currWire]){
+						int tileAddr = tileNames.get(t.getBuffer(), t.getTokenStart(1), t.getTokenEnd(1));
+						if(tileAddr == -1){
+							throw new IllegalStateException("Unknown tile: " + t.getToken(1));
+						}
+						WireConnection wire = new WireConnection(currWire,
+									b.row - (tileAddr >> 16),
+									b.column - (tileAddr & 0xFFFF),
+									false);
+						addConnection(wires, currTileWire, wire);
+						b.connections.add(wire);
+						b.routeThroughs.add(null);
+					}
+				}
+			}
+			/////////////////////////////////////////////////////////////////////
+			//		(primitive_site SLICE_X34Y126 SLICEM internal 34
+			/////////////////////////////////////////////////////////////////////
+			else if(t.startsWith(PRIMITIVE_SITE_PREFIX)){
+				SiteRecord site = new SiteRecord();
+				site.name = t.getToken(1);
+				site.type = Utils.createPrimitiveType(t.getToken(2));
+				int pinWireCount = t.parseInt(4);
+				site.pinNames = new String[pinWireCount];
+				site.pinWires = new int[pinWireCount];
+				for(int i = 0; i < pinWireCount; i++){
+					t.next();
+					int extPin = getWire(t, 3, t.getTokenEnd(3)-1);
+					site.pinNames[i] = t.getToken(1);
+					site.pinWires[i] = extPin;
+					if(t.getTokenEnd(2) - t.getTokenStart(2) == 5 && t.getToken(2).equals("input")){
+						b.sinks.put(extPin, new SinkPin(-1,0));
+					}
+					else{
+						if(sourceCount == sources.length){
+							sources = Arrays.copyOf(sources, sourceCount * 2);
+						}
+						sources[sourceCount++] = extPin;
+					}
+				}
+				b.sites.add(site);
+			}
+			/////////////////////////////////////////////////////////////////////
+			//	(tile 1 48 CLB_X22Y63 CLB 4
+			/////////////////////////////////////////////////////////////////////
+			else if(t.startsWith(TILE_PREFIX)){
+				b.row = t.parseInt(1);
+				b.column = t.parseInt(2);
+				b.name = t.getToken(3);
+				b.type = Utils.createTileType(t.getToken(4));
+			}
+		}
+		
+		for(Map.Entry<Integer, ArrayList<WireConnection>> e : wires.entrySet()){
+			ArrayList<WireConnection> list = e.getValue();
+			WireConnection[] connections = list.toArray(new WireConnection[list.size()]);
+			// A stable sort gives the same order as sorting after each addition
+			Arrays.sort(connections);
+			b.wires.put(e.getKey(), connections);
+		}
+		b.sources = sourceCount == 0 ? null : Arrays.copyOf(sources, sourceCount);
+		return b;
+	}
+	
+	private static void addConnection(LinkedHashMap<Integer, ArrayList<WireConnection>> wires, int src, WireConnection dest){
+		ArrayList<WireConnection> list = wires.get(src);
+		if(list == null){
+			list = new ArrayList<WireConnection>(2);
+			wires.put(src, list);
 		}
+		list.add(dest);
 	}
 	
 	/**
-	 * Parses the primitive_site construct in XDLRC and creates 
-	 * the appropriate objects. 
+	 * Adds a parsed tile to the device, this is always called in file order.
+	 * @param b The parsed tile.
 	 */
-	private void parsePrimitiveSite(){
-		PrimitiveSite currPrimitiveSite = new PrimitiveSite();
-		currPrimitiveSite.setTile(currTile);
-		currPrimitiveSite.setName(parts.get(2));
-		currPrimitiveSite.setType(Utils.createPrimitiveType(parts.get(3)));
-		dev.primitiveSites.put(parts.get(2), currPrimitiveSite);
-		int pinWireCount = Integer.parseInt(parts.get(5));
-		for(int i = 0; i < pinWireCount; i++){
-			readLine();
-			String extPin = parts.get(4).substring(0, parts.get(4).length() - 1);
-			currPrimitiveSite.addPin(pool.getUnique(parts.get(2)), we.getWireEnum(extPin));
-			if(parts.get(3).equals("input")){
-				currTile.addSink(we.getWireEnum(extPin));
+	private void mergeTileBlock(TileBlock b){
+		Tile currTile = dev.getTile(b.row, b.column);
+		currTile.setName(b.name);
+		currTile.setType(b.type);
+		
+	  	int total = (dev.getRows()*dev.getColumns())/100;
+	  	if(!(currTile.getRow() == 0 && currTile.getColumn() == 0)){
+	  		System.out.printf("\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b");
+	  		System.out.printf("  %02d%% done parsing tiles...",processedTiles/total);
+	  	}
+	  	else{
+	  		MessageGenerator.printHeader("Parsing XDLRC Tiles");
+	  		System.out.println("    Part Name: " + dev.getPartName());
+	  		System.out.println("    Tile Rows: " + dev.getRows());
+	  		System.out.println("    Tile Cols: " + dev.getColumns());
+	  		System.out.println("  Total Tiles: " + (dev.getColumns()*dev.getRows()));
+	  		System.out.println();
+	  	}
+		
+		// Add the connections to the pools in file order
+		for(int i=0; i < b.connections.size(); i++){
+			WireConnection currWire = dev.wirePool.add(b.connections.get(i));
+			PIPRouteThrough currRouteThrough = b.routeThroughs.get(i);
+			if(currRouteThrough != null){
+				currRouteThrough = dev.routeThroughPool.add(currRouteThrough);
+			    dev.addRouteThrough(currWire, currRouteThrough);
+			}
+		}
+		// Use the unique connection objects in the tile
+		WireHashMap wires = b.wires;
+		for(int i=0; i < wires.keys.length; i++){
+			if(wires.keys[i] == -1) continue;
+			WireConnection[] connections = wires.values[i];
+			for(int j=0; j < connections.length; j++){
+				connections[j] = dev.wirePool.add(connections[j]);
 			}
-			else{
-				currTile.addSource(we.getWireEnum(extPin));
+		}
+		currTile.setWireHashMap(wires);
+		currTile.setSinks(b.sinks);
+		currTile.setSources(b.sources);
+		
+		// Create an array of primitive sites (more compact than ArrayList)
+		if(b.sites.size() > 0){
+			PrimitiveSite[] ps = new PrimitiveSite[b.sites.size()];
+			for(int i=0; i < b.sites.size(); i++){
+				SiteRecord site = b.sites.get(i);
+				PrimitiveSite currPrimitiveSite = new PrimitiveSite();
+				currPrimitiveSite.setTile(currTile);
+				currPrimitiveSite.setName(site.name);
+				currPrimitiveSite.setType(site.type);
+				dev.primitiveSites.put(site.name, currPrimitiveSite);
+				for(int j=0; j < site.pinNames.length; j++){
+					currPrimitiveSite.addPin(pool.getUnique(site.pinNames[j]), site.pinWires[j]);
+				}
+				ps[i] = currPrimitiveSite;
 			}
+			currTile.setPrimitiveSites(ps);
 		}
-		tilePrimitiveSites.add(currPrimitiveSite);
+		else{
+			currTile.setPrimitiveSites(null);
+		}
+		dev.incrementalRemoveDuplicateTileResources(currTile, we);
+	  	processedTiles++;
+	}
+	
+	/**
+	 * Creates the lookup tables used by the workers once the wire enumerator
+	 * and tile names are known.
+	 * @param tileMap The tile names and locations (see DeviceFilesCreator.createDeviceTileMap()).
+	 */
+	private void createLookupTables(HashMap<String,Integer> tileMap){
+		String[] wires = we.getWires();
+		sourceWires = new boolean[wires.length];
+		sinkWires = new boolean[wires.length];
+		for(String wire : wires){
+			int w = we.getWireEnum(wire);
+			sourceWires[w] = we.getWireType(w) == WireType.SITE_SOURCE || we.isPIPSinkWire(w);
+			sinkWires[w] = we.getWireType(w) == WireType.SITE_SINK || we.isPIPSourceWire(w);
+		}
+		tileNames = new ByteNameMap(tileMap.size());
+		for(Map.Entry<String,Integer> e : tileMap.entrySet()){
+			tileNames.put(e.getKey(), e.getValue());
+		}
+	}
+	
+	/**
+	 * Appends the current line (with a line feed) to the current tile block.
+	 */
+	private void appendLineToBlock(){
+		int start = reader.getLineStart();
+		int length = reader.getLineEnd() - start;
+		if(blockLength + length + 1 > block.length){
+			block = Arrays.copyOf(block, Math.max(block.length * 2, blockLength + length + 1));
+		}
+		System.arraycopy(reader.getBuffer(), start, block, blockLength, length);
+		blockLength += length;
+		block[blockLength++] = '\n';
+	}
+	
+	private TileBlock getTileBlock(Future<TileBlock> future){
+		try{
+			return future.get();
+		}
+		catch(InterruptedException e){
+			MessageGenerator.briefErrorAndExit("Interrupted while parsing XDLRC tiles.");
+		}
+		catch(ExecutionException e){
+			e.getCause().printStackTrace();
+			MessageGenerator.briefErrorAndExit("Error parsing XDLRC tile: " + e.getCause().getMessage());
+		}
+		return null;
 	}
 	
 	/**
@@ -235,115 +544,84 @@ public class XDLRCParser{
 	 * @return The populated device.
 	 */
 	public Device parseXDLRC(String fileName, boolean extractPrimitiveDefs){
+		InputStream in = null;
 		try{
-			br = new BufferedReader(new FileReader(fileName));
+			in = new FileInputStream(fileName);
 		}
 		catch(FileNotFoundException e){
 			MessageGenerator.briefErrorAndExit("ERROR: Could not find file: " + fileName);
 		}
+		reader = new ByteLineTokenizer(in);
 		
-		while((line = readLine()) != null){
-			/////////////////////////////////////////////////////////////////////
-			//		(pip CLB_X1Y63 CIN0 -> XMUX_PINWIRE0 (_ROUTETHROUGH-CIN-XMUX SLICEM))
-			/////////////////////////////////////////////////////////////////////
-			if(line.startsWith("\t\t(pip ")){
-				String endWire = null; 
-				WireConnection currWire = null;
-				if(parts.get(5).endsWith(")")){
-					endWire = parts.get(5).substring(0, parts.get(5).length() - 1);
-					currWire = dev.wirePool.add(new WireConnection(we.getWireEnum(endWire), 0, 0, true));
+		ExecutorService executor = threadCount > 1 ? Executors.newFixedThreadPool(threadCount) : null;
+		ArrayDeque<Future<TileBlock>> pending = new ArrayDeque<Future<TileBlock>>();
+		int maxPending = threadCount * 8;
+		try{
+			while(reader.next()){
+				if(block != null){
+					appendLineToBlock();
+					/////////////////////////////////////////////////////////////////////
+					//		(tile_summary INT_X22Y63 INT 3 598 3312)
+					/////////////////////////////////////////////////////////////////////
+					if(reader.startsWith(TILE_SUMMARY_PREFIX)){
+						if(executor == null){
+							mergeTileBlock(parseTileBlock(block, blockLength));
+						}
+						else{
+							if(pending.size() >= maxPending){
+								mergeTileBlock(getTileBlock(pending.poll()));
+							}
+							pending.add(executor.submit(new TileBlockTask(block, blockLength)));
+						}
+						block = null;
+					}
 				}
-				else{ // This is a route-through PIP
-					endWire = parts.get(5);
-					currWire = dev.wirePool.add(new WireConnection(we.getWireEnum(endWire), 0, 0, true));
-					PrimitiveType type = Utils.createPrimitiveType(parts.get(7).substring(0, parts.get(7).length() - 2));
-					
-					String[] tokens = parts.get(6).split("-");
-					int wire0 = we.getWireEnum(tokens[1]);
-					int wire1 = we.getWireEnum(tokens[2]);
-
-					PIPRouteThrough currRouteThrough = new PIPRouteThrough(type, wire0, wire1);
-					currRouteThrough = dev.routeThroughPool.add(currRouteThrough);
-				    dev.routeThroughMap.put(currWire, currRouteThrough);
+				/////////////////////////////////////////////////////////////////////
+				//	(tile 1 48 CLB_X22Y63 CLB 4
+				/////////////////////////////////////////////////////////////////////
+				else if(reader.startsWith(TILE_PREFIX)){
+					block = new byte[1 << 16];
+					blockLength = 0;
+					appendLineToBlock();
 				}
-				currTile.addConnection(we.getWireEnum(parts.get(3)), currWire);
-			}
-			/////////////////////////////////////////////////////////////////////
-			// 		(wire SECONDARY_LOGIC_OUTS7_INT 1
-			/////////////////////////////////////////////////////////////////////
-			else if(line.startsWith("\t\t(wire ")){
-				parseWire();
-			}
-			/////////////////////////////////////////////////////////////////////
-			//	(tile 1 48 CLB_X22Y63 CLB 4
-			/////////////////////////////////////////////////////////////////////
-			else if(line.startsWith("\t(tile ")){
-				int row = Integer.parseInt(parts.get(2));
-				int col = Integer.parseInt(parts.get(3));
-				currTile = dev.getTile(row, col);
-				currTile.setName(parts.get(4));
-				currTile.setType(Utils.createTileType(parts.get(5)));
-				
-			  	int total = (dev.getRows()*dev.getColumns())/100;
-			  	if(!(currTile.getRow() == 0 && currTile.getColumn() == 0)){
-			  		System.out.printf("\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b");
-			  		System.out.printf("  %02d%% done parsing tiles...",processedTiles/total);
-			  	}
-			  	else{
-			  		MessageGenerator.printHeader("Parsing XDLRC Tiles");
-			  		System.out.println("    Part Name: " + dev.getPartName());
-			  		System.out.println("    Tile Rows: " + dev.getRows());
-			  		System.out.println("    Tile Cols: " + dev.getColumns());
-			  		System.out.println("  Total Tiles: " + (dev.getColumns()*dev.getRows()));
-			  		System.out.println();
-			  	}
-			}
-			/////////////////////////////////////////////////////////////////////
-			//		(primitive_site SLICE_X34Y126 SLICEM internal 34
-			/////////////////////////////////////////////////////////////////////
-			else if(line.startsWith("\t\t(primitive_site ")){
-				parsePrimitiveSite();
-			}
-			/////////////////////////////////////////////////////////////////////
-			//		(tile_summary INT_X22Y63 INT 3 598 3312)
-			/////////////////////////////////////////////////////////////////////
-			else if(line.startsWith("\t\t(tile_summary ")){
-				// Create an array of primitive sites (more compact than ArrayList)
-				if(tilePrimitiveSites.size() > 0){
-					PrimitiveSite[] ps = new PrimitiveSite[tilePrimitiveSites.size()];
-					for(int i=0; i < tilePrimitiveSites.size(); i++){
-						ps[i] = tilePrimitiveSites.get(i);
+				else if(reader.startsWith(TILES_PREFIX)){
+					parts = split(reader.getLine());
+					dev.setRows(Integer.parseInt(parts.get(1)));
+					dev.setColumns(Integer.parseInt(parts.get(2)));
+					dev.createTileArray();
+					for(Tile[] tiles : dev.tiles){
+						for(Tile tile : tiles){
+							tile.setWireHashMap(new WireHashMap());
+							tile.setSinks(new SinkPinHashMap());
+						}
 					}
-					currTile.setPrimitiveSites(ps);
+					HashMap<String,Integer> tileMap = DeviceFilesCreator.createDeviceTileMap(dev.getPartName());
+					dev.populateTileMap(tileMap);
+					createLookupTables(tileMap);
 				}
-				else{
-					currTile.setPrimitiveSites(null);
+				else if(reader.startsWith(REPORT_PREFIX)){
+					parts = split(reader.getLine());
+					dev.setPartName(PartNameTools.removeSpeedGrade(parts.get(2)));
+					we = FileTools.loadWireEnumerator(parts.get(2));
 				}
-				tilePrimitiveSites.clear();
-				dev.incrementalRemoveDuplicateTileResources(currTile, we);
-			  	processedTiles++;
-			}
-			else if(line.startsWith("(tiles ")){
-				dev.setRows(Integer.parseInt(parts.get(1)));
-				dev.setColumns(Integer.parseInt(parts.get(2)));
-				dev.createTileArray();
-				for(Tile[] tiles : dev.tiles){
-					for(Tile tile : tiles){
-						tile.setWireHashMap(new WireHashMap());
-						tile.setSinks(new HashMap<Integer, SinkPin>());
-					}
+				else if(reader.startsWith(PRIMITIVE_DEFS_PREFIX)){
+					// Switch to primitive_defs parsing while loop
+					break;
 				}
-				dev.populateTileMap(DeviceFilesCreator.createDeviceTileMap(dev.getPartName()));
 			}
-			else if(line.startsWith("(xdl_resource_report ")){
-				dev.setPartName(PartNameTools.removeSpeedGrade(parts.get(2)));
-				we = FileTools.loadWireEnumerator(parts.get(2));
-			}
-			else if(line.startsWith("(primitive_defs ")){
-				// Switch to primitive_defs parsing while loop
-				break;
+			while(!pending.isEmpty()){
+				mergeTileBlock(getTileBlock(pending.poll()));
 			}
 		}
+		catch(IOException e){
+			MessageGenerator.briefErrorAndExit("Error parsing XDLRC file.");
+		}
+		catch(IllegalStateException e){
+			MessageGenerator.briefErrorAndExit("Error parsing XDLRC tile: " + e.getMessage());
+		}
+		finally{
+			if(executor != null) executor.shutdownNow();
+		}
 		
 		if(extractPrimitiveDefs){
 			defs = new PrimitiveDefList();
@@ -365,11 +643,11 @@ public class XDLRCParser{
 		for(Tile t : dev.getTileMap().values()){
 			t.setDevice(dev);
 		}
-		dev.populateSinkPins(we);
+		dev.populateSinkPins(we, threadCount);
 		dev.removeDuplicateTileSinks(we);
 		dev.debugPoolCounts();
 		try{
-			br.close();
+			in.close();
 		}
 		catch(IOException e){
 			e.printStackTrace();
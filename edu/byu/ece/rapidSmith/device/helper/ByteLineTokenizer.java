@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads ASCII text line by line directly from a byte buffer, either filled
+ * from a stream or given as a whole (such as a block of lines).  Lines are
+ * split into tokens at spaces and tabs, and tokens are only described by
+ * their positions in the buffer so no Strings are created unless asked for
+ * with getToken() or getLine().  The line and token positions are only valid
+ * until the next call to next().
+ * Created on: Oct 18, 2026
+ */
+public class ByteLineTokenizer {
+
+	/** Size of the buffer when reading from a stream */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/** The stream to read from, null when the whole input is in the buffer */
+	private InputStream in;
+	/** The buffer holding the current line */
+	private byte[] buf;
+	/** Position of the next unread byte in buf */
+	private int pos;
+	/** Position after the last valid byte in buf */
+	private int limit;
+	/** Start (inclusive) and end (exclusive, without line terminator) of the current line */
+	private int lineStart;
+	private int lineEnd;
+	/** Token positions of the current line, computed on demand */
+	private int[] tokenStart = new int[16];
+	private int[] tokenEnd = new int[16];
+	private int tokenCount = -1;
+
+	/**
+	 * Creates a tokenizer reading from a stream.
+	 * @param in The stream to read, it is not closed by this class.
+	 */
+	public ByteLineTokenizer(InputStream in){
+		this.in = in;
+		this.buf = new byte[BUFFER_SIZE];
+	}
+
+	/**
+	 * Creates a tokenizer over the first length bytes of an array.
+	 * @param data The bytes to read.
+	 * @param length The number of valid bytes in data.
+	 */
+	public ByteLineTokenizer(byte[] data, int length){
+		this.buf = data;
+		this.limit = length;
+	}
+
+	/**
+	 * Moves to the next line.
+	 * @return True if there is a next line, false at the end of the input.
+	 * @throws IOException If reading from the stream fails.
+	 */
+	public boolean next() throws IOException{
+		tokenCount = -1;
+		// Number of bytes after pos already known not to be a line feed
+		int scanned = 0;
+		int end;
+		while(true){
+			int i = pos + scanned;
+			while(i < limit && buf[i] != '\n') i++;
+			if(i < limit){
+				end = i;
+				break;
+			}
+			scanned = i - pos;
+			if(in == null || !fill()){
+				end = limit;
+				break;
+			}
+		}
+		if(pos >= limit){
+			lineStart = lineEnd = limit;
+			return false;
+		}
+		lineStart = pos;
+		lineEnd = end;
+		if(lineEnd > lineStart && buf[lineEnd-1] == '\r') lineEnd--;
+		pos = end < limit ? end + 1 : limit;
+		return true;
+	}
+
+	/**
+	 * Moves the unread bytes to the start of the buffer (growing it if a line
+	 * does not fit) and reads more bytes from the stream.
+	 * @return False if the end of the stream was reached.
+	 */
+	private boolean fill() throws IOException{
+		int remaining = limit - pos;
+		if(remaining == buf.length){
+			byte[] tmp = new byte[buf.length * 2];
+			System.arraycopy(buf, pos, tmp, 0, remaining);
+			buf = tmp;
+		}
+		else{
+			System.arraycopy(buf, pos, buf, 0, remaining);
+		}
+		pos = 0;
+		limit = remaining;
+		int n = in.read(buf, limit, buf.length - limit);
+		if(n <= 0) return false;
+		limit += n;
+		return true;
+	}
+
+	private void tokenize(){
+		tokenCount = 0;
+		int i = lineStart;
+		while(i < lineEnd){
+			while(i < lineEnd && (buf[i] == ' ' || buf[i] == '\t')) i++;
+			if(i == lineEnd) break;
+			int start = i;
+			while(i < lineEnd && buf[i] != ' ' && buf[i] != '\t') i++;
+			if(tokenCount == tokenStart.length){
+				int[] tmp = new int[tokenCount * 2];
+				System.arraycopy(tokenStart, 0, tmp, 0, tokenCount);
+				tokenStart = tmp;
+				tmp = new int[tokenCount * 2];
+				System.arraycopy(tokenEnd, 0, tmp, 0, tokenCount);
+				tokenEnd = tmp;
+			}
+			tokenStart[tokenCount] = start;
+			tokenEnd[tokenCount] = i;
+			tokenCount++;
+		}
+	}
+
+	/**
+	 * Checks if the current line (including leading tabs) starts with prefix.
+	 * @param prefix The ASCII bytes to compare.
+	 * @return True if the line starts with prefix.
+	 */
+	public boolean startsWith(byte[] prefix){
+		if(lineEnd - lineStart < prefix.length) return false;
+		for(int i=0; i < prefix.length; i++){
+			if(buf[lineStart+i] != prefix[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the buffer holding the current line, see getLineStart(),
+	 * getTokenStart() and getTokenEnd().
+	 * @return The buffer.
+	 */
+	public byte[] getBuffer(){
+		return buf;
+	}
+
+	public int getLineStart(){
+		return lineStart;
+	}
+
+	public int getLineEnd(){
+		return lineEnd;
+	}
+
+	public int getTokenCount(){
+		if(tokenCount == -1) tokenize();
+		return tokenCount;
+	}
+
+	public int getTokenStart(int token){
+		if(tokenCount == -1) tokenize();
+		return tokenStart[token];
+	}
+
+	public int getTokenEnd(int token){
+		if(tokenCount == -1) tokenize();
+		return tokenEnd[token];
+	}
+
+	/**
+	 * Gets the end of a token without its trailing closing parentheses.
+	 * @param token The index of the token in the line.
+	 * @return The position after the last character which is not a ')'.
+	 */
+	public int getTokenEndTrimmed(int token){
+		int start = getTokenStart(token);
+		int end = getTokenEnd(token);
+		while(end > start && buf[end-1] == ')') end--;
+		return end;
+	}
+
+	/**
+	 * Checks if a token ends with a closing parenthesis.
+	 * @param token The index of the token in the line.
+	 * @return True if the last character of the token is ')'.
+	 */
+	public boolean tokenEndsWithParenthesis(int token){
+		return buf[getTokenEnd(token)-1] == ')';
+	}
+
+	/**
+	 * Parses a decimal token, ignoring trailing closing parentheses.
+	 * @param token The index of the token in the line.
+	 * @return The value of the token.
+	 */
+	public int parseInt(int token){
+		int start = getTokenStart(token);
+		int end = getTokenEndTrimmed(token);
+		boolean negative = start < end && buf[start] == '-';
+		if(negative) start++;
+		if(start == end){
+			throw new NumberFormatException("Not a number: " + getToken(token));
+		}
+		int value = 0;
+		for(int i=start; i < end; i++){
+			int d = buf[i] - '0';
+			if(d < 0 || d > 9){
+				throw new NumberFormatException("Not a number: " + getToken(token));
+			}
+			value = value * 10 + d;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Creates a String of a token.
+	 * @param token The index of the token in the line.
+	 * @return The token.
+	 */
+	public String getToken(int token){
+		return new String(buf, getTokenStart(token), getTokenEnd(token) - getTokenStart(token), StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Creates a String of the current line.
+	 * @return The line without the line terminator.
+	 */
+	public String getLine(){
+		return new String(buf, lineStart, lineEnd - lineStart, StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device.helper;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Maps ASCII names to int values so that names found in a byte buffer (see
+ * ByteLineTokenizer) can be looked up without creating a String.  The names
+ * are stored back to back in a single byte array and located through an open
+ * addressing table.  The map can be read by several threads at the same time
+ * once it has been filled.
+ * Created on: Oct 18, 2026
+ */
+public class ByteNameMap {
+
+	/** All names, back to back */
+	private byte[] names;
+	/** Used length of names */
+	private int namesLength;
+	/** Open addressing table of entry numbers (plus one), 0 marks an empty slot */
+	private int[] table;
+	/** Start of the name of each entry in names */
+	private int[] nameStart;
+	/** Length of the name of each entry */
+	private int[] nameLength;
+	/** Hash of the name of each entry */
+	private int[] nameHash;
+	/** Value of each entry */
+	private int[] values;
+	/** Number of entries */
+	private int size;
+
+	/**
+	 * Creates an empty map.
+	 * @param expectedSize The number of names expected to be put in the map.
+	 */
+	public ByteNameMap(int expectedSize){
+		int capacity = 16;
+		while(capacity < expectedSize * 2) capacity <<= 1;
+		table = new int[capacity];
+		int entries = Math.max(expectedSize, 4);
+		nameStart = new int[entries];
+		nameLength = new int[entries];
+		nameHash = new int[entries];
+		values = new int[entries];
+		names = new byte[entries * 16];
+	}
+
+	private static int hash(byte[] buf, int start, int end){
+		int h = 0x811C9DC5;
+		for(int i=start; i < end; i++){
+			h = (h ^ buf[i]) * 0x01000193;
+		}
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Adds a name to the map, replacing the value of the name if it is already
+	 * in the map.
+	 * @param name The name.
+	 * @param value The value of the name.
+	 */
+	public void put(String name, int value){
+		byte[] bytes = name.getBytes(StandardCharsets.ISO_8859_1);
+		int h = hash(bytes, 0, bytes.length);
+		int slot = findSlot(bytes, 0, bytes.length, h);
+		if(table[slot] != 0){
+			values[table[slot]-1] = value;
+			return;
+		}
+		if(size == values.length){
+			nameStart = copyOf(nameStart, size * 2);
+			nameLength = copyOf(nameLength, size * 2);
+			nameHash = copyOf(nameHash, size * 2);
+			values = copyOf(values, size * 2);
+		}
+		while(namesLength + bytes.length > names.length){
+			byte[] tmp = new byte[names.length * 2];
+			System.arraycopy(names, 0, tmp, 0, namesLength);
+			names = tmp;
+		}
+		System.arraycopy(bytes, 0, names, namesLength, bytes.length);
+		nameStart[size] = namesLength;
+		nameLength[size] = bytes.length;
+		nameHash[size] = h;
+		values[size] = value;
+		namesLength += bytes.length;
+		size++;
+		table[slot] = size;
+		if(size * 2 > table.length){
+			rehash();
+		}
+	}
+
+	private static int[] copyOf(int[] array, int length){
+		int[] tmp = new int[length];
+		System.arraycopy(array, 0, tmp, 0, Math.min(array.length, length));
+		return tmp;
+	}
+
+	private void rehash(){
+		table = new int[table.length * 2];
+		int mask = table.length - 1;
+		for(int e=0; e < size; e++){
+			int slot = nameHash[e] & mask;
+			while(table[slot] != 0){
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = e + 1;
+		}
+	}
+
+	private int findSlot(byte[] buf, int start, int end, int h){
+		int mask = table.length - 1;
+		int slot = h & mask;
+		int length = end - start;
+		while(true){
+			int e = table[slot] - 1;
+			if(e == -1) return slot;
+			if(nameHash[e] == h && nameLength[e] == length){
+				int s = nameStart[e];
+				int i = 0;
+				while(i < length && names[s+i] == buf[start+i]) i++;
+				if(i == length) return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Gets the value of the name held in buf[start..end).
+	 * @param buf The buffer holding the name.
+	 * @param start The position of the first character of the name.
+	 * @param end The position after the last character of the name.
+	 * @return The value of the name or -1 if it is not in the map.
+	 */
+	public int get(byte[] buf, int start, int end){
+		int e = table[findSlot(buf, start, end, hash(buf, start, end))] - 1;
+		return e == -1 ? -1 : values[e];
+	}
+
+	/**
+	 * Gets the value of a name.
+	 * @param name The name.
+	 * @return The value of the name or -1 if it is not in the map.
+	 */
+	public int get(String name){
+		byte[] bytes = name.getBytes(StandardCharsets.ISO_8859_1);
+		return get(bytes, 0, bytes.length);
+	}
+
+	public int size(){
+		return size;
+	}
+}
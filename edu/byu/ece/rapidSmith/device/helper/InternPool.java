@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device.helper;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An interning table which keeps exactly one copy of each distinct object of
+ * type E (as defined by equals() and hashCode()) and gives each copy a dense
+ * integer enumeration in the order the copies were added.  It serves the same
+ * purpose as HashPool without boxing or collision lists: the canonical
+ * objects are stored in chunked arrays indexed by their enumeration and the
+ * lookup tables are open addressing arrays of enumerations and hashes.
+ * <p>
+ * The table is split into segments by hash, each guarded by its own lock, so
+ * several threads can add objects at the same time.  The enumerations then
+ * depend on the order the threads got to the segments; objects added by a
+ * single thread are enumerated in the order they were added.  get(),
+ * size() and getEnumerations() see all objects once the adding threads have
+ * finished.
+ * Created on: Oct 18, 2026
+ * @param <E> The type of object to use.
+ */
+public class InternPool<E> {
+
+	/** Number of segments is 1 << SEGMENT_BITS */
+	private static final int SEGMENT_BITS = 6;
+	/** Number of objects in a chunk is 1 << CHUNK_BITS */
+	private static final int CHUNK_BITS = 12;
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+	/** The lookup tables */
+	private Segment[] segments;
+	/** Canonical objects by enumeration, in chunks which are never moved */
+	private volatile Object[][] chunks;
+	/** Next enumeration to hand out */
+	private AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * An open addressing table of part of the objects.
+	 */
+	private static class Segment {
+		/** Enumeration plus one of each slot, 0 marks an empty slot */
+		int[] slots = new int[16];
+		/** Hash of the object in each slot */
+		int[] hashes = new int[16];
+		/** Number of used slots */
+		int used;
+	}
+
+	public InternPool(){
+		segments = new Segment[1 << SEGMENT_BITS];
+		for(int i=0; i < segments.length; i++){
+			segments[i] = new Segment();
+		}
+		chunks = new Object[0][];
+	}
+
+	private static int spread(int h){
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private Segment getSegment(int hash){
+		return segments[hash >>> (32 - SEGMENT_BITS)];
+	}
+
+	/**
+	 * Finds the slot of obj in a segment, or the empty slot where it would go.
+	 * Must be called while holding the lock of the segment.
+	 */
+	private int findSlot(Segment s, Object obj, int hash){
+		int mask = s.slots.length - 1;
+		int slot = hash & mask;
+		while(true){
+			int e = s.slots[slot] - 1;
+			if(e == -1) return slot;
+			if(s.hashes[slot] == hash && getObject(e).equals(obj)) return slot;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private static void rehash(Segment s){
+		int[] oldSlots = s.slots;
+		int[] oldHashes = s.hashes;
+		s.slots = new int[oldSlots.length * 2];
+		s.hashes = new int[oldSlots.length * 2];
+		int mask = s.slots.length - 1;
+		for(int i=0; i < oldSlots.length; i++){
+			if(oldSlots[i] == 0) continue;
+			int slot = oldHashes[i] & mask;
+			while(s.slots[slot] != 0){
+				slot = (slot + 1) & mask;
+			}
+			s.slots[slot] = oldSlots[i];
+			s.hashes[slot] = oldHashes[i];
+		}
+	}
+
+	private Object getObject(int enumeration){
+		return chunks[enumeration >>> CHUNK_BITS][enumeration & CHUNK_MASK];
+	}
+
+	/**
+	 * Makes sure the chunk holding an enumeration exists.  New chunks are
+	 * published with a new chunk array so other threads see them.
+	 */
+	private void ensureChunk(int enumeration){
+		int c = enumeration >>> CHUNK_BITS;
+		Object[][] current = chunks;
+		if(c < current.length && current[c] != null) return;
+		synchronized(this){
+			current = chunks;
+			if(c < current.length && current[c] != null) return;
+			Object[][] tmp = new Object[Math.max(c + 1, current.length * 2)][];
+			System.arraycopy(current, 0, tmp, 0, current.length);
+			tmp[c] = new Object[1 << CHUNK_BITS];
+			chunks = tmp;
+		}
+	}
+
+	/**
+	 * Finds or inserts obj in a segment.  Must be called while holding the
+	 * lock of the segment.
+	 * @return The enumeration of the unique object equal to obj.
+	 */
+	private int insert(Segment s, E obj, int hash){
+		int slot = findSlot(s, obj, hash);
+		if(s.slots[slot] != 0){
+			return s.slots[slot] - 1;
+		}
+		int enumeration = size.getAndIncrement();
+		ensureChunk(enumeration);
+		chunks[enumeration >>> CHUNK_BITS][enumeration & CHUNK_MASK] = obj;
+		s.slots[slot] = enumeration + 1;
+		s.hashes[slot] = hash;
+		s.used++;
+		if(s.used * 2 > s.slots.length){
+			rehash(s);
+		}
+		return enumeration;
+	}
+
+	/**
+	 * Adds the object to the pool if an equal object is not already in it.
+	 * @param obj The object to be added.
+	 * @return The enumeration of the unique object equal to obj.
+	 */
+	public int intern(E obj){
+		int hash = spread(obj.hashCode());
+		Segment s = getSegment(hash);
+		synchronized(s){
+			return insert(s, obj, hash);
+		}
+	}
+
+	/**
+	 * Adds the object to the pool if an equal object is not already in it.
+	 * @param obj The object to be added.
+	 * @return The unique object contained in the pool.
+	 */
+	@SuppressWarnings("unchecked")
+	public E add(E obj){
+		int hash = spread(obj.hashCode());
+		Segment s = getSegment(hash);
+		synchronized(s){
+			return (E) getObject(insert(s, obj, hash));
+		}
+	}
+
+	/**
+	 * Gets the enumeration of the object in the pool equal to obj.
+	 * @param obj The object to find in the pool.
+	 * @return The enumeration or -1 if no equal object is in the pool.
+	 */
+	public int indexOf(E obj){
+		int hash = spread(obj.hashCode());
+		Segment s = getSegment(hash);
+		synchronized(s){
+			return s.slots[findSlot(s, obj, hash)] - 1;
+		}
+	}
+
+	/**
+	 * Gets the enumeration of the object in the pool equal to obj.
+	 * @param obj The object to get an enumeration value for.
+	 * @return The enumeration value of the object obj.
+	 * @throws IllegalArgumentException If no equal object is in the pool.
+	 */
+	public int getEnumerationValue(E obj){
+		int enumeration = indexOf(obj);
+		if(enumeration == -1){
+			throw new IllegalArgumentException("Object does not have enumeration value: " + obj);
+		}
+		return enumeration;
+	}
+
+	/**
+	 * Checks if the pool contains an object equal to obj.
+	 * @param obj The object to check for.
+	 * @return True if the pool contains the object, false otherwise.
+	 */
+	public boolean contains(E obj){
+		return indexOf(obj) != -1;
+	}
+
+	/**
+	 * Gets the object in the pool that is equal to obj.
+	 * @param obj The object to find in the pool.
+	 * @return The object in the pool that is equal to obj, null otherwise.
+	 */
+	public E find(E obj){
+		int enumeration = indexOf(obj);
+		return enumeration == -1 ? null : get(enumeration);
+	}
+
+	/**
+	 * Gets the object with an enumeration.
+	 * @param enumeration The enumeration of the object.
+	 * @return The unique object.
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(int enumeration){
+		if(enumeration < 0 || enumeration >= size.get()){
+			throw new IndexOutOfBoundsException("Enumeration: " + enumeration + ", size: " + size.get());
+		}
+		return (E) getObject(enumeration);
+	}
+
+	/**
+	 * @return The number of unique objects in the pool.
+	 */
+	public int size(){
+		return size.get();
+	}
+
+	/**
+	 * Creates a list of the unique objects in enumeration order.
+	 * @return A new list of the objects in the pool.
+	 */
+	public ArrayList<E> getEnumerations(){
+		int n = size.get();
+		ArrayList<E> list = new ArrayList<E>(n);
+		for(int i=0; i < n; i++){
+			list.add(get(i));
+		}
+		return list;
+	}
+}
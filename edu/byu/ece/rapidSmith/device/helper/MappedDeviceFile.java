@@ -0,0 +1,806 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device.helper;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import edu.byu.ece.rapidSmith.device.SinkPin;
+import edu.byu.ece.rapidSmith.device.WireConnection;
+
+/**
+ * This class reads and writes the memory mapped version of the device file.  Unlike
+ * the compact (Hessian) device file, every pool is stored as a flat array of ints
+ * so the file can be opened with a MappedByteBuffer and queried in place.  Pool
+ * entries (wires, wire arrays, sinks, sources, wire maps and pin maps) are only
+ * decoded the first time they are requested and are then cached so each unique
+ * object exists once in memory, just like the compact loader.
+ *
+ * A file may be read by several threads at once (devices from the
+ * DeviceRegistry and family templates are shared).  The caches are atomic
+ * arrays and an entry is only ever set once with compareAndSet(), so every
+ * thread gets the same fully built object for a pool index.
+ *
+ * The file begins with a header (magic, format version, rows, columns, section
+ * count) followed by an offset table of (byte offset, byte length) pairs, one for
+ * each section.  All sections are aligned on 4 byte boundaries.  Optional
+ * sections may be missing at the end of the table or be empty (count 0).
+ *
+ * The pools can also be kept in a family template: a file of the same layout
+ * without tiles (0 rows and columns) which holds the pools of every part of a
+ * family written with it.  The pool sections of a part file which uses a
+ * template are empty and its tiles, sites and other sections refer to the
+ * pools of the template (see setTemplate()), so a template loaded once
+ * serves every part of the family.  Templates are only ever appended to, so
+ * the entries a part refers to never change.
+ * Created on: Oct 18, 2026
+ */
+public class MappedDeviceFile {
+
+	/** Identifies a mapped device file ("RSMD") */
+	public static final int MAGIC = 0x52534D44;
+	/** Version of the mapped layout (independent of Device.deviceFileVersion) */
+	public static final int FORMAT_VERSION = 2;
+
+	/** String table: [count][offsets (count+1)][UTF-8 bytes] */
+	public static final int STRINGS = 0;
+	/** Wire pool: [count][part1, part2]* using the compact file packing */
+	public static final int WIRES = 1;
+	/** Wire array pool: table of wire pool indices */
+	public static final int WIRE_ARRAYS = 2;
+	/** Tile sinks pool: table of (sink wire, switch matrix wire, switch matrix offset) */
+	public static final int TILE_SINKS = 3;
+	/** Tile sources pool: table of source wires */
+	public static final int TILE_SOURCES = 4;
+	/** Tile wires pool: table of (wire, wire array index), sorted by wire */
+	public static final int TILE_WIRES = 5;
+	/** Tiles: [count][name, type, sinks, sources, wires, first site, site count]* */
+	public static final int TILES = 6;
+	/** Primitive pin pool: table of (pin name string, wire) */
+	public static final int PRIMITIVE_PINS = 7;
+	/** Primitive sites: [count][name, type, tile index, pin map]* */
+	public static final int PRIMITIVE_SITES = 8;
+	/** Route throughs: [count][type, in wire, out wire, wire pool index]* */
+	public static final int ROUTE_THROUGHS = 9;
+	/** Optional fan-in pool: table of (wire, wire array index), sorted by wire, of reversed connections */
+	public static final int FAN_IN_WIRES = 10;
+	/** Optional fan-in of each tile: [count][fan-in pool index or -1]* */
+	public static final int FAN_IN_TILES = 11;
+	/** Optional region of a cropped device: [1][first row, first column, rows, columns of the full device] */
+	public static final int CROP_REGION = 12;
+	/** Optional exit pool of a cropped device: table of (wire, wire array index), sorted by wire */
+	public static final int CROP_EXIT_WIRES = 13;
+	/** Optional exits of each tile of a cropped device: [count][exit pool index or -1]* */
+	public static final int CROP_EXIT_TILES = 14;
+	/** Optional family template identity: [1][id (2 ints), size of each of TEMPLATE_POOLS]* */
+	public static final int TEMPLATE = 15;
+	/** Total number of sections in the file */
+	public static final int SECTION_COUNT = 16;
+	/** The pool sections which are kept in the family template */
+	public static final int[] TEMPLATE_POOLS = {WIRES, WIRE_ARRAYS, TILE_SINKS, TILE_SOURCES, TILE_WIRES, PRIMITIVE_PINS};
+
+	/** Number of ints in each tile record */
+	public static final int TILE_RECORD_SIZE = 7;
+	/** Number of ints in each primitive site record */
+	public static final int SITE_RECORD_SIZE = 4;
+	/** Number of ints in each route through record */
+	public static final int ROUTE_THROUGH_RECORD_SIZE = 4;
+	/** Number of ints in the crop region record */
+	public static final int CROP_RECORD_SIZE = 4;
+	/** Number of ints in the template record */
+	public static final int TEMPLATE_RECORD_SIZE = 2 + TEMPLATE_POOLS.length;
+	/** Index of the device file version in the string table */
+	public static final int VERSION_STRING = 0;
+	/** Index of the part name in the string table */
+	public static final int PART_NAME_STRING = 1;
+	/** Number of ints in the header before the section offset table */
+	private static final int HEADER_SIZE = 5;
+
+	/** The mapped contents of the file */
+	private MappedByteBuffer buffer;
+	/** An int view of the mapped contents, indices are byte offsets / 4 */
+	private IntBuffer ints;
+	/** Start of each section (in ints) */
+	private int[] sectionStart;
+	/** Number of rows of tiles */
+	private int rows;
+	/** Number of columns of tiles */
+	private int columns;
+
+	// Caches of decoded pool entries, populated on demand (see publish())
+	private AtomicReferenceArray<WireConnection> wireCache;
+	private AtomicReferenceArray<WireConnection[]> wireArrayCache;
+	private AtomicReferenceArray<long[]> packedWireArrayCache;
+	private AtomicReferenceArray<SinkPinHashMap> sinksCache;
+	private AtomicReferenceArray<int[]> sourcesCache;
+	private AtomicReferenceArray<WireHashMap> wireMapCache;
+	private AtomicReferenceArray<WireHashMap> fanInMapCache;
+	private AtomicReferenceArray<WireHashMap> exitMapCache;
+	private AtomicReferenceArray<HashMap<String,Integer>> pinMapCache;
+	private AtomicReferenceArray<String> stringCache;
+	/** Route-through flag of each wire pool entry, from the route through section */
+	private boolean[] routeThroughWires;
+	/** The family template holding the pools of this file (null if the file has its own pools) */
+	private MappedDeviceFile template;
+
+	/**
+	 * Opens and maps the device file.  Nothing but the header is read.
+	 * @param fileName Name of the mapped device file.
+	 * @throws IOException If the file could not be mapped or is not a mapped device file.
+	 */
+	public MappedDeviceFile(String fileName) throws IOException{
+		RandomAccessFile raf = new RandomAccessFile(fileName, "r");
+		try{
+			FileChannel channel = raf.getChannel();
+			if(channel.size() > Integer.MAX_VALUE){
+				throw new IOException("Mapped device file is too large: " + fileName);
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally{
+			raf.close();
+		}
+		ints = buffer.asIntBuffer();
+		if(ints.limit() < HEADER_SIZE || ints.get(0) != MAGIC){
+			throw new IOException("Not a mapped device file: " + fileName);
+		}
+		if(ints.get(1) < 1 || ints.get(1) > FORMAT_VERSION){
+			throw new IOException("Unsupported mapped device file format " + ints.get(1) + ": " + fileName);
+		}
+		rows = ints.get(2);
+		columns = ints.get(3);
+		int sections = ints.get(4);
+		sectionStart = new int[sections];
+		for(int i=0; i < sections; i++){
+			sectionStart[i] = ints.get(HEADER_SIZE + 2*i) >> 2;
+		}
+
+		wireCache = new AtomicReferenceArray<WireConnection>(getCount(WIRES));
+		wireArrayCache = new AtomicReferenceArray<WireConnection[]>(getCount(WIRE_ARRAYS));
+		packedWireArrayCache = new AtomicReferenceArray<long[]>(getCount(WIRE_ARRAYS));
+		sinksCache = new AtomicReferenceArray<SinkPinHashMap>(getCount(TILE_SINKS));
+		sourcesCache = new AtomicReferenceArray<int[]>(getCount(TILE_SOURCES));
+		wireMapCache = new AtomicReferenceArray<WireHashMap>(getCount(TILE_WIRES));
+		pinMapCache = new AtomicReferenceArray<HashMap<String,Integer>>(getCount(PRIMITIVE_PINS));
+		stringCache = new AtomicReferenceArray<String>(getCount(STRINGS));
+		if(hasFanIn()){
+			fanInMapCache = new AtomicReferenceArray<WireHashMap>(getCount(FAN_IN_WIRES));
+		}
+		if(isCropped()){
+			exitMapCache = new AtomicReferenceArray<WireHashMap>(getCount(CROP_EXIT_WIRES));
+		}
+		routeThroughWires = new boolean[getCount(WIRES)];
+		// The route throughs of a part which uses a template refer to its wire pool
+		for(int i=0; !usesTemplate() && i < getCount(ROUTE_THROUGHS); i++){
+			routeThroughWires[getInt(getRecordStart(ROUTE_THROUGHS, i, ROUTE_THROUGH_RECORD_SIZE) + 3)] = true;
+		}
+	}
+
+	/**
+	 * Gets the number of rows of tiles stored in the file.
+	 * @return The number of rows of tiles.
+	 */
+	public int getRows(){
+		return rows;
+	}
+
+	/**
+	 * Gets the number of columns of tiles stored in the file.
+	 * @return The number of columns of tiles.
+	 */
+	public int getColumns(){
+		return columns;
+	}
+
+	/**
+	 * Gets the number of entries in a section.
+	 * @param section The section id (ex: WIRES, TILES).
+	 * @return The number of entries or records in the section.
+	 */
+	public int getCount(int section){
+		return ints.get(sectionStart[section]);
+	}
+
+	/**
+	 * Reads an int directly from the mapping.
+	 * @param index The absolute int index into the file.
+	 * @return The int at the index.
+	 */
+	public int getInt(int index){
+		return ints.get(index);
+	}
+
+	//========================================================================//
+	// Table Access (sections with [count][offsets][data] layout)
+	//========================================================================//
+	/**
+	 * Gets the absolute int index of the first int of a table entry.
+	 * @param section The table section.
+	 * @param entry The entry in the table.
+	 * @return The absolute int index where the entry begins.
+	 */
+	public int getEntryStart(int section, int entry){
+		int start = sectionStart[section];
+		int count = ints.get(start);
+		return start + count + 2 + ints.get(start + 1 + entry);
+	}
+
+	/**
+	 * Gets the number of ints in a table entry.
+	 * @param section The table section.
+	 * @param entry The entry in the table.
+	 * @return The length of the entry in ints.
+	 */
+	public int getEntryLength(int section, int entry){
+		int start = sectionStart[section];
+		return ints.get(start + 2 + entry) - ints.get(start + 1 + entry);
+	}
+
+	/**
+	 * Gets the absolute int index of a fixed size record.
+	 * @param section The record section (ex: TILES, PRIMITIVE_SITES).
+	 * @param record The record number.
+	 * @param recordSize Number of ints in each record.
+	 * @return The absolute int index of the record.
+	 */
+	public int getRecordStart(int section, int record, int recordSize){
+		return sectionStart[section] + 1 + record*recordSize;
+	}
+
+	//========================================================================//
+	// Pool Lookups
+	//========================================================================//
+	/**
+	 * Stores a decoded pool entry in a cache unless another thread stored the
+	 * same entry first.  The entry must be completely built before this is
+	 * called, it is then safely visible to every thread reading the cache.
+	 * @param cache The cache of the pool.
+	 * @param index Index of the entry.
+	 * @param value The decoded entry.
+	 * @return The entry now in the cache, which is the one every caller must use.
+	 */
+	private static <T> T publish(AtomicReferenceArray<T> cache, int index, T value){
+		if(cache.compareAndSet(index, null, value)){
+			return value;
+		}
+		return cache.get(index);
+	}
+
+	/**
+	 * Gets a string from the string table.
+	 * @param index Index of the string.
+	 * @return The string.
+	 */
+	public String getString(int index){
+		String s = stringCache.get(index);
+		if(s == null){
+			int start = sectionStart[STRINGS];
+			int count = ints.get(start);
+			int byteStart = (start + count + 2) << 2;
+			int from = ints.get(start + 1 + index);
+			int to = ints.get(start + 2 + index);
+			byte[] bytes = new byte[to - from];
+			for(int i=0; i < bytes.length; i++){
+				bytes[i] = buffer.get(byteStart + from + i);
+			}
+			s = publish(stringCache, index, new String(bytes, StandardCharsets.UTF_8));
+		}
+		return s;
+	}
+
+	/**
+	 * Gets the unique wire connection from the wire pool.
+	 * @param index Index into the wire pool.
+	 * @return The unique wire connection object.
+	 */
+	public WireConnection getWire(int index){
+		if(template != null) return template.getWire(index);
+		WireConnection w = wireCache.get(index);
+		if(w == null){
+			int i = sectionStart[WIRES] + 1 + 2*index;
+			int part1 = ints.get(i);
+			int part2 = ints.get(i+1);
+			w = new WireConnection(0x7FFFFFFF&part1,part2 >> 16,(part2 << 16) >> 16,(part1 & 0x80000000) == 0x80000000);
+			w.setRouteThrough(routeThroughWires[index]);
+			w = publish(wireCache, index, w);
+		}
+		return w;
+	}
+
+	/**
+	 * Gets the unique wire connection array from the wire array pool.
+	 * @param index Index into the wire array pool.
+	 * @return The unique wire connection array.
+	 */
+	public WireConnection[] getWireArray(int index){
+		if(template != null) return template.getWireArray(index);
+		WireConnection[] array = wireArrayCache.get(index);
+		if(array == null){
+			int start = getEntryStart(WIRE_ARRAYS, index);
+			array = new WireConnection[getEntryLength(WIRE_ARRAYS, index)];
+			for(int i=0; i < array.length; i++){
+				array[i] = getWire(ints.get(start + i));
+			}
+			array = publish(wireArrayCache, index, array);
+		}
+		return array;
+	}
+
+	/**
+	 * Gets a wire array from the wire array pool packed into longs (see
+	 * PackedConnection), read directly from the wire pool without creating
+	 * WireConnection objects.
+	 * @param index Index into the wire array pool.
+	 * @return The packed wire array (shared, must not be modified).
+	 */
+	public long[] getPackedWireArray(int index){
+		if(template != null) return template.getPackedWireArray(index);
+		long[] array = packedWireArrayCache.get(index);
+		if(array == null){
+			int start = getEntryStart(WIRE_ARRAYS, index);
+			array = new long[getEntryLength(WIRE_ARRAYS, index)];
+			for(int i=0; i < array.length; i++){
+				int wire = ints.get(start + i);
+				int w = sectionStart[WIRES] + 1 + 2*wire;
+				array[i] = PackedConnection.fromParts(ints.get(w), ints.get(w+1));
+				if(routeThroughWires[wire]){
+					array[i] |= PackedConnection.ROUTE_THROUGH;
+				}
+			}
+			array = publish(packedWireArrayCache, index, array);
+		}
+		return array;
+	}
+
+	/**
+	 * Gets the unique sink map from the tile sinks pool.
+	 * @param index Index into the tile sinks pool, -1 for none.
+	 * @return The sink map or null if index is -1.
+	 */
+	public SinkPinHashMap getSinks(int index){
+		if(index == -1) return null;
+		if(template != null) return template.getSinks(index);
+		SinkPinHashMap sinks = sinksCache.get(index);
+		if(sinks == null){
+			int start = getEntryStart(TILE_SINKS, index);
+			int end = start + getEntryLength(TILE_SINKS, index);
+			sinks = new SinkPinHashMap((int)((end - start) / 3 / 0.75f) + 1);
+			for(int i=start; i < end; i+=3){
+				sinks.put(ints.get(i), new SinkPin(ints.get(i+1), ints.get(i+2)));
+			}
+			sinks = publish(sinksCache, index, sinks);
+		}
+		return sinks;
+	}
+
+	/**
+	 * Gets the unique sources array from the tile sources pool.
+	 * @param index Index into the tile sources pool, -1 for none.
+	 * @return The source wires or null if index is -1.
+	 */
+	public int[] getSources(int index){
+		if(index == -1) return null;
+		if(template != null) return template.getSources(index);
+		int[] sources = sourcesCache.get(index);
+		if(sources == null){
+			int start = getEntryStart(TILE_SOURCES, index);
+			sources = new int[getEntryLength(TILE_SOURCES, index)];
+			for(int i=0; i < sources.length; i++){
+				sources[i] = ints.get(start + i);
+			}
+			sources = publish(sourcesCache, index, sources);
+		}
+		return sources;
+	}
+
+	/**
+	 * Gets the unique wire map from the tile wires pool.  The returned map reads
+	 * its keys directly from the mapping and decodes wire arrays on demand.
+	 * @param index Index into the tile wires pool, -1 for none.
+	 * @return The wire map or null if index is -1.
+	 */
+	public WireHashMap getWireHashMap(int index){
+		if(index == -1) return null;
+		if(template != null) return template.getWireHashMap(index);
+		WireHashMap map = wireMapCache.get(index);
+		if(map == null){
+			map = publish(wireMapCache, index, new MappedWireHashMap(this,
+					getEntryStart(TILE_WIRES, index), getEntryLength(TILE_WIRES, index) >> 1));
+		}
+		return map;
+	}
+
+	/**
+	 * Creates a new heap based copy of a tile wires pool entry.  Unlike the views
+	 * returned by getWireHashMap(), lookups in the copy are hashed rather than
+	 * searched, which is preferable for tiles that are queried often.
+	 * @param index Index into the tile wires pool, -1 for none.
+	 * @return A new wire map or null if index is -1.
+	 */
+	public WireHashMap createWireHashMap(int index){
+		if(index == -1) return null;
+		if(template != null) return template.createWireHashMap(index);
+		int start = getEntryStart(TILE_WIRES, index);
+		int count = getEntryLength(TILE_WIRES, index) >> 1;
+		WireHashMap map = new WireHashMap((int)(count / 0.75f) + 1);
+		for(int i=0; i < count; i++){
+			map.put(ints.get(start + 2*i), getWireArray(ints.get(start + 2*i + 1)));
+		}
+		return map;
+	}
+
+	/**
+	 * Checks if the file has the optional fan-in sections.  Files written
+	 * before the fan-in sections existed only have the first ten sections.
+	 * @return True if getFanInMap() can be used.
+	 */
+	public boolean hasFanIn(){
+		return sectionStart.length > FAN_IN_TILES && getCount(FAN_IN_TILES) > 0;
+	}
+
+	/**
+	 * Gets the fan-in of a tile.  The keys are the wires of the tile and the
+	 * values are the reversed connections which drive them (see
+	 * Device.getFanIn()).  Tiles with the same fan-in share the same entry of
+	 * the fan-in pool.
+	 * @param tileIndex The unique address of the tile.
+	 * @return A read only view of the fan-in, or null if no connection enters the tile.
+	 */
+	public WireHashMap getFanInMap(int tileIndex){
+		int index = ints.get(sectionStart[FAN_IN_TILES] + 1 + tileIndex);
+		if(index == -1) return null;
+		WireHashMap map = fanInMapCache.get(index);
+		if(map == null){
+			map = publish(fanInMapCache, index, new MappedWireHashMap(this,
+					getEntryStart(FAN_IN_WIRES, index), getEntryLength(FAN_IN_WIRES, index) >> 1));
+		}
+		return map;
+	}
+
+	/**
+	 * Checks if the file holds a cropped device (see Device.crop()), in which
+	 * case it has the crop sections after the fan-in sections.
+	 * @return True if getCropRegion() and getExitMap() can be used.
+	 */
+	public boolean isCropped(){
+		return sectionStart.length > CROP_EXIT_TILES && getCount(CROP_REGION) > 0;
+	}
+
+	/**
+	 * Checks if this file is a family template (it has a template section and
+	 * no tiles).
+	 * @return True if the file only holds pools for the files that use it.
+	 */
+	public boolean isTemplate(){
+		return sectionStart.length > TEMPLATE && getCount(TEMPLATE) > 0 && rows == 0;
+	}
+
+	/**
+	 * Checks if the pools of this part file are kept in a family template,
+	 * which must be set with setTemplate() before any pool entry is read.
+	 * @return True if the file refers to a family template.
+	 */
+	public boolean usesTemplate(){
+		return sectionStart.length > TEMPLATE && getCount(TEMPLATE) > 0 && rows > 0;
+	}
+
+	/**
+	 * Gets the identity of the family template this file is or uses.  A
+	 * template keeps its identity when it is appended to.
+	 * @return The template identity, 0 if there is no template section.
+	 */
+	public long getTemplateId(){
+		if(sectionStart.length <= TEMPLATE || getCount(TEMPLATE) == 0) return 0;
+		int r = getRecordStart(TEMPLATE, 0, TEMPLATE_RECORD_SIZE);
+		return ((long)ints.get(r) << 32) | (ints.get(r+1) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Gets the size of a template pool this file was written with (for a
+	 * template, the size of its own pool).
+	 * @param pool The index of the pool in TEMPLATE_POOLS.
+	 * @return The number of entries of the pool the file refers to.
+	 */
+	public int getTemplatePoolSize(int pool){
+		return ints.get(getRecordStart(TEMPLATE, 0, TEMPLATE_RECORD_SIZE) + 2 + pool);
+	}
+
+	/**
+	 * Sets the family template holding the pools of this file.  Pool lookups
+	 * (getWire(), getWireHashMap(), ...) are then answered by the template and
+	 * share its caches with the other files using it.
+	 * @param template The template, it must have the identity this file
+	 * refers to and at least the entries this file was written with.
+	 * @return True if the template was set, false if it does not match.
+	 */
+	public boolean setTemplate(MappedDeviceFile template){
+		if(!usesTemplate() || !template.isTemplate() || template.getTemplateId() != getTemplateId()){
+			return false;
+		}
+		for(int i=0; i < TEMPLATE_POOLS.length; i++){
+			if(template.getCount(TEMPLATE_POOLS[i]) < getTemplatePoolSize(i)){
+				return false;
+			}
+		}
+		this.template = template;
+		return true;
+	}
+
+	/**
+	 * Gets the family template holding the pools of this file.
+	 * @return The template or null if this file has its own pools.
+	 */
+	public MappedDeviceFile getTemplate(){
+		return template;
+	}
+
+	/**
+	 * Gets the number of entries of a pool, which for a file using a template
+	 * is the size of the pool of the template.
+	 * @param section The pool section.
+	 * @return The number of entries of the pool.
+	 */
+	public int getPoolCount(int section){
+		return template == null ? getCount(section) : template.getCount(section);
+	}
+
+	/**
+	 * Gets the region of the full device a cropped device was taken from.
+	 * @return The first row, first column, rows and columns of the full device.
+	 */
+	public int[] getCropRegion(){
+		int r = getRecordStart(CROP_REGION, 0, CROP_RECORD_SIZE);
+		int[] region = new int[CROP_RECORD_SIZE];
+		for(int i=0; i < region.length; i++){
+			region[i] = ints.get(r + i);
+		}
+		return region;
+	}
+
+	/**
+	 * Gets the connections of a tile of a cropped device which leave the
+	 * region (see Device.getExitConnections()).
+	 * @param tileIndex The unique address of the tile.
+	 * @return A read only view of the exits, or null if no connection leaves the tile.
+	 */
+	public WireHashMap getExitMap(int tileIndex){
+		int index = ints.get(sectionStart[CROP_EXIT_TILES] + 1 + tileIndex);
+		if(index == -1) return null;
+		WireHashMap map = exitMapCache.get(index);
+		if(map == null){
+			map = publish(exitMapCache, index, new MappedWireHashMap(this,
+					getEntryStart(CROP_EXIT_WIRES, index), getEntryLength(CROP_EXIT_WIRES, index) >> 1));
+		}
+		return map;
+	}
+
+	/**
+	 * Gets the unique pin map from the primitive pin pool.
+	 * @param index Index into the primitive pin pool.
+	 * @return The map of internal pin names to external wires.
+	 */
+	public HashMap<String,Integer> getPrimitivePinMap(int index){
+		if(template != null) return template.getPrimitivePinMap(index);
+		HashMap<String,Integer> pins = pinMapCache.get(index);
+		if(pins == null){
+			int start = getEntryStart(PRIMITIVE_PINS, index);
+			int end = start + getEntryLength(PRIMITIVE_PINS, index);
+			pins = new HashMap<String,Integer>();
+			for(int i=start; i < end; i+=2){
+				pins.put(getString(ints.get(i)), ints.get(i+1));
+			}
+			pins = publish(pinMapCache, index, pins);
+		}
+		return pins;
+	}
+
+	//========================================================================//
+	// Parallel Decoding
+	//========================================================================//
+	/**
+	 * Decodes every entry of the pool sections on the given pool of threads so that
+	 * later lookups only read the caches.  Sections which do not depend on each
+	 * other are decoded at the same time and each section is split into ranges of
+	 * entries.  Tile wires pool entries are decoded into heap based maps (see
+	 * createWireHashMap()) rather than views of the mapping, unless a view of the
+	 * entry was already handed out.
+	 * @param pool The pool of threads to decode with.
+	 */
+	public void decodeAll(ForkJoinPool pool){
+		if(template != null){
+			template.decodeAll(pool);
+			return;
+		}
+		pool.invoke(new RecursiveAction(){
+			private static final long serialVersionUID = 4925181950128471025L;
+			@Override
+			protected void compute(){
+				// Wire arrays read the wire pool and pin maps read the string table
+				invokeAll(new DecodeTask(STRINGS), new DecodeTask(WIRES),
+						new DecodeTask(TILE_SINKS), new DecodeTask(TILE_SOURCES));
+				// Wire maps read the wire array pool
+				invokeAll(new DecodeTask(WIRE_ARRAYS), new DecodeTask(PRIMITIVE_PINS));
+				invokeAll(new DecodeTask(TILE_WIRES));
+			}
+		});
+	}
+
+	/**
+	 * Decodes a single pool entry into its cache.
+	 * @param section The pool section.
+	 * @param index Index of the entry in the section.
+	 */
+	private void decodeEntry(int section, int index){
+		switch(section){
+			case STRINGS: getString(index); break;
+			case WIRES: getWire(index); break;
+			case WIRE_ARRAYS: getWireArray(index); break;
+			case TILE_SINKS: getSinks(index); break;
+			case TILE_SOURCES: getSources(index); break;
+			case TILE_WIRES: publish(wireMapCache, index, createWireHashMap(index)); break;
+			case PRIMITIVE_PINS: getPrimitivePinMap(index); break;
+			default: throw new IllegalArgumentException("Section " + section + " is not a pool");
+		}
+	}
+
+	/**
+	 * Decodes a range of entries of a pool section, splitting the range in half
+	 * until it is small enough to decode on one thread.
+	 */
+	private class DecodeTask extends RecursiveAction{
+		private static final long serialVersionUID = -1839120651473066329L;
+		/** Minimum number of entries decoded by a single task */
+		private static final int GRAIN = 2048;
+		private int section;
+		private int from;
+		private int to;
+
+		public DecodeTask(int section){
+			this(section, 0, getCount(section));
+		}
+
+		public DecodeTask(int section, int from, int to){
+			this.section = section;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from <= GRAIN){
+				for(int i=from; i < to; i++){
+					decodeEntry(section, i);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new DecodeTask(section, from, mid), new DecodeTask(section, mid, to));
+		}
+	}
+
+	//========================================================================//
+	// Writing
+	//========================================================================//
+	/**
+	 * Creates the string table section from a list of strings.
+	 * @param strings The strings, in index order.
+	 * @return The string table section as ints.
+	 */
+	public static int[] createStringSection(String[] strings){
+		byte[][] encoded = new byte[strings.length][];
+		int total = 0;
+		for(int i=0; i < strings.length; i++){
+			encoded[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+			total += encoded[i].length;
+		}
+		int[] section = new int[strings.length + 2 + ((total + 3) >> 2)];
+		section[0] = strings.length;
+		ByteBuffer bytes = ByteBuffer.allocate((section.length - strings.length - 2) << 2);
+		int offset = 0;
+		for(int i=0; i < strings.length; i++){
+			section[i+1] = offset;
+			bytes.put(encoded[i]);
+			offset += encoded[i].length;
+		}
+		section[strings.length+1] = offset;
+		bytes.rewind();
+		bytes.asIntBuffer().get(section, strings.length + 2, section.length - strings.length - 2);
+		return section;
+	}
+
+	/**
+	 * Creates a table section ([count][offsets][data]) from a list of entries.
+	 * @param entries The int entries of the table, in index order.
+	 * @return The table section as ints.
+	 */
+	public static int[] createTableSection(int[][] entries){
+		int total = 0;
+		for(int[] entry : entries){
+			total += entry.length;
+		}
+		int[] section = new int[entries.length + 2 + total];
+		section[0] = entries.length;
+		int offset = 0;
+		int dataStart = entries.length + 2;
+		for(int i=0; i < entries.length; i++){
+			section[i+1] = offset;
+			System.arraycopy(entries[i], 0, section, dataStart + offset, entries[i].length);
+			offset += entries[i].length;
+		}
+		section[entries.length+1] = offset;
+		return section;
+	}
+
+	/**
+	 * Writes a mapped device file.
+	 * @param fileName Name of the file to create.
+	 * @param rows Number of rows of tiles.
+	 * @param columns Number of columns of tiles.
+	 * @param sections All of the sections, indexed by section id.
+	 * @throws IOException If there was a problem writing the file.
+	 */
+	public static void write(String fileName, int rows, int columns, int[][] sections) throws IOException{
+		// Written under a temporary name and renamed, so mappings of an
+		// existing file (such as a family template in use) stay valid
+		File tmp = new File(fileName + ".tmp");
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+		try{
+			dos.writeInt(MAGIC);
+			dos.writeInt(FORMAT_VERSION);
+			dos.writeInt(rows);
+			dos.writeInt(columns);
+			dos.writeInt(sections.length);
+			int offset = (HEADER_SIZE + 2*sections.length) << 2;
+			for(int[] section : sections){
+				dos.writeInt(offset);
+				dos.writeInt(section.length << 2);
+				offset += section.length << 2;
+			}
+			for(int[] section : sections){
+				for(int i : section){
+					dos.writeInt(i);
+				}
+			}
+		}
+		finally{
+			dos.close();
+		}
+		File file = new File(fileName);
+		if(!tmp.renameTo(file)){
+			// Some platforms do not replace an existing file on rename
+			file.delete();
+			if(!tmp.renameTo(file)){
+				throw new IOException("Could not rename " + tmp + " to " + fileName);
+			}
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device.helper;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.byu.ece.rapidSmith.device.WireConnection;
+
+/**
+ * A WireHashMap whose keys live in a MappedDeviceFile.  The keys of a tile
+ * wires pool entry are stored sorted as (wire, wire array index) pairs, so
+ * lookups are a binary search directly on the mapping and the wire arrays are
+ * shared with every other map of the same file.
+ *
+ * The public keys and values tables of the map stay empty while it is a view
+ * of the mapping, use keySet(), keyArray() or values() to walk it.  The first
+ * put() copies the pairs into the tables and from then on the map behaves as
+ * a plain WireHashMap (copy on write), the mapping itself is never changed.
+ * Created on: Oct 18, 2026
+ */
+public class MappedWireHashMap extends WireHashMap {
+
+	private static final long serialVersionUID = -3620474532181404125L;
+
+	/** The file which holds the keys of this map, null once copied by put() (read once per call) */
+	private transient volatile MappedDeviceFile file;
+	/** Absolute int index of the first (wire, wire array) pair */
+	private int start;
+	/** Number of (wire, wire array) pairs */
+	private int count;
+
+	private transient volatile SoftReference<Set<Integer>> keySetCache;
+	private transient volatile SoftReference<ArrayList<WireConnection[]>> valuesCache;
+
+	/**
+	 * Creates a view of a tile wires pool entry.
+	 * @param file The mapped device file.
+	 * @param start Absolute int index of the first pair.
+	 * @param count Number of pairs.
+	 */
+	public MappedWireHashMap(MappedDeviceFile file, int start, int count){
+		super(0);
+		this.file = file;
+		this.start = start;
+		this.count = count;
+		this.size = count;
+	}
+
+	/**
+	 * Finds the pair index of the key using a binary search.
+	 * @param file The file which holds the keys.
+	 * @param key The wire to find.
+	 * @return The pair index or -1 if the key is not present.
+	 */
+	private int find(MappedDeviceFile file, int key){
+		int lo = 0;
+		int hi = count - 1;
+		while(lo <= hi){
+			int mid = (lo + hi) >>> 1;
+			int wire = file.getInt(start + (mid << 1));
+			if(wire < key) lo = mid + 1;
+			else if(wire > key) hi = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if the pairs were copied into the tables of this map by put().
+	 * @return True if the map no longer reads the mapping.
+	 */
+	public boolean isCopied(){
+		return file == null;
+	}
+
+	/**
+	 * Copies the (wire, wire array) pairs of the mapping into the keys and
+	 * values tables so the map can be changed.
+	 */
+	private void copy(){
+		int capacity = 4;
+		while(capacity < (int)(count / DEFAULT_LOAD_FACTOR) + 1)
+			capacity <<= 1;
+		keys = new int[capacity];
+		Arrays.fill(keys, -1);
+		values = new WireConnection[capacity][];
+		threshold = (int)(capacity * loadFactor);
+		size = 0;
+		MappedDeviceFile f = file;
+		for(int i=0; i < count; i++){
+			super.put(f.getInt(start + (i << 1)), f.getWireArray(f.getInt(start + (i << 1) + 1)));
+		}
+		keySetCache = null;
+		valuesCache = null;
+		// Readers switch to the tables only once they are filled
+		file = null;
+	}
+
+	@Override
+	public int size(){
+		if(file == null) return super.size();
+		return count;
+	}
+
+	@Override
+	public boolean isEmpty(){
+		if(file == null) return super.isEmpty();
+		return count == 0;
+	}
+
+	@Override
+	public WireConnection[] get(int key){
+		MappedDeviceFile file = this.file;
+		if(file == null) return super.get(key);
+		int i = find(file, key);
+		if(i == -1) return null;
+		return file.getWireArray(file.getInt(start + (i << 1) + 1));
+	}
+
+	@Override
+	public long[] getPacked(int key){
+		MappedDeviceFile file = this.file;
+		if(file == null) return super.getPacked(key);
+		int i = find(file, key);
+		if(i == -1) return null;
+		return file.getPackedWireArray(file.getInt(start + (i << 1) + 1));
+	}
+
+	@Override
+	public void put(int key, WireConnection[] value){
+		if(file != null) copy();
+		super.put(key, value);
+	}
+
+	@Override
+	public int[] keyArray(){
+		MappedDeviceFile file = this.file;
+		if(file == null) return super.keyArray();
+		int[] result = new int[count];
+		for(int i=0; i < count; i++){
+			result[i] = file.getInt(start + (i << 1));
+		}
+		return result;
+	}
+
+	@Override
+	public Set<Integer> keySet(){
+		MappedDeviceFile file = this.file;
+		if(file == null) return super.keySet();
+		Set<Integer> keySet = keySetCache == null ? null : keySetCache.get();
+		if(keySet != null) return keySet;
+		keySet = new HashSet<>();
+		for(int i=0; i < count; i++){
+			keySet.add(file.getInt(start + (i << 1)));
+		}
+		keySetCache = new SoftReference<>(keySet);
+		return keySet;
+	}
+
+	@Override
+	public ArrayList<WireConnection[]> values(){
+		MappedDeviceFile file = this.file;
+		if(file == null) return super.values();
+		ArrayList<WireConnection[]> valuesList = valuesCache == null ? null : valuesCache.get();
+		if(valuesList != null) return valuesList;
+		valuesList = new ArrayList<>(count);
+		for(int i=0; i < count; i++){
+			valuesList.add(file.getWireArray(file.getInt(start + (i << 1) + 1)));
+		}
+		valuesCache = new SoftReference<>(valuesList);
+		return valuesList;
+	}
+}
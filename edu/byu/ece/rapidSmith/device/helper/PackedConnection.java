@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device.helper;
+
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.WireConnection;
+
+/**
+ * Static methods to pack a WireConnection into a single long and to read the
+ * fields back without creating objects.  The layout is the same as the two
+ * ints of the device files: the upper 32 bits hold the PIP flag (bit 63) and
+ * the wire, the lower 32 bits hold the row offset (upper 16 bits) and the
+ * column offset (lower 16 bits).  Bit 62 is the route-through flag, which the
+ * device files keep in a separate section.
+ * Created on: Oct 18, 2026
+ */
+public class PackedConnection {
+
+	/** The route-through flag bit of a packed connection */
+	public static final long ROUTE_THROUGH = 1L << 62;
+
+	private PackedConnection(){
+	}
+
+	/**
+	 * Packs the fields of a connection into a long.
+	 * @param wire The wire enumeration.
+	 * @param rowOffset The row offset (see WireConnection).
+	 * @param columnOffset The column offset (see WireConnection).
+	 * @param isPIP True if the connection is a PIP.
+	 * @return The packed connection.
+	 */
+	public static long pack(int wire, int rowOffset, int columnOffset, boolean isPIP){
+		long part1 = (isPIP ? 0x80000000L : 0L) | (wire & 0x3FFFFFFFL);
+		long part2 = ((rowOffset << 16) | (columnOffset & 0xFFFF)) & 0xFFFFFFFFL;
+		return (part1 << 32) | part2;
+	}
+
+	/**
+	 * Packs the fields of a connection into a long.
+	 * @param wire The wire enumeration.
+	 * @param rowOffset The row offset (see WireConnection).
+	 * @param columnOffset The column offset (see WireConnection).
+	 * @param isPIP True if the connection is a PIP.
+	 * @param isRouteThrough True if the connection is a route-through.
+	 * @return The packed connection.
+	 */
+	public static long pack(int wire, int rowOffset, int columnOffset, boolean isPIP, boolean isRouteThrough){
+		long c = pack(wire, rowOffset, columnOffset, isPIP);
+		return isRouteThrough ? c | ROUTE_THROUGH : c;
+	}
+
+	/**
+	 * Packs a connection into a long.
+	 * @param w The connection.
+	 * @return The packed connection.
+	 */
+	public static long pack(WireConnection w){
+		return pack(w.getWire(), w.getRowOffset(), w.getColumnOffset(), w.isPIP(), w.isRouteThrough());
+	}
+
+	/**
+	 * Packs an array of connections.
+	 * @param connections The connections (may be null).
+	 * @return A new array of packed connections in the same order, or null.
+	 */
+	public static long[] pack(WireConnection[] connections){
+		if(connections == null) return null;
+		long[] packed = new long[connections.length];
+		for(int i=0; i < connections.length; i++){
+			packed[i] = pack(connections[i]);
+		}
+		return packed;
+	}
+
+	/**
+	 * Creates a packed connection from the two ints used in the device files.
+	 * @param part1 The PIP flag and wire.
+	 * @param part2 The row and column offsets.
+	 * @return The packed connection.
+	 */
+	public static long fromParts(int part1, int part2){
+		return ((long)part1 << 32) | (part2 & 0xFFFFFFFFL);
+	}
+
+	public static int getWire(long c){
+		return (int)(c >>> 32) & 0x3FFFFFFF;
+	}
+
+	public static int getRowOffset(long c){
+		return (int)c >> 16;
+	}
+
+	public static int getColumnOffset(long c){
+		return ((int)c << 16) >> 16;
+	}
+
+	public static boolean isPIP(long c){
+		return c < 0;
+	}
+
+	public static boolean isRouteThrough(long c){
+		return (c & ROUTE_THROUGH) != 0;
+	}
+
+	/**
+	 * Gets the tile a packed connection leads to.
+	 * @param dev The device.
+	 * @param currTile The tile the connection starts in.
+	 * @param c The packed connection.
+	 * @return The destination tile, or null if it is outside of the device.
+	 */
+	public static Tile getTile(Device dev, Tile currTile, long c){
+		return dev.getTile(currTile.getRow() - getRowOffset(c), currTile.getColumn() - getColumnOffset(c));
+	}
+
+	/**
+	 * Creates a WireConnection object from a packed connection.
+	 * @param c The packed connection.
+	 * @return A new WireConnection with the same fields.
+	 */
+	public static WireConnection unpack(long c){
+		WireConnection w = new WireConnection(getWire(c), getRowOffset(c), getColumnOffset(c), isPIP(c));
+		w.setRouteThrough(isRouteThrough(c));
+		return w;
+	}
+}
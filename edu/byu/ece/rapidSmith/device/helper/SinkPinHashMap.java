@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device.helper;
+
+import edu.byu.ece.rapidSmith.device.SinkPin;
+
+import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class was specially developed for the tile sinks (sink wire to SinkPin)
+ * in the same spirit as WireHashMap.  Keys are stored as primitive ints in an
+ * open addressing table so sink lookups do not box the wire.  A slot is empty
+ * when its value is null, so null values cannot be stored but any wire
+ * (including -1) can be used as a key.
+ * Created on: Oct 18, 2026
+ */
+public class SinkPinHashMap implements Serializable {
+
+	private static final long serialVersionUID = -2295640317658806163L;
+
+	/** The default initial capacity - MUST be a power of two. */
+	static final int DEFAULT_INITIAL_CAPACITY = 8;
+
+	/** The maximum capacity, MUST be a power of two <= 1<<30. */
+	static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	/** The load factor used when none specified in constructor. */
+	static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+	/** The keys table. Length MUST Always be a power of two. */
+	public int[] keys;
+
+	/** The corresponding values table, null marks an empty slot. */
+	public SinkPin[] values;
+
+	/** The number of key-value mappings contained in this map. */
+	int size;
+
+	/** The next size value at which to resize (capacity * load factor). */
+	int threshold;
+
+	/** The load factor for the hash table. */
+	final float loadFactor;
+
+	// The key set cache is only rebuilt after the map has been modified and is
+	// stored as a soft reference to avoid being a memory drain when not in use.
+	private transient int modification = 0;
+	private transient int keySetCacheModification = -1;
+	private transient SoftReference<Set<Integer>> keySetCache;
+
+	public SinkPinHashMap(int capacity, float loadFactor){
+		if (capacity < 0)
+			throw new IllegalArgumentException("Illegal initial capacity: " + capacity);
+		if (capacity > MAXIMUM_CAPACITY)
+			capacity = MAXIMUM_CAPACITY;
+
+		// Find a power of 2 >= initialCapacity
+		int finalCapacity = 4;
+		while (finalCapacity < capacity)
+			finalCapacity <<= 1;
+
+		this.loadFactor = loadFactor;
+		threshold = (int)(finalCapacity * loadFactor);
+		keys = new int[finalCapacity];
+		values = new SinkPin[finalCapacity];
+		size = 0;
+	}
+
+	public SinkPinHashMap(int capacity){
+		this(capacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	public SinkPinHashMap(){
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	public SinkPinHashMap(SinkPinHashMap other){
+		this((int)(other.size / other.loadFactor) + 1, other.loadFactor);
+		for(int i=0; i < other.keys.length; i++){
+			if(other.values[i] != null){
+				put(other.keys[i], other.values[i]);
+			}
+		}
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	private int indexFor(int key){
+		int mask = keys.length-1;
+		int i = key & mask;
+		while(values[i] != null && keys[i] != key){
+			i = (i+1) & mask;
+		}
+		return i;
+	}
+
+	public SinkPin get(int key){
+		return values[indexFor(key)];
+	}
+
+	public boolean containsKey(int key){
+		return values[indexFor(key)] != null;
+	}
+
+	public void put(int key, SinkPin value){
+		if(value == null)
+			throw new NullPointerException("SinkPinHashMap does not store null values");
+		int i = indexFor(key);
+		if(values[i] == null)
+			size++;
+		keys[i] = key;
+		values[i] = value;
+		modification++;
+
+		if(size > threshold){
+			grow();
+		}
+	}
+
+	/**
+	 * Removes the mapping of a sink wire.  The entries which follow it in its
+	 * probe sequence are shifted back into the freed slot, so no tombstones are
+	 * left and a null value still marks an empty slot.
+	 * @param key The sink wire to remove.
+	 * @return The SinkPin that was removed, or null if the wire was not in the map.
+	 */
+	public SinkPin remove(int key){
+		int mask = keys.length-1;
+		int hole = indexFor(key);
+		SinkPin old = values[hole];
+		if(old == null)
+			return null;
+		int i = (hole+1) & mask;
+		while(values[i] != null){
+			// The entry can fill the hole unless its home slot lies after the hole
+			int home = keys[i] & mask;
+			if(((i - home) & mask) >= ((i - hole) & mask)){
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+			i = (i+1) & mask;
+		}
+		keys[hole] = 0;
+		values[hole] = null;
+		size--;
+		modification++;
+		return old;
+	}
+
+	private void grow(){
+		int newCapacity = keys.length*2;
+		threshold = (int)(newCapacity * loadFactor);
+		int[] oldKeys = keys;
+		SinkPin[] oldValues = values;
+		keys = new int[newCapacity];
+		values = new SinkPin[newCapacity];
+		size = 0;
+		for(int i=0; i < oldKeys.length; i++){
+			if(oldValues[i] != null){
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	/**
+	 * Gets the keys of this map in a new array (in no particular order).
+	 * @return A new array of the sink wires in this map.
+	 */
+	public int[] keyArray(){
+		int[] array = new int[size];
+		int j = 0;
+		for(int i=0; i < keys.length; i++){
+			if(values[i] != null){
+				array[j++] = keys[i];
+			}
+		}
+		return array;
+	}
+
+	public Set<Integer> keySet(){
+		// check if the cached keySet is current
+		Set<Integer> keySet = keySetCache == null ? null : keySetCache.get();
+		if (keySet != null && keySetCacheModification == modification)
+			return keySet;
+		keySetCacheModification = modification;
+
+		keySet = new HashSet<>();
+		for(int key : keyArray()){
+			keySet.add(key);
+		}
+		keySetCache = new SoftReference<>(keySet);
+		return keySet;
+	}
+
+	public ArrayList<SinkPin> values(){
+		ArrayList<SinkPin> valuesList = new ArrayList<>(size);
+		for(SinkPin sp : values){
+			if(sp != null)
+				valuesList.add(sp);
+		}
+		return valuesList;
+	}
+
+	@Override
+	public int hashCode(){
+		int hash = 0;
+		for(int i=0; i < keys.length; i++){
+			if(values[i] != null){
+				hash += keys[i] * 7 + values[i].hashCode() * 13;
+			}
+		}
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj){
+		if (this == obj)
+			return true;
+		if ((obj == null) || (getClass() != obj.getClass()))
+			return false;
+
+		SinkPinHashMap other = (SinkPinHashMap) obj;
+		if (size != other.size)
+			return false;
+		for(int i=0; i < keys.length; i++){
+			if(values[i] != null && !values[i].equals(other.get(keys[i]))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder sb = new StringBuilder("{");
+		int[] sorted = keyArray();
+		Arrays.sort(sorted);
+		for(int key : sorted){
+			if(sb.length() > 1) sb.append(", ");
+			sb.append(key).append('=').append(get(key));
+		}
+		return sb.append('}').toString();
+	}
+}
@@ -20,7 +20,6 @@ package edu.byu.ece.rapidSmith.device.helper;
 
 import java.io.Serializable;
 import java.util.Arrays;
-import java.util.HashMap;
 
 import edu.byu.ece.rapidSmith.device.SinkPin;
 
@@ -33,13 +32,13 @@ public class TileSinks implements Serializable{
 
 	private static final long serialVersionUID = -4542976263775993364L;
 	/** Sinks and mappings for the tile */
-	public HashMap<Integer,SinkPin> sinks;
+	public SinkPinHashMap sinks;
 
 	/**
 	 * Constructor
 	 * @param sinks Mappings for this tileSink.
 	 */
-	public TileSinks(HashMap<Integer,SinkPin> sinks){
+	public TileSinks(SinkPinHashMap sinks){
 		this.sinks = sinks;
 	}
 
@@ -54,11 +53,10 @@ public class TileSinks implements Serializable{
 			return hash;
 		}
 		else{
-			Integer[] keys = new Integer[sinks.keySet().size()];
-			keys = sinks.keySet().toArray(keys);
+			int[] keys = sinks.keyArray();
 			Arrays.sort(keys);
-			hash += Arrays.deepHashCode(keys);
-			for(Integer key : keys) {
+			hash += Arrays.hashCode(keys);
+			for(int key : keys) {
 				hash += sinks.get(key).hashCode() * 7;
 			}
 			/*Arrays.sort(sinks);
@@ -90,13 +88,11 @@ public class TileSinks implements Serializable{
 		if(other.sinks.size() != sinks.size()){
 			return false;
 		}
-		Integer[] keys = new Integer[sinks.keySet().size()];
-		Integer[] otherKeys = new Integer[sinks.keySet().size()];
-		keys = sinks.keySet().toArray(keys);
-		otherKeys = other.sinks.keySet().toArray(otherKeys);
+		int[] keys = sinks.keyArray();
+		int[] otherKeys = other.sinks.keyArray();
 		Arrays.sort(keys);
 		Arrays.sort(otherKeys);
-		if(!Arrays.deepEquals(keys, otherKeys)){
+		if(!Arrays.equals(keys, otherKeys)){
 			return false;
 		}
 		for(int i = 0; i < otherKeys.length; i++){
@@ -82,6 +82,12 @@ public class WireHashMap implements Serializable {
 	private transient SoftReference<Set<Integer>> keySetCache;
 	private transient SoftReference<ArrayList<WireConnection[]>> valuesCache;
 
+	/**
+	 * Packed copies of the values (see PackedConnection), created per slot on
+	 * first use by getPacked().
+	 */
+	private transient long[][] packedValues;
+
     /**
      * The next size value at which to resize (capacity * load factor).
      * @serial
@@ -178,13 +184,40 @@ public class WireHashMap implements Serializable {
         keys[i] = key;
         values[i] = value;
 	    wireHashMapModification++;
+	    if(packedValues != null)
+	    	packedValues[i] = null;
 
         if(size > threshold){
         	grow();
         }
     }
     
+    /**
+     * Gets the connections of a wire packed into longs (see PackedConnection),
+     * in the same order as the array returned by get().  The packed array is
+     * created on first use and shared, it must not be modified.
+     * @param key The source wire.
+     * @return The packed connections or null if the wire is not in the map.
+     */
+    public long[] getPacked(int key){
+	    int i = indexFor(key);
+	    if (keys[i] == -1)
+		    return null;
+	    long[][] packed = packedValues;
+	    if (packed == null){
+	    	packed = new long[keys.length][];
+	    	packedValues = packed;
+	    }
+	    long[] p = packed[i];
+	    if (p == null){
+	    	p = PackedConnection.pack(values[i]);
+	    	packed[i] = p;
+	    }
+	    return p;
+    }
+    
     private void grow(){
+    	packedValues = null;
     	int newCapacity = keys.length*2;
         threshold = (int)(newCapacity * loadFactor);
     	int[] oldKeys = keys;
@@ -217,6 +250,22 @@ public class WireHashMap implements Serializable {
     	return keySet;
     }
     
+    /**
+     * Gets the keys of this map in a new array, in no particular order.  Unlike
+     * keySet() no Integer objects are created and unlike the keys table it
+     * holds no empty slots.
+     * @return The keys of this map.
+     */
+    public int[] keyArray(){
+	    int[] result = new int[size()];
+	    int n = 0;
+	    for (int key : keys) {
+		    if (key != -1)
+			    result[n++] = key;
+	    }
+	    return result;
+    }
+    
     public ArrayList<WireConnection[]> values(){
 	    // check if the cached values are current;
 	    ArrayList<WireConnection[]> valuesList = valuesCache == null ? null : valuesCache.get();
@@ -252,7 +301,8 @@ public class WireHashMap implements Serializable {
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if ((obj == null) || (getClass() != obj.getClass()))
+		// Compare by contents so a mapped map equals a heap map with the same wires
+		if (!(obj instanceof WireHashMap))
 			return false;
 
 		WireHashMap other = (WireHashMap) obj;
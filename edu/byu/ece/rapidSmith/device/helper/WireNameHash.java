@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.device.helper;
+
+import java.io.Serializable;
+
+/**
+ * A minimal perfect hash of a fixed array of names (such as the wire names of
+ * a WireEnumerator) which maps each name to its index in the array.  The
+ * names are split into buckets by one hash, and each bucket has a
+ * displacement which sends its names to distinct free slots of a table with
+ * one slot per name (hash and displace).  A lookup hashes the name once,
+ * reads a displacement and a slot and compares the name found there, so it
+ * does not create any objects and works the same from a CharSequence or from
+ * ASCII bytes in a buffer.
+ * Created on: Oct 18, 2026
+ */
+public class WireNameHash implements Serializable {
+
+	private static final long serialVersionUID = -2786410926524938017L;
+
+	/** Number of seeds tried before giving up on building the hash */
+	private static final int MAX_SEEDS = 32;
+	/** Number of displacements tried for a bucket before trying a new seed */
+	private static final int MAX_DISPLACEMENT = 1 << 16;
+
+	/** The names, the index of a name is its value */
+	private String[] names;
+	/** Seed of the hash functions */
+	private int seed;
+	/** Displacement of each bucket */
+	private int[] displacements;
+	/** Index of the name in each slot */
+	private int[] slots;
+
+	/**
+	 * Creates a hash from precomputed tables (see getSeed(), getDisplacements()
+	 * and getSlots()).
+	 * @param names The names the tables were built for.
+	 * @param seed The seed of the hash functions.
+	 * @param displacements The displacement of each bucket.
+	 * @param slots The index of the name in each slot.
+	 */
+	public WireNameHash(String[] names, int seed, int[] displacements, int[] slots){
+		if(slots.length != names.length || (names.length > 0 && displacements.length == 0)){
+			throw new IllegalArgumentException("Tables do not match the " + names.length + " names.");
+		}
+		this.names = names;
+		this.seed = seed;
+		this.displacements = displacements;
+		this.slots = slots;
+	}
+
+	/**
+	 * Builds the hash of a set of names.
+	 * @param names The distinct names, the index of a name is its value.
+	 */
+	public WireNameHash(String[] names){
+		this.names = names;
+		for(int s=0; s < MAX_SEEDS; s++){
+			if(build(s)) return;
+		}
+		throw new IllegalArgumentException("Could not build a perfect hash, are the names unique?");
+	}
+
+	private static int mix(int h){
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private int bucket(int h1){
+		return (int)(((mix(h1) & 0xFFFFFFFFL) * displacements.length) >>> 32);
+	}
+
+	private int slot(int h1, int h2, int displacement){
+		return (int)(((mix(h2 ^ mix(h1 + displacement)) & 0xFFFFFFFFL) * slots.length) >>> 32);
+	}
+
+	/**
+	 * Tries to place all names with the hash functions of a seed.
+	 * @return True if the tables were built.
+	 */
+	private boolean build(int seed){
+		int n = names.length;
+		this.seed = seed;
+		displacements = new int[n / 3 + 1];
+		slots = new int[n];
+		int[] h1 = new int[n];
+		int[] h2 = new int[n];
+		int[] bucketSize = new int[displacements.length];
+		for(int i=0; i < n; i++){
+			String name = names[i];
+			int a = 0x811C9DC5 ^ seed;
+			int b = seed;
+			for(int j=0; j < name.length(); j++){
+				int c = name.charAt(j) & 0xFF;
+				a = (a ^ c) * 0x01000193;
+				b = b * 31 + c;
+			}
+			h1[i] = a;
+			h2[i] = b;
+			bucketSize[bucket(a)]++;
+		}
+
+		// Group the names by bucket
+		int[] bucketStart = new int[displacements.length + 1];
+		for(int b=0; b < displacements.length; b++){
+			bucketStart[b+1] = bucketStart[b] + bucketSize[b];
+		}
+		int[] members = new int[n];
+		int[] next = new int[displacements.length];
+		for(int i=0; i < n; i++){
+			int b = bucket(h1[i]);
+			members[bucketStart[b] + next[b]++] = i;
+		}
+
+		// Place the largest buckets first
+		int maxSize = 0;
+		for(int size : bucketSize){
+			maxSize = Math.max(maxSize, size);
+		}
+		boolean[] taken = new boolean[n];
+		int[] placed = new int[maxSize];
+		for(int size=maxSize; size > 0; size--){
+			for(int b=0; b < displacements.length; b++){
+				if(bucketSize[b] != size) continue;
+				int d = 0;
+				for(; d < MAX_DISPLACEMENT; d++){
+					int count = 0;
+					for(int k=bucketStart[b]; k < bucketStart[b+1]; k++){
+						int s = slot(h1[members[k]], h2[members[k]], d);
+						if(taken[s]) break;
+						taken[s] = true;
+						placed[count++] = s;
+					}
+					if(count == size) break;
+					for(int k=0; k < count; k++){
+						taken[placed[k]] = false;
+					}
+				}
+				if(d == MAX_DISPLACEMENT) return false;
+				displacements[b] = d;
+				for(int k=0; k < size; k++){
+					slots[placed[k]] = members[bucketStart[b] + k];
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the index of a name.
+	 * @param name The name.
+	 * @return The index of the name or -1 if it is not one of the names.
+	 */
+	public int get(CharSequence name){
+		if(slots.length == 0) return -1;
+		int length = name.length();
+		int a = 0x811C9DC5 ^ seed;
+		int b = seed;
+		for(int j=0; j < length; j++){
+			int c = name.charAt(j) & 0xFF;
+			a = (a ^ c) * 0x01000193;
+			b = b * 31 + c;
+		}
+		int i = slots[slot(a, b, displacements[bucket(a)])];
+		String candidate = names[i];
+		if(candidate.length() != length) return -1;
+		for(int j=0; j < length; j++){
+			if(candidate.charAt(j) != name.charAt(j)) return -1;
+		}
+		return i;
+	}
+
+	/**
+	 * Gets the index of a name held as ASCII bytes in buf[start..end).
+	 * @param buf The buffer holding the name.
+	 * @param start The position of the first character of the name.
+	 * @param end The position after the last character of the name.
+	 * @return The index of the name or -1 if it is not one of the names.
+	 */
+	public int get(byte[] buf, int start, int end){
+		if(slots.length == 0) return -1;
+		int a = 0x811C9DC5 ^ seed;
+		int b = seed;
+		for(int j=start; j < end; j++){
+			int c = buf[j] & 0xFF;
+			a = (a ^ c) * 0x01000193;
+			b = b * 31 + c;
+		}
+		int i = slots[slot(a, b, displacements[bucket(a)])];
+		String candidate = names[i];
+		if(candidate.length() != end - start) return -1;
+		for(int j=0; j < candidate.length(); j++){
+			if(candidate.charAt(j) != (buf[start+j] & 0xFF)) return -1;
+		}
+		return i;
+	}
+
+	public int getSeed(){
+		return seed;
+	}
+
+	public int[] getDisplacements(){
+		return displacements;
+	}
+
+	public int[] getSlots(){
+		return slots;
+	}
+}
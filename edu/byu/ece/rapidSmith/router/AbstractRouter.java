@@ -19,17 +19,22 @@
 package edu.byu.ece.rapidSmith.router;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.Set;
 
 import edu.byu.ece.rapidSmith.design.Design;
 import edu.byu.ece.rapidSmith.design.Net;
 import edu.byu.ece.rapidSmith.design.PIP;
 import edu.byu.ece.rapidSmith.design.Pin;
 import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.NodeIndex;
+import edu.byu.ece.rapidSmith.device.RoutingGraph;
 import edu.byu.ece.rapidSmith.device.Tile;
 import edu.byu.ece.rapidSmith.device.WireConnection;
 import edu.byu.ece.rapidSmith.device.WireEnumerator;
@@ -44,15 +49,38 @@ public abstract class AbstractRouter{
 	protected Device dev;
 	/** Utility class to convert to/from wire names and enumerations */
 	protected WireEnumerator we;
-	/** This keeps track of all the used nodes in the chip during routing */
+	/** This keeps track of all the used nodes in the chip during routing and of the nets using them, see getUsedResources() */
+	private ResourceUsage usedResources;
+	/**
+	 * This keeps track of all the used nodes in the chip during routing.
+	 * @deprecated This is now a view of getUsedResources(), use it instead.
+	 */
+	@Deprecated
 	protected HashSet<Node> usedNodes;
-	/** Keeps track for each used node by which net it is used by */
-	protected HashMap<Node,LinkedList<Net>> usedNodesMap; // TODO - Does this really need to have multiple values, resources can't be used by multiple nets
-	/** This keeps track of all the visited nodes in the chip during routing */
-	protected HashSet<Node> visitedNodes;
+	/**
+	 * Keeps track for each used node by which net it is used by.
+	 * @deprecated This is now a view of the nets of getUsedResources(), use it
+	 * instead.  The lists it returns are copies.
+	 */
+	@Deprecated
+	protected HashMap<Node,LinkedList<Net>> usedNodesMap;
 	/** The current working net list */
 	public ArrayList<Net> netList;
-	/** A Priority Queue for nodes to be processed */
+	/** The queued and visited nodes of the connection being routed, see getSearch() */
+	private NodeSearch search;
+	/**
+	 * This keeps track of all the visited nodes in the chip during routing.
+	 * @deprecated This is now a view of the visited wires of getSearch(), use
+	 * it instead.
+	 */
+	@Deprecated
+	protected HashSet<Node> visitedNodes;
+	/**
+	 * A Priority Queue for nodes to be processed.
+	 * @deprecated This is now a view of the queue of getSearch(), use it
+	 * instead.
+	 */
+	@Deprecated
 	protected PriorityQueue<Node> queue;
 	/** Some nodes are reserved for particular routes to minimize routing conflicts later */
 	protected HashMap<Net,ArrayList<Node>> reservedNodes;
@@ -71,6 +99,11 @@ public abstract class AbstractRouter{
 	/** PIPs of the current net being routed */
 	protected ArrayList<PIP> netPIPs;
 
+	/**
+	 * @deprecated No longer used, the used resources are tested by tile and
+	 * wire (see isNodeUsed()).
+	 */
+	@Deprecated
 	protected Node tempNode;
 	
 	/** A flag indicating if the current connection was routed successfully */
@@ -88,6 +121,8 @@ public abstract class AbstractRouter{
 	/** Counts the number of times the router failed to route a connection */
 	protected int failedConnections;
 	NodeFactory<? extends Node> factory;
+	/** Physical routing nodes of the device, null to find intermediate wires from the wire connections */
+	protected NodeIndex nodeIndex;
 	
 	public AbstractRouter() {
 		this(new DefaultNodeFactory());
@@ -97,12 +132,11 @@ public abstract class AbstractRouter{
 		factory = n;
 		// Initialize variables
 		tempNode = factory.newNode();
-		usedNodes = new HashSet<Node>();
-		usedNodesMap = new HashMap<Node, LinkedList<Net>>();
+		usedNodes = new UsedNodeSet();
+		usedNodesMap = new UsedNodeMap();
+		visitedNodes = new VisitedNodeSet();
+		queue = new SearchQueue();
 		reservedNodes = new HashMap<Net, ArrayList<Node>>();
-		// Create a compare function based on node's cost
-		queue = new PriorityQueue<Node>(16, new Comparator<Node>() {
-			public int compare(Node i, Node j) {return i.cost - j.cost;}});
 
 		totalConnections = 0;
 		totalNodesProcessed = 0;
@@ -115,19 +149,94 @@ public abstract class AbstractRouter{
 		return design;
 	}
 	
+	/**
+	 * Gets the used routing resources of the device and the nets using them.
+	 * The resources are kept in hash tables unless useRoutingGraph() was
+	 * called.
+	 * @return The used resources of the device being routed.
+	 */
+	protected ResourceUsage getUsedResources(){
+		if(usedResources == null){
+			usedResources = new ResourceUsage(dev);
+		}
+		return usedResources;
+	}
+	
+	/**
+	 * Indexes the used resources by the ids of the device routing graph (see
+	 * ResourceUsage.setGraph()).  The graph is created (or loaded) if needed,
+	 * which costs time and memory on large devices, so only routers which
+	 * search the graph themselves should call this.
+	 */
+	protected void useRoutingGraph(){
+		getUsedResources().setGraph(dev.getRoutingGraph());
+	}
+	
+	/**
+	 * Gets the search used to route connections.  Its nodes are created by
+	 * the node factory of the router and reused for every connection.
+	 * @return The search of the router.
+	 */
+	protected NodeSearch getSearch(){
+		if(search == null){
+			search = new NodeSearch(factory);
+		}
+		return search;
+	}
+	
+	/**
+	 * Determines how the wires spanned by a used wire are found.  By default,
+	 * only the wires directly connected to the PIP wires are marked, with the
+	 * device node index every segment of the physical wire is marked (this
+	 * creates the device routing graph on first use).
+	 * @param useNodeIndex True to mark every segment of used physical wires.
+	 */
+	public void setUseNodeIndex(boolean useNodeIndex){
+		nodeIndex = useNodeIndex ? dev.getNodeIndex() : null;
+		if(useNodeIndex){
+			useRoutingGraph();
+		}
+	}
+	
+	/**
+	 * Marks (or unmarks) every segment of the physical wire of a tile wire,
+	 * except the tile wire itself, using the node index.
+	 * @param t The tile of the wire.
+	 * @param wire The wire.
+	 * @param net The net using the wire.
+	 * @param used True to mark the segments as used, false to mark them unused.
+	 */
+	private void setNodeSegments(Tile t, int wire, Net net, boolean used){
+		RoutingGraph graph = nodeIndex.getGraph();
+		int id = graph.getId(t, wire);
+		if(id == -1) return;
+		int node = nodeIndex.getNode(id);
+		for(int i=nodeIndex.getSegmentStart(node); i < nodeIndex.getSegmentEnd(node); i++){
+			int segment = nodeIndex.getSegment(i);
+			if(segment == id) continue;
+			Tile segmentTile = graph.getTile(segment);
+			if(used){
+				setWireAsUsed(segmentTile, graph.getWire(segment), net);
+			}
+			else{
+				setWireAsUnused(segmentTile, graph.getWire(segment), net);
+			}
+		}
+	}
+	
 	/**
 	 * Sets a node (combined tile and wire) as used and maps 
 	 * the usage to the given net.
 	 * @param t The tile specifier for the node to be marked as used.
 	 * @param wire The wire specifier for the node to be marked as used.
-	 * @param net The net using the node.
+	 * @param net The net using the node (may be null).
 	 * @return The node that was set as used.
 	 */
 	protected Node setWireAsUsed(Tile t, int wire, Net net){
-		Node n = factory.newNode(t, wire, null, 0);
-		usedNodes.add(n);
-		addUsedWireMapping(net, n);	
-		return n;
+		ResourceUsage resources = getUsedResources();
+		resources.setUsed(t, wire);
+		resources.addNet(t, wire, net);
+		return factory.newNode(t, wire, null, 0);
 	}
 	
 	/**
@@ -135,14 +244,14 @@ public abstract class AbstractRouter{
 	 * the usage to the given net.
 	 * @param t The tile specifier for the node to be marked as unused.
 	 * @param wire The wire specifier for the node to be marked as unused.
-	 * @param net The net currently using the node.
+	 * @param net The net currently using the node (may be null).
 	 * @return The node that was set as unused.
 	 */
 	protected Node setWireAsUnused(Tile t, int wire, Net net){
-		Node n = factory.newNode(t, wire, null, 0);
-		usedNodes.remove(n);
-		removeUsedWireMapping(net, n);		
-		return n;
+		ResourceUsage resources = getUsedResources();
+		resources.setUnused(t, wire);
+		resources.removeNet(t, wire, net);
+		return factory.newNode(t, wire, null, 0);
 	}
 	
 	/**
@@ -150,16 +259,11 @@ public abstract class AbstractRouter{
 	 * nodes.
 	 * @param net The net using node n.
 	 * @param n The node used by the given net
+	 * @deprecated Use getUsedResources().addNet().
 	 */
+	@Deprecated
 	protected void addUsedWireMapping(Net net, Node n){
-		LinkedList<Net> list = usedNodesMap.get(n);
-		if(list == null){ 
-			list = new LinkedList<Net>(); 
-		}
-		if(!list.contains(net)){ 
-			list.add(net);
-			usedNodesMap.put(n, list);
-		}
+		getUsedResources().addNet(n.tile, n.wire, net);
 	}
 	
 	/**
@@ -167,17 +271,11 @@ public abstract class AbstractRouter{
 	 * marked as unused.
 	 * @param net The net currently using the node.
 	 * @param n The node to be removed.
+	 * @deprecated Use getUsedResources().removeNet().
 	 */
+	@Deprecated
 	protected void removeUsedWireMapping(Net net, Node n){
-		LinkedList<Net> list = usedNodesMap.get(n);
-		if(list == null){ 
-			return; 
-		}
-		if(list.remove(net)){
-			if(list.isEmpty()){
-				usedNodesMap.remove(n);
-			}
-		}
+		getUsedResources().removeNet(n.tile, n.wire, net);
 	}
 	
 	/**
@@ -198,12 +296,11 @@ public abstract class AbstractRouter{
 	}
 	
 	public boolean isNodeUsed(Tile tile, int wire){
-		tempNode.setTileAndWire(tile, wire);
-		return usedNodes.contains(tempNode);
+		return getUsedResources().isUsed(tile, wire);
 	}
 	
 	public boolean isNodeUsed(Node node){
-		return usedNodes.contains(node);
+		return getUsedResources().isUsed(node.tile, node.wire);
 	}
 	
 	/**
@@ -239,15 +336,21 @@ public abstract class AbstractRouter{
 	 * doubles/pents/hexes/longlines.
 	 * @param pip The pip to check intermediate used nodes for
 	 * @param currentNet The net to associate with the intermediate nodes, null if 
-	 * the usedNodesMap should not be updated
+	 * no net should be recorded for the nodes
 	 */
 	protected void markIntermediateNodesAsUsed(PIP pip, Net currentNet){
+		if(nodeIndex != null){
+			setNodeSegments(pip.getTile(), pip.getEndWire(), currentNet, true);
+			if(we.getWireType(pip.getStartWire()).equals(WireType.LONG) && we.getWireType(pip.getEndWire()).equals(WireType.LONG)){
+				setNodeSegments(pip.getTile(), pip.getStartWire(), currentNet, true);
+			}
+			return;
+		}
 		WireConnection[] wires = pip.getTile().getWireConnections(pip.getEndWire());
 		if(wires != null && wires.length > 1){
 			for(WireConnection w : wires){
 				if(w.getRowOffset() != 0 || w.getColumnOffset() != 0){
-					Node tmp = setWireAsUsed(w.getTile(pip.getTile()), w.getWire(), currentNet);
-					if(currentNet != null) addUsedWireMapping(currentNet, tmp);
+					setWireAsUsed(w.getTile(pip.getTile()), w.getWire(), currentNet);
 				}
 			}
 		}
@@ -256,8 +359,7 @@ public abstract class AbstractRouter{
 			if(wires != null && wires.length > 1){
 				for(WireConnection w : wires){
 					if(w.getRowOffset() != 0 || w.getColumnOffset() != 0){
-						Node tmp = setWireAsUsed(w.getTile(pip.getTile()), w.getWire(), currentNet);
-						if(currentNet != null) addUsedWireMapping(currentNet, tmp);
+						setWireAsUsed(w.getTile(pip.getTile()), w.getWire(), currentNet);
 					}
 				}
 			}
@@ -265,12 +367,18 @@ public abstract class AbstractRouter{
 	}
 	
 	protected void markIntermediateNodesAsUnused(PIP pip, Net currentNet){
+		if(nodeIndex != null){
+			setNodeSegments(pip.getTile(), pip.getEndWire(), currentNet, false);
+			if(we.getWireType(pip.getStartWire()).equals(WireType.LONG) && we.getWireType(pip.getEndWire()).equals(WireType.LONG)){
+				setNodeSegments(pip.getTile(), pip.getStartWire(), currentNet, false);
+			}
+			return;
+		}
 		WireConnection[] wires = pip.getTile().getWireConnections(pip.getEndWire());
 		if(wires != null && wires.length > 1){
 			for(WireConnection w : wires){
 				if(w.getRowOffset() != 0 || w.getColumnOffset() != 0){
-					Node tmp = setWireAsUnused(w.getTile(pip.getTile()), w.getWire(), currentNet);
-					if(currentNet != null) removeUsedWireMapping(currentNet, tmp);
+					setWireAsUnused(w.getTile(pip.getTile()), w.getWire(), currentNet);
 				}
 			}
 		}
@@ -279,13 +387,350 @@ public abstract class AbstractRouter{
 			if(wires != null && wires.length > 1){
 				for(WireConnection w : wires){
 					if(w.getRowOffset() != 0 || w.getColumnOffset() != 0){
-						Node tmp = setWireAsUnused(w.getTile(pip.getTile()), w.getWire(), currentNet);
-						if(currentNet != null) removeUsedWireMapping(currentNet, tmp);
+						setWireAsUnused(w.getTile(pip.getTile()), w.getWire(), currentNet);
 					}
 				}
 			}
 		}
-	}	
+	}
+	
+	/**
+	 * The usedNodes view of the used resources.  Iterating creates a node for
+	 * every used resource.
+	 */
+	private class UsedNodeSet extends HashSet<Node>{
+		private static final long serialVersionUID = -2466397263463542391L;
+
+		@Override
+		public boolean contains(Object o){
+			if(!(o instanceof Node)) return false;
+			Node n = (Node) o;
+			return getUsedResources().isUsed(n.tile, n.wire);
+		}
+
+		@Override
+		public boolean add(Node n){
+			return getUsedResources().setUsed(n.tile, n.wire);
+		}
+
+		@Override
+		public boolean remove(Object o){
+			if(!(o instanceof Node)) return false;
+			Node n = (Node) o;
+			return getUsedResources().setUnused(n.tile, n.wire);
+		}
+
+		@Override
+		public int size(){
+			return getUsedResources().getUsedCount();
+		}
+
+		@Override
+		public boolean isEmpty(){
+			return size() == 0;
+		}
+
+		@Override
+		public void clear(){
+			for(Node n : getUsedResources().getUsedNodes(factory)){
+				getUsedResources().setUnused(n.tile, n.wire);
+			}
+		}
+
+		@Override
+		public Iterator<Node> iterator(){
+			final Iterator<Node> it = getUsedResources().getUsedNodes(factory).iterator();
+			return new Iterator<Node>(){
+				private Node last;
+				public boolean hasNext(){
+					return it.hasNext();
+				}
+				public Node next(){
+					return last = it.next();
+				}
+				public void remove(){
+					if(last == null) throw new IllegalStateException();
+					getUsedResources().setUnused(last.tile, last.wire);
+					last = null;
+				}
+			};
+		}
+
+		@Override
+		public Object[] toArray(){
+			return getUsedResources().getUsedNodes(factory).toArray();
+		}
+
+		@Override
+		public <T> T[] toArray(T[] a){
+			return getUsedResources().getUsedNodes(factory).toArray(a);
+		}
+	}
+	
+	/**
+	 * The usedNodesMap view of the nets of the used resources.  The keys,
+	 * values and entries are copies.
+	 */
+	private class UsedNodeMap extends HashMap<Node,LinkedList<Net>>{
+		private static final long serialVersionUID = 4409538225163532711L;
+
+		@Override
+		public LinkedList<Net> get(Object key){
+			if(!(key instanceof Node)) return null;
+			Node n = (Node) key;
+			return getUsedResources().getNets(n.tile, n.wire);
+		}
+
+		@Override
+		public boolean containsKey(Object key){
+			if(!(key instanceof Node)) return false;
+			Node n = (Node) key;
+			return getUsedResources().getNet(n.tile, n.wire) != null;
+		}
+
+		@Override
+		public LinkedList<Net> put(Node key, LinkedList<Net> value){
+			ResourceUsage resources = getUsedResources();
+			LinkedList<Net> old = resources.removeNets(key.tile, key.wire);
+			for(Net net : value){
+				resources.addNet(key.tile, key.wire, net);
+			}
+			return old;
+		}
+
+		@Override
+		public LinkedList<Net> remove(Object key){
+			if(!(key instanceof Node)) return null;
+			Node n = (Node) key;
+			return getUsedResources().removeNets(n.tile, n.wire);
+		}
+
+		@Override
+		public int size(){
+			return getUsedResources().getNetMap(factory).size();
+		}
+
+		@Override
+		public boolean isEmpty(){
+			return size() == 0;
+		}
+
+		@Override
+		public void clear(){
+			for(Node n : getUsedResources().getNetMap(factory).keySet()){
+				getUsedResources().removeNets(n.tile, n.wire);
+			}
+		}
+
+		@Override
+		public boolean containsValue(Object value){
+			return getUsedResources().getNetMap(factory).containsValue(value);
+		}
+
+		@Override
+		public Set<Node> keySet(){
+			return getUsedResources().getNetMap(factory).keySet();
+		}
+
+		@Override
+		public Collection<LinkedList<Net>> values(){
+			return getUsedResources().getNetMap(factory).values();
+		}
+
+		@Override
+		public Set<Map.Entry<Node,LinkedList<Net>>> entrySet(){
+			return getUsedResources().getNetMap(factory).entrySet();
+		}
+	}
+	
+	/**
+	 * The visitedNodes view of the visited wires of the search.  Nodes added
+	 * to it are marked without a record.
+	 */
+	private class VisitedNodeSet extends HashSet<Node>{
+		private static final long serialVersionUID = 6139480315947267353L;
+
+		@Override
+		public boolean contains(Object o){
+			if(!(o instanceof Node)) return false;
+			Node n = (Node) o;
+			return getSearch().isVisited(n.tile, n.wire);
+		}
+
+		@Override
+		public boolean add(Node n){
+			if(getSearch().isVisited(n.tile, n.wire)) return false;
+			getSearch().setVisited(n.tile, n.wire, -1);
+			return true;
+		}
+
+		@Override
+		public boolean remove(Object o){
+			if(!(o instanceof Node)) return false;
+			Node n = (Node) o;
+			return getSearch().clearVisited(n.tile, n.wire);
+		}
+
+		@Override
+		public int size(){
+			return getSearch().getVisitedCount();
+		}
+
+		@Override
+		public boolean isEmpty(){
+			return size() == 0;
+		}
+
+		@Override
+		public void clear(){
+			getSearch().clearVisited();
+		}
+
+		@Override
+		public Iterator<Node> iterator(){
+			final Iterator<Node> it = getSearch().getVisitedNodes().iterator();
+			return new Iterator<Node>(){
+				private Node last;
+				public boolean hasNext(){
+					return it.hasNext();
+				}
+				public Node next(){
+					return last = it.next();
+				}
+				public void remove(){
+					if(last == null) throw new IllegalStateException();
+					getSearch().clearVisited(last.tile, last.wire);
+					last = null;
+				}
+			};
+		}
+
+		@Override
+		public Object[] toArray(){
+			return getSearch().getVisitedNodes().toArray();
+		}
+
+		@Override
+		public <T> T[] toArray(T[] a){
+			return getSearch().getVisitedNodes().toArray(a);
+		}
+	}
+	
+	/**
+	 * The queue view of the heap of the search, ordered by node cost.  Nodes
+	 * added to it become records of the current search (see
+	 * NodeSearch.addNode()), so they are dropped by the next
+	 * getSearch().reset().
+	 */
+	private class SearchQueue extends PriorityQueue<Node>{
+		private static final long serialVersionUID = -5275186000946542630L;
+
+		@Override
+		public boolean add(Node n){
+			return offer(n);
+		}
+
+		@Override
+		public boolean offer(Node n){
+			if(n == null) throw new NullPointerException();
+			NodeSearch s = getSearch();
+			s.add(s.addNode(n));
+			return true;
+		}
+
+		@Override
+		public Node poll(){
+			NodeSearch s = getSearch();
+			int record = s.poll();
+			return record == -1 ? null : s.getNode(record);
+		}
+
+		@Override
+		public Node peek(){
+			NodeSearch s = getSearch();
+			int record = s.peek();
+			return record == -1 ? null : s.getNode(record);
+		}
+
+		@Override
+		public boolean remove(Object o){
+			NodeSearch s = getSearch();
+			for(int i=0; i < s.getQueuedCount(); i++){
+				int record = s.getQueued(i);
+				if(s.getNode(record).equals(o)){
+					return s.remove(record);
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean contains(Object o){
+			return getQueuedNodes().contains(o);
+		}
+
+		@Override
+		public int size(){
+			return getSearch().getQueuedCount();
+		}
+
+		@Override
+		public boolean isEmpty(){
+			return size() == 0;
+		}
+
+		@Override
+		public void clear(){
+			getSearch().clearQueue();
+		}
+
+		@Override
+		public Iterator<Node> iterator(){
+			final Iterator<Node> it = getQueuedNodes().iterator();
+			return new Iterator<Node>(){
+				private Node last;
+				public boolean hasNext(){
+					return it.hasNext();
+				}
+				public Node next(){
+					return last = it.next();
+				}
+				public void remove(){
+					if(last == null) throw new IllegalStateException();
+					NodeSearch s = getSearch();
+					for(int i=0; i < s.getQueuedCount(); i++){
+						if(s.getNode(s.getQueued(i)) == last){
+							s.remove(s.getQueued(i));
+							break;
+						}
+					}
+					last = null;
+				}
+			};
+		}
+
+		@Override
+		public Object[] toArray(){
+			return getQueuedNodes().toArray();
+		}
+
+		@Override
+		public <T> T[] toArray(T[] a){
+			return getQueuedNodes().toArray(a);
+		}
+
+		/**
+		 * @return A new list of the queued nodes, in heap order.
+		 */
+		private ArrayList<Node> getQueuedNodes(){
+			NodeSearch s = getSearch();
+			ArrayList<Node> list = new ArrayList<Node>(s.getQueuedCount());
+			for(int i=0; i < s.getQueuedCount(); i++){
+				list.add(s.getNode(s.getQueued(i)));
+			}
+			return list;
+		}
+	}
 }
 
 class DefaultNodeFactory implements NodeFactory<Node> {
@@ -25,8 +25,9 @@ import edu.byu.ece.rapidSmith.design.Design;
 import edu.byu.ece.rapidSmith.design.Net;
 import edu.byu.ece.rapidSmith.design.PIP;
 import edu.byu.ece.rapidSmith.design.Pin;
-import edu.byu.ece.rapidSmith.device.WireConnection;
+import edu.byu.ece.rapidSmith.device.Tile;
 import edu.byu.ece.rapidSmith.device.WireDirection;
+import edu.byu.ece.rapidSmith.device.helper.PackedConnection;
 import edu.byu.ece.rapidSmith.util.MessageGenerator;
 
 /**
@@ -78,9 +79,14 @@ public class BasicRouter extends AbstractRouter{
 	 */
 	protected void routeConnection(ArrayList<Node> sources){
 		// Reset Variable for a new route
-		pipList = new ArrayList<PIP>();
-		visitedNodes = new HashSet<Node>();
-		queue.clear();
+		if(pipList == null){
+			pipList = new ArrayList<PIP>();
+		}
+		else{
+			pipList.clear();
+		}
+		NodeSearch search = getSearch();
+		search.reset();
 		nodesProcessed = 0;
 		successfulRoute = false;
 		// Setup the source nodes for starting the routing process
@@ -88,8 +94,9 @@ public class BasicRouter extends AbstractRouter{
 			// Add the source nodes to the queue
 			if(src.getConnections() != null){
 				// Set the cost of the source
-				setCost(src, false);
-				this.queue.add(src);
+				int record = search.newRecord(src.tile, src.wire, null, src.level);
+				setCost(search.getNode(record), false);
+				search.add(record);
 			}
 		}
 		// Do the actual routing
@@ -103,36 +110,46 @@ public class BasicRouter extends AbstractRouter{
 	 * called by routeConnection().
 	 */
 	protected void route(){	
+		NodeSearch search = getSearch();
+		ResourceUsage resources = getUsedResources();
 		// Iterate through all of the nodes in the queue, adding potential candidate nodes 
 		// as we go along. We are finished when we find the sink node.
-		while(!queue.isEmpty()){
+		while(!search.isEmpty()){
 			if(nodesProcessed > 1000000){
 				// If we haven't found a route by now, we probably never will
 				return;
 			}
-			Node currNode = queue.remove();
+			Node currNode = search.getNode(search.poll());
 			nodesProcessed++;
 			
-			for(WireConnection w : currNode.getConnections()){
-				if(w.getWire() == this.currSink.wire && w.getTile(currNode.tile).equals(currSink.tile)){
+			long[] packed = currNode.tile.getPackedConnections(currNode.wire);
+			for(int i = 0; i < packed.length; i++){
+				long c = packed[i];
+				Tile t = PackedConnection.getTile(dev, currNode.tile, c);
+				int wire = PackedConnection.getWire(c);
+				if(wire == this.currSink.wire && currSink.tile.equals(t)){
 					
 					// We've found the sink, lets retrace our steps
-					Node currPathNode = new Node(w.getTile(currNode.tile), w.getWire(), currNode, currNode.level+1);
+					Tile pathTile = t;
+					int pathWire = wire;
+					Node parent = currNode;
 
 					// Add this connection as a PIP, and follow it back to the source
-					while(currPathNode.parent != null){
+					while(parent != null){
 						
-						for(WireConnection w1 : currPathNode.parent.tile.getWireConnections(currPathNode.parent.wire)){
-							if(w1.getWire() == currPathNode.wire){
-								if(w1.isPIP() && currPathNode.parent.tile.equals(currPathNode.tile)){
-									pipList.add(new PIP(currPathNode.tile, currPathNode.parent.wire, currPathNode.wire));
+						for(long c1 : parent.tile.getPackedConnections(parent.wire)){
+							if(PackedConnection.getWire(c1) == pathWire){
+								if(PackedConnection.isPIP(c1) && parent.tile.equals(pathTile)){
+									pipList.add(new PIP(pathTile, parent.wire, pathWire));
 									break;
 								}
 							}
 						}
 						// Update the current node to the parent
 						// this way we can traverse backwards to the source
-						currPathNode = currPathNode.parent;
+						pathTile = parent.tile;
+						pathWire = parent.wire;
+						parent = parent.parent;
 					}
 					// We are now done with the routing of this connection
 					successfulRoute = true;
@@ -140,20 +157,19 @@ public class BasicRouter extends AbstractRouter{
 				} 
 				else{						
 					// This is not the sink, but is this wire one we should look at in the future?
-					Node tmp = new Node(w.getTile(currNode.tile), w.getWire(), currNode, currNode.level+1);
 					
 					// Check if this node has already been visited, if so don't add it
-					if(!(visitedNodes.contains(tmp))){
-						if(tmp.getConnections() != null && !usedNodes.contains(tmp)){
-							// Make sure we haven't used this node already
-							if(tmp.getConnections() != null){
-								// This looks like a possible candidate for our next node, we'll add it
-								setCost(tmp, dev.isRouteThrough(w));
-								visitedNodes.add(tmp);
-								queue.add(tmp);
-								if(currSources.contains(tmp)){
-									tmp.parent = null;
-								}
+					if(!search.isVisited(t, wire)){
+						// Make sure we haven't used this node already
+						if(t.getWireConnections(wire) != null && !resources.isUsed(t, wire)){
+							// This looks like a possible candidate for our next node, we'll add it
+							int record = search.newRecord(t, wire, currNode, currNode.level+1);
+							Node tmp = search.getNode(record);
+							setCost(tmp, PackedConnection.isRouteThrough(c));
+							search.setVisited(t, wire, record);
+							search.add(record);
+							if(currSources.contains(tmp)){
+								tmp.parent = null;
 							}
 						}
 					} 
@@ -264,7 +280,9 @@ public class BasicRouter extends AbstractRouter{
 			ArrayList<Node> rNodes = reservedNodes.get(currNet);
 			
 			if(rNodes != null){
-				usedNodes.removeAll(rNodes);
+				for(Node n : rNodes){
+					getUsedResources().setUnused(n.getTile(), n.getWire());
+				}
 			}
 			
 			// netPIPs are the pips that belong to a particular net, however, 
@@ -0,0 +1,490 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.byu.ece.rapidSmith.device.Tile;
+
+/**
+ * The reusable state of a best first search over the routing resources of a
+ * device, so that routing a connection does not create objects.  The nodes
+ * of a search are records of an arena: the Node objects are created by a
+ * NodeFactory the first time they are needed and reused by every following
+ * search (reset() frees all of them at once).  The records waiting to be
+ * expanded are kept in a binary heap of record numbers ordered by the cost
+ * of their nodes, which also knows the position of each record so the cost
+ * of a queued record can be lowered (decreaseKey()).  The tile wires visited
+ * by the current search are kept in an open addressing hash table whose
+ * slots are marked with the number of the search, so starting a new search
+ * does not clear anything and the table only grows with the number of wires
+ * a search visits, not with the size of the device.
+ * <p>
+ * Nodes obtained from a search (getNode()) and their parents are only valid
+ * until the next reset().
+ * Created on: Oct 18, 2026
+ */
+public class NodeSearch {
+
+	/** Creates the Node objects of the arena */
+	private NodeFactory<? extends Node> factory;
+	/** The Node of each record, including the unused ones kept for later searches */
+	private Node[] nodes;
+	/** Flags the records whose Node was given by addNode(), it is not reused by later searches */
+	private boolean[] borrowed;
+	/** Number of records of the current search */
+	private int size;
+	/** Queued records, a binary heap ordered by node cost */
+	private int[] heap;
+	/** Number of queued records */
+	private int heapSize;
+	/** Position of each record in heap, -1 if the record is not queued */
+	private int[] position;
+	/** Tile of each slot of the visited table */
+	private Tile[] visitedTile;
+	/** Wire of each slot of the visited table */
+	private int[] visitedWire;
+	/** Value of generation when each slot was filled, the slot is empty if it does not match */
+	private int[] visitedStamp;
+	/** Record each slot was visited with (-1 for none), valid when visitedStamp matches generation */
+	private int[] visitedRecord;
+	/** Number of filled slots of the visited table */
+	private int visitedCount;
+	/** Identifies the current search in visitedStamp */
+	private int generation;
+
+	/**
+	 * Creates an empty search.
+	 * @param factory Creates the Node objects of the records.
+	 */
+	public NodeSearch(NodeFactory<? extends Node> factory){
+		this.factory = factory;
+		nodes = new Node[1024];
+		borrowed = new boolean[1024];
+		heap = new int[1024];
+		position = new int[1024];
+		visitedTile = new Tile[1024];
+		visitedWire = new int[1024];
+		visitedStamp = new int[1024];
+		visitedRecord = new int[1024];
+		generation = 1;
+	}
+
+	/**
+	 * Starts a new search: frees all records, empties the heap and clears
+	 * the visited marks.
+	 */
+	public void reset(){
+		size = 0;
+		clearQueue();
+		clearVisited();
+	}
+
+	//========================================================================//
+	// Records
+	//========================================================================//
+	/**
+	 * Creates a record of the current search.  The node of the record has the
+	 * given tile, wire, parent and level, a history of 0, is not a PIP and is
+	 * not queued.
+	 * @param tile The tile of the node.
+	 * @param wire The wire of the node.
+	 * @param parent The parent of the node, or null if none.
+	 * @param level The number of nodes between the node and the source node.
+	 * @return The number of the new record.
+	 */
+	public int newRecord(Tile tile, int wire, Node parent, int level){
+		ensureRecordCapacity();
+		Node n = nodes[size];
+		if(n == null || borrowed[size]){
+			n = factory.newNode();
+			nodes[size] = n;
+			borrowed[size] = false;
+		}
+		n.setTileAndWire(tile, wire);
+		n.parent = parent;
+		n.level = level;
+		n.history = 0;
+		n.isPIP = false;
+		position[size] = -1;
+		return size++;
+	}
+
+	/**
+	 * Creates a record of the current search for a node which was not created
+	 * by the search.  The node is not changed and is not reused by later
+	 * searches.
+	 * @param n The node of the record.
+	 * @return The number of the new record, which is not queued.
+	 */
+	public int addNode(Node n){
+		ensureRecordCapacity();
+		nodes[size] = n;
+		borrowed[size] = true;
+		position[size] = -1;
+		return size++;
+	}
+
+	/**
+	 * Makes room for one more record.
+	 */
+	private void ensureRecordCapacity(){
+		if(size == nodes.length){
+			nodes = Arrays.copyOf(nodes, size * 2);
+			borrowed = Arrays.copyOf(borrowed, size * 2);
+			position = Arrays.copyOf(position, size * 2);
+		}
+	}
+
+	/**
+	 * Gets the node of a record.
+	 * @param record The number of the record.
+	 * @return The node of the record, valid until the next reset().
+	 */
+	public Node getNode(int record){
+		return nodes[record];
+	}
+
+	/**
+	 * @return The number of records of the current search.
+	 */
+	public int size(){
+		return size;
+	}
+
+	//========================================================================//
+	// Heap
+	//========================================================================//
+	/**
+	 * @return True if no record is queued.
+	 */
+	public boolean isEmpty(){
+		return heapSize == 0;
+	}
+
+	/**
+	 * @return The number of queued records.
+	 */
+	public int getQueuedCount(){
+		return heapSize;
+	}
+
+	/**
+	 * Gets a queued record, in heap order.
+	 * @param i The index of the record, from 0 to getQueuedCount()-1.
+	 * @return The number of the record.
+	 */
+	public int getQueued(int i){
+		return heap[i];
+	}
+
+	/**
+	 * Empties the heap, the records are kept.
+	 */
+	public void clearQueue(){
+		for(int i=0; i < heapSize; i++){
+			position[heap[i]] = -1;
+		}
+		heapSize = 0;
+	}
+
+	/**
+	 * Checks if a record is queued.
+	 * @param record The number of the record.
+	 * @return True if the record is in the heap.
+	 */
+	public boolean isQueued(int record){
+		return position[record] != -1;
+	}
+
+	/**
+	 * Queues a record by the cost of its node, which must not change while
+	 * the record is queued except through decreaseKey().
+	 * @param record The number of a record which is not queued.
+	 */
+	public void add(int record){
+		if(heapSize == heap.length){
+			heap = Arrays.copyOf(heap, heapSize * 2);
+		}
+		siftUp(heapSize++, record);
+	}
+
+	/**
+	 * Removes the queued record with the lowest cost.
+	 * @return The number of the record, or -1 if no record is queued.
+	 */
+	public int poll(){
+		if(heapSize == 0) return -1;
+		int result = heap[0];
+		position[result] = -1;
+		int last = heap[--heapSize];
+		if(heapSize > 0){
+			siftDown(0, last);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the queued record with the lowest cost, without removing it.
+	 * @return The number of the record, or -1 if no record is queued.
+	 */
+	public int peek(){
+		return heapSize == 0 ? -1 : heap[0];
+	}
+
+	/**
+	 * Removes a record from the heap.
+	 * @param record The number of the record.
+	 * @return True if the record was queued.
+	 */
+	public boolean remove(int record){
+		int k = position[record];
+		if(k == -1) return false;
+		position[record] = -1;
+		int last = heap[--heapSize];
+		if(k != heapSize){
+			siftDown(k, last);
+			if(heap[k] == last){
+				siftUp(k, last);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Lowers the cost of a record.  If the record is queued, it is moved
+	 * ahead of the records which now cost more, otherwise it is queued.
+	 * @param record The number of the record.
+	 * @param cost The new cost, not higher than the current one.
+	 */
+	public void decreaseKey(int record, int cost){
+		nodes[record].cost = cost;
+		if(position[record] == -1){
+			add(record);
+		}
+		else{
+			siftUp(position[record], record);
+		}
+	}
+
+	/**
+	 * Moves a record up from a position of the heap to its place.  Records
+	 * of equal cost are ordered as by java.util.PriorityQueue.
+	 */
+	private void siftUp(int k, int record){
+		int cost = nodes[record].cost;
+		while(k > 0){
+			int parent = (k - 1) >>> 1;
+			int e = heap[parent];
+			if(cost >= nodes[e].cost) break;
+			heap[k] = e;
+			position[e] = k;
+			k = parent;
+		}
+		heap[k] = record;
+		position[record] = k;
+	}
+
+	/**
+	 * Moves a record down from a position of the heap to its place.
+	 */
+	private void siftDown(int k, int record){
+		int cost = nodes[record].cost;
+		int half = heapSize >>> 1;
+		while(k < half){
+			int child = (k << 1) + 1;
+			int c = heap[child];
+			int right = child + 1;
+			if(right < heapSize && nodes[c].cost > nodes[heap[right]].cost){
+				c = heap[child = right];
+			}
+			if(cost <= nodes[c].cost) break;
+			heap[k] = c;
+			position[c] = k;
+			k = child;
+		}
+		heap[k] = record;
+		position[record] = k;
+	}
+
+	//========================================================================//
+	// Visited Wires
+	//========================================================================//
+	/**
+	 * Gets the home slot of a tile wire in the visited table.
+	 */
+	private int getSlot(Tile tile, int wire){
+		int h = tile.getUniqueAddress() * 0x9E3779B9 + wire * 0x85EBCA6B;
+		return (h ^ (h >>> 16)) & (visitedStamp.length - 1);
+	}
+
+	/**
+	 * Finds the slot of a tile wire in the visited table.
+	 * @return The slot, or -1 if the tile wire was not visited.
+	 */
+	private int find(Tile tile, int wire){
+		int mask = visitedStamp.length - 1;
+		for(int i = getSlot(tile, wire); visitedStamp[i] == generation; i = (i + 1) & mask){
+			if(visitedWire[i] == wire && visitedTile[i] == tile){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if a tile wire was visited by the current search.
+	 * @param tile The tile of the wire.
+	 * @param wire The wire.
+	 * @return True if setVisited() was called for the tile wire since the
+	 * last reset() (and it was not cleared).
+	 */
+	public boolean isVisited(Tile tile, int wire){
+		return find(tile, wire) != -1;
+	}
+
+	/**
+	 * Marks a tile wire as visited by the current search.
+	 * @param tile The tile of the wire.
+	 * @param wire The wire.
+	 * @param record The record the tile wire was visited with, -1 for none.
+	 */
+	public void setVisited(Tile tile, int wire, int record){
+		int i = find(tile, wire);
+		if(i == -1){
+			if((visitedCount + 1) * 2 > visitedStamp.length){
+				growVisited();
+			}
+			int mask = visitedStamp.length - 1;
+			i = getSlot(tile, wire);
+			while(visitedStamp[i] == generation){
+				i = (i + 1) & mask;
+			}
+			visitedStamp[i] = generation;
+			visitedTile[i] = tile;
+			visitedWire[i] = wire;
+			visitedCount++;
+		}
+		visitedRecord[i] = record;
+	}
+
+	/**
+	 * Gets the record a tile wire was visited with.
+	 * @param tile The tile of the wire.
+	 * @param wire The wire.
+	 * @return The number of the record, or -1 if the tile wire was not
+	 * visited by the current search or was visited without a record.
+	 */
+	public int getVisitedRecord(Tile tile, int wire){
+		int i = find(tile, wire);
+		return i == -1 ? -1 : visitedRecord[i];
+	}
+
+	/**
+	 * Removes the visited mark of a tile wire.
+	 * @param tile The tile of the wire.
+	 * @param wire The wire.
+	 * @return True if the tile wire was visited.
+	 */
+	public boolean clearVisited(Tile tile, int wire){
+		int i = find(tile, wire);
+		if(i == -1) return false;
+		// Move back the following wires of the run which may not be left after a hole
+		int mask = visitedStamp.length - 1;
+		int j = i;
+		while(true){
+			j = (j + 1) & mask;
+			if(visitedStamp[j] != generation) break;
+			int home = getSlot(visitedTile[j], visitedWire[j]);
+			if(i <= j ? (i < home && home <= j) : (i < home || home <= j)) continue;
+			visitedTile[i] = visitedTile[j];
+			visitedWire[i] = visitedWire[j];
+			visitedRecord[i] = visitedRecord[j];
+			i = j;
+		}
+		visitedStamp[i] = 0;
+		visitedTile[i] = null;
+		visitedCount--;
+		return true;
+	}
+
+	/**
+	 * Removes the visited marks of all tile wires.
+	 */
+	public void clearVisited(){
+		visitedCount = 0;
+		generation++;
+		if(generation == Integer.MAX_VALUE){
+			Arrays.fill(visitedStamp, 0);
+			generation = 1;
+		}
+	}
+
+	/**
+	 * @return The number of tile wires visited by the current search.
+	 */
+	public int getVisitedCount(){
+		return visitedCount;
+	}
+
+	/**
+	 * Gets the visited tile wires as nodes: the node of the record a tile
+	 * wire was visited with, or a new node if it has none.
+	 * @return A new list of the nodes.
+	 */
+	public ArrayList<Node> getVisitedNodes(){
+		ArrayList<Node> list = new ArrayList<Node>(visitedCount);
+		for(int i=0; i < visitedStamp.length; i++){
+			if(visitedStamp[i] == generation){
+				int record = visitedRecord[i];
+				list.add(record == -1 ? factory.newNode(visitedTile[i], visitedWire[i], null, 0) : nodes[record]);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Doubles the size of the visited table, keeping the wires of the
+	 * current search.
+	 */
+	private void growVisited(){
+		Tile[] oldTile = visitedTile;
+		int[] oldWire = visitedWire;
+		int[] oldStamp = visitedStamp;
+		int[] oldRecord = visitedRecord;
+		int length = oldStamp.length * 2;
+		visitedTile = new Tile[length];
+		visitedWire = new int[length];
+		visitedStamp = new int[length];
+		visitedRecord = new int[length];
+		int mask = length - 1;
+		for(int k=0; k < oldStamp.length; k++){
+			if(oldStamp[k] != generation) continue;
+			int i = getSlot(oldTile[k], oldWire[k]);
+			while(visitedStamp[i] == generation){
+				i = (i + 1) & mask;
+			}
+			visitedStamp[i] = generation;
+			visitedTile[i] = oldTile[k];
+			visitedWire[i] = oldWire[k];
+			visitedRecord[i] = oldRecord[k];
+		}
+	}
+}
@@ -0,0 +1,1004 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.byu.ece.rapidSmith.design.Design;
+import edu.byu.ece.rapidSmith.design.Instance;
+import edu.byu.ece.rapidSmith.design.Net;
+import edu.byu.ece.rapidSmith.design.PIP;
+import edu.byu.ece.rapidSmith.design.Pin;
+import edu.byu.ece.rapidSmith.device.NodeIndex;
+import edu.byu.ece.rapidSmith.device.RoutingGraph;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.WireDirection;
+import edu.byu.ece.rapidSmith.util.MessageGenerator;
+
+/**
+ * A negotiated congestion (PathFinder) router.  Unlike BasicRouter, nets may
+ * share routing resources while the design is being routed.  Each physical
+ * routing node (see device.NodeIndex) has a present congestion cost, which
+ * grows with the number of nets using it and with each iteration, and a
+ * history cost, which accumulates on nodes that stay overused.  Every
+ * iteration rips up and reroutes the nets which use an overused node (or
+ * failed to route a pin) until no node is used by more than one net or the
+ * iteration limit is reached.
+ *
+ * The searches are A* searches over the ids of the device routing graph (see
+ * Device.getRoutingGraph()) with array based costs, so no Node objects are
+ * created while routing.  Nets which already have PIPs and the nodes reserved
+ * by the StaticSourceHandler are left as they are and block the nodes they
+ * use, the pins of each net are only usable by that net and no route goes
+ * through a primitive site which holds an instance.
+ *
+ * Nets can be routed on several threads (see setThreads()), each thread has
+ * its own search state and the results are merged in a fixed order.
+ * Created on: Oct 18, 2026
+ */
+public class PathFinderRouter extends AbstractRouter {
+
+	/** Default maximum number of rip-up and reroute iterations */
+	public static final int DEFAULT_MAX_ITERATIONS = 50;
+	/** Base cost of a routing node */
+	private static final float BASE_COST = 1.0f;
+	/** Base cost of a clock wire when routing to a clock pin */
+	private static final float CLOCK_BASE_COST = 0.1f;
+	/** Extra cost of routing through a primitive site */
+	private static final float ROUTE_THROUGH_COST = 2.0f;
+	/** Owner of a node which none of the routed nets may use */
+	private static final int BLOCKED = -1;
+
+	/** Maximum number of rip-up and reroute iterations */
+	private int maxIterations = DEFAULT_MAX_ITERATIONS;
+	/** Present congestion factor of the first iteration */
+	private float initialPresentFactor = 0.5f;
+	/** Growth of the present congestion factor after each iteration */
+	private float presentFactorMultiplier = 1.5f;
+	/** Weight of the overuse added to the history cost after each iteration */
+	private float historyFactor = 1.0f;
+	/** Weight of the distance to the sink (in tiles) in the search priority */
+	private float astarFactor = 0.5f;
+	/** Number of tiles the search may leave the bounding box of a net by before it is retried without bounds */
+	private int boundingBoxMargin = 3;
+
+	/** Routing graph of the device */
+	protected RoutingGraph graph;
+	/** Physical routing nodes of the routing graph ids, the resources nets compete for */
+	protected NodeIndex nodes;
+	/** Nets being routed by this router */
+	protected ArrayList<Net> nets;
+	/** Routing graph id of the source pin of each net */
+	private int[] netSource;
+	/** Routing graph ids of the sink pins of each net, -1 for pins missing from the graph */
+	private int[][] netSinks;
+	/** Flags the sink pins of each net which are clock pins */
+	private boolean[][] netClockSinks;
+	/** Bounding box (first row, first column, last row, last column) of the pins of each net */
+	private int[][] netBox;
+	/** Route of each net as (id, edge) pairs, see RoutingGraph.getEdgeStart() */
+	private IntList[] netRoutes;
+	/** Number of sink pins of each net which could not be routed */
+	private int[] netFailures;
+	/** Flags the nets whose route currently counts in the occupancy */
+	private boolean[] netRouted;
+	/** Flags the nets of a batch which have a sink pin that could not be reached within their bounding box */
+	private boolean[] netUnbounded;
+
+	/** Number of nets using each physical node */
+	private int[] occupancy;
+	/** History cost of each physical node */
+	private float[] history;
+	/** Net (index plus one) which may use each physical node, 0 for any net or BLOCKED */
+	private int[] fixedOwner;
+	/** Marks the physical nodes of the route being counted, see mark */
+	private int[] nodeMark;
+	/** Current value of nodeMark */
+	private int mark;
+	/** Flags the tiles (by unique address) which hold a placed instance */
+	private boolean[] usedTiles;
+	/** Unique tile address of each routing graph id */
+	private int[] idTile;
+	/** Current present congestion factor */
+	private float presentFactor;
+
+	/** Number of threads routing nets at the same time, 1 to route the nets one after the other */
+	private int threads = 1;
+	/** Search state of each thread */
+	private SearchContext[] contexts;
+
+	/**
+	 * Constructor to initialize router
+	 */
+	public PathFinderRouter(){
+		super();
+		MessageGenerator.printHeader(this.getClass().getCanonicalName());
+	}
+
+	//========================================================================//
+	// Parameters
+	//========================================================================//
+	/**
+	 * @return The maximum number of rip-up and reroute iterations.
+	 */
+	public int getMaxIterations(){
+		return maxIterations;
+	}
+
+	/**
+	 * @param maxIterations The maximum number of rip-up and reroute iterations.
+	 */
+	public void setMaxIterations(int maxIterations){
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Sets how fast the cost of sharing a node grows.
+	 * @param initialPresentFactor Cost of sharing a node with one other net in
+	 * the first iteration (relative to the cost of the node).
+	 * @param presentFactorMultiplier Growth of the cost after each iteration.
+	 */
+	public void setPresentFactor(float initialPresentFactor, float presentFactorMultiplier){
+		this.initialPresentFactor = initialPresentFactor;
+		this.presentFactorMultiplier = presentFactorMultiplier;
+	}
+
+	/**
+	 * @param historyFactor Weight of the overuse of a node added to its history
+	 * cost after each iteration.
+	 */
+	public void setHistoryFactor(float historyFactor){
+		this.historyFactor = historyFactor;
+	}
+
+	/**
+	 * @param astarFactor Weight of the distance to the sink (in tiles) in the
+	 * search priority, 0 for a plain shortest path search.
+	 */
+	public void setAstarFactor(float astarFactor){
+		this.astarFactor = astarFactor;
+	}
+
+	/**
+	 * @return The number of threads routing nets at the same time.
+	 */
+	public int getThreads(){
+		return threads;
+	}
+
+	/**
+	 * Sets the number of threads routing nets at the same time.  With more
+	 * than one thread, the nets of each iteration are split into batches of
+	 * one net per thread and the nets of a batch are routed at the same time
+	 * (see routeBatch()).  The result does not depend on the timing of the
+	 * threads, but may differ from the result of a single thread, which
+	 * routes each net with the routes of all previous nets in place.
+	 * @param threads The number of threads, 1 to route the nets one after the other.
+	 */
+	public void setThreads(int threads){
+		this.threads = threads;
+	}
+
+	/**
+	 * @param boundingBoxMargin Number of tiles a search may leave the bounding
+	 * box of the pins of a net by, before it is retried without bounds.
+	 */
+	public void setBoundingBoxMargin(int boundingBoxMargin){
+		this.boundingBoxMargin = boundingBoxMargin;
+	}
+
+	//========================================================================//
+	// Setup
+	//========================================================================//
+	/**
+	 * Creates the arrays of the router and collects the nets to route, their
+	 * pins and the nodes they may not use.
+	 */
+	protected void initialize(){
+		graph = dev.getRoutingGraph();
+		nodes = dev.getNodeIndex();
+		// The resources marked so far (static sources) move to the graph ids
+		useRoutingGraph();
+		int idCount = graph.getNodeCount();
+		int nodeCount = nodes.getNodeCount();
+		int tileCount = dev.getRows()*dev.getColumns();
+
+		idTile = new int[idCount];
+		for(int t=0; t < tileCount; t++){
+			for(int id=graph.getTileStart(t); id < graph.getTileEnd(t); id++){
+				idTile[id] = t;
+			}
+		}
+		usedTiles = new boolean[tileCount];
+		for(Instance inst : design.getInstances()){
+			if(inst.getTile() != null){
+				usedTiles[inst.getTile().getUniqueAddress()] = true;
+			}
+		}
+		occupancy = new int[nodeCount];
+		history = new float[nodeCount];
+		fixedOwner = new int[nodeCount];
+		nodeMark = new int[nodeCount];
+
+		// Nets which are already routed keep their resources
+		nets = new ArrayList<Net>();
+		for(Net net : netList){
+			if(net.getPIPs().size() > 0){
+				for(PIP pip : net.getPIPs()){
+					setOwner(pip.getTile(), pip.getStartWire(), BLOCKED);
+					setOwner(pip.getTile(), pip.getEndWire(), BLOCKED);
+				}
+				continue;
+			}
+			// We need to ignore some empty/informational nets
+			if(net.hasAttributes() && net.getModuleTemplateNet() == null) continue;
+			if(net.getSource() == null){
+				MessageGenerator.briefError("ERROR: " + net.getName() + " does not have a source pins associated with it.");
+				continue;
+			}
+			nets.add(net);
+		}
+		HashMap<Net,Integer> netIndex = new HashMap<Net,Integer>();
+		for(int i=0; i < nets.size(); i++){
+			netIndex.put(nets.get(i), i);
+		}
+
+		// Resources set aside by the static source handling
+		ResourceUsage used = getUsedResources();
+		for(int id = used.nextUsed(0); id != -1; id = used.nextUsed(id+1)){
+			LinkedList<Net> users = used.getNets(id);
+			Integer i = users == null || users.size() != 1 ? null : netIndex.get(users.getFirst());
+			setOwner(id, i == null ? BLOCKED : i + 1);
+		}
+		for(Net net : reservedNodes.keySet()){
+			Integer i = netIndex.get(net);
+			for(Node n : reservedNodes.get(net)){
+				setOwner(n.getTile(), n.getWire(), i == null ? BLOCKED : i + 1);
+			}
+		}
+
+		// The pins of each net
+		netSource = new int[nets.size()];
+		netSinks = new int[nets.size()][];
+		netClockSinks = new boolean[nets.size()][];
+		netBox = new int[nets.size()][];
+		netRoutes = new IntList[nets.size()];
+		netFailures = new int[nets.size()];
+		netRouted = new boolean[nets.size()];
+		netUnbounded = new boolean[nets.size()];
+		for(int i=0; i < nets.size(); i++){
+			Net net = nets.get(i);
+			Pin source = net.getSource();
+			Integer sourceWire = dev.getPrimitiveExternalPin(source);
+			if(sourceWire == null){
+				MessageGenerator.briefErrorAndExit("ERROR: Could not find valid external source pin name: " +
+						source + " " + source.getInstance().getType());
+			}
+			Tile sourceTile = source.getInstance().getTile();
+			netSource[i] = graph.getId(sourceTile, sourceWire);
+			int[] box = {sourceTile.getRow(), sourceTile.getColumn(), sourceTile.getRow(), sourceTile.getColumn()};
+			// Is this source from a buffer (likely a clock net)?
+			boolean fromBUF = source.getInstance().getType().toString().contains("BUF");
+
+			IntList sinks = new IntList();
+			ArrayList<Boolean> clockSinks = new ArrayList<Boolean>();
+			for(Pin pin : net.getPins()){
+				// Ignore the source pin
+				if(pin.isOutPin()) continue;
+				Integer wire = dev.getPrimitiveExternalPin(pin);
+				// This will print out until the Virtex 5 patch is complete
+				if(wire == null){
+					MessageGenerator.printHeader("Pin Missing from V5 Patch: " + net.getName() + " " + pin.getName()
+							+ " " + pin.getInstance().getTile() + " " + pin.getInstance().getType());
+					continue;
+				}
+				Tile t = pin.getInstance().getTile();
+				sinks.add(graph.getId(t, wire));
+				clockSinks.add((we.getWireDirection(wire).equals(WireDirection.CLK) ||
+						pin.getName().contains("CLK") || pin.getName().equals("C")) &&
+						(fromBUF || pin.getInstance().getType().toString().contains("BUF")));
+				box[0] = Math.min(box[0], t.getRow());
+				box[1] = Math.min(box[1], t.getColumn());
+				box[2] = Math.max(box[2], t.getRow());
+				box[3] = Math.max(box[3], t.getColumn());
+			}
+			netSinks[i] = sinks.toArray();
+			netClockSinks[i] = new boolean[clockSinks.size()];
+			for(int j=0; j < clockSinks.size(); j++){
+				netClockSinks[i][j] = clockSinks.get(j);
+			}
+			netBox[i] = box;
+			netRoutes[i] = new IntList();
+			totalConnections += netSinks[i].length;
+
+			setOwner(netSource[i], i + 1);
+			for(int sink : netSinks[i]){
+				setOwner(sink, i + 1);
+			}
+		}
+	}
+
+	/**
+	 * Sets the net which may use the physical node of a tile wire, a node
+	 * claimed by two different nets is blocked for both.
+	 */
+	private void setOwner(Tile t, int wire, int owner){
+		setOwner(graph.getId(t, wire), owner);
+	}
+
+	private void setOwner(int id, int owner){
+		if(id == -1) return;
+		int node = nodes.getNode(id);
+		if(fixedOwner[node] == 0){
+			fixedOwner[node] = owner;
+		}
+		else if(fixedOwner[node] != owner){
+			fixedOwner[node] = BLOCKED;
+		}
+	}
+
+	//========================================================================//
+	// Negotiated Congestion
+	//========================================================================//
+	/**
+	 * This the central method for routing the design in this class.  It routes
+	 * all nets and then reroutes the nets using overused nodes with increasing
+	 * congestion costs until no node is overused.
+	 * @return The final routed design.
+	 */
+	public Design routeDesign(){
+		netList = new ArrayList<Net>();
+		netList.addAll(design.getNets());
+
+		// Deal with static nets (vcc/gnd)
+		StaticSourceHandler ssHandler = new StaticSourceHandler(this);
+		ssHandler.separateStaticSourceNets();
+
+		initialize();
+		contexts = new SearchContext[Math.max(threads, 1)];
+		for(int i=0; i < contexts.length; i++){
+			contexts[i] = new SearchContext();
+		}
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		presentFactor = initialPresentFactor;
+		int overused = 0;
+		int iteration = 0;
+		try{
+			while(iteration < maxIterations){
+				iteration++;
+				int rerouted = 0;
+				if(executor == null){
+					for(int i=0; i < nets.size(); i++){
+						if(iteration == 1 || netFailures[i] > 0 || usesOverusedNode(i)){
+							ripUp(i);
+							contexts[0].routeNet(i, true);
+							commit(i);
+							rerouted++;
+						}
+					}
+				}
+				else{
+					IntList pending = new IntList();
+					for(int i=0; i < nets.size(); i++){
+						if(iteration == 1 || netFailures[i] > 0 || usesOverusedNode(i)){
+							pending.add(i);
+						}
+					}
+					for(IntList batch : partition(pending)){
+						rerouted += routeBatch(batch, iteration == 1, executor);
+					}
+				}
+				overused = 0;
+				for(int node=0; node < occupancy.length; node++){
+					if(occupancy[node] > 1){
+						overused++;
+						history[node] += historyFactor * (occupancy[node] - 1);
+					}
+				}
+				MessageGenerator.briefMessage("Iteration " + iteration + ": rerouted " + rerouted +
+						" nets, " + overused + " overused nodes");
+				if(overused == 0) break;
+				presentFactor *= presentFactorMultiplier;
+			}
+		}
+		finally{
+			if(executor != null){
+				executor.shutdown();
+			}
+		}
+
+		failedConnections = 0;
+		for(int i=0; i < nets.size(); i++){
+			failedConnections += netFailures[i];
+			nets.get(i).setPIPs(getPIPs(i));
+		}
+		for(SearchContext context : contexts){
+			totalNodesProcessed += context.nodesProcessed;
+		}
+		if(overused > 0){
+			MessageGenerator.briefError("Routing did not converge after " + iteration + " iterations, " +
+					overused + " nodes are used by more than one net.");
+		}
+		design.setNets(netList);
+		return design;
+	}
+
+	/**
+	 * Checks if a net uses a node which is also used by another net.
+	 */
+	private boolean usesOverusedNode(int net){
+		IntList route = netRoutes[net];
+		if(netSource[net] != -1 && occupancy[nodes.getNode(netSource[net])] > 1){
+			return true;
+		}
+		for(int i=0; i < route.size(); i += 2){
+			int target = graph.getEdgeTarget(route.get(i+1));
+			if(occupancy[nodes.getNode(target)] > 1){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the route of a net from the occupancy of the nodes it uses.
+	 */
+	private void ripUp(int net){
+		if(!netRouted[net]) return;
+		netRouted[net] = false;
+		count(net, -1);
+		netRoutes[net].clear();
+		netFailures[net] = 0;
+	}
+
+	/**
+	 * Adds the route found for a net to the occupancy of the nodes it uses.
+	 */
+	private void commit(int net){
+		if(netSource[net] == -1) return;
+		netRouted[net] = true;
+		count(net, 1);
+	}
+
+	/**
+	 * Adds a value to the occupancy of each node of the route of a net, once
+	 * per node.
+	 */
+	private void count(int net, int value){
+		IntList route = netRoutes[net];
+		mark++;
+		int node = nodes.getNode(netSource[net]);
+		nodeMark[node] = mark;
+		occupancy[node] += value;
+		for(int i=0; i < route.size(); i += 2){
+			node = nodes.getNode(graph.getEdgeTarget(route.get(i+1)));
+			if(nodeMark[node] != mark){
+				nodeMark[node] = mark;
+				occupancy[node] += value;
+			}
+		}
+	}
+
+	//========================================================================//
+	// Parallel Routing
+	//========================================================================//
+	/**
+	 * Splits nets into batches of one net per thread, in order.  Splitting by
+	 * bounding boxes that do not overlap gave batches of a single net on
+	 * dense placements, which left the threads idle, while the few nets of a
+	 * batch rarely compete for the same nodes and the next iteration
+	 * negotiates the ones they share.
+	 * @param pending The indices of the nets to split.
+	 * @return The batches in the order they are routed.
+	 */
+	private ArrayList<IntList> partition(IntList pending){
+		ArrayList<IntList> batches = new ArrayList<IntList>();
+		for(int p=0; p < pending.size(); p++){
+			if(p % threads == 0){
+				batches.add(new IntList());
+			}
+			batches.get(batches.size() - 1).add(pending.get(p));
+		}
+		return batches;
+	}
+
+	/**
+	 * Rips up and reroutes a batch of nets on the worker threads.  All nets of
+	 * the batch see the occupancy left by the previous batches: the routes are
+	 * only added to the occupancy once the whole batch is routed, in the order
+	 * of the batch, so the result does not depend on the timing of the threads.
+	 * Nodes the routes of a batch share are left to the next iteration to
+	 * negotiate.  As when routing on a single thread, nets which no longer use
+	 * an overused node (after the previous batches) are not rerouted.  The
+	 * searches of the worker threads stay within the bounding boxes of the
+	 * nets, the nets which need an unbounded search are routed again on the
+	 * calling thread once the batch is done, so only the first search context
+	 * ever covers the whole device.
+	 * @param batch The indices of the nets to route.
+	 * @param firstIteration True to route every net of the batch.
+	 * @param executor The worker threads.
+	 * @return The number of nets rerouted.
+	 */
+	private int routeBatch(IntList batch, boolean firstIteration, ExecutorService executor){
+		final IntList todo = new IntList();
+		for(int i=0; i < batch.size(); i++){
+			int net = batch.get(i);
+			if(firstIteration || netFailures[net] > 0 || usesOverusedNode(net)){
+				todo.add(net);
+			}
+		}
+		for(int i=0; i < todo.size(); i++){
+			ripUp(todo.get(i));
+		}
+		if(todo.size() == 1){
+			contexts[0].routeNet(todo.get(0), true);
+		}
+		else if(todo.size() > 1){
+			final AtomicInteger next = new AtomicInteger();
+			ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for(int t=0; t < Math.min(contexts.length, todo.size()); t++){
+				final SearchContext context = contexts[t];
+				tasks.add(new Callable<Object>(){
+					@Override
+					public Object call(){
+						int i;
+						while((i = next.getAndIncrement()) < todo.size()){
+							context.routeNet(todo.get(i), false);
+						}
+						return null;
+					}
+				});
+			}
+			try{
+				for(Future<Object> f : executor.invokeAll(tasks)){
+					f.get();
+				}
+			}
+			catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while routing", e);
+			}
+			catch(ExecutionException e){
+				throw new IllegalStateException("Error routing a net", e.getCause());
+			}
+			for(int i=0; i < todo.size(); i++){
+				int net = todo.get(i);
+				if(netUnbounded[net]){
+					netUnbounded[net] = false;
+					netRoutes[net].clear();
+					netFailures[net] = 0;
+					contexts[0].routeNet(net, true);
+				}
+			}
+		}
+		for(int i=0; i < todo.size(); i++){
+			commit(todo.get(i));
+		}
+		return todo.size();
+	}
+
+	//========================================================================//
+	// Search
+	//========================================================================//
+	/**
+	 * The state of the searches of one thread.  A context only reads the
+	 * shared costs and occupancy and only writes to the route and failure
+	 * count of the net it routes.  The search arrays only cover the ids of the
+	 * rows a search may reach (the ids of a row of tiles are consecutive), so
+	 * they grow with the bounding boxes of the nets rather than with the
+	 * device.
+	 */
+	private class SearchContext {
+		/** Id of the first entry of the search arrays */
+		private int base;
+		/** Cost from the route of the net to each id found by the current search */
+		private float[] pathCost;
+		/** Id each id was reached from in the current search (-1 for the route of the net) */
+		private int[] prevId;
+		/** Edge each id was reached by in the current search */
+		private int[] prevEdge;
+		/** Value of stamp when each id was reached */
+		private int[] reachedStamp;
+		/** Value of stamp when each id was expanded */
+		private int[] expandedStamp;
+		/** Identifies the current search in reachedStamp and expandedStamp */
+		private int stamp;
+		/** Physical nodes of the route of the current net */
+		private IntSet routeNodes;
+		/** Ids of the route of the current net, the starting points of its searches */
+		private IntList routeIds;
+		/** First row of the tiles of the route of the current net */
+		private int routeFirstRow;
+		/** Last row of the tiles of the route of the current net */
+		private int routeLastRow;
+		/** Binary heap of search candidates, the priority (a float) in the upper half and the id in the lower */
+		private long[] heap;
+		/** Number of candidates in heap */
+		private int heapSize;
+		/** Counts the nodes expanded by the searches of this context */
+		private int nodesProcessed;
+
+		public SearchContext(){
+			pathCost = new float[0];
+			prevId = new int[0];
+			prevEdge = new int[0];
+			reachedStamp = new int[0];
+			expandedStamp = new int[0];
+			routeNodes = new IntSet();
+			routeIds = new IntList();
+			heap = new long[1024];
+		}
+
+		/**
+		 * Adds an id to the route of the current net.
+		 */
+		private void addToRoute(int id){
+			routeIds.add(id);
+			routeNodes.add(nodes.getNode(id));
+			int row = idTile[id] / dev.getColumns();
+			routeFirstRow = Math.min(routeFirstRow, row);
+			routeLastRow = Math.max(routeLastRow, row);
+		}
+
+		/**
+		 * Makes the search arrays cover the ids of a range of rows.
+		 */
+		private void setRows(int firstRow, int lastRow){
+			int columns = dev.getColumns();
+			base = graph.getTileStart(firstRow * columns);
+			int length = graph.getTileEnd(lastRow * columns + columns - 1) - base;
+			if(length > pathCost.length){
+				length = Math.min(Math.max(length, pathCost.length + (pathCost.length >> 1)), graph.getNodeCount());
+				pathCost = new float[length];
+				prevId = new int[length];
+				prevEdge = new int[length];
+				reachedStamp = new int[length];
+				expandedStamp = new int[length];
+			}
+		}
+
+		/**
+		 * Routes each sink pin of a net from the source pin and the route found
+		 * for the previous sink pins.  The route is not added to the occupancy
+		 * (see commit()).
+		 * @param net The index of the net.
+		 * @param unbounded True to retry the sink pins which cannot be reached
+		 * within the bounding box of the net without bounds, false to stop and
+		 * flag the net (see netUnbounded).
+		 */
+		public void routeNet(int net, boolean unbounded){
+			IntList route = netRoutes[net];
+			routeIds.clear();
+			routeNodes.clear();
+			routeFirstRow = Integer.MAX_VALUE;
+			routeLastRow = Integer.MIN_VALUE;
+			if(netSource[net] == -1){
+				netFailures[net] = netSinks[net].length;
+				return;
+			}
+			addToRoute(netSource[net]);
+			for(int s=0; s < netSinks[net].length; s++){
+				int sink = netSinks[net][s];
+				if(sink == -1){
+					netFailures[net]++;
+					continue;
+				}
+				if(routeNodes.contains(nodes.getNode(sink))){
+					// Already reached by the route of another sink
+					continue;
+				}
+				int found = search(net, sink, netClockSinks[net][s], true);
+				if(found == -1){
+					if(!unbounded){
+						netUnbounded[net] = true;
+						return;
+					}
+					found = search(net, sink, netClockSinks[net][s], false);
+				}
+				if(found == -1){
+					netFailures[net]++;
+					continue;
+				}
+				// Add the path to the route, following it back to the route
+				int id = found;
+				while(prevId[id - base] != -1){
+					route.add(prevId[id - base]);
+					route.add(prevEdge[id - base]);
+					addToRoute(id);
+					id = prevId[id - base];
+				}
+			}
+		}
+
+		/**
+		 * Searches for the cheapest path from the route of the current net to the
+		 * physical node of a sink pin.
+		 * @param net The index of the net.
+		 * @param sink The id of the sink pin.
+		 * @param clockSink True if the sink pin is a clock pin, clock wires are then favored.
+		 * @param bounded True to stay within the bounding box of the net (plus the margin).
+		 * @return The id where the sink node was reached (follow prevId back to the route),
+		 * or -1 if it cannot be reached.
+		 */
+		private int search(int net, int sink, boolean clockSink, boolean bounded){
+			if(++stamp == 0){
+				Arrays.fill(reachedStamp, 0);
+				Arrays.fill(expandedStamp, 0);
+				stamp = 1;
+			}
+			int columns = dev.getColumns();
+			int sinkNode = nodes.getNode(sink);
+			int sinkRow = idTile[sink] / columns;
+			int sinkColumn = idTile[sink] % columns;
+			int[] box = netBox[net];
+			int margin = bounded ? boundingBoxMargin : Integer.MAX_VALUE / 2;
+			int firstRow = box[0] - margin, firstColumn = box[1] - margin;
+			int lastRow = box[2] + margin, lastColumn = box[3] + margin;
+			setRows(Math.max(Math.min(firstRow, routeFirstRow), 0), Math.min(Math.max(lastRow, routeLastRow), dev.getRows() - 1));
+
+			heapSize = 0;
+			for(int i=0; i < routeIds.size(); i++){
+				int id = routeIds.get(i);
+				if(reachedStamp[id - base] == stamp) continue;
+				reachedStamp[id - base] = stamp;
+				pathCost[id - base] = 0;
+				prevId[id - base] = -1;
+				push(0, id);
+			}
+			while(heapSize > 0){
+				int u = (int) pop();
+				if(expandedStamp[u - base] == stamp) continue;
+				expandedStamp[u - base] = stamp;
+				nodesProcessed++;
+				if(nodes.getNode(u) == sinkNode){
+					return u;
+				}
+				for(int e=graph.getEdgeStart(u); e < graph.getEdgeEnd(u); e++){
+					int v = graph.getEdgeTarget(e);
+					int tile = idTile[v];
+					int row = tile / columns;
+					int column = tile % columns;
+					if(row < firstRow || row > lastRow || column < firstColumn || column > lastColumn) continue;
+					if(expandedStamp[v - base] == stamp) continue;
+					int node = nodes.getNode(v);
+					int owner = fixedOwner[node];
+					if(owner != 0 && owner != net + 1) continue;
+
+					float cost = pathCost[u - base];
+					if(graph.isPIP(e)){
+						if(graph.isRouteThrough(e)){
+							// Sites holding an instance cannot be routed through
+							if(usedTiles[idTile[u]]) continue;
+							cost += ROUTE_THROUGH_COST;
+						}
+						int wire = graph.getWire(v);
+						float base = clockSink && we.getWireDirection(wire).equals(WireDirection.CLK) ? CLOCK_BASE_COST : BASE_COST;
+						cost += (base + history[node]) * (1 + presentFactor * occupancy[node]);
+					}
+					if(reachedStamp[v - base] == stamp && pathCost[v - base] <= cost) continue;
+					reachedStamp[v - base] = stamp;
+					pathCost[v - base] = cost;
+					prevId[v - base] = u;
+					prevEdge[v - base] = e;
+					int distance = Math.abs(row - sinkRow) + Math.abs(column - sinkColumn);
+					push(cost + astarFactor * distance, v);
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Adds a candidate to the heap, the priority must not be negative.
+		 */
+		private void push(float priority, int id){
+			if(heapSize == heap.length){
+				heap = Arrays.copyOf(heap, heap.length * 2);
+			}
+			long entry = ((long) Float.floatToIntBits(priority) << 32) | id;
+			int i = heapSize++;
+			while(i > 0){
+				int parent = (i - 1) >>> 1;
+				if(heap[parent] <= entry) break;
+				heap[i] = heap[parent];
+				i = parent;
+			}
+			heap[i] = entry;
+		}
+
+		/**
+		 * Removes the candidate with the lowest priority from the heap.
+		 * @return The candidate entry, the id is in the lower 32 bits.
+		 */
+		private long pop(){
+			long top = heap[0];
+			long last = heap[--heapSize];
+			int i = 0;
+			while(true){
+				int child = 2*i + 1;
+				if(child >= heapSize) break;
+				if(child + 1 < heapSize && heap[child+1] < heap[child]) child++;
+				if(last <= heap[child]) break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = last;
+			return top;
+		}
+	}
+
+	/**
+	 * Creates the PIPs of the route of a net.
+	 * @param net The index of the net.
+	 * @return The PIPs of the net.
+	 */
+	private ArrayList<PIP> getPIPs(int net){
+		IntList route = netRoutes[net];
+		ArrayList<PIP> pips = new ArrayList<PIP>();
+		for(int i=0; i < route.size(); i += 2){
+			int from = route.get(i);
+			int edge = route.get(i+1);
+			int to = graph.getEdgeTarget(edge);
+			if(graph.isPIP(edge) && idTile[from] == idTile[to]){
+				pips.add(new PIP(dev.getTile(idTile[from]), graph.getWire(from), graph.getWire(to)));
+			}
+		}
+		return pips;
+	}
+
+	/**
+	 * A growable array of ints.
+	 */
+	static class IntList {
+		private int[] values = new int[8];
+		private int size;
+
+		public void add(int value){
+			if(size == values.length){
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		public int get(int i){
+			return values[i];
+		}
+
+		public int size(){
+			return size;
+		}
+
+		public void clear(){
+			size = 0;
+		}
+
+		public int[] toArray(){
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	/**
+	 * A set of non negative ints (open addressing), cleared without visiting
+	 * its slots.
+	 */
+	static class IntSet {
+		/** Value of each slot */
+		private int[] values = new int[64];
+		/** Value of mark when each slot was filled, the slot is empty if it does not match */
+		private int[] marks = new int[64];
+		/** Identifies the current contents in marks */
+		private int mark = 1;
+		private int size;
+
+		private int getSlot(int value, int mask){
+			int h = value * 0x9E3779B9;
+			return (h ^ (h >>> 16)) & mask;
+		}
+
+		public boolean contains(int value){
+			int mask = values.length - 1;
+			for(int i = getSlot(value, mask); marks[i] == mark; i = (i + 1) & mask){
+				if(values[i] == value) return true;
+			}
+			return false;
+		}
+
+		public void add(int value){
+			if((size + 1) * 2 > values.length){
+				int[] oldValues = values;
+				int[] oldMarks = marks;
+				values = new int[oldValues.length * 2];
+				marks = new int[oldValues.length * 2];
+				size = 0;
+				for(int i=0; i < oldValues.length; i++){
+					if(oldMarks[i] == mark) add(oldValues[i]);
+				}
+			}
+			int mask = values.length - 1;
+			int i = getSlot(value, mask);
+			for(; marks[i] == mark; i = (i + 1) & mask){
+				if(values[i] == value) return;
+			}
+			marks[i] = mark;
+			values[i] = value;
+			size++;
+		}
+
+		public void clear(){
+			size = 0;
+			if(++mark == Integer.MAX_VALUE){
+				Arrays.fill(marks, 0);
+				mark = 1;
+			}
+		}
+	}
+
+	public static void main(String[] args){
+		long[] runtimes = new long[4];
+		String nl = System.getProperty("line.separator");
+		runtimes[0] = runtimes[1] = System.nanoTime();
+		if (args.length != 2){
+			System.out.println("USAGE: PathFinderRouter <input.xdl> <output.xdl>");
+			System.exit(0);
+		}
+
+		// Initialize router and load design and device
+		PathFinderRouter router = new PathFinderRouter();
+		router.design = new Design();
+		router.design.loadXDLFile(args[0]);
+		router.dev = router.design.getDevice();
+		router.we = router.design.getWireEnumerator();
+
+		runtimes[1] = System.nanoTime() - runtimes[1];
+		runtimes[2] = System.nanoTime();
+
+		// Route the design
+		router.routeDesign();
+
+		runtimes[2] = System.nanoTime() - runtimes[2];
+		runtimes[3] = System.nanoTime();
+
+		// Save routed design to XDL file
+		router.design.saveXDLFile(args[1], true);
+
+		runtimes[3] = System.nanoTime() - runtimes[3];
+		runtimes[0] = System.nanoTime() - runtimes[0];
+
+		// Print out runtime summary
+		System.out.println();
+		System.out.println("----------------- SUMMARY --------------------");
+		System.out.println("         Total Nodes Processed : " + router.totalNodesProcessed);
+		System.out.println("             Total Connections : " + router.totalConnections);
+		System.out.println("      Total Failed Connections : " + router.failedConnections);
+		System.out.println("----------------------------------------------");
+		System.out.printf("    Loading Design/Device Time : %8.3fs %s", runtimes[1]/1000000000.0, nl);
+		System.out.printf("                  Routing Time : %8.3fs %s", runtimes[2]/1000000000.0, nl);
+		System.out.printf("            Saving Design Time : %8.3fs %s", runtimes[3]/1000000000.0, nl);
+		System.out.println("----------------------------------------------");
+		System.out.printf("                 Total Runtime : %8.3fs %s", runtimes[0]/1000000000.0, nl);
+	}
+}
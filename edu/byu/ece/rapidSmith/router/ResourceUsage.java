@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) 2010-2011 Brigham Young University
+ *
+ * This file is part of the BYU RapidSmith Tools.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License..
+ *
+ */
+package edu.byu.ece.rapidSmith.router;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+import edu.byu.ece.rapidSmith.design.Net;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.RoutingGraph;
+import edu.byu.ece.rapidSmith.device.Tile;
+
+/**
+ * Keeps track of the routing resources (tile wires) used during routing and
+ * of the nets using them.  A resource can be used without a net (such as a
+ * reserved resource) and a net can be recorded for a resource which is not
+ * used.
+ * <p>
+ * By default the resources are kept in hash tables, which only cost memory
+ * for the resources actually marked.  Once a routing graph is given (see
+ * setGraph()), the resources are identified by their routing graph id (see
+ * device.RoutingGraph): marking or testing a resource is a bit operation and
+ * finding the net using it is an array access.  The rare resources recorded
+ * for more than one net then keep the other nets in a map, and tile wires
+ * which are not part of the routing graph (they have no connections) stay
+ * in the hash tables.
+ * Created on: Oct 18, 2026
+ */
+public class ResourceUsage {
+
+	/** The device of the resources */
+	private Device dev;
+	/** The routing graph giving the ids of the resources, null if the resources are only kept in the hash tables */
+	private RoutingGraph graph;
+	/** Used flag of each id, one bit per id (null without a routing graph) */
+	private long[] used;
+	/** First net recorded for each id (null without a routing graph) */
+	private Net[] nets;
+	/** Nets after the first one recorded for an id */
+	private HashMap<Integer,LinkedList<Net>> moreNets;
+	/** Used tile wires which have no routing graph id, see getKey() */
+	private HashSet<Long> otherUsed;
+	/** Nets recorded for tile wires which have no routing graph id, see getKey() */
+	private HashMap<Long,LinkedList<Net>> otherNets;
+
+	/**
+	 * Creates an empty usage which keeps the resources in hash tables.
+	 * @param dev The device being routed.
+	 */
+	public ResourceUsage(Device dev){
+		this.dev = dev;
+		moreNets = new HashMap<Integer,LinkedList<Net>>();
+		otherUsed = new HashSet<Long>();
+		otherNets = new HashMap<Long,LinkedList<Net>>();
+	}
+
+	/**
+	 * Creates an empty usage indexed by the ids of a routing graph.
+	 * @param graph The routing graph of the device being routed.
+	 */
+	public ResourceUsage(RoutingGraph graph){
+		this(graph.getDevice());
+		setGraph(graph);
+	}
+
+	/**
+	 * @return The routing graph giving the ids of the resources, or null if
+	 * the resources are kept in hash tables.
+	 */
+	public RoutingGraph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * Indexes the resources by the ids of a routing graph.  The resources
+	 * already marked or recorded are moved to the arrays of the graph.  Once
+	 * set, the graph can not be changed.
+	 * @param graph The routing graph of the device being routed.
+	 */
+	public void setGraph(RoutingGraph graph){
+		if(this.graph != null){
+			if(this.graph != graph){
+				throw new IllegalStateException("The resources are already indexed by another routing graph.");
+			}
+			return;
+		}
+		this.graph = graph;
+		used = new long[(graph.getNodeCount() + 63) >>> 6];
+		nets = new Net[graph.getNodeCount()];
+		for(Iterator<Long> it = otherUsed.iterator(); it.hasNext();){
+			long key = it.next();
+			int id = graph.getId(getTile(key), getWire(key));
+			if(id != -1){
+				used[id >>> 6] |= 1L << id;
+				it.remove();
+			}
+		}
+		for(Iterator<Map.Entry<Long,LinkedList<Net>>> it = otherNets.entrySet().iterator(); it.hasNext();){
+			Map.Entry<Long,LinkedList<Net>> e = it.next();
+			int id = graph.getId(getTile(e.getKey()), getWire(e.getKey()));
+			if(id != -1){
+				LinkedList<Net> list = e.getValue();
+				nets[id] = list.removeFirst();
+				if(!list.isEmpty()){
+					moreNets.put(id, list);
+				}
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Gets the routing graph id of a resource.
+	 * @return The id, or -1 if the resource has none or there is no graph.
+	 */
+	private int getId(Tile tile, int wire){
+		return graph == null ? -1 : graph.getId(tile, wire);
+	}
+
+	/**
+	 * Gets the key of a tile wire in the hash tables.
+	 */
+	private static long getKey(Tile tile, int wire){
+		return ((long) tile.getUniqueAddress() << 32) | (wire & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Gets the tile of a key of the hash tables.
+	 */
+	private Tile getTile(long key){
+		return dev.getTile((int) (key >>> 32));
+	}
+
+	/**
+	 * Gets the wire of a key of the hash tables.
+	 */
+	private static int getWire(long key){
+		return (int) key;
+	}
+
+	/**
+	 * Removes all used resources and recorded nets.
+	 */
+	public void clear(){
+		if(graph != null){
+			used = new long[used.length];
+			nets = new Net[nets.length];
+		}
+		moreNets.clear();
+		otherUsed.clear();
+		otherNets.clear();
+	}
+
+	//========================================================================//
+	// Used Resources
+	//========================================================================//
+	/**
+	 * Checks if a resource is used.
+	 * @param tile The tile of the resource (may be null).
+	 * @param wire The wire of the resource.
+	 * @return True if the resource is used, false otherwise.
+	 */
+	public boolean isUsed(Tile tile, int wire){
+		if(tile == null) return false;
+		int id = getId(tile, wire);
+		if(id == -1){
+			return otherUsed.contains(getKey(tile, wire));
+		}
+		return isUsed(id);
+	}
+
+	/**
+	 * Checks if a resource is used, only with a routing graph.
+	 * @param id The routing graph id of the resource.
+	 * @return True if the resource is used, false otherwise.
+	 */
+	public boolean isUsed(int id){
+		return (used[id >>> 6] & (1L << id)) != 0;
+	}
+
+	/**
+	 * Marks a resource as used.
+	 * @param tile The tile of the resource (ignored if null).
+	 * @param wire The wire of the resource.
+	 * @return True if the resource was not used before.
+	 */
+	public boolean setUsed(Tile tile, int wire){
+		if(tile == null) return false;
+		int id = getId(tile, wire);
+		if(id == -1){
+			return otherUsed.add(getKey(tile, wire));
+		}
+		long bit = 1L << id;
+		long word = used[id >>> 6];
+		used[id >>> 6] = word | bit;
+		return (word & bit) == 0;
+	}
+
+	/**
+	 * Marks a resource as unused, the nets recorded for it are kept.
+	 * @param tile The tile of the resource (ignored if null).
+	 * @param wire The wire of the resource.
+	 * @return True if the resource was used before.
+	 */
+	public boolean setUnused(Tile tile, int wire){
+		if(tile == null) return false;
+		int id = getId(tile, wire);
+		if(id == -1){
+			return otherUsed.remove(getKey(tile, wire));
+		}
+		long bit = 1L << id;
+		long word = used[id >>> 6];
+		used[id >>> 6] = word & ~bit;
+		return (word & bit) != 0;
+	}
+
+	/**
+	 * Gets the first used resource at or after an id, the used resources can
+	 * be visited with: for(int id = nextUsed(0); id != -1; id = nextUsed(id+1)).
+	 * Tile wires which have no routing graph id are not visited.
+	 * @param id The routing graph id to start from.
+	 * @return The id of the next used resource or -1 if there is none (always
+	 * without a routing graph).
+	 */
+	public int nextUsed(int id){
+		if(used == null) return -1;
+		int word = id >>> 6;
+		if(word >= used.length) return -1;
+		long bits = used[word] & (-1L << id);
+		while(bits == 0){
+			if(++word == used.length) return -1;
+			bits = used[word];
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * @return The number of used resources.
+	 */
+	public int getUsedCount(){
+		int count = otherUsed.size();
+		if(used != null){
+			for(long word : used){
+				count += Long.bitCount(word);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Creates a node for each used resource.
+	 * @param factory Creates the nodes.
+	 * @return A new list of the nodes.
+	 */
+	public ArrayList<Node> getUsedNodes(NodeFactory<? extends Node> factory){
+		ArrayList<Node> list = new ArrayList<Node>();
+		for(int id = nextUsed(0); id != -1; id = nextUsed(id+1)){
+			list.add(factory.newNode(graph.getTile(id), graph.getWire(id), null, 0));
+		}
+		for(long key : otherUsed){
+			list.add(factory.newNode(getTile(key), getWire(key), null, 0));
+		}
+		return list;
+	}
+
+	//========================================================================//
+	// Nets
+	//========================================================================//
+	/**
+	 * Records that a net uses a resource (once per net).
+	 * @param tile The tile of the resource (ignored if null).
+	 * @param wire The wire of the resource.
+	 * @param net The net using the resource (ignored if null).
+	 */
+	public void addNet(Tile tile, int wire, Net net){
+		if(tile == null || net == null) return;
+		int id = getId(tile, wire);
+		if(id == -1){
+			long key = getKey(tile, wire);
+			LinkedList<Net> list = otherNets.get(key);
+			if(list == null){
+				list = new LinkedList<Net>();
+				otherNets.put(key, list);
+			}
+			if(!list.contains(net)) list.add(net);
+			return;
+		}
+		if(nets[id] == null){
+			nets[id] = net;
+		}
+		else if(!nets[id].equals(net)){
+			LinkedList<Net> list = moreNets.get(id);
+			if(list == null){
+				list = new LinkedList<Net>();
+				moreNets.put(id, list);
+			}
+			if(!list.contains(net)) list.add(net);
+		}
+	}
+
+	/**
+	 * Removes the record that a net uses a resource.
+	 * @param tile The tile of the resource (ignored if null).
+	 * @param wire The wire of the resource.
+	 * @param net The net which no longer uses the resource.
+	 */
+	public void removeNet(Tile tile, int wire, Net net){
+		if(tile == null || net == null) return;
+		int id = getId(tile, wire);
+		if(id == -1){
+			long key = getKey(tile, wire);
+			LinkedList<Net> list = otherNets.get(key);
+			if(list != null && list.remove(net) && list.isEmpty()){
+				otherNets.remove(key);
+			}
+			return;
+		}
+		LinkedList<Net> list = moreNets.get(id);
+		if(net.equals(nets[id])){
+			nets[id] = list == null ? null : list.removeFirst();
+		}
+		else if(list != null){
+			list.remove(net);
+		}
+		if(list != null && list.isEmpty()){
+			moreNets.remove(id);
+		}
+	}
+
+	/**
+	 * Removes the records of all nets using a resource.
+	 * @param tile The tile of the resource (ignored if null).
+	 * @param wire The wire of the resource.
+	 * @return The nets which were recorded, or null if there were none.
+	 */
+	public LinkedList<Net> removeNets(Tile tile, int wire){
+		if(tile == null) return null;
+		int id = getId(tile, wire);
+		if(id == -1){
+			return otherNets.remove(getKey(tile, wire));
+		}
+		LinkedList<Net> list = getNets(id);
+		nets[id] = null;
+		moreNets.remove(id);
+		return list;
+	}
+
+	/**
+	 * Gets the (first) net recorded for a resource.
+	 * @param tile The tile of the resource (may be null).
+	 * @param wire The wire of the resource.
+	 * @return The net or null if no net was recorded for the resource.
+	 */
+	public Net getNet(Tile tile, int wire){
+		if(tile == null) return null;
+		int id = getId(tile, wire);
+		if(id == -1){
+			LinkedList<Net> list = otherNets.get(getKey(tile, wire));
+			return list == null ? null : list.getFirst();
+		}
+		return nets[id];
+	}
+
+	/**
+	 * Gets the (first) net recorded for a resource, only with a routing graph.
+	 * @param id The routing graph id of the resource.
+	 * @return The net or null if no net was recorded for the resource.
+	 */
+	public Net getNet(int id){
+		return nets[id];
+	}
+
+	/**
+	 * Gets all nets recorded for a resource.
+	 * @param tile The tile of the resource (may be null).
+	 * @param wire The wire of the resource.
+	 * @return A new list of the nets or null if no net was recorded for the resource.
+	 */
+	public LinkedList<Net> getNets(Tile tile, int wire){
+		if(tile == null) return null;
+		int id = getId(tile, wire);
+		if(id == -1){
+			LinkedList<Net> list = otherNets.get(getKey(tile, wire));
+			return list == null ? null : new LinkedList<Net>(list);
+		}
+		return getNets(id);
+	}
+
+	/**
+	 * Gets all nets recorded for a resource, only with a routing graph.
+	 * @param id The routing graph id of the resource.
+	 * @return A new list of the nets or null if no net was recorded for the resource.
+	 */
+	public LinkedList<Net> getNets(int id){
+		if(nets[id] == null) return null;
+		LinkedList<Net> list = new LinkedList<Net>();
+		list.add(nets[id]);
+		LinkedList<Net> more = moreNets.get(id);
+		if(more != null) list.addAll(more);
+		return list;
+	}
+
+	/**
+	 * Creates a node for each resource which has nets recorded, mapped to
+	 * its nets.
+	 * @param factory Creates the nodes.
+	 * @return A new map of the nodes to new lists of their nets.
+	 */
+	public HashMap<Node,LinkedList<Net>> getNetMap(NodeFactory<? extends Node> factory){
+		HashMap<Node,LinkedList<Net>> map = new HashMap<Node,LinkedList<Net>>();
+		if(nets != null){
+			for(int id=0; id < nets.length; id++){
+				if(nets[id] != null){
+					map.put(factory.newNode(graph.getTile(id), graph.getWire(id), null, 0), getNets(id));
+				}
+			}
+		}
+		for(Map.Entry<Long,LinkedList<Net>> e : otherNets.entrySet()){
+			map.put(factory.newNode(getTile(e.getKey()), getWire(e.getKey()), null, 0), new LinkedList<Net>(e.getValue()));
+		}
+		return map;
+	}
+}
@@ -130,9 +130,10 @@ public class StaticSourceHandler{
 	 * @param pin The pin for which to reserve the routing resource.
 	 */
 	private boolean addReservedGNDVCCNode(Node node, Pin pin){
-		if(router.usedNodes.contains(node)){
-			LinkedList<Net> nets = router.usedNodesMap.get(node);
-			if(nets == null){
+		ResourceUsage resources = router.getUsedResources();
+		if(resources.isUsed(node.tile, node.wire)){
+			Net user = resources.getNet(node.tile, node.wire);
+			if(user == null){
 				Pin p = reservedGNDVCCResources.get(node);
 				if(p == null){
 					return false;
@@ -141,22 +142,17 @@ public class StaticSourceHandler{
 					return false;
 				}
 			}
-			else if(!nets.get(0).getType().equals(pin.getNet().getType())){
+			else if(!user.getType().equals(pin.getNet().getType())){
 				return false;
 			}
 		}
 		
-		LinkedList<Net> nets = router.usedNodesMap.get(node);
-		if(nets == null){
-			nets = new LinkedList<Net>();
-			router.usedNodesMap.put(node, nets);
-		}
-		nets.add(pin.getNet());
+		resources.addNet(node.tile, node.wire, pin.getNet());
 		
 		// We will update the net reserved list later,
 		// after the pin has been assigned its final net
 		reservedGNDVCCResources.put(node, pin);
-		router.usedNodes.add(node);
+		resources.setUsed(node.tile, node.wire);
 		return true;
 	}
 	
@@ -167,13 +163,9 @@ public class StaticSourceHandler{
 			router.reservedNodes.put(net, nodes);
 		}
 		nodes.add(node);
-		router.usedNodes.add(node);
-		LinkedList<Net> nets = router.usedNodesMap.get(node);
-		if(nets == null){
-			nets = new LinkedList<Net>();
-			router.usedNodesMap.put(node, nets);
-		}
-		nets.add(net);
+		ResourceUsage resources = router.getUsedResources();
+		resources.setUsed(node.tile, node.wire);
+		resources.addNet(node.tile, node.wire, net);
 	}
 	
 	public Node getSwitchBoxWire(Net net){
@@ -234,12 +226,11 @@ public class StaticSourceHandler{
 	}
 	
 	private void unRouteNetForCriticalNode(Node n){
-		LinkedList<Net> previous = router.usedNodesMap.get(n);
-		if(previous == null){
+		LinkedList<Net> nets = router.getUsedResources().getNets(n.tile, n.wire);
+		if(nets == null){
 			MessageGenerator.briefError("ERROR: Failure to unroute net for node: " + n.toString(we));
 			return;
 		}
-		LinkedList<Net> nets = new LinkedList<Net>(previous);
 		for(Net net : nets){
 			for(PIP p : net.getPIPs()){
 				router.setWireAsUnused(p.getTile(), p.getStartWire(), net);
@@ -258,7 +249,9 @@ public class StaticSourceHandler{
 				}else {
 					nodes.addAll(reservedNodes);						
 				}
-				router.usedNodes.addAll(reservedNodes);
+				for(Node reserved : reservedNodes){
+					router.getUsedResources().setUsed(reserved.tile, reserved.wire);
+				}
 			}
 		}
 	}
@@ -279,7 +272,7 @@ public class StaticSourceHandler{
 			tempNode.setTileAndWire(p.getInstance().getTile(), extPin);
 			Node reserved = tempNode.getSwitchBoxSink(dev);
 			if(reserved.wire == -1) continue;
-			if(router.usedNodes.contains(reserved)){
+			if(router.isNodeUsed(reserved)){
 				unRouteNetForCriticalNode(reserved);
 				addReservedNode(reserved, net);
 				continue;
@@ -287,7 +280,7 @@ public class StaticSourceHandler{
 			int criticalResource = getCriticalResource(reserved.wire);
 			if(criticalResource != -1){
 				reserved.setWire(criticalResource);
-				if(router.usedNodes.contains(reserved)){
+				if(router.isNodeUsed(reserved)){
 					unRouteNetForCriticalNode(reserved);
 					addReservedNode(reserved, net);
 				}
@@ -348,7 +341,7 @@ public class StaticSourceHandler{
 							break;
 						}
 						Node newNode = new Node(node.tile, we.getWireEnum(v4TopOmuxs[reservedTop]), null, 0);
-						while(router.usedNodes.contains(newNode)){
+						while(router.isNodeUsed(newNode)){
 
 							reservedTop++;
 							if(reservedTop > 7) {
@@ -356,7 +349,7 @@ public class StaticSourceHandler{
 							}
 							newNode = new Node(node.tile, we.getWireEnum(v4TopOmuxs[reservedTop]), null, 0);
 						}
-						if(!router.usedNodes.contains(newNode)){
+						if(!router.isNodeUsed(newNode)){
 							addReservedNode(newNode, n);
 							reservedTop++;																
 						}
@@ -366,14 +359,14 @@ public class StaticSourceHandler{
 							break;
 						}
 						Node newNode = new Node(node.tile, we.getWireEnum(v4BottomOmuxs[reservedBot]), null, 0);
-						while(router.usedNodes.contains(newNode)){
+						while(router.isNodeUsed(newNode)){
 							reservedBot++;
 							if(reservedBot > 7){
 								break;
 							}
 							newNode = new Node(node.tile, we.getWireEnum(v4BottomOmuxs[reservedBot]), null, 0);
 						}
-						if(!router.usedNodes.contains(newNode)){
+						if(!router.isNodeUsed(newNode)){
 							addReservedNode(newNode, n);
 							reservedBot++;
 						}
@@ -388,26 +381,26 @@ public class StaticSourceHandler{
 				if(node == null) continue;
 				if(reservedTop < 8){
 					Node newNode = new Node(node.tile, we.getWireEnum(v4TopOmuxs[reservedTop]), null, 0);
-					while(router.usedNodes.contains(newNode)){
+					while(router.isNodeUsed(newNode)){
 						reservedTop++;
 						if(reservedTop > 7) break;
 						newNode = new Node(node.tile, we.getWireEnum(v4TopOmuxs[reservedTop]), null, 0);
 					}
-					if(!router.usedNodes.contains(newNode)){
+					if(!router.isNodeUsed(newNode)){
 						addReservedNode(newNode, n);
 						reservedTop++;						
 					}
 				}
 				else if(reservedBot < 8){
 					Node newNode = new Node(node.tile, we.getWireEnum(v4BottomOmuxs[reservedBot]), null, 0);
-					while(router.usedNodes.contains(newNode)){
+					while(router.isNodeUsed(newNode)){
 						reservedBot++;
 						if(reservedBot > 7) {
 							break;
 						}
 						newNode = new Node(node.tile, we.getWireEnum(v4BottomOmuxs[reservedBot]), null, 0);
 					}
-					if(!router.usedNodes.contains(newNode)){
+					if(!router.isNodeUsed(newNode)){
 						addReservedNode(newNode, n);							
 						reservedBot++;							
 					}
@@ -572,7 +565,9 @@ public class StaticSourceHandler{
 					}else {
 						nodes.addAll(reservedNodes);						
 					}
-					router.usedNodes.addAll(reservedNodes);
+					for(Node reserved : reservedNodes){
+						router.getUsedResources().setUsed(reserved.tile, reserved.wire);
+					}
 				}
 			}
 		}
@@ -643,7 +638,7 @@ public class StaticSourceHandler{
 						tempNode.setTile(tile);
 						tempNode.setWire(we.getWireEnum(fan));
 						
-						/*if(ssWireName.startsWith("CLK_") && router.usedNodes.contains(tempNode)){
+						/*if(ssWireName.startsWith("CLK_") && router.isNodeUsed(tempNode)){
 							LinkedList<Net> net = router.usedNodesMap.get(tempNode);
 							if(net.size() == 1){
 								unRouteNetForCriticalNode(tempNode);
@@ -651,7 +646,7 @@ public class StaticSourceHandler{
 							}
 						}*/
 						
-						boolean ableToReserveResource = (!router.usedNodes.contains(tempNode)) || 
+						boolean ableToReserveResource = (!router.isNodeUsed(tempNode)) || 
 												(reservedGNDVCCResources.get(tempNode) != null && 
 												reservedGNDVCCResources.get(tempNode).equals(ss.pin)); 
 
@@ -667,7 +662,7 @@ public class StaticSourceHandler{
 								// Special case when neighboring resources are used (hard macros)
 								tempNode.tile = ss.switchMatrixSink.tile;
 								tempNode.wire = we.getWireEnum("FAN0");
-								if(tempNode.tile == null || router.usedNodes.contains(tempNode)){
+								if(tempNode.tile == null || router.isNodeUsed(tempNode)){
 									newNode = null;
 								}
 							}
@@ -678,7 +673,7 @@ public class StaticSourceHandler{
 								// Special case when neighboring resources are used (hard macros)
 								tempNode.tile = ss.switchMatrixSink.tile;
 								tempNode.wire = we.getWireEnum("FAN7");
-								if(tempNode.tile == null || router.usedNodes.contains(tempNode)){
+								if(tempNode.tile == null || router.isNodeUsed(tempNode)){
 									newNode = null;
 								}
 							}
@@ -714,7 +709,7 @@ public class StaticSourceHandler{
 						for(String fan : fans){
 							tempNode.setWire(we.getWireEnum(fan));
 							// Add this to reserved
-							if(!router.usedNodes.contains(tempNode)){
+							if(!router.isNodeUsed(tempNode)){
 								useSLICE = false;
 								break;
 							}
@@ -45,13 +45,14 @@ import com.caucho.hessian.io.Hessian2Input;
 import com.caucho.hessian.io.Hessian2Output;
 
 import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.DeviceRegistry;
 import edu.byu.ece.rapidSmith.device.PrimitivePinMap;
 import edu.byu.ece.rapidSmith.device.PrimitiveSite;
 import edu.byu.ece.rapidSmith.device.PrimitiveType;
 import edu.byu.ece.rapidSmith.device.Tile;
 import edu.byu.ece.rapidSmith.device.WireConnection;
 import edu.byu.ece.rapidSmith.device.WireEnumerator;
-import edu.byu.ece.rapidSmith.device.helper.HashPool;
+import edu.byu.ece.rapidSmith.device.helper.InternPool;
 import edu.byu.ece.rapidSmith.device.helper.WireArray;
 import edu.byu.ece.rapidSmith.device.helper.WireArrayConnection;
 import edu.byu.ece.rapidSmith.device.helper.WireHashMap;
@@ -72,8 +73,16 @@ public class FileTools {
 	public static final String rapidSmithPathVariableName = "RAPIDSMITH_PATH";
 	/** Suffix of the device part files */
 	public static final String deviceFileSuffix = "_db.dat";
+	/** Suffix of the memory mapped device part files */
+	public static final String mappedDeviceFileSuffix = "_db.map";
+	/** Suffix of the files recording the inputs of the device part files */
+	public static final String deviceManifestFileSuffix = "_db.manifest";
+	/** Suffix of the routing graph part files */
+	public static final String routingGraphFileSuffix = "_graph.dat";
 	/** Suffix of the wireEnumerator files */
 	public static final String wireEnumeratorFileName = "wireEnumerator.dat";
+	/** Name of the family template files holding the pools of the mapped device files */
+	public static final String familyTemplateFileName = "familyTemplate.dat";
 	/** Name of the family primitive definition files */
 	public static final String primitiveDefFileName = "primitiveDefs.dat";
 	/** Name of the Virtex 5 RAMB Primitive Pin Mapping Patch File */
@@ -326,7 +335,7 @@ public class FileTools {
 		return tmp;
 	}
 	
-	public static boolean writePrimitiveSite(Hessian2Output dos, PrimitiveSite p, Device device, HashPool<PrimitivePinMap> primitivePinPool){
+	public static boolean writePrimitiveSite(Hessian2Output dos, PrimitiveSite p, Device device, InternPool<PrimitivePinMap> primitivePinPool){
 		try {
 			// Write Name
 			dos.writeString(p.getName());
@@ -363,7 +372,7 @@ public class FileTools {
 	}
 
 	public static boolean writeWireHashMap(Hessian2Output dos, WireHashMap wires, 
-			HashPool<WireArray> wireArrayPool, HashPool<WireArrayConnection> wireConnectionPool) {
+			InternPool<WireArray> wireArrayPool, InternPool<WireArrayConnection> wireConnectionPool) {
 
 		int[] wireConnections;
 		if(wires == null){
@@ -869,28 +878,80 @@ public class FileTools {
 				deviceFileSuffix;
 	}
 	
+	/**
+	 * Gets the memory mapped device file path and name for the given partName.
+	 * @param partName Name of the part to get corresponding mapped device file for.
+	 * @return The full path to the mapped device file specified by partName.
+	 */
+	public static String getMappedDeviceFileName(String partName){
+		return getPartFolderPath(partName) +
+				PartNameTools.removeSpeedGrade(partName) + 
+				mappedDeviceFileSuffix;
+	}
+	
+	/**
+	 * Gets the device manifest file path and name for the given partName
+	 * (see DeviceFileManifest).
+	 * @param partName Name of the part to get corresponding manifest file for.
+	 * @return The full path to the device manifest file specified by partName.
+	 */
+	public static String getDeviceManifestFileName(String partName){
+		return getPartFolderPath(partName) +
+				PartNameTools.removeSpeedGrade(partName) + 
+				deviceManifestFileSuffix;
+	}
+	
+	/**
+	 * Gets the routing graph file path and name for the given partName.
+	 * @param partName Name of the part to get corresponding routing graph file for.
+	 * @return The full path to the routing graph file specified by partName.
+	 */
+	public static String getRoutingGraphFileName(String partName){
+		return getPartFolderPath(partName) +
+				PartNameTools.removeSpeedGrade(partName) + 
+				routingGraphFileSuffix;
+	}
+	
 	/**
 	 * Loads the appropriate Device file based on the part name.  Accounts for speed grade in 
-	 * file name.
+	 * file name.  If a compatible memory mapped device file exists it is used, otherwise
+	 * the compact device file is loaded.
 	 * @param partName Name of the part or device to load the information for.
 	 * @return The device or null if there was an error.
 	 */
 	public static Device loadDevice(String partName){
-		String canonicalName = PartNameTools.removeSpeedGrade(partName);
-		Device device = Device.getInstance(canonicalName);
-		String path = getDeviceFileName(canonicalName);
-
-		// Don't reload the device if same part is already loaded
-		if(device.getPartName() != null){
-			return device;
-		}
-		
-		if(!device.readDeviceFromCompactFile(path)){
+		return loadDevice(partName, false);
+	}
+	
+	/**
+	 * Loads the appropriate Device file based on the part name.  Accounts for speed grade in 
+	 * file name.  When lazy is true and a compatible memory mapped device file exists, the 
+	 * sinks, sources and wires of each tile are only loaded when the tile is first accessed 
+	 * (see Device.setLazyLoading()), otherwise pool entries are decoded from the mapping on 
+	 * first use (see DeviceRegistry.setDecodePool() to decode them up front in parallel).  
+	 * If the part is already loaded, it is returned as is.  Devices are kept by the shared 
+	 * DeviceRegistry, so several parts may be loaded at the same time.
+	 * @param partName Name of the part or device to load the information for.
+	 * @param lazy True to load tile resources on first access.
+	 * @return The device or null if there was an error.
+	 */
+	public static Device loadDevice(String partName, boolean lazy){
+		return DeviceRegistry.getInstance().getDevice(partName, lazy);
+	}
+	
+	/**
+	 * Loads a cropped device (see Device.crop()) saved with
+	 * Device.writeDeviceToMappedFile().  Cropped devices are not kept by the
+	 * DeviceRegistry, each call reads the file again.
+	 * @param fileName Name of the cropped device file.
+	 * @return The cropped device or null if there was an error.
+	 */
+	public static Device loadCroppedDevice(String fileName){
+		Device device = new Device();
+		if(!device.readDeviceFromMappedFile(fileName)){
 			return null;
 		}
-		else{ 
-			return device;
-		}
+		return device;
 	}
 	
 	/**
@@ -910,6 +971,26 @@ public class FileTools {
 	public static String getWireEnumeratorFileName(FamilyType familyType){
 		return getPartFolderPath(familyType) + wireEnumeratorFileName;
 	}
+
+	/**
+	 * Gets the family template file path and name for the given partName
+	 * (see Device.writeDeviceToMappedFile()).
+	 * @param partName Name of the part to get corresponding family template file for.
+	 * @return The full path to the family template file specified by partName.
+	 */
+	public static String getFamilyTemplateFileName(String partName){
+		return getPartFolderPath(partName) + familyTemplateFileName;
+	}
+
+	/**
+	 * Gets the family template file path and name for the given familyType
+	 * (see Device.writeDeviceToMappedFile()).
+	 * @param familyType Name of the family type to get corresponding family template file for.
+	 * @return The full path to the family template file specified by familyType.
+	 */
+	public static String getFamilyTemplateFileName(FamilyType familyType){
+		return getPartFolderPath(familyType) + familyTemplateFileName;
+	}
 	
 	/**
 	 * Loads the appropriate WireEnumerator file based on the part name.  Accounts for 
@@ -929,19 +1010,7 @@ public class FileTools {
 	 * @return The WireEnumerator or null if there was an error.
 	 */
 	public static WireEnumerator loadWireEnumerator(FamilyType familyType){
-		familyType = PartNameTools.getBaseTypeFromFamilyType(familyType);
-		WireEnumerator we = WireEnumerator.getInstance(familyType);
-		String path = getWireEnumeratorFileName(familyType);
-		if(we.getFamilyName() != null){
-			return we;
-		}
-		
-		if(!we.readCompactEnumFile(path, familyType)){
-			return null;
-		}
-		else{ 
-			return we;
-		}
+		return DeviceRegistry.getInstance().getWireEnumerator(familyType);
 	}
 	
 	
@@ -78,15 +78,40 @@ public class Installer{
 		MessageGenerator.printHeader("RapidSmith Release " + Device.rapidSmithVersion +" - Installer");
 		String[] names = null;
 		long timeStart = System.currentTimeMillis();
+		
+		// Options for creating several parts at the same time
+		int workers = 1;
+		long heapBudget = 0;
+		ArrayList<String> otherArgs = new ArrayList<String>();
+		for(int i=0; i < args.length; i++){
+			if(args[i].equals("-workers") && i+1 < args.length){
+				workers = Integer.parseInt(args[++i]);
+			}
+			else if(args[i].equals("-heapBudget") && i+1 < args.length){
+				heapBudget = Long.parseLong(args[++i]) << 20;
+			}
+			else if(args[i].equals("-routingGraphs")){
+				DeviceFilesCreator.setCreateRoutingGraphs(true);
+			}
+			else{
+				otherArgs.add(args[i]);
+			}
+		}
+		args = otherArgs.toArray(new String[otherArgs.size()]);
+		
 		if(args.length == 0){
 			String nl = System.getProperty("line.separator");
 			
-			MessageGenerator.briefMessageAndExit("  USAGE: <Xilinx Family Name(s) | Part Name(s) " +
-					"| parameterFileName.txt>" + nl +
+			MessageGenerator.briefMessageAndExit("  USAGE: [-workers <count>] [-heapBudget <MB>] [-routingGraphs] " + 
+					"<Xilinx Family Name(s) | Part Name(s) | parameterFileName.txt>" + nl +
 					"    EXAMPLES:" + nl +
 					"      \"virtex4 virtex5\"" + nl +
 					"      \"virtex4 xc5vlx20tff323\"" + nl +
-					"      \"listOfpartsAndFamiliesFile.txt\" (each parameter on a separate line)" + nl);
+					"      \"listOfpartsAndFamiliesFile.txt\" (each parameter on a separate line)" + nl +
+					"      \"-workers 4 -heapBudget 12000 virtex5\" (create up to 4 parts at the same" + nl +
+					"        time using at most 12000 MB of heap)" + nl +
+					"      \"-routingGraphs virtex5\" (also save the routing graph of each part," + nl +
+					"        used by the routers, next to its device file)" + nl);
 		}
 		
 		System.out.println("DISCLAIMER:");
@@ -115,7 +140,12 @@ public class Installer{
 				name = name.toUpperCase();
 				partNames.addAll(RunXilinxTools.getPartNames(name, false));
 			}
-			
+		}
+		
+		if(workers > 1){
+			DeviceFilesCreator.createPartFiles(partNames, workers, heapBudget);
+		}
+		else{
 			for(String partName : partNames){
 				System.out.println("Creating/Verifying files for " + partName);
 				DeviceFilesCreator.createPartFiles(partName);				